@@ -3,6 +3,7 @@ plugins {
     jacoco
     id("org.springframework.boot") version "3.4.4"
     id("io.spring.dependency-management") version "1.1.7"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "id.ac.ui.cs.advprog"
@@ -29,6 +30,10 @@ val seleniumJupiterVersion = "5.0.1"
 val webdrivermanagerVersion = "5.6.3"
 val junitJupiterVersion = "5.9.1"
 val jjwtVersion = "0.11.5"
+val resilience4jVersion = "2.2.0"
+val jmhCoreVersion = "1.37"
+val embeddedPostgresVersion = "2.2.2"
+val hdrHistogramVersion = "2.2.2"
 
 dependencies {
     implementation("org.springframework.boot:spring-boot-starter-thymeleaf")
@@ -36,10 +41,13 @@ dependencies {
     implementation("org.springframework.boot:spring-boot-starter-data-jpa")
     implementation("org.springframework.boot:spring-boot-starter-validation")
     implementation("org.springframework.boot:spring-boot-starter-security")
+    implementation("org.springframework.boot:spring-boot-starter-websocket")
     implementation("io.jsonwebtoken:jjwt-api:${jjwtVersion}")
     runtimeOnly("io.jsonwebtoken:jjwt-impl:${jjwtVersion}")
     runtimeOnly("io.jsonwebtoken:jjwt-jackson:${jjwtVersion}")
     runtimeOnly("org.postgresql:postgresql")
+    implementation("org.flywaydb:flyway-core")
+    runtimeOnly("org.flywaydb:flyway-database-postgresql")
     compileOnly("org.projectlombok:lombok")
     developmentOnly("org.springframework.boot:spring-boot-devtools")
     annotationProcessor("org.springframework.boot:spring-boot-configuration-processor")
@@ -52,10 +60,37 @@ dependencies {
     testImplementation("org.seleniumhq.selenium:selenium-java:$seleniumJavaVersion")
     testImplementation("io.github.bonigarcia:selenium-jupiter:$seleniumJupiterVersion")
     testImplementation("io.github.bonigarcia:webdrivermanager:$webdrivermanagerVersion")
+    testImplementation("io.zonky.test:embedded-postgres:$embeddedPostgresVersion")
+    testImplementation("org.hdrhistogram:HdrHistogram:$hdrHistogramVersion")
     implementation("me.paulschwarz:spring-dotenv:3.0.0")
     implementation("org.springframework.boot:spring-boot-starter-actuator")
     implementation("io.micrometer:micrometer-registry-prometheus")
     implementation("io.micrometer:micrometer-core")
+    implementation("com.github.ben-manes.caffeine:caffeine")
+    implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-cbor")
+    implementation("org.apache.httpcomponents.client5:httpclient5")
+    implementation("io.github.resilience4j:resilience4j-circuitbreaker:$resilience4jVersion")
+    implementation("io.github.resilience4j:resilience4j-bulkhead:$resilience4jVersion")
+}
+
+tasks.named<org.springframework.boot.gradle.tasks.run.BootRun>("bootRun") {
+    jvmArgs("-Djdk.tracePinnedThreads=short")
+}
+
+// Microbenchmarks live in src/jmh/java; run with `./gradlew jmh`, results go to build/results/jmh/results.json
+jmh {
+    jmhVersion.set(jmhCoreVersion)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    includeTests.set(false)
+    includes.addAll(providers.gradleProperty("jmhIncludes").map { listOf(it) }.orElse(emptyList()))
+}
+
+tasks.named<Jar>("jmhJar") {
+    isZip64 = true
 }
 
 // Unit test only
@@ -64,6 +99,43 @@ tasks.register<Test>("unitTest") {
     group = "verification"
     filter {
         excludeTestsMatching("*FunctionalTest")
+        excludeTestsMatching("*LoadTest")
+        excludeTestsMatching("*IntegrationTest")
+    }
+}
+
+// Load tests only; slow and printed rather than asserted on, so kept out of the regular test run.
+// Harness knobs are passed as -Ploadtest.<name>=<value>, e.g. -Ploadtest.users=100 -Ploadtest.duration=60s
+tasks.register<Test>("loadTest") {
+    description = "Runs load tests."
+    group = "verification"
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    useJUnitPlatform()
+    filter {
+        includeTestsMatching("*LoadTest")
+    }
+    jvmArgs("-Djdk.tracePinnedThreads=short")
+    systemProperties(project.properties
+        .filterKeys { it.startsWith("loadtest.") }
+        .mapValues { it.value.toString() })
+    testLogging {
+        showStandardStreams = true
+    }
+}
+
+// Integration tests against an embedded PostgreSQL (migrations, query plans); needs no external services
+tasks.register<Test>("integrationTest") {
+    description = "Runs integration tests against an embedded PostgreSQL."
+    group = "verification"
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    useJUnitPlatform()
+    filter {
+        includeTestsMatching("*IntegrationTest")
+    }
+    testLogging {
+        showStandardStreams = true
     }
 }
 
@@ -86,6 +158,8 @@ tasks.test {
     useJUnitPlatform()
     filter {
         excludeTestsMatching("*FunctionalTest")
+        excludeTestsMatching("*LoadTest")
+        excludeTestsMatching("*IntegrationTest")
     }
     finalizedBy(tasks.jacocoTestReport)
 }
@@ -0,0 +1,75 @@
+package id.ac.ui.cs.advprog.bechat.benchmark;
+
+import id.ac.ui.cs.advprog.bechat.model.ChatMessage;
+import id.ac.ui.cs.advprog.bechat.state.DeletedState;
+import id.ac.ui.cs.advprog.bechat.state.EditedState;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transitions of the {@code MessageState} machine. Each invocation starts from a fresh message
+ * so the measured cost includes the allocation the service pays per edit/delete.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MessageStateBenchmark {
+
+    private final UUID senderId = UUID.randomUUID();
+
+    private ChatMessage message(String content) {
+        ChatMessage message = new ChatMessage();
+        message.setId(UUID.randomUUID());
+        message.setSenderId(senderId);
+        message.setContent(content);
+        return message;
+    }
+
+    @Benchmark
+    public ChatMessage normalEdit() {
+        ChatMessage message = message("Halo");
+        message.edit("Halo, apa kabar?");
+        return message;
+    }
+
+    @Benchmark
+    public ChatMessage normalDelete() {
+        ChatMessage message = message("Halo");
+        message.delete();
+        return message;
+    }
+
+    @Benchmark
+    public ChatMessage editedEdit() {
+        ChatMessage message = message("Halo");
+        message.setEdited(true);
+        message.setState(new EditedState());
+        message.edit("Halo lagi");
+        return message;
+    }
+
+    @Benchmark
+    public ChatMessage editedDelete() {
+        ChatMessage message = message("Halo");
+        message.setEdited(true);
+        message.setState(new EditedState());
+        message.delete();
+        return message;
+    }
+
+    /** Rejected transitions throw, so this measures the exception path the API hits on 409s. */
+    @Benchmark
+    public Object deletedEditRejected() {
+        ChatMessage message = message("Pesan telah dihapus");
+        message.setDeleted(true);
+        message.setState(new DeletedState());
+        try {
+            message.edit("Tidak bisa");
+            return message;
+        } catch (IllegalStateException e) {
+            return e;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package id.ac.ui.cs.advprog.bechat.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import id.ac.ui.cs.advprog.bechat.config.WebConfig;
+import id.ac.ui.cs.advprog.bechat.dto.BaseResponseDTO;
+import id.ac.ui.cs.advprog.bechat.dto.ChatSessionWithMessagesDto;
+import id.ac.ui.cs.advprog.bechat.model.ChatMessage;
+import id.ac.ui.cs.advprog.bechat.model.ChatSession;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson encoding and decoding of the {@code GET /api/chat/session/{id}} response body at
+ * different history sizes, as JSON (the default) and as the negotiated CBOR, using mappers
+ * built the way the MVC converters build theirs. The encoded size of each is printed at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResponseSerializationBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int messageCount;
+
+    @Param({"json", "cbor"})
+    public String format;
+
+    private ObjectMapper objectMapper;
+    private BaseResponseDTO<ChatSessionWithMessagesDto> response;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = format.equals("cbor")
+                ? WebConfig.cborObjectMapper(Jackson2ObjectMapperBuilder.json())
+                : Jackson2ObjectMapperBuilder.json().build();
+
+        ChatSession session = new ChatSession();
+        session.setId(UUID.randomUUID());
+        session.setPacilian(UUID.randomUUID());
+        session.setCaregiver(UUID.randomUUID());
+
+        long start = System.currentTimeMillis() - messageCount * 1_000L;
+        List<ChatMessage> messages = new ArrayList<>(messageCount);
+        for (int i = 0; i < messageCount; i++) {
+            ChatMessage message = new ChatMessage();
+            message.setId(UUID.randomUUID());
+            message.setSession(session);
+            message.setSenderId(i % 2 == 0 ? session.getPacilian() : session.getCaregiver());
+            message.setContent("Pesan nomor " + i + ", dok saya masih demam sejak kemarin malam.");
+            message.setCreatedAt(new Date(start + i * 1_000L));
+            message.setEditedAt(message.getCreatedAt());
+            messages.add(message);
+        }
+
+        ChatSessionWithMessagesDto dto = ChatSessionWithMessagesDto.builder()
+                .sessionId(session.getId())
+                .pacilian(session.getPacilian())
+                .pacilianName("Pacilian")
+                .caregiver(session.getCaregiver())
+                .caregiverName("Dr. Cleo")
+                .messages(messages)
+                .build();
+        response = BaseResponseDTO.success(200, "Messages retrieved", dto);
+
+        encoded = objectMapper.writeValueAsBytes(response);
+        System.out.printf("%n%s payload, %d messages: %d bytes%n", format, messageCount, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public JsonNode deserialize() throws Exception {
+        return objectMapper.readTree(encoded);
+    }
+}
@@ -0,0 +1,142 @@
+package id.ac.ui.cs.advprog.bechat.benchmark;
+
+import id.ac.ui.cs.advprog.bechat.dto.TokenVerificationResponseDto;
+import id.ac.ui.cs.advprog.bechat.exception.AuthenticationException;
+import id.ac.ui.cs.advprog.bechat.model.enums.Role;
+import id.ac.ui.cs.advprog.bechat.service.TokenVerificationService;
+import id.ac.ui.cs.advprog.bechat.service.VerifiedTokenCache;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Authenticating one request. {@code legacy} is the path before tokens were verified once per
+ * request: the filter and then the controller each ran the old {@code verifyToken}, which parsed
+ * the token four times and rebuilt the parser and key every time. {@code miss} and {@code hit}
+ * are {@link TokenVerificationService#authenticate} with the verified-token cache missing on
+ * every call (one signature check and claim parse) and hitting on every call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TokenVerificationBenchmark {
+
+    @Param({"legacy", "miss", "hit"})
+    public String path;
+
+    private TokenVerificationService tokenVerificationService;
+    private LegacyTokenVerification legacyTokenVerification;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        byte[] rawKey = "benchmark-secret-key-that-is-long-enough-for-hs256".getBytes(StandardCharsets.UTF_8);
+        String secretKey = Base64.getEncoder().encodeToString(rawKey);
+
+        // A zero TTL makes every entry expire on creation, so each call re-verifies the token.
+        Duration ttl = "hit".equals(path) ? Duration.ofMinutes(5) : Duration.ZERO;
+        tokenVerificationService = new TokenVerificationService(secretKey, new VerifiedTokenCache(1_000, ttl));
+        legacyTokenVerification = new LegacyTokenVerification(secretKey);
+
+        token = Jwts.builder()
+                .setSubject("pacilian@example.com")
+                .claim("id", UUID.randomUUID().toString())
+                .claim("role", "PACILIAN")
+                .claim("name", "Benchmark Pacilian")
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)))
+                .signWith(Keys.hmacShaKeyFor(rawKey), SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    @Benchmark
+    public Object authenticateRequest() {
+        if ("legacy".equals(path)) {
+            legacyTokenVerification.verifyToken(token);
+            return UUID.fromString(legacyTokenVerification.verifyToken(token).getUserId());
+        }
+        return tokenVerificationService.authenticate(token);
+    }
+
+    /**
+     * The verification code as it was before, minus its per-request INFO log line, which would
+     * measure the log appender rather than the token handling.
+     */
+    private static final class LegacyTokenVerification {
+
+        private final String secretKey;
+
+        private LegacyTokenVerification(String secretKey) {
+            this.secretKey = secretKey;
+        }
+
+        TokenVerificationResponseDto verifyToken(String token) {
+            try {
+                if (isTokenExpired(token)) {
+                    throw new AuthenticationException("Token has expired");
+                }
+
+                Claims claims = extractAllClaims(token);
+                String email = extractClaim(token, Claims::getSubject);
+                String userId = claims.get("id", String.class);
+                String roleStr = claims.get("role", String.class);
+                String name = claims.get("name", String.class);
+
+                if (userId == null || roleStr == null || name == null) {
+                    throw new AuthenticationException("Invalid token: missing required claims");
+                }
+                if (!Role.contains(roleStr)) {
+                    throw new AuthenticationException("Invalid role in token: " + roleStr);
+                }
+
+                return TokenVerificationResponseDto.builder()
+                        .valid(true)
+                        .userId(userId)
+                        .email(email)
+                        .role(Role.valueOf(roleStr))
+                        .expiresIn(getRemainingTime(token))
+                        .name(name)
+                        .build();
+            } catch (ExpiredJwtException e) {
+                throw new AuthenticationException("Token has expired");
+            }
+        }
+
+        private <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
+            return claimsResolver.apply(extractAllClaims(token));
+        }
+
+        private Claims extractAllClaims(String token) {
+            return Jwts.parserBuilder()
+                    .setSigningKey(getSignInKey())
+                    .build()
+                    .parseClaimsJws(token)
+                    .getBody();
+        }
+
+        private Key getSignInKey() {
+            return Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
+        }
+
+        private boolean isTokenExpired(String token) {
+            return extractClaim(token, Claims::getExpiration).before(new Date());
+        }
+
+        private long getRemainingTime(String token) {
+            return Math.max(0, extractClaim(token, Claims::getExpiration).getTime() - System.currentTimeMillis());
+        }
+    }
+}
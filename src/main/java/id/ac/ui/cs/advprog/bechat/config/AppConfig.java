@@ -1,16 +1,98 @@
 package id.ac.ui.cs.advprog.bechat.config;
 
+import id.ac.ui.cs.advprog.bechat.exception.AuthServiceUnavailableException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+
 @Configuration
 @EnableAsync
 public class AppConfig {
 
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(
+            @Value("${auth.client.max-connections:50}") int maxConnections,
+            @Value("${auth.client.connect-timeout:2s}") Duration connectTimeout,
+            @Value("${auth.client.read-timeout:3s}") Duration readTimeout,
+            @Value("${auth.client.pool-timeout:1s}") Duration poolTimeout
+    ) {
+        return pooledRestTemplate(maxConnections, connectTimeout, readTimeout, poolTimeout);
+    }
+
+    @Bean
+    public CircuitBreaker authServiceCircuitBreaker(
+            @Value("${auth.client.circuit-breaker.failure-rate-threshold:50}") float failureRateThreshold,
+            @Value("${auth.client.circuit-breaker.sliding-window-size:20}") int slidingWindowSize,
+            @Value("${auth.client.circuit-breaker.minimum-number-of-calls:10}") int minimumNumberOfCalls,
+            @Value("${auth.client.circuit-breaker.wait-duration-in-open-state:30s}") Duration waitDurationInOpenState
+    ) {
+        return CircuitBreaker.of("auth-service", CircuitBreakerConfig.custom()
+                .failureRateThreshold(failureRateThreshold)
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(minimumNumberOfCalls)
+                .waitDurationInOpenState(waitDurationInOpenState)
+                .permittedNumberOfCallsInHalfOpenState(3)
+                // Only outages count; a 4xx or a malformed body says nothing about service health.
+                .recordExceptions(AuthServiceUnavailableException.class)
+                .build());
+    }
+
+    @Bean
+    public Bulkhead authServiceBulkhead(
+            @Value("${auth.client.bulkhead.max-concurrent-calls:20}") int maxConcurrentCalls,
+            @Value("${auth.client.bulkhead.max-wait:0ms}") Duration maxWait
+    ) {
+        return Bulkhead.of("auth-service", BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(maxWait)
+                .build());
+    }
+
+    /**
+     * Keep-alive connection pool with bounded connect, read and pool-checkout timeouts,
+     * so a slow auth service cannot hold request threads indefinitely.
+     */
+    public static RestTemplate pooledRestTemplate(int maxConnections,
+                                                  Duration connectTimeout,
+                                                  Duration readTimeout,
+                                                  Duration poolTimeout) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        .setTimeToLive(TimeValue.ofMinutes(5))
+                        .build())
+                .build();
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(poolTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(30))
+                .build();
+
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
     }
-}
\ No newline at end of file
+}
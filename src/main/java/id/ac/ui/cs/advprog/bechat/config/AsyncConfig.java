@@ -1,7 +1,9 @@
 package id.ac.ui.cs.advprog.bechat.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
@@ -11,14 +13,40 @@ import java.util.concurrent.Executor;
 @EnableAsync
 public class AsyncConfig {
 
-    @Bean(name = "taskExecutor") 
-    public Executor taskExecutor() {
+    public static final String MODE_PLATFORM = "platform";
+    public static final String MODE_VIRTUAL = "virtual";
+
+    @Bean(name = "taskExecutor")
+    public Executor taskExecutor(
+            @Value("${chat.async.mode:platform}") String mode,
+            @Value("${chat.async.max-concurrency:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrency
+    ) {
+        return switch (mode) {
+            case MODE_PLATFORM -> platformExecutor();
+            case MODE_VIRTUAL -> virtualExecutor(maxConcurrency);
+            default -> throw new IllegalArgumentException("Unknown chat.async.mode: " + mode);
+        };
+    }
+
+    public static ThreadPoolTaskExecutor platformExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(5);          
-        executor.setMaxPoolSize(10);          
-        executor.setQueueCapacity(100);      
+        executor.setCorePoolSize(5);
+        executor.setMaxPoolSize(10);
+        executor.setQueueCapacity(100);
         executor.setThreadNamePrefix("Async-");
         executor.initialize();
         return executor;
     }
+
+    /**
+     * One virtual thread per task. Nothing is ever rejected; instead at most
+     * {@code maxConcurrency} tasks run at once (normally the JDBC pool size) and the
+     * rest park cheaply on the semaphore rather than queueing for a connection.
+     */
+    public static SimpleAsyncTaskExecutor virtualExecutor(int maxConcurrency) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("Async-vt-");
+        executor.setVirtualThreads(true);
+        executor.setTaskDecorator(new ConcurrencyLimitingTaskDecorator(maxConcurrency));
+        return executor;
+    }
 }
@@ -1,9 +1,20 @@
 package id.ac.ui.cs.advprog.bechat.config;
 
+import id.ac.ui.cs.advprog.bechat.service.CaregiverInfoCache;
+import id.ac.ui.cs.advprog.bechat.service.ReadStateService;
+import id.ac.ui.cs.advprog.bechat.service.RecentMessageCache;
+import id.ac.ui.cs.advprog.bechat.service.SessionUpdateNotifier;
+import id.ac.ui.cs.advprog.bechat.service.VerifiedTokenCache;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.micrometer.core.aop.TimedAspect;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -28,6 +39,13 @@ public class ChatMetricsConfig {
                 .register(meterRegistry);
     }
 
+    @Bean
+    public Counter sendMessageDuplicateCounter(MeterRegistry meterRegistry) {
+        return Counter.builder("chat.message.send.duplicate")
+                .description("Sends answered with the message an earlier send with the same client message id created")
+                .register(meterRegistry);
+    }
+
     @Bean
     public Counter editMessageCounter(MeterRegistry meterRegistry) {
         return Counter.builder("chat.message.edit.success")
@@ -42,6 +60,23 @@ public class ChatMetricsConfig {
                 .register(meterRegistry);
     }
 
+    // Hit ratio of conditional conversation reads: not_modified / (not_modified + modified)
+    @Bean
+    public Counter conditionalReadNotModifiedCounter(MeterRegistry meterRegistry) {
+        return Counter.builder("chat.message.conditional.reads")
+                .description("Conversation reads carrying If-None-Match, by outcome")
+                .tag("result", "not_modified")
+                .register(meterRegistry);
+    }
+
+    @Bean
+    public Counter conditionalReadModifiedCounter(MeterRegistry meterRegistry) {
+        return Counter.builder("chat.message.conditional.reads")
+                .description("Conversation reads carrying If-None-Match, by outcome")
+                .tag("result", "modified")
+                .register(meterRegistry);
+    }
+
     @Bean
     public Timer getMessagesTimer(MeterRegistry meterRegistry) {
         return Timer.builder("chat.message.fetch.timer")
@@ -51,6 +86,15 @@ public class ChatMetricsConfig {
                 .register(meterRegistry);
     }
 
+    @Bean
+    public Timer searchMessagesTimer(MeterRegistry meterRegistry) {
+        return Timer.builder("chat.message.search.timer")
+                .description("Time taken to search messages")
+                .publishPercentileHistogram()
+                .publishPercentiles(0.95)
+                .register(meterRegistry);
+    }
+
     @Bean
     public Counter chatSessionCreatedCounter(MeterRegistry meterRegistry) {
         return Counter.builder("chat.session.create.success")
@@ -64,4 +108,58 @@ public class ChatMetricsConfig {
                 .description("Number of failed chat session creations")
                 .register(meterRegistry);
     }
+
+    @Bean
+    public MeterBinder verifiedTokenCacheMetrics(VerifiedTokenCache verifiedTokenCache) {
+        // Exposes cache_gets{result=hit|miss}, cache_evictions and cache_size tagged cache="auth.token"
+        return registry -> CaffeineCacheMetrics.monitor(registry, verifiedTokenCache.getNativeCache(), "auth.token", Tags.empty());
+    }
+
+    @Bean
+    public MeterBinder caregiverInfoCacheMetrics(CaregiverInfoCache caregiverInfoCache) {
+        return registry -> CaffeineCacheMetrics.monitor(registry, caregiverInfoCache.getNativeCache(), "caregiver.info", Tags.empty());
+    }
+
+    @Bean
+    public MeterBinder recentMessageCacheMetrics(RecentMessageCache recentMessageCache) {
+        return registry -> {
+            CaffeineCacheMetrics.monitor(registry, recentMessageCache.getNativeCache(), "chat.message.tail", Tags.empty());
+            Gauge.builder("chat.message.tail.hit.ratio", recentMessageCache, RecentMessageCache::hitRatio)
+                    .description("Share of latest-page reads served from the recent message cache")
+                    .register(registry);
+            Gauge.builder("chat.message.tail.resident", recentMessageCache, RecentMessageCache::residentBytes)
+                    .description("Estimated heap held by the recent message cache")
+                    .baseUnit("bytes")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder sessionSubscriberMetrics(SessionUpdateNotifier sessionUpdateNotifier) {
+        return registry -> Gauge.builder("chat.live.subscribers", sessionUpdateNotifier, SessionUpdateNotifier::subscriberCount)
+                .description("Parked SSE streams and long polls waiting for new messages")
+                .register(registry);
+    }
+
+    @Bean
+    public MeterBinder readStateMetrics(ReadStateService readStateService) {
+        return registry -> Gauge.builder("chat.read.pending", readStateService, ReadStateService::pendingCount)
+                .description("Read watermarks waiting for the next write-behind flush")
+                .register(registry);
+    }
+
+    @Bean
+    public MeterBinder authServiceResilienceMetrics(CircuitBreaker authServiceCircuitBreaker, Bulkhead authServiceBulkhead) {
+        return registry -> {
+            Gauge.builder("auth.client.circuit.state", authServiceCircuitBreaker, breaker -> breaker.getState().getOrder())
+                    .description("Auth service circuit breaker state (0 closed, 1 open, 2 half-open)")
+                    .register(registry);
+            Gauge.builder("auth.client.circuit.failure.rate", authServiceCircuitBreaker, breaker -> breaker.getMetrics().getFailureRate())
+                    .description("Failure rate over the breaker's sliding window, -1 until enough calls")
+                    .register(registry);
+            Gauge.builder("auth.client.bulkhead.available", authServiceBulkhead, bulkhead -> bulkhead.getMetrics().getAvailableConcurrentCalls())
+                    .description("Free concurrent call slots towards the auth service")
+                    .register(registry);
+        };
+    }
 }
@@ -0,0 +1,38 @@
+package id.ac.ui.cs.advprog.bechat.config;
+
+import org.springframework.core.task.TaskDecorator;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Makes each task wait for one of a fixed number of permits before running. The wait
+ * happens on the task's own thread, so the submitting thread is never blocked.
+ */
+public class ConcurrencyLimitingTaskDecorator implements TaskDecorator {
+
+    private final Semaphore permits;
+
+    public ConcurrencyLimitingTaskDecorator(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be positive");
+        }
+        this.permits = new Semaphore(maxConcurrency, true);
+    }
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        return () -> {
+            // Uninterruptible: skipping the task would leave its CompletableFuture pending forever.
+            permits.acquireUninterruptibly();
+            try {
+                runnable.run();
+            } finally {
+                permits.release();
+            }
+        };
+    }
+
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+}
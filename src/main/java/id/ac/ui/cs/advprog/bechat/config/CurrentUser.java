@@ -0,0 +1,21 @@
+package id.ac.ui.cs.advprog.bechat.config;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Binds the {@link id.ac.ui.cs.advprog.bechat.dto.UserPrincipal} that
+ * {@link JwtAuthenticationFilter} placed in the SecurityContext.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CurrentUser {
+
+    /**
+     * When {@code true} (the default) a request without a verified token fails with
+     * {@link id.ac.ui.cs.advprog.bechat.exception.AuthenticationException}; otherwise {@code null} is bound.
+     */
+    boolean required() default true;
+}
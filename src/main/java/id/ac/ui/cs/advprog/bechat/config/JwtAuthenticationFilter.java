@@ -1,6 +1,6 @@
 package id.ac.ui.cs.advprog.bechat.config;
 
-import id.ac.ui.cs.advprog.bechat.dto.TokenVerificationResponseDto;
+import id.ac.ui.cs.advprog.bechat.dto.UserPrincipal;
 import id.ac.ui.cs.advprog.bechat.service.TokenVerificationService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -36,14 +36,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             String token = authHeader.substring(7);
 
             try {
-                TokenVerificationResponseDto dto = tokenVerificationService.verifyToken(token);
-
-                if (dto.isValid()) {
-                    SimpleGrantedAuthority authority = new SimpleGrantedAuthority(dto.getRole().name());
-                    UsernamePasswordAuthenticationToken authentication =
-                            new UsernamePasswordAuthenticationToken(dto.getUserId(), null, List.of(authority));
-                    SecurityContextHolder.getContext().setAuthentication(authentication);
-                }
+                UserPrincipal principal = tokenVerificationService.authenticate(token);
+
+                SimpleGrantedAuthority authority = new SimpleGrantedAuthority(principal.getRole().name());
+                UsernamePasswordAuthenticationToken authentication =
+                        new UsernamePasswordAuthenticationToken(principal, null, List.of(authority));
+                SecurityContextHolder.getContext().setAuthentication(authentication);
             } catch (Exception ignored) {
             }
         }
@@ -34,6 +34,8 @@ public class SecurityConfig {
                 .requestMatchers("/api/chat/session/create").hasAuthority("PACILIAN")
                 .requestMatchers("/api/chat/**").permitAll()
                 .requestMatchers("/actuator/**").permitAll()
+                // The STOMP CONNECT frame carries the JWT; see StompAuthChannelInterceptor
+                .requestMatchers("/ws/**").permitAll()
                 .anyRequest().denyAll()
             )
             .exceptionHandling(ex -> ex
@@ -58,10 +60,10 @@ public class SecurityConfig {
         ));
 
         config.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS"));
-        config.setAllowedHeaders(List.of("Authorization", "Content-Type"));
+        config.setAllowedHeaders(List.of("Authorization", "Content-Type", "If-None-Match", "Last-Event-ID"));
         config.setAllowCredentials(true); 
         config.setMaxAge(3600L);
-        config.setExposedHeaders(List.of("X-Total-Count", "X-Custom-Header"));
+        config.setExposedHeaders(List.of("X-Total-Count", "X-Custom-Header", "ETag"));
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", config);
         return source;
@@ -0,0 +1,97 @@
+package id.ac.ui.cs.advprog.bechat.config;
+
+import id.ac.ui.cs.advprog.bechat.dto.UserPrincipal;
+import id.ac.ui.cs.advprog.bechat.exception.AuthenticationException;
+import id.ac.ui.cs.advprog.bechat.model.ChatSession;
+import id.ac.ui.cs.advprog.bechat.repository.ChatSessionRepository;
+import id.ac.ui.cs.advprog.bechat.service.TokenVerificationService;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Authenticates STOMP CONNECT frames with the same JWT the REST API accepts, and only lets
+ * a connection subscribe to the topics of sessions its user takes part in.
+ */
+@Component
+@RequiredArgsConstructor
+public class StompAuthChannelInterceptor implements ChannelInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(StompAuthChannelInterceptor.class);
+
+    static final String SESSION_TOPIC_PREFIX = "/topic/session/";
+
+    private final TokenVerificationService tokenVerificationService;
+    private final ChatSessionRepository chatSessionRepository;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+
+        switch (accessor.getCommand()) {
+            case CONNECT, STOMP -> accessor.setUser(authenticate(accessor));
+            case SUBSCRIBE -> authorizeSubscription(accessor);
+            case SEND -> throw new SecurityException("Sending over the socket is not supported; use the REST API");
+            default -> {
+                // heartbeats, UNSUBSCRIBE and DISCONNECT need no checks
+            }
+        }
+        return message;
+    }
+
+    private Principal authenticate(StompHeaderAccessor accessor) {
+        String authHeader = accessor.getFirstNativeHeader("Authorization");
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            throw new AuthenticationException("Authorization header is missing or invalid");
+        }
+
+        UserPrincipal principal = tokenVerificationService.authenticate(authHeader.substring(7));
+        SimpleGrantedAuthority authority = new SimpleGrantedAuthority(principal.getRole().name());
+        return new UsernamePasswordAuthenticationToken(principal, null, List.of(authority));
+    }
+
+    private void authorizeSubscription(StompHeaderAccessor accessor) {
+        UserPrincipal user = currentUser(accessor);
+        String destination = accessor.getDestination();
+        if (destination == null || !destination.startsWith(SESSION_TOPIC_PREFIX)) {
+            throw new SecurityException("Unknown destination: " + destination);
+        }
+
+        UUID sessionId;
+        try {
+            sessionId = UUID.fromString(destination.substring(SESSION_TOPIC_PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new SecurityException("Unknown destination: " + destination);
+        }
+
+        ChatSession session = chatSessionRepository.findById(sessionId)
+                .orElseThrow(() -> new SecurityException("You do not have access to this session."));
+        if (!user.getUserId().equals(session.getPacilian()) && !user.getUserId().equals(session.getCaregiver())) {
+            logger.warn("User {} tried to subscribe to session {}", user.getUserId(), sessionId);
+            throw new SecurityException("You do not have access to this session.");
+        }
+    }
+
+    private static UserPrincipal currentUser(StompHeaderAccessor accessor) {
+        if (accessor.getUser() instanceof UsernamePasswordAuthenticationToken authentication
+                && authentication.getPrincipal() instanceof UserPrincipal principal) {
+            return principal;
+        }
+        throw new AuthenticationException("Connection is not authenticated");
+    }
+}
@@ -0,0 +1,79 @@
+package id.ac.ui.cs.advprog.bechat.config;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.Annotated;
+import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.Date;
+import java.util.List;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(new CurrentUserArgumentResolver());
+    }
+
+    /**
+     * Chat responses are negotiated between JSON and CBOR, so shared caches must key them on
+     * {@code Accept} as well as the URL.
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                // Async results are dispatched through the interceptors a second time
+                if (!response.getHeaders(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT)) {
+                    response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+                }
+                return true;
+            }
+        }).addPathPatterns("/api/chat/**");
+    }
+
+    /**
+     * Serves {@code application/cbor} to clients that ask for it. It replaces Spring's default
+     * CBOR converter, which stays after the JSON one, so JSON remains the default.
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(cborObjectMapper(builder));
+    }
+
+    /**
+     * A CBOR mapper with the settings of the given JSON builder, except that dates are written
+     * as epoch milliseconds: the {@code @JsonFormat} patterns on DTOs exist for readable JSON,
+     * and in CBOR a number is a third the size of the formatted string and keeps milliseconds.
+     */
+    public static ObjectMapper cborObjectMapper(Jackson2ObjectMapperBuilder builder) {
+        return builder.factory(new CBORFactory())
+                .annotationIntrospector(new NumericDateIntrospector())
+                .build();
+    }
+
+    private static final class NumericDateIntrospector extends JacksonAnnotationIntrospector {
+
+        @Override
+        public JsonFormat.Value findFormat(Annotated annotated) {
+            if (Date.class.isAssignableFrom(annotated.getRawType())) {
+                return JsonFormat.Value.forShape(JsonFormat.Shape.NUMBER);
+            }
+            return super.findFormat(annotated);
+        }
+    }
+}
@@ -1,8 +1,7 @@
 package id.ac.ui.cs.advprog.bechat.controller;
+import id.ac.ui.cs.advprog.bechat.config.CurrentUser;
 import id.ac.ui.cs.advprog.bechat.dto.*;
-import id.ac.ui.cs.advprog.bechat.service.TokenVerificationService;
 import jakarta.servlet.http.HttpServletRequest;
-import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -10,14 +9,14 @@ import org.springframework.web.bind.annotation.*;
 
 @RestController
 @RequestMapping("/api/auth")
-@RequiredArgsConstructor
 @CrossOrigin(origins = "*")
 public class AuthController {
 
-    private final TokenVerificationService tokenVerificationService;
-
     @PostMapping(path = "/verify", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<ApiResponseDto<TokenVerificationResponseDto>> verifyToken(HttpServletRequest request) {
+    public ResponseEntity<ApiResponseDto<TokenVerificationResponseDto>> verifyToken(
+            @CurrentUser(required = false) UserPrincipal user,
+            HttpServletRequest request
+    ) {
         String authHeader = request.getHeader("Authorization");
 
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
@@ -26,18 +25,15 @@ public class AuthController {
                                         "Invalid authentication token"));
         }
 
-        String token = authHeader.substring(7);
-        TokenVerificationResponseDto response = tokenVerificationService.verifyToken(token);
-
-        if (response.isValid()) {
+        if (user != null) {
             return ResponseEntity.ok(
                     ApiResponseDto.success(HttpStatus.OK.value(), 
                                     "Token verified successfully", 
-                                    response));
+                                    user.toVerificationResponse()));
         } else {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(ApiResponseDto.error(HttpStatus.UNAUTHORIZED.value(), 
                                         "Invalid or expired token"));
         }
     }
-}
\ No newline at end of file
+}
@@ -1,72 +1,209 @@
 package id.ac.ui.cs.advprog.bechat.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import id.ac.ui.cs.advprog.bechat.config.CurrentUser;
 import id.ac.ui.cs.advprog.bechat.dto.*;
 import id.ac.ui.cs.advprog.bechat.model.ChatMessage;
 import id.ac.ui.cs.advprog.bechat.model.ChatSession;
 import id.ac.ui.cs.advprog.bechat.service.ChatService;
-import id.ac.ui.cs.advprog.bechat.service.TokenVerificationService;
+import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
-import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
 @RestController
 @RequestMapping("/api/chat")
 @RequiredArgsConstructor
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = HttpHeaders.ETAG)
 public class ChatController {
 
     private final ChatService chatService;
-    private final TokenVerificationService tokenVerificationService;
     private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper;
+    private final MappingJackson2CborHttpMessageConverter cborHttpMessageConverter;
+    private final Counter conditionalReadNotModifiedCounter;
+    private final Counter conditionalReadModifiedCounter;
 
     @PostMapping("/send")
     public CompletableFuture<ResponseEntity<BaseResponseDTO<ChatMessage>>> sendMessage(
             @Valid @RequestBody SendMessageRequest dto,
-            HttpServletRequest request
+            @CurrentUser UserPrincipal user
     ) {
-        UUID userId = getUserIdFromRequest(request);
+        UUID userId = user.getUserId();
         return chatService.sendMessage(dto, userId)
                 .thenApply(saved ->
                         ResponseEntity.status(HttpStatus.CREATED)
                                 .body(BaseResponseDTO.success(HttpStatus.CREATED.value(), "Message sent successfully", saved)));
     }
-    @GetMapping("/session/{id}")
+    @PostMapping("/send/batch")
+    public CompletableFuture<ResponseEntity<BaseResponseDTO<List<SendMessageResult>>>> sendMessages(
+            @Valid @RequestBody SendMessageBatchRequest dto,
+            @CurrentUser UserPrincipal user
+    ) {
+        UUID userId = user.getUserId();
+        return chatService.sendMessages(dto.getMessages(), userId)
+                .thenApply(results ->
+                        ResponseEntity.ok(BaseResponseDTO.success(HttpStatus.OK.value(), "Batch processed", results)));
+    }
+
+    @GetMapping(value = "/session/{id}",
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
     public CompletableFuture<ResponseEntity<BaseResponseDTO<ChatSessionWithMessagesDto>>> getMessages(
             @PathVariable UUID id,
-            HttpServletRequest request
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @CurrentUser UserPrincipal user
     ) {
-        UUID userId = getUserIdFromRequest(request);
-        return chatService.getMessages(id, userId).thenCompose(messages -> {
-            if (messages.isEmpty()) {
-                return chatService.findSessionById(id).thenApply(optionalSession -> {
-                    ChatSession session = optionalSession.orElseThrow(() ->
-                            new ResponseStatusException(HttpStatus.NOT_FOUND, "Session not found"));
-
-                    return buildSessionWithMessagesResponse(session, List.of());
-                });
-            } else {
-                ChatSession session = messages.get(0).getSession();
-                return CompletableFuture.completedFuture(buildSessionWithMessagesResponse(session, messages));
+        UUID userId = user.getUserId();
+        MediaType contentType = prefersCbor(accept) ? MediaType.APPLICATION_CBOR : MediaType.APPLICATION_JSON;
+        if (ifNoneMatch == null) {
+            return loadMessagePage(id, userId, before, after, size, contentType);
+        }
+
+        // Only the session's version is read here; messages are loaded only if it has moved on.
+        // Unknown sessions and non-participants fall through so the page load reports the error.
+        return chatService.getMessageVersion(id, userId).thenCompose(version -> {
+            if (version.isPresent() && matchesAny(ifNoneMatch, messageVersionTag(version.get(), contentType))) {
+                conditionalReadNotModifiedCounter.increment();
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(messageVersionTag(version.get(), contentType))
+                        .<BaseResponseDTO<ChatSessionWithMessagesDto>>build());
             }
+            conditionalReadModifiedCounter.increment();
+            return loadMessagePage(id, userId, before, after, size, contentType);
         });
     }
 
+    /**
+     * The whole conversation, in the envelope of a message page. Messages are read through a
+     * database cursor and written to the response one at a time, so the memory a request needs
+     * does not grow with the length of the conversation. {@code nextCursor} can be passed as
+     * {@code after} to continue from the end of the transcript.
+     */
+    @GetMapping(value = "/session/{id}/transcript",
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<StreamingResponseBody> streamTranscript(
+            @PathVariable UUID id,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @CurrentUser UserPrincipal user
+    ) {
+        return prefersCbor(accept)
+                ? transcript(id, user.getUserId(), cborHttpMessageConverter.getObjectMapper(), MediaType.APPLICATION_CBOR)
+                : transcript(id, user.getUserId(), objectMapper, MediaType.APPLICATION_JSON);
+    }
+
+    private ResponseEntity<StreamingResponseBody> transcript(UUID id, UUID userId, ObjectMapper mapper,
+                                                             MediaType contentType) {
+        // Checked before the body starts, while errors can still set the status
+        ChatSession session = chatService.getParticipantSession(id, userId);
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .eTag(messageVersionTag(session.getMessageVersion(), contentType))
+                .body(out -> writeTranscript(session, mapper, out));
+    }
+
+    private void writeTranscript(ChatSession session, ObjectMapper mapper, OutputStream out) throws IOException {
+        // The envelope fields go through Jackson like any other response, so they stay in step
+        // with BaseResponseDTO; only data is written by hand.
+        ObjectNode envelope = mapper.valueToTree(
+                BaseResponseDTO.success(HttpStatus.OK.value(), "Messages retrieved", null));
+        envelope.remove("data");
+
+        try (JsonGenerator generator = mapper.createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            generator.writeStartObject();
+            for (Map.Entry<String, JsonNode> field : envelope.properties()) {
+                generator.writeFieldName(field.getKey());
+                generator.writeTree(field.getValue());
+            }
+            generator.writeObjectFieldStart("data");
+            generator.writeObjectField("sessionId", session.getId());
+            generator.writeObjectField("pacilian", session.getPacilian());
+            generator.writeStringField("pacilianName", session.getPacilianName());
+            generator.writeObjectField("caregiver", session.getCaregiver());
+            generator.writeStringField("caregiverName", session.getCaregiverName());
+
+            AtomicReference<ChatMessage> last = new AtomicReference<>();
+            generator.writeArrayFieldStart("messages");
+            chatService.forEachMessage(session, message -> {
+                try {
+                    generator.writeObject(message);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                last.set(message);
+            });
+            generator.writeEndArray();
+
+            generator.writeNullField("prevCursor");
+            generator.writeStringField("nextCursor", last.get() != null ? MessageCursor.encode(last.get()) : null);
+            generator.writeEndObject();
+            generator.writeEndObject();
+        } catch (UncheckedIOException e) {
+            // Usually the client went away; the status has been sent, so just stop reading
+            throw e.getCause();
+        }
+    }
+
+    @GetMapping("/search")
+    public CompletableFuture<ResponseEntity<BaseResponseDTO<MessageSearchPage>>> searchMessages(
+            @RequestParam(value = "q", required = false) String query,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @CurrentUser UserPrincipal user
+    ) {
+        return chatService.searchMessages(user.getUserId(), query, page, size)
+                .thenApply(results -> ResponseEntity.ok(
+                        BaseResponseDTO.success(HttpStatus.OK.value(), "Search results retrieved", results)));
+    }
+
+    @GetMapping("/session/{id}/changes")
+    public CompletableFuture<ResponseEntity<BaseResponseDTO<ChatChangesPage>>> getChanges(
+            @PathVariable UUID id,
+            @RequestParam(required = false) String since,
+            @RequestParam(defaultValue = "100") int size,
+            @CurrentUser UserPrincipal user
+    ) {
+        return chatService.getChanges(id, user.getUserId(), since, size)
+                .thenApply(page -> ResponseEntity.ok(
+                        BaseResponseDTO.success(HttpStatus.OK.value(), "Changes retrieved", page)));
+    }
+
+    private CompletableFuture<ResponseEntity<BaseResponseDTO<ChatSessionWithMessagesDto>>> loadMessagePage(
+            UUID id, UUID userId, String before, String after, int size, MediaType contentType) {
+        return chatService.getMessagePage(id, userId, before, after, size)
+                .thenApply(page -> buildSessionWithMessagesResponse(page, contentType));
+    }
+
     @PutMapping("/message/{id}")
     public CompletableFuture<ResponseEntity<BaseResponseDTO<ChatMessage>>> editMessage(
             @PathVariable UUID id,
             @Valid @RequestBody EditMessageRequest requestBody,
-            HttpServletRequest request
+            @CurrentUser UserPrincipal user
     ) {
-        UUID userId = getUserIdFromRequest(request);
+        UUID userId = user.getUserId();
         return chatService.editMessage(id, requestBody.getContent(), userId)
                 .thenApply(updated ->
                         ResponseEntity.ok(BaseResponseDTO.success(HttpStatus.OK.value(), "Message updated", updated)));
@@ -75,38 +212,72 @@ public class ChatController {
     @DeleteMapping("/message/{id}")
     public CompletableFuture<ResponseEntity<BaseResponseDTO<ChatMessage>>> deleteMessage(
             @PathVariable UUID id,
-            HttpServletRequest request
+            @CurrentUser UserPrincipal user
     ) {
-        UUID userId = getUserIdFromRequest(request);
+        UUID userId = user.getUserId();
         return chatService.deleteMessage(id, userId)
                 .thenApply(deleted ->
                         ResponseEntity.ok(BaseResponseDTO.success(HttpStatus.OK.value(), "Message deleted", deleted)));
     }
 
-    private String extractToken(HttpServletRequest request) {
-        String authHeader = request.getHeader("Authorization");
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            throw new IllegalArgumentException("Authorization header is missing or invalid");
+    private ResponseEntity<BaseResponseDTO<ChatSessionWithMessagesDto>> buildSessionWithMessagesResponse(
+            ChatMessagePage page, MediaType contentType) {
+        // The session was read before its messages, so this tag can only be older than the page.
+        // The content type is fixed here rather than negotiated so that it always matches the tag.
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .eTag(messageVersionTag(page.getSession().getMessageVersion(), contentType))
+                .body(BaseResponseDTO.success(HttpStatus.OK.value(), "Messages retrieved",
+                        ChatSessionWithMessagesDto.from(page)));
+    }
+
+    /**
+     * JSON unless {@code Accept} gives CBOR a higher q-value. Each type takes the q-value of the
+     * most specific range that matches it, so {@code q=0} rules a type out and a tie goes to JSON.
+     */
+    private static boolean prefersCbor(String accept) {
+        if (accept == null) {
+            return false;
         }
-        return authHeader.substring(7);
+        List<MediaType> ranges = MediaType.parseMediaTypes(accept);
+        return quality(ranges, MediaType.APPLICATION_CBOR) > quality(ranges, MediaType.APPLICATION_JSON);
     }
 
-    private UUID getUserIdFromRequest(HttpServletRequest request) {
-        String token = extractToken(request);
-        TokenVerificationResponseDto verification = tokenVerificationService.verifyToken(token);
-        return UUID.fromString(verification.getUserId());
+    private static double quality(List<MediaType> ranges, MediaType type) {
+        MediaType match = null;
+        for (MediaType range : ranges) {
+            if (range.includes(type) && (match == null || specificity(range) > specificity(match))) {
+                match = range;
+            }
+        }
+        return match != null ? match.getQualityValue() : 0;
     }
 
-    private ResponseEntity<BaseResponseDTO<ChatSessionWithMessagesDto>> buildSessionWithMessagesResponse(ChatSession session, List<ChatMessage> messages) {
-        var responseDto = ChatSessionWithMessagesDto.builder()
-                .sessionId(session.getId())
-                .pacilian(session.getPacilian())
-                .pacilianName(session.getPacilianName())
-                .caregiver(session.getCaregiver())
-                .caregiverName(session.getCaregiverName())
-                .messages(messages)
-                .build();
+    private static int specificity(MediaType range) {
+        return range.isWildcardType() ? 0 : range.isWildcardSubtype() ? 1 : 2;
+    }
 
-        return ResponseEntity.ok(BaseResponseDTO.success(HttpStatus.OK.value(), "Messages retrieved", responseDto));
+    /**
+     * A strong tag for one encoding of a session's messages. JSON and CBOR bodies of the same
+     * version differ byte for byte, so each encoding gets its own tag.
+     */
+    static String messageVersionTag(long version, MediaType contentType) {
+        return MediaType.APPLICATION_CBOR.equalsTypeAndSubtype(contentType)
+                ? "\"v" + version + "-cbor\""
+                : "\"v" + version + "\"";
+    }
+
+    /** If-None-Match uses weak comparison, so {@code W/"v1"} matches {@code "v1"} too. */
+    private static boolean matchesAny(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
     }
 }
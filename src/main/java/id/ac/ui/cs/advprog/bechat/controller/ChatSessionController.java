@@ -1,12 +1,16 @@
 package id.ac.ui.cs.advprog.bechat.controller;
 
+import id.ac.ui.cs.advprog.bechat.config.CurrentUser;
 import id.ac.ui.cs.advprog.bechat.dto.BaseResponseDTO;
 import id.ac.ui.cs.advprog.bechat.dto.CreateSessionRequest;
-import id.ac.ui.cs.advprog.bechat.dto.TokenVerificationResponseDto;
+import id.ac.ui.cs.advprog.bechat.dto.MarkReadRequest;
+import id.ac.ui.cs.advprog.bechat.dto.ReadStateDto;
+import id.ac.ui.cs.advprog.bechat.dto.SessionInboxPage;
+import id.ac.ui.cs.advprog.bechat.dto.SessionSummaryDto;
+import id.ac.ui.cs.advprog.bechat.dto.UserPrincipal;
 import id.ac.ui.cs.advprog.bechat.model.ChatSession;
 import id.ac.ui.cs.advprog.bechat.service.ChatSessionService;
-import id.ac.ui.cs.advprog.bechat.service.TokenVerificationService;
-import id.ac.ui.cs.advprog.bechat.service.CaregiverInfoService;
+import id.ac.ui.cs.advprog.bechat.service.ReadStateService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -23,29 +27,23 @@ import java.util.*;
 public class ChatSessionController {
 
     private final ChatSessionService chatSessionService;
-    private final TokenVerificationService tokenService;
-    private final CaregiverInfoService caregiverInfoService;
+    private final ReadStateService readStateService;
 
     @PostMapping("/create")
     public ResponseEntity<BaseResponseDTO<Object>> createSession(
             @Valid @RequestBody CreateSessionRequest request,
+            @CurrentUser UserPrincipal user,
             HttpServletRequest httpRequest
     ) {
         String token = extractToken(httpRequest);
-        UUID pacilianId = getUserIdFromToken(token);
-        ChatSession session = chatSessionService.createSession(pacilianId, request.getCaregiver(), token);
-
-        TokenVerificationResponseDto pacilianInfo = tokenService.verifyToken(token);
-        String pacilianName = pacilianInfo.getName();
-
-        String caregiverName = caregiverInfoService.getNameByUserIdCaregiver(session.getCaregiver(), token);
+        ChatSession session = chatSessionService.createSession(user, request.getCaregiver(), token);
 
         Map<String, Object> responseData = new HashMap<>();
         responseData.put("id", session.getId());
         responseData.put("pacilian", session.getPacilian());
-        responseData.put("pacilianUsername", pacilianName);
+        responseData.put("pacilianUsername", user.getName());
         responseData.put("caregiver", session.getCaregiver());
-        responseData.put("caregiverUsername", caregiverName);
+        responseData.put("caregiverUsername", session.getCaregiverName());
         responseData.put("createdAt", session.getCreatedAt());
         responseData.put("messages", session.getMessages());
 
@@ -54,12 +52,42 @@ public class ChatSessionController {
     }
 
     @GetMapping("/user")
-    public ResponseEntity<BaseResponseDTO<List<ChatSession>>> getSessionsForCurrentUser(HttpServletRequest httpRequest) {
-        UUID userId = getUserIdFromRequest(httpRequest);
-        List<ChatSession> sessions = chatSessionService.getSessionsByUser(userId);
+    public ResponseEntity<BaseResponseDTO<List<SessionSummaryDto>>> getSessionsForCurrentUser(@CurrentUser UserPrincipal user) {
+        List<SessionSummaryDto> sessions = chatSessionService.getSessionsByUser(user.getUserId());
         return ResponseEntity.ok(BaseResponseDTO.success(HttpStatus.OK.value(), "Sessions retrieved", sessions));
     }
 
+    @GetMapping("/inbox")
+    public ResponseEntity<BaseResponseDTO<SessionInboxPage>> getInbox(
+            @CurrentUser UserPrincipal user,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            HttpServletRequest httpRequest
+    ) {
+        SessionInboxPage inbox = chatSessionService.getInbox(user.getUserId(), page, size, extractToken(httpRequest));
+        return ResponseEntity.ok(BaseResponseDTO.success(HttpStatus.OK.value(), "Inbox retrieved", inbox));
+    }
+
+    @PutMapping("/{id}/read")
+    public ResponseEntity<BaseResponseDTO<ReadStateDto>> markRead(
+            @PathVariable UUID id,
+            @Valid @RequestBody MarkReadRequest request,
+            @CurrentUser UserPrincipal user
+    ) {
+        ReadStateDto state = readStateService.markRead(id, user.getUserId(), request.getMessageId());
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(BaseResponseDTO.success(HttpStatus.ACCEPTED.value(), "Read position accepted", state));
+    }
+
+    @GetMapping("/{id}/read")
+    public ResponseEntity<BaseResponseDTO<ReadStateDto>> getReadState(
+            @PathVariable UUID id,
+            @CurrentUser UserPrincipal user
+    ) {
+        ReadStateDto state = readStateService.getReadState(id, user.getUserId());
+        return ResponseEntity.ok(BaseResponseDTO.success(HttpStatus.OK.value(), "Read state retrieved", state));
+    }
+
     private String extractToken(HttpServletRequest request) {
         String header = request.getHeader("Authorization");
         if (header == null || !header.startsWith("Bearer ")) {
@@ -67,13 +95,4 @@ public class ChatSessionController {
         }
         return header.substring(7);
     }
-
-    private UUID getUserIdFromToken(String token) {
-        TokenVerificationResponseDto verification = tokenService.verifyToken(token);
-        return UUID.fromString(verification.getUserId());
-    }
-
-    private UUID getUserIdFromRequest(HttpServletRequest request) {
-        return getUserIdFromToken(extractToken(request));
-    }
 }
@@ -0,0 +1,282 @@
+package id.ac.ui.cs.advprog.bechat.controller;
+
+import id.ac.ui.cs.advprog.bechat.config.CurrentUser;
+import id.ac.ui.cs.advprog.bechat.dto.*;
+import id.ac.ui.cs.advprog.bechat.model.ChatMessage;
+import id.ac.ui.cs.advprog.bechat.service.ChatService;
+import id.ac.ui.cs.advprog.bechat.service.SessionUpdateNotifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * "New messages since" delivery for clients that cannot keep a WebSocket open. Both endpoints
+ * park the request asynchronously, so an idle client holds no servlet thread.
+ */
+@RestController
+@RequestMapping("/api/chat")
+@CrossOrigin(origins = "*")
+public class ChatStreamController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatStreamController.class);
+
+    static final int REPLAY_PAGE_SIZE = 100;
+
+    private final ChatService chatService;
+    private final SessionUpdateNotifier sessionUpdateNotifier;
+    private final Executor taskExecutor;
+    private final long pollTimeoutMillis;
+    private final long streamTimeoutMillis;
+    private final int replayLimit;
+
+    public ChatStreamController(ChatService chatService,
+                                SessionUpdateNotifier sessionUpdateNotifier,
+                                @Qualifier("taskExecutor") Executor taskExecutor,
+                                @Value("${chat.poll.timeout:30s}") Duration pollTimeout,
+                                @Value("${chat.stream.timeout:5m}") Duration streamTimeout,
+                                @Value("${chat.stream.replay-limit:1000}") int replayLimit) {
+        this.chatService = chatService;
+        this.sessionUpdateNotifier = sessionUpdateNotifier;
+        this.taskExecutor = taskExecutor;
+        this.pollTimeoutMillis = pollTimeout.toMillis();
+        this.streamTimeoutMillis = streamTimeout.toMillis();
+        this.replayLimit = replayLimit;
+    }
+
+    /**
+     * Long poll: answers as soon as the session has messages newer than {@code after}, or with
+     * 204 once the poll timeout passes, after which the client polls again with the same cursor.
+     */
+    @GetMapping("/session/{id}/poll")
+    public DeferredResult<ResponseEntity<BaseResponseDTO<ChatSessionWithMessagesDto>>> poll(
+            @PathVariable UUID id,
+            @RequestParam String after,
+            @RequestParam(defaultValue = "50") int size,
+            @CurrentUser UserPrincipal user
+    ) {
+        MessageCursor.decode(after);
+        UUID userId = user.getUserId();
+
+        DeferredResult<ResponseEntity<BaseResponseDTO<ChatSessionWithMessagesDto>>> result =
+                new DeferredResult<>(pollTimeoutMillis, () -> ResponseEntity.noContent().build());
+
+        // Subscribe before the first read so a message committed in between is not missed.
+        AtomicReference<Runnable> unsubscribe = new AtomicReference<>(() -> { });
+        unsubscribe.set(sessionUpdateNotifier.subscribe(id, event -> {
+            if (event.getType() == ChatMessageEvent.Type.SENT) {
+                fetchNewer(result, id, userId, after, size, unsubscribe.get());
+            }
+        }));
+        result.onCompletion(() -> unsubscribe.get().run());
+        fetchNewer(result, id, userId, after, size, unsubscribe.get());
+        return result;
+    }
+
+    /**
+     * SSE stream of {@code sent}, {@code edited} and {@code deleted} events. {@code sent} events
+     * carry the message cursor as their id, so a reconnecting EventSource resumes from
+     * {@code Last-Event-ID} and first receives everything it missed, page by page. If more than
+     * {@code chat.stream.replay-limit} messages were missed the stream instead ends with a
+     * {@code resync} event whose {@code after} cursor the client should page from over REST
+     * before reconnecting. Live events wait until the replay is done and are then pushed one at a
+     * time in publication order.
+     */
+    @GetMapping(value = "/session/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public CompletableFuture<SseEmitter> stream(
+            @PathVariable UUID id,
+            @RequestParam(required = false) String after,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            @CurrentUser UserPrincipal user
+    ) {
+        String since = after != null ? after : lastEventId;
+        if (since != null) {
+            MessageCursor.decode(since);
+        }
+
+        SseEmitter emitter = new SseEmitter(streamTimeoutMillis);
+        StreamSubscriber subscriber = new StreamSubscriber(emitter);
+        Runnable unsubscribe = subscriber.subscribeTo(id);
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> unsubscribe.run());
+
+        // The first page read doubles as the membership check; without a cursor only one row is read.
+        CompletableFuture<Void> replayed = since != null
+                ? replay(subscriber, id, user.getUserId(), since, 0)
+                : chatService.getMessagePage(id, user.getUserId(), null, null, 1).thenAccept(page -> { });
+        return replayed
+                .thenApply(ignored -> {
+                    subscriber.startLive();
+                    return emitter;
+                })
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        unsubscribe.run();
+                    }
+                });
+    }
+
+    private CompletableFuture<Void> replay(StreamSubscriber subscriber, UUID sessionId, UUID userId,
+                                           String after, int replayed) {
+        return chatService.getMessagePage(sessionId, userId, null, after, REPLAY_PAGE_SIZE).thenCompose(page -> {
+            List<ChatMessage> messages = page.getMessages();
+            messages.forEach(subscriber::replay);
+            int total = replayed + messages.size();
+            if (messages.size() < REPLAY_PAGE_SIZE) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (total >= replayLimit) {
+                subscriber.resync(page.getNextCursor());
+                return CompletableFuture.completedFuture(null);
+            }
+            return replay(subscriber, sessionId, userId, page.getNextCursor(), total);
+        });
+    }
+
+    private void fetchNewer(DeferredResult<ResponseEntity<BaseResponseDTO<ChatSessionWithMessagesDto>>> result,
+                            UUID sessionId, UUID userId, String after, int size, Runnable unsubscribe) {
+        if (result.isSetOrExpired()) {
+            return;
+        }
+        CompletableFuture<ChatMessagePage> newer;
+        try {
+            newer = chatService.getMessagePage(sessionId, userId, null, after, size);
+        } catch (RejectedExecutionException e) {
+            result.setErrorResult(e);
+            unsubscribe.run();
+            return;
+        }
+        newer.whenComplete((page, error) -> {
+            if (error != null) {
+                result.setErrorResult(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+                unsubscribe.run();
+            } else if (!page.getMessages().isEmpty()) {
+                result.setResult(ResponseEntity.ok(BaseResponseDTO.success(HttpStatus.OK.value(), "New messages",
+                        ChatSessionWithMessagesDto.from(page))));
+                unsubscribe.run();
+            }
+        });
+    }
+
+    private static void push(SseEmitter emitter, ChatMessageEvent event) {
+        SseEmitter.SseEventBuilder sseEvent = SseEmitter.event()
+                .name(event.getType().name().toLowerCase())
+                .data(event, MediaType.APPLICATION_JSON);
+        if (event.getType() == ChatMessageEvent.Type.SENT) {
+            sseEvent.id(MessageCursor.encode(event.getMessage()));
+        }
+        try {
+            emitter.send(sseEvent);
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("Dropping SSE subscriber for session {}: {}", event.getSessionId(), e.getMessage());
+            emitter.completeWithError(e);
+        }
+    }
+
+    /**
+     * One SSE client. Live events queue up while the missed messages are replayed and are then
+     * drained by at most one task on the shared executor at a time, so they reach the client in
+     * the order they were published. If the executor rejects the drain the stream is completed,
+     * and the client reconnects with {@code Last-Event-ID} and replays what it lost.
+     */
+    private final class StreamSubscriber {
+
+        private final SseEmitter emitter;
+        private final Queue<ChatMessageEvent> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final Set<UUID> replayed = ConcurrentHashMap.newKeySet();
+        private volatile boolean live;
+        private volatile Runnable unsubscribe = () -> { };
+
+        private StreamSubscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        Runnable subscribeTo(UUID sessionId) {
+            unsubscribe = sessionUpdateNotifier.subscribe(sessionId, this::offer);
+            return unsubscribe;
+        }
+
+        void offer(ChatMessageEvent event) {
+            pending.add(event);
+            schedule();
+        }
+
+        void replay(ChatMessage message) {
+            replayed.add(message.getId());
+            push(emitter, ChatMessageEvent.of(ChatMessageEvent.Type.SENT, message));
+        }
+
+        void resync(String after) {
+            try {
+                emitter.send(SseEmitter.event()
+                        .name("resync")
+                        .data(Map.of("after", after), MediaType.APPLICATION_JSON));
+                close();
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+            }
+        }
+
+        void startLive() {
+            live = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (!live || pending.isEmpty() || !draining.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                taskExecutor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // Leave draining set: this stream is done and reconnects to catch up.
+                logger.warn("Closing SSE stream, event delivery was rejected: {}", e.getMessage());
+                close();
+            }
+        }
+
+        /** Stops taking events right away rather than once the container reports completion. */
+        private void close() {
+            unsubscribe.run();
+            pending.clear();
+            emitter.complete();
+        }
+
+        private void drain() {
+            ChatMessageEvent event;
+            while ((event = pending.poll()) != null) {
+                // A message sent while the replay was running can arrive both ways.
+                if (event.getType() != ChatMessageEvent.Type.SENT || !replayed.contains(event.getMessage().getId())) {
+                    push(emitter, event);
+                }
+            }
+            draining.set(false);
+            schedule();
+        }
+    }
+}
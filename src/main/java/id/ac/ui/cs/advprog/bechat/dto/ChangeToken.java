@@ -0,0 +1,46 @@
+package id.ac.ui.cs.advprog.bechat.dto;
+
+import id.ac.ui.cs.advprog.bechat.model.ChatMessage;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Opaque position in a session's change feed, ordered by {@code (change_seq, id)}.
+ * Messages sent together in one batch share a {@code change_seq}, so the id breaks the tie.
+ */
+@Getter
+@AllArgsConstructor
+public class ChangeToken {
+
+    /** Before every change; used when the client has no token yet. */
+    public static final ChangeToken START = new ChangeToken(0, new UUID(0, 0));
+
+    private final long changeSeq;
+    private final UUID id;
+
+    public static ChangeToken of(ChatMessage message) {
+        return new ChangeToken(message.getChangeSeq(), message.getId());
+    }
+
+    public static ChangeToken decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid change token");
+            }
+            return new ChangeToken(Long.parseLong(parts[0]), UUID.fromString(parts[1]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid change token", e);
+        }
+    }
+
+    public String encode() {
+        String raw = changeSeq + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
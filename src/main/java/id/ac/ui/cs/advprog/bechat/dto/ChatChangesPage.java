@@ -0,0 +1,24 @@
+package id.ac.ui.cs.advprog.bechat.dto;
+
+import id.ac.ui.cs.advprog.bechat.model.ChatMessage;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Messages inserted, edited or deleted after a change token, in the order they changed. Each
+ * message appears once, in its current state, so clients upsert by id. {@code nextToken} is
+ * passed back as {@code since}; when {@code hasMore} is set it should be followed right away.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+public class ChatChangesPage {
+    private UUID sessionId;
+    private List<ChatMessage> changes;
+    private String nextToken;
+    private boolean hasMore;
+}
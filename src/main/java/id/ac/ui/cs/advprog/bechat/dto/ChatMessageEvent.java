@@ -0,0 +1,26 @@
+package id.ac.ui.cs.advprog.bechat.dto;
+
+import id.ac.ui.cs.advprog.bechat.model.ChatMessage;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+/**
+ * A committed change to a session's messages, published by the chat service and pushed
+ * to subscribers of {@code /topic/session/{sessionId}}.
+ */
+@Getter
+@AllArgsConstructor
+public class ChatMessageEvent {
+
+    public enum Type { SENT, EDITED, DELETED }
+
+    private final Type type;
+    private final UUID sessionId;
+    private final ChatMessage message;
+
+    public static ChatMessageEvent of(Type type, ChatMessage message) {
+        return new ChatMessageEvent(type, message.getSession().getId(), message);
+    }
+}
@@ -0,0 +1,25 @@
+package id.ac.ui.cs.advprog.bechat.dto;
+
+import id.ac.ui.cs.advprog.bechat.model.ChatMessage;
+import id.ac.ui.cs.advprog.bechat.model.ChatSession;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * One keyset page of a conversation, oldest message first.
+ * {@code prevCursor} is passed back as {@code before} to load older messages and is
+ * {@code null} when there are none; {@code nextCursor} is passed back as {@code after}
+ * to load (or poll for) newer messages.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+public class ChatMessagePage {
+    private ChatSession session;
+    private List<ChatMessage> messages;
+    private String prevCursor;
+    private String nextCursor;
+}
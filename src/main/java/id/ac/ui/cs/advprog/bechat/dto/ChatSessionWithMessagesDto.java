@@ -1,6 +1,7 @@
 package id.ac.ui.cs.advprog.bechat.dto;
 
 import id.ac.ui.cs.advprog.bechat.model.ChatMessage;
+import id.ac.ui.cs.advprog.bechat.model.ChatSession;
 import lombok.*;
 
 import java.util.List;
@@ -18,4 +19,20 @@ public class ChatSessionWithMessagesDto {
     private UUID caregiver;
     private String caregiverName;
     private List<ChatMessage> messages;
+    private String prevCursor;
+    private String nextCursor;
+
+    public static ChatSessionWithMessagesDto from(ChatMessagePage page) {
+        ChatSession session = page.getSession();
+        return ChatSessionWithMessagesDto.builder()
+                .sessionId(session.getId())
+                .pacilian(session.getPacilian())
+                .pacilianName(session.getPacilianName())
+                .caregiver(session.getCaregiver())
+                .caregiverName(session.getCaregiverName())
+                .messages(page.getMessages())
+                .prevCursor(page.getPrevCursor())
+                .nextCursor(page.getNextCursor())
+                .build();
+    }
 }
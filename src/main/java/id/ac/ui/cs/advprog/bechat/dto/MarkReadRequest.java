@@ -0,0 +1,14 @@
+package id.ac.ui.cs.advprog.bechat.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.UUID;
+
+@Getter
+@Setter
+public class MarkReadRequest {
+    @NotNull
+    private UUID messageId;
+}
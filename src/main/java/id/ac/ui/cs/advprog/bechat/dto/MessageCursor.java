@@ -0,0 +1,54 @@
+package id.ac.ui.cs.advprog.bechat.dto;
+
+import id.ac.ui.cs.advprog.bechat.model.ChatMessage;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Opaque keyset position in a conversation, ordered by {@code (created_at, id)}.
+ * Encoded with full timestamp precision so that the row comparison in SQL is exact.
+ */
+@Getter
+@AllArgsConstructor
+public class MessageCursor {
+
+    private final Instant createdAt;
+    private final UUID id;
+
+    public static MessageCursor of(ChatMessage message) {
+        return new MessageCursor(message.getCreatedAt().toInstant(), message.getId());
+    }
+
+    public static String encode(ChatMessage message) {
+        return of(message).encode();
+    }
+
+    public static MessageCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            Instant createdAt = Instant.ofEpochSecond(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            return new MessageCursor(createdAt, UUID.fromString(parts[2]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    public String encode() {
+        String raw = createdAt.getEpochSecond() + ":" + createdAt.getNano() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Timestamp getTimestamp() {
+        return Timestamp.from(createdAt);
+    }
+}
@@ -0,0 +1,28 @@
+package id.ac.ui.cs.advprog.bechat.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * One search result: the matching message with enough of its session to label it, read
+ * straight into this DTO (see {@code ChatMessage.SEARCH_HIT_MAPPING}).
+ */
+@Getter
+@AllArgsConstructor
+public class MessageSearchHit {
+    private UUID messageId;
+    private UUID sessionId;
+    private UUID senderId;
+    private String content;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss", timezone = "Asia/Jakarta")
+    private Date createdAt;
+
+    private String pacilianName;
+    private String caregiverName;
+    private float rank;
+}
@@ -0,0 +1,22 @@
+package id.ac.ui.cs.advprog.bechat.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+/**
+ * A participant's read position in a session. {@code lastReadCursor} can be passed as
+ * {@code after} to the message endpoints to fetch only what arrived since; both fields are
+ * {@code null} until the participant has read anything. A position that is still waiting for
+ * the write-behind flush is reported straight away, while {@code unreadCount} is recounted
+ * when it is flushed.
+ */
+@Getter
+@AllArgsConstructor
+public class ReadStateDto {
+    private UUID sessionId;
+    private UUID lastReadMessageId;
+    private String lastReadCursor;
+    private long unreadCount;
+}
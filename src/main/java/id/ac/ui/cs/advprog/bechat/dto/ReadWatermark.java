@@ -0,0 +1,17 @@
+package id.ac.ui.cs.advprog.bechat.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+/**
+ * A pending read position for one participant in one session.
+ */
+@Getter
+@AllArgsConstructor
+public class ReadWatermark {
+    private final UUID sessionId;
+    private final UUID userId;
+    private final MessageCursor position;
+}
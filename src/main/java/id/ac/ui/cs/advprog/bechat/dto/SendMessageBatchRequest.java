@@ -0,0 +1,20 @@
+package id.ac.ui.cs.advprog.bechat.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Setter
+@Getter
+public class SendMessageBatchRequest {
+
+    public static final int MAX_BATCH_SIZE = 500;
+
+    @NotEmpty(message = "Daftar pesan tidak boleh kosong")
+    @Size(max = MAX_BATCH_SIZE, message = "Maksimal 500 pesan per batch")
+    private List<@Valid SendMessageRequest> messages;
+}
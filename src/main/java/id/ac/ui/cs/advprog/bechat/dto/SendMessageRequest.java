@@ -17,4 +17,10 @@ public class SendMessageRequest {
     @NotBlank(message = "Konten pesan tidak boleh kosong")
     private String content;
 
+    /**
+     * Optional id the client picks for this message, so that a retried send returns the
+     * message the first attempt created instead of sending it twice.
+     */
+    private UUID clientMessageId;
+
 }
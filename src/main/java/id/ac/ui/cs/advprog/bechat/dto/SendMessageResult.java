@@ -0,0 +1,30 @@
+package id.ac.ui.cs.advprog.bechat.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import id.ac.ui.cs.advprog.bechat.model.ChatMessage;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Outcome of one item of a batch send, reported at the item's position in the request.
+ */
+@Getter
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SendMessageResult {
+
+    public enum Status { CREATED, REJECTED }
+
+    private final int index;
+    private final Status status;
+    private final ChatMessage message;
+    private final String error;
+
+    public static SendMessageResult created(int index, ChatMessage message) {
+        return new SendMessageResult(index, Status.CREATED, message, null);
+    }
+
+    public static SendMessageResult rejected(int index, String error) {
+        return new SendMessageResult(index, Status.REJECTED, null, error);
+    }
+}
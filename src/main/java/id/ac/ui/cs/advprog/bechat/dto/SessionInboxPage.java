@@ -0,0 +1,19 @@
+package id.ac.ui.cs.advprog.bechat.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * One page of a user's inbox, most recently active session first.
+ * {@code hasNext} is worked out by reading one extra row, so no count query is issued.
+ */
+@Getter
+@AllArgsConstructor
+public class SessionInboxPage {
+    private List<SessionSummaryDto> sessions;
+    private int page;
+    private int size;
+    private boolean hasNext;
+}
@@ -0,0 +1,32 @@
+package id.ac.ui.cs.advprog.bechat.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.With;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * One inbox row: the session header plus its latest message and unread count, read in a
+ * single aggregate query (see {@code ChatSession.SESSION_SUMMARY_MAPPING}) so no message
+ * entities are loaded.
+ */
+@Getter
+@AllArgsConstructor
+public class SessionSummaryDto {
+    private UUID sessionId;
+    private UUID pacilian;
+    private String pacilianName;
+    private UUID caregiver;
+    @With
+    private String caregiverName;
+    private String lastMessagePreview;
+    private UUID lastMessageSenderId;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss", timezone = "Asia/Jakarta")
+    private Date lastMessageAt;
+
+    private long unreadCount;
+}
@@ -0,0 +1,39 @@
+package id.ac.ui.cs.advprog.bechat.dto;
+
+import id.ac.ui.cs.advprog.bechat.model.enums.Role;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Caller identity produced by a single verification of the bearer token.
+ * Stored as the principal in the SecurityContext so controllers never re-parse the JWT.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+public class UserPrincipal {
+    private final UUID userId;
+    private final String email;
+    private final String name;
+    private final Role role;
+    private final Instant expiresAt;
+
+    public long getRemainingMillis() {
+        return Math.max(0, expiresAt.toEpochMilli() - System.currentTimeMillis());
+    }
+
+    public TokenVerificationResponseDto toVerificationResponse() {
+        return TokenVerificationResponseDto.builder()
+                .valid(true)
+                .userId(userId.toString())
+                .email(email)
+                .role(role)
+                .expiresIn(getRemainingMillis())
+                .name(name)
+                .build();
+    }
+}
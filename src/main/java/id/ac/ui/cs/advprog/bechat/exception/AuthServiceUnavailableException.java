@@ -0,0 +1,14 @@
+package id.ac.ui.cs.advprog.bechat.exception;
+
+/**
+ * The auth service timed out, failed, or is being short-circuited by the circuit breaker or bulkhead.
+ */
+public class AuthServiceUnavailableException extends IllegalStateException {
+    public AuthServiceUnavailableException(String message) {
+        super(message);
+    }
+
+    public AuthServiceUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -59,12 +59,24 @@ public class GlobalExceptionHandler {
             .body(BaseResponseDTO.error(HttpStatus.UNAUTHORIZED.value(), "Authentication failed: " + ex.getMessage()));
     }
 
+    @ExceptionHandler(ResourceNotFoundException.class)
+    public ResponseEntity<BaseResponseDTO<String>> handleNotFound(ResourceNotFoundException ex) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+            .body(BaseResponseDTO.error(HttpStatus.NOT_FOUND.value(), "Not found: " + ex.getMessage()));
+    }
+
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<BaseResponseDTO<String>> handleIllegalArgument(IllegalArgumentException ex) {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST)
             .body(BaseResponseDTO.error(HttpStatus.BAD_REQUEST.value(), "Bad request: " + ex.getMessage()));
     }
 
+    @ExceptionHandler(AuthServiceUnavailableException.class)
+    public ResponseEntity<BaseResponseDTO<String>> handleAuthServiceUnavailable(AuthServiceUnavailableException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .body(BaseResponseDTO.error(HttpStatus.SERVICE_UNAVAILABLE.value(), "Service unavailable: " + ex.getMessage()));
+    }
+
     @ExceptionHandler(IllegalStateException.class)
     public ResponseEntity<BaseResponseDTO<String>> handleIllegalState(IllegalStateException ex) {
         return ResponseEntity.status(HttpStatus.CONFLICT)
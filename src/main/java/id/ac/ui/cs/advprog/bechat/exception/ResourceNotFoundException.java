@@ -0,0 +1,7 @@
+package id.ac.ui.cs.advprog.bechat.exception;
+
+public class ResourceNotFoundException extends RuntimeException {
+    public ResourceNotFoundException(String message) {
+        super(message);
+    }
+}
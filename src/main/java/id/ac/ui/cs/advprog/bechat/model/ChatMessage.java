@@ -3,28 +3,59 @@ package id.ac.ui.cs.advprog.bechat.model;
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import id.ac.ui.cs.advprog.bechat.dto.MessageSearchHit;
 import id.ac.ui.cs.advprog.bechat.state.*;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
+import org.springframework.data.domain.Persistable;
 
+import java.security.SecureRandom;
+import java.time.Instant;
 import java.util.Date;
+import java.util.Optional;
 import java.util.UUID;
 
 @Getter
 @Setter
 @NoArgsConstructor
 @Entity
-@Table(name = "chat_message")
-public class ChatMessage {
+@Table(
+        name = "chat_message",
+        indexes = {
+                @Index(name = "idx_chat_message_session_created_id", columnList = "session_id, created_at, id"),
+                @Index(name = "idx_chat_message_session_change_seq", columnList = "session_id, change_seq, id")
+        }
+)
+@SqlResultSetMapping(
+        name = ChatMessage.SEARCH_HIT_MAPPING,
+        classes = @ConstructorResult(
+                targetClass = MessageSearchHit.class,
+                columns = {
+                        @ColumnResult(name = "message_id", type = UUID.class),
+                        @ColumnResult(name = "session_id", type = UUID.class),
+                        @ColumnResult(name = "sender_id", type = UUID.class),
+                        @ColumnResult(name = "content", type = String.class),
+                        @ColumnResult(name = "created_at", type = Date.class),
+                        @ColumnResult(name = "pacilian_name", type = String.class),
+                        @ColumnResult(name = "caregiver_name", type = String.class),
+                        @ColumnResult(name = "rank", type = Float.class)
+                }
+        )
+)
+public class ChatMessage implements Persistable<UUID> {
+
+    public static final String SEARCH_HIT_MAPPING = "ChatMessage.SearchHit";
+
+    private static final SecureRandom ID_RANDOM = new SecureRandom();
 
     @Id
     @NotNull
     private UUID id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "session_id", nullable = false)
     @JsonBackReference
     @NotNull
@@ -55,12 +86,38 @@ public class ChatMessage {
     @Column(nullable = false)
     private boolean deleted;
 
+    /** The session's message version when this message was last inserted, edited or deleted. */
+    @JsonIgnore
+    @Column(name = "change_seq", nullable = false)
+    private long changeSeq;
+
     @Transient
     @JsonIgnore
     private MessageState state = new NormalState();
 
+    // Ids are assigned by the application, so tell Spring Data whether to persist or merge
+    // instead of letting it SELECT first; this also keeps inserts eligible for JDBC batching.
+    @Transient
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean newEntity = true;
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return newEntity;
+    }
+
+    @PostPersist
+    public void markPersisted() {
+        newEntity = false;
+    }
+
     @PostLoad
     public void initState() {
+        newEntity = false;
+
         if (deleted) {
             state = new DeletedState();
         } else if (edited) {
@@ -70,6 +127,24 @@ public class ChatMessage {
         }
     }
 
+    /**
+     * A new message id: a version 7 UUID, whose first 48 bits are the time it was generated in
+     * epoch milliseconds. chat_message is partitioned on created_at, so lookups by id use that
+     * time to read only the partitions the message can be in.
+     */
+    public static UUID newId() {
+        long msb = (System.currentTimeMillis() << 16) | 0x7000L | (ID_RANDOM.nextLong() & 0x0FFFL);
+        long lsb = (ID_RANDOM.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+
+    /** When an id from {@link #newId()} was generated; empty for the random ids of older messages. */
+    public static Optional<Instant> idTime(UUID id) {
+        return id.version() == 7
+                ? Optional.of(Instant.ofEpochMilli(id.getMostSignificantBits() >>> 16))
+                : Optional.empty();
+    }
+
     public void edit(String newContent) {
         state.edit(this, newContent);
     }
@@ -0,0 +1,54 @@
+package id.ac.ui.cs.advprog.bechat.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * A participant's read watermark in one session: the newest message they have read, in
+ * {@code (created_at, id)} order, plus the number of messages from the other participant
+ * after it. One compact row per participant and session, never one row per message.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@IdClass(ChatReadState.Key.class)
+@Table(name = "chat_read_state")
+public class ChatReadState {
+
+    @Id
+    @Column(name = "session_id", nullable = false)
+    private UUID sessionId;
+
+    @Id
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    @Column(name = "last_read_message_id")
+    private UUID lastReadMessageId;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "last_read_at")
+    private Date lastReadAt;
+
+    @Column(name = "unread_count", nullable = false)
+    private int unreadCount;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "updated_at", nullable = false)
+    private Date updatedAt;
+
+    @Getter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    @ToString
+    public static class Key implements Serializable {
+        private UUID sessionId;
+        private UUID userId;
+    }
+}
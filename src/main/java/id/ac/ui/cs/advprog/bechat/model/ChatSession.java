@@ -4,20 +4,52 @@ import jakarta.persistence.*;
 import lombok.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.UUID;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
+import id.ac.ui.cs.advprog.bechat.dto.SessionSummaryDto;
 import org.hibernate.annotations.CreationTimestamp;
 
 @Getter
 @Setter
 @NoArgsConstructor
 @Entity
-@Table(name = "chat_session")
+@Table(
+        name = "chat_session",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uk_chat_session_participants",
+                columnNames = {"participant_low", "participant_high"}
+        ),
+        indexes = {
+                @Index(name = "idx_chat_session_pacilian_caregiver", columnList = "pacilian, caregiver"),
+                @Index(name = "idx_chat_session_caregiver", columnList = "caregiver")
+        }
+)
+@SqlResultSetMapping(
+        name = ChatSession.SESSION_SUMMARY_MAPPING,
+        classes = @ConstructorResult(
+                targetClass = SessionSummaryDto.class,
+                columns = {
+                        @ColumnResult(name = "session_id", type = UUID.class),
+                        @ColumnResult(name = "pacilian", type = UUID.class),
+                        @ColumnResult(name = "pacilian_name", type = String.class),
+                        @ColumnResult(name = "caregiver", type = UUID.class),
+                        @ColumnResult(name = "caregiver_name", type = String.class),
+                        @ColumnResult(name = "last_message_preview", type = String.class),
+                        @ColumnResult(name = "last_message_sender_id", type = UUID.class),
+                        @ColumnResult(name = "last_message_at", type = Date.class),
+                        @ColumnResult(name = "unread_count", type = Long.class)
+                }
+        )
+)
 public class ChatSession {
 
+    public static final String SESSION_SUMMARY_MAPPING = "ChatSession.SessionSummary";
+
     @Id
     @Column(nullable = false)
     private UUID id;
@@ -40,8 +72,55 @@ public class ChatSession {
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss", timezone = "Asia/Jakarta")
     private LocalDateTime createdAt;
 
+    /**
+     * Canonical (unordered) participant pair. The lower UUID is always stored in
+     * {@code participantLow} so that (A, B) and (B, A) resolve to the same row
+     * through {@code uk_chat_session_participants}.
+     */
+    @JsonIgnore
+    @Column(name = "participant_low")
+    private UUID participantLow;
+
+    @JsonIgnore
+    @Column(name = "participant_high")
+    private UUID participantHigh;
+
+    /**
+     * Incremented whenever a message in this session is sent, edited or deleted; it is the
+     * ETag of the conversation.
+     */
+    @JsonIgnore
+    @Column(name = "message_version", nullable = false)
+    private long messageVersion;
+
     @OneToMany(mappedBy = "session", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonManagedReference
     private List<ChatMessage> messages = new ArrayList<>();
 
+    @PrePersist
+    @PreUpdate
+    public void assignParticipantPair() {
+        if (pacilian != null && caregiver != null) {
+            participantLow = lowerOf(pacilian, caregiver);
+            participantHigh = higherOf(pacilian, caregiver);
+        }
+    }
+
+    /**
+     * Orders UUIDs the same way PostgreSQL does (unsigned, byte by byte), which
+     * {@link UUID#compareTo} does not, so values computed here match
+     * {@code LEAST}/{@code GREATEST} in SQL.
+     */
+    public static int compareParticipants(UUID a, UUID b) {
+        int high = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return high != 0 ? high : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+
+    public static UUID lowerOf(UUID a, UUID b) {
+        return compareParticipants(a, b) <= 0 ? a : b;
+    }
+
+    public static UUID higherOf(UUID a, UUID b) {
+        return compareParticipants(a, b) <= 0 ? b : a;
+    }
 }
@@ -1,14 +1,213 @@
 package id.ac.ui.cs.advprog.bechat.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.NativeQuery;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import id.ac.ui.cs.advprog.bechat.dto.MessageSearchHit;
 import id.ac.ui.cs.advprog.bechat.model.ChatMessage;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
-public interface ChatMessageRepository extends JpaRepository<ChatMessage, UUID> {
+public interface ChatMessageRepository extends JpaRepository<ChatMessage, UUID>, ChatMessageRepositoryCustom {
+
+    /**
+     * How far a message's created_at may be from the time in its id. created_at is stamped when
+     * the message is flushed, moments after the id is generated in the same process.
+     */
+    Duration ID_TIME_SLACK = Duration.ofDays(1);
+
+    // chat_message is partitioned by month of created_at, so the lookups by id below also bound
+    // created_at, derived from the id, and read one or two partitions. Messages from before ids
+    // carried a time are looked up in every partition up to now.
+
+    static Date createdFrom(UUID id) {
+        return Date.from(ChatMessage.idTime(id).map(time -> time.minus(ID_TIME_SLACK)).orElse(Instant.EPOCH));
+    }
+
+    static Date createdTo(UUID id) {
+        return Date.from(ChatMessage.idTime(id).orElseGet(Instant::now).plus(ID_TIME_SLACK));
+    }
+
     List<ChatMessage> findBySessionIdOrderByCreatedAtAsc(UUID sessionId);
+
+    default Optional<ChatMessage> findWithSessionById(UUID id) {
+        return findWithSessionById(id, createdFrom(id), createdTo(id));
+    }
+
+    @Query("""
+            SELECT m FROM ChatMessage m JOIN FETCH m.session
+            WHERE m.id = :id AND m.createdAt BETWEEN :createdFrom AND :createdTo
+            """)
+    Optional<ChatMessage> findWithSessionById(@Param("id") UUID id,
+                                              @Param("createdFrom") Date createdFrom,
+                                              @Param("createdTo") Date createdTo);
+
+    /** {@link #findById} that reads only the partitions the message can be in. */
+    default Optional<ChatMessage> findByIdWithinIdTime(UUID id) {
+        return findAllByIdCreatedBetween(List.of(id), createdFrom(id), createdTo(id)).stream().findFirst();
+    }
+
+    // Guarded edit/delete: the MessageState rules (only the sender, never once deleted) are the
+    // WHERE clause, and the session's message_version is bumped by the same statement and
+    // becomes the message's change_seq, so a permitted change is a single round trip. The
+    // message row is locked before the session is bumped: a change racing another one on the
+    // same message waits, re-checks the rules against the committed row, and bumps nothing if
+    // they no longer hold. Empty means no row qualified.
+
+    @Transactional
+    @Query(value = """
+            WITH target AS (
+                SELECT session_id FROM chat_message
+                WHERE id = :id AND created_at BETWEEN :createdFrom AND :createdTo
+                  AND sender_id = :senderId AND deleted = FALSE
+                FOR UPDATE
+            ), bumped AS (
+                UPDATE chat_session SET message_version = message_version + 1
+                WHERE id = (SELECT session_id FROM target)
+                RETURNING id, message_version
+            )
+            UPDATE chat_message m
+            SET content = :content, edited = TRUE, edited_at = now(), change_seq = bumped.message_version
+            FROM bumped
+            WHERE m.id = :id AND m.created_at BETWEEN :createdFrom AND :createdTo
+              AND m.session_id = bumped.id AND m.deleted = FALSE
+            RETURNING m.*
+            """, nativeQuery = true)
+    Optional<ChatMessage> editIfAllowed(@Param("id") UUID id,
+                                        @Param("createdFrom") Date createdFrom,
+                                        @Param("createdTo") Date createdTo,
+                                        @Param("senderId") UUID senderId,
+                                        @Param("content") String content);
+
+    default Optional<ChatMessage> editIfAllowed(UUID id, UUID senderId, String content) {
+        return editIfAllowed(id, createdFrom(id), createdTo(id), senderId, content);
+    }
+
+    @Transactional
+    @Query(value = """
+            WITH target AS (
+                SELECT session_id FROM chat_message
+                WHERE id = :id AND created_at BETWEEN :createdFrom AND :createdTo
+                  AND sender_id = :senderId AND deleted = FALSE
+                FOR UPDATE
+            ), bumped AS (
+                UPDATE chat_session SET message_version = message_version + 1
+                WHERE id = (SELECT session_id FROM target)
+                RETURNING id, message_version
+            )
+            UPDATE chat_message m
+            SET content = :content, deleted = TRUE, edited_at = now(), change_seq = bumped.message_version
+            FROM bumped
+            WHERE m.id = :id AND m.created_at BETWEEN :createdFrom AND :createdTo
+              AND m.session_id = bumped.id AND m.deleted = FALSE
+            RETURNING m.*
+            """, nativeQuery = true)
+    Optional<ChatMessage> deleteIfAllowed(@Param("id") UUID id,
+                                          @Param("createdFrom") Date createdFrom,
+                                          @Param("createdTo") Date createdTo,
+                                          @Param("senderId") UUID senderId,
+                                          @Param("content") String content);
+
+    default Optional<ChatMessage> deleteIfAllowed(UUID id, UUID senderId, String content) {
+        return deleteIfAllowed(id, createdFrom(id), createdTo(id), senderId, content);
+    }
+
+    /** Change feed of a session, served by idx_chat_message_session_change_seq. */
+    @Query(value = """
+            SELECT * FROM chat_message
+            WHERE session_id = :sessionId
+              AND (change_seq, id) > (:changeSeq, :id)
+            ORDER BY change_seq, id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<ChatMessage> findChangesAfter(@Param("sessionId") UUID sessionId,
+                                       @Param("changeSeq") long changeSeq,
+                                       @Param("id") UUID id,
+                                       @Param("limit") int limit);
+
+    /**
+     * Ranked full-text search over the messages of the user's own sessions. The match expression
+     * and the {@code NOT deleted} filter are exactly those of idx_chat_message_content_search, so
+     * the GIN index answers it; {@code query} takes web-search syntax ("quoted phrases", -not, or).
+     */
+    @NativeQuery(value = """
+            SELECT m.id AS message_id, m.session_id, m.sender_id, m.content, m.created_at,
+                   s.pacilian_name, s.caregiver_name,
+                   ts_rank(to_tsvector('simple', m.content), q.query) AS rank
+            FROM websearch_to_tsquery('simple', :query) AS q (query)
+            JOIN chat_message m ON to_tsvector('simple', m.content) @@ q.query AND NOT m.deleted
+            JOIN chat_session s ON s.id = m.session_id
+            WHERE s.pacilian = :userId OR s.caregiver = :userId
+            ORDER BY rank DESC, m.created_at DESC, m.id DESC
+            LIMIT :limit OFFSET :offset
+            """, sqlResultSetMapping = ChatMessage.SEARCH_HIT_MAPPING)
+    List<MessageSearchHit> searchMessages(@Param("userId") UUID userId,
+                                          @Param("query") String query,
+                                          @Param("limit") int limit,
+                                          @Param("offset") long offset);
+
+    /**
+     * Messages by id, read only from the partitions created between {@code from} and {@code to};
+     * used to find the originals of repeated client message ids.
+     */
+    @Query(value = """
+            SELECT * FROM chat_message
+            WHERE id IN (:ids)
+              AND created_at BETWEEN :from AND :to
+            """, nativeQuery = true)
+    List<ChatMessage> findAllByIdCreatedBetween(@Param("ids") Collection<UUID> ids,
+                                                @Param("from") Date from,
+                                                @Param("to") Date to);
+
+    // Keyset pages below are served by idx_chat_message_session_created_id (session_id, created_at, id).
+    // chat_message is partitioned by month of created_at, and each query bounds created_at on its
+    // own (row comparisons are not used for pruning), so only the months that can match are read.
+
+    @Query(value = """
+            SELECT * FROM chat_message
+            WHERE session_id = :sessionId
+              AND created_at >= :notBefore
+            ORDER BY created_at DESC, id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<ChatMessage> findLatestPage(@Param("sessionId") UUID sessionId,
+                                     @Param("notBefore") Date notBefore,
+                                     @Param("limit") int limit);
+
+    @Query(value = """
+            SELECT * FROM chat_message
+            WHERE session_id = :sessionId
+              AND created_at <= :createdAt
+              AND (created_at, id) < (:createdAt, :id)
+            ORDER BY created_at DESC, id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<ChatMessage> findPageBefore(@Param("sessionId") UUID sessionId,
+                                     @Param("createdAt") Date createdAt,
+                                     @Param("id") UUID id,
+                                     @Param("limit") int limit);
+
+    @Query(value = """
+            SELECT * FROM chat_message
+            WHERE session_id = :sessionId
+              AND created_at >= :createdAt
+              AND (created_at, id) > (:createdAt, :id)
+            ORDER BY created_at ASC, id ASC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<ChatMessage> findPageAfter(@Param("sessionId") UUID sessionId,
+                                    @Param("createdAt") Date createdAt,
+                                    @Param("id") UUID id,
+                                    @Param("limit") int limit);
 }
@@ -0,0 +1,32 @@
+package id.ac.ui.cs.advprog.bechat.repository;
+
+import id.ac.ui.cs.advprog.bechat.model.ChatMessage;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+public interface ChatMessageRepositoryCustom {
+
+    /**
+     * Hands every message of a session created at or after {@code notBefore} to {@code action},
+     * oldest first, reading them through a forward-only cursor so that only one fetch of rows
+     * is held in memory at a time. The messages are detached and carry no session.
+     */
+    void forEachInSession(UUID sessionId, Date notBefore, Consumer<ChatMessage> action);
+
+    /**
+     * Claims each client message id of the sender for the message id it is mapped to, in the
+     * caller's transaction. Ids claimed before keep their original message, which the returned
+     * claim then names; a claim still being written by another transaction is waited for.
+     */
+    List<ClientMessageClaim> claimClientMessageIds(UUID senderId, Map<UUID, UUID> messageIdsByClientId);
+
+    /** Forgets client message ids claimed before {@code cutoff}; returns how many. */
+    int purgeClientMessageIds(Date cutoff);
+
+    record ClientMessageClaim(UUID clientMessageId, UUID messageId, Date claimedAt) {
+    }
+}
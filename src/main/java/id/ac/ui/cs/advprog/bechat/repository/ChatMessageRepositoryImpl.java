@@ -0,0 +1,103 @@
+package id.ac.ui.cs.advprog.bechat.repository;
+
+import id.ac.ui.cs.advprog.bechat.model.ChatMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+public class ChatMessageRepositoryImpl implements ChatMessageRepositoryCustom {
+
+    // Served by idx_chat_message_session_created_id; the created_at bound prunes partitions
+    // older than the session.
+    static final String SESSION_MESSAGES_SQL = """
+            SELECT id, sender_id, content, created_at, edited_at, edited, deleted, change_seq
+            FROM chat_message
+            WHERE session_id = ? AND created_at >= ?
+            ORDER BY created_at, id
+            """;
+
+    // Keys are inserted in order so that overlapping claims cannot deadlock. The no-op DO UPDATE
+    // makes PostgreSQL return rows that already existed, as upsertSession does.
+    static final String CLAIM_CLIENT_MESSAGE_IDS_SQL = """
+            INSERT INTO chat_message_idempotency (sender_id, client_message_id, message_id, created_at)
+            SELECT ?, k.client_message_id, k.message_id, now()
+            FROM unnest(?::uuid[], ?::uuid[]) AS k (client_message_id, message_id)
+            ORDER BY k.client_message_id
+            ON CONFLICT (sender_id, client_message_id)
+            DO UPDATE SET sender_id = EXCLUDED.sender_id
+            RETURNING client_message_id, message_id, created_at
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int fetchSize;
+
+    public ChatMessageRepositoryImpl(JdbcTemplate jdbcTemplate,
+                                     @Value("${chat.message.stream.fetch-size:500}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.fetchSize = fetchSize;
+    }
+
+    // PostgreSQL only honours the fetch size inside a transaction; otherwise the driver
+    // buffers the whole result.
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachInSession(UUID sessionId, Date notBefore, Consumer<ChatMessage> action) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    SESSION_MESSAGES_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            statement.setObject(1, sessionId);
+            statement.setTimestamp(2, new Timestamp(notBefore.getTime()));
+            return statement;
+        }, row -> {
+            ChatMessage message = new ChatMessage();
+            message.setId(row.getObject("id", UUID.class));
+            message.setSenderId(row.getObject("sender_id", UUID.class));
+            message.setContent(row.getString("content"));
+            message.setCreatedAt(row.getTimestamp("created_at"));
+            message.setEditedAt(row.getTimestamp("edited_at"));
+            message.setEdited(row.getBoolean("edited"));
+            message.setDeleted(row.getBoolean("deleted"));
+            message.setChangeSeq(row.getLong("change_seq"));
+            message.initState();
+            action.accept(message);
+        });
+    }
+
+    @Override
+    @Transactional
+    public List<ClientMessageClaim> claimClientMessageIds(UUID senderId, Map<UUID, UUID> messageIdsByClientId) {
+        if (messageIdsByClientId.isEmpty()) {
+            return List.of();
+        }
+        UUID[] clientMessageIds = messageIdsByClientId.keySet().toArray(UUID[]::new);
+        UUID[] messageIds = Arrays.stream(clientMessageIds).map(messageIdsByClientId::get).toArray(UUID[]::new);
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(CLAIM_CLIENT_MESSAGE_IDS_SQL);
+            statement.setObject(1, senderId);
+            statement.setArray(2, connection.createArrayOf("uuid", clientMessageIds));
+            statement.setArray(3, connection.createArrayOf("uuid", messageIds));
+            return statement;
+        }, (row, rowNum) -> new ClientMessageClaim(
+                row.getObject("client_message_id", UUID.class),
+                row.getObject("message_id", UUID.class),
+                row.getTimestamp("created_at")));
+    }
+
+    @Override
+    @Transactional
+    public int purgeClientMessageIds(Date cutoff) {
+        return jdbcTemplate.update("DELETE FROM chat_message_idempotency WHERE created_at < ?",
+                new Timestamp(cutoff.getTime()));
+    }
+}
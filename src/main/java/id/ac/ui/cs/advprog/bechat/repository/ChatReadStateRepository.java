@@ -0,0 +1,44 @@
+package id.ac.ui.cs.advprog.bechat.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import id.ac.ui.cs.advprog.bechat.model.ChatReadState;
+
+import java.util.Date;
+import java.util.UUID;
+
+public interface ChatReadStateRepository extends JpaRepository<ChatReadState, ChatReadState.Key>,
+        ChatReadStateRepositoryCustom {
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO chat_read_state AS rs (session_id, user_id, unread_count, updated_at)
+            VALUES (:sessionId, :userId, 1, now())
+            ON CONFLICT (session_id, user_id)
+            DO UPDATE SET unread_count = rs.unread_count + 1, updated_at = now()
+            """, nativeQuery = true)
+    int incrementUnread(@Param("sessionId") UUID sessionId, @Param("userId") UUID userId);
+
+    /**
+     * Takes back the unread increment a deleted message gave the other participant, but only if
+     * they had not already read past it.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE chat_read_state
+            SET unread_count = GREATEST(unread_count - 1, 0), updated_at = now()
+            WHERE session_id = :sessionId
+              AND user_id <> :senderId
+              AND (last_read_at IS NULL OR (last_read_at, last_read_message_id) < (:createdAt, :messageId))
+            """, nativeQuery = true)
+    int decrementUnreadAfterWatermark(@Param("sessionId") UUID sessionId,
+                                      @Param("senderId") UUID senderId,
+                                      @Param("createdAt") Date createdAt,
+                                      @Param("messageId") UUID messageId);
+}
@@ -0,0 +1,14 @@
+package id.ac.ui.cs.advprog.bechat.repository;
+
+import id.ac.ui.cs.advprog.bechat.dto.ReadWatermark;
+
+import java.util.Collection;
+
+public interface ChatReadStateRepositoryCustom {
+
+    /**
+     * Moves each participant's watermark forward in one JDBC batch and recounts their unread
+     * messages from the new position. Watermarks older than the stored one are ignored.
+     */
+    void advanceWatermarks(Collection<ReadWatermark> watermarks);
+}
@@ -0,0 +1,52 @@
+package id.ac.ui.cs.advprog.bechat.repository;
+
+import id.ac.ui.cs.advprog.bechat.dto.ReadWatermark;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.util.Collection;
+
+@RequiredArgsConstructor
+public class ChatReadStateRepositoryImpl implements ChatReadStateRepositoryCustom {
+
+    // The unread recount only walks messages after the new watermark, on
+    // idx_chat_message_session_created_id, so it stays cheap once a reader has caught up.
+    static final String ADVANCE_WATERMARK_SQL = """
+            INSERT INTO chat_read_state AS rs (session_id, user_id, last_read_message_id, last_read_at,
+                                               unread_count, updated_at)
+            SELECT :sessionId, :userId, :messageId, :createdAt,
+                   (SELECT COUNT(*) FROM chat_message m
+                    WHERE m.session_id = :sessionId
+                      AND m.sender_id <> :userId
+                      AND m.deleted = FALSE
+                      AND m.created_at >= :createdAt
+                      AND (m.created_at, m.id) > (:createdAt, :messageId)),
+                   now()
+            ON CONFLICT (session_id, user_id) DO UPDATE
+            SET last_read_message_id = EXCLUDED.last_read_message_id,
+                last_read_at = EXCLUDED.last_read_at,
+                unread_count = EXCLUDED.unread_count,
+                updated_at = EXCLUDED.updated_at
+            WHERE rs.last_read_at IS NULL
+               OR (rs.last_read_at, rs.last_read_message_id) < (EXCLUDED.last_read_at, EXCLUDED.last_read_message_id)
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public void advanceWatermarks(Collection<ReadWatermark> watermarks) {
+        if (watermarks.isEmpty()) {
+            return;
+        }
+        SqlParameterSource[] batch = watermarks.stream()
+                .map(watermark -> new MapSqlParameterSource()
+                        .addValue("sessionId", watermark.getSessionId())
+                        .addValue("userId", watermark.getUserId())
+                        .addValue("messageId", watermark.getPosition().getId())
+                        .addValue("createdAt", watermark.getPosition().getTimestamp()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(ADVANCE_WATERMARK_SQL, batch);
+    }
+}
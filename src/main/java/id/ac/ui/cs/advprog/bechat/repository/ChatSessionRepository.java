@@ -1,15 +1,107 @@
 package id.ac.ui.cs.advprog.bechat.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.NativeQuery;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import id.ac.ui.cs.advprog.bechat.dto.SessionSummaryDto;
 import id.ac.ui.cs.advprog.bechat.model.ChatSession;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface ChatSessionRepository extends JpaRepository<ChatSession, UUID> {
     Optional<ChatSession> findByPacilianAndCaregiver(UUID pacilian, UUID caregiver);
-    List<ChatSession> findByPacilianOrCaregiver(UUID pacilian, UUID caregiver);
-}
+    Optional<ChatSession> findByParticipantLowAndParticipantHigh(UUID participantLow, UUID participantHigh);
+
+    /** Empty when the session does not exist or the user is not one of its participants. */
+    @Query("""
+            SELECT s.messageVersion FROM ChatSession s
+            WHERE s.id = :id AND (s.pacilian = :userId OR s.caregiver = :userId)
+            """)
+    Optional<Long> findMessageVersion(@Param("id") UUID id, @Param("userId") UUID userId);
+
+    /**
+     * Increments the message version of each session and returns the new values. The rows stay
+     * locked until the caller commits, which keeps each session's versions in commit order;
+     * they are locked in id order so that overlapping batches cannot deadlock.
+     */
+    @Transactional
+    @Query(value = """
+            UPDATE chat_session SET message_version = message_version + 1
+            WHERE id IN (SELECT id FROM chat_session WHERE id IN (:ids) ORDER BY id FOR UPDATE)
+            RETURNING id, message_version AS "messageVersion"
+            """, nativeQuery = true)
+    List<SessionVersion> bumpMessageVersions(@Param("ids") Collection<UUID> ids);
+
+    interface SessionVersion {
+        UUID getId();
+        long getMessageVersion();
+    }
 
+    /**
+     * Inserts a session for the canonical participant pair, or returns the row that already
+     * holds it. The no-op {@code DO UPDATE} makes PostgreSQL return the existing row, so both
+     * outcomes take a single round trip and concurrent creates cannot produce duplicates.
+     */
+    @Transactional
+    @Query(value = """
+            INSERT INTO chat_session (id, pacilian, pacilian_name, caregiver, caregiver_name,
+                                      created_at, participant_low, participant_high)
+            VALUES (:id, :pacilian, :pacilianName, :caregiver, :caregiverName,
+                    now(), :participantLow, :participantHigh)
+            ON CONFLICT (participant_low, participant_high)
+            DO UPDATE SET participant_low = EXCLUDED.participant_low
+            RETURNING *
+            """, nativeQuery = true)
+    ChatSession upsertSession(@Param("id") UUID id,
+                              @Param("pacilian") UUID pacilian,
+                              @Param("pacilianName") String pacilianName,
+                              @Param("caregiver") UUID caregiver,
+                              @Param("caregiverName") String caregiverName,
+                              @Param("participantLow") UUID participantLow,
+                              @Param("participantHigh") UUID participantHigh);
+
+    /**
+     * Inbox rows for a participant, most recently active first. The LATERAL subquery is a
+     * single index probe on {@code idx_chat_message_session_created_id}, so the cost per row does
+     * not grow with the length of the conversation. Unread counts are read from
+     * {@code chat_read_state}, which is maintained as messages are sent and read.
+     */
+    String SESSION_SUMMARIES_SQL = """
+            SELECT s.id AS session_id, s.pacilian, s.pacilian_name, s.caregiver, s.caregiver_name,
+                   LEFT(last.content, :previewLength) AS last_message_preview,
+                   last.sender_id AS last_message_sender_id,
+                   last.created_at AS last_message_at,
+                   COALESCE(rs.unread_count, 0) AS unread_count
+            FROM chat_session s
+            LEFT JOIN LATERAL (
+                SELECT m.content, m.sender_id, m.created_at
+                FROM chat_message m
+                WHERE m.session_id = s.id
+                  AND m.created_at >= s.created_at - interval '1 day'
+                ORDER BY m.created_at DESC, m.id DESC
+                LIMIT 1
+            ) last ON TRUE
+            LEFT JOIN chat_read_state rs ON rs.session_id = s.id AND rs.user_id = :userId
+            WHERE s.pacilian = :userId OR s.caregiver = :userId
+            ORDER BY COALESCE(last.created_at, s.created_at) DESC, s.id DESC
+            """;
+
+    /** One page of {@link #SESSION_SUMMARIES_SQL}. */
+    @NativeQuery(value = SESSION_SUMMARIES_SQL + "LIMIT :limit OFFSET :offset",
+            sqlResultSetMapping = ChatSession.SESSION_SUMMARY_MAPPING)
+    List<SessionSummaryDto> findSessionSummaries(@Param("userId") UUID userId,
+                                                 @Param("previewLength") int previewLength,
+                                                 @Param("limit") int limit,
+                                                 @Param("offset") long offset);
+
+    /** Every row of {@link #SESSION_SUMMARIES_SQL}, for the unpaged session list. */
+    @NativeQuery(value = SESSION_SUMMARIES_SQL, sqlResultSetMapping = ChatSession.SESSION_SUMMARY_MAPPING)
+    List<SessionSummaryDto> findAllSessionSummaries(@Param("userId") UUID userId,
+                                                    @Param("previewLength") int previewLength);
+}
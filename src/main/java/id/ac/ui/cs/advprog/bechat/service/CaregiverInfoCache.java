@@ -0,0 +1,149 @@
+package id.ac.ui.cs.advprog.bechat.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import id.ac.ui.cs.advprog.bechat.dto.CaregiverPublicDto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Expiring cache of caregiver public info. Unknown caregivers are cached as
+ * {@link Optional#empty()} for a shorter TTL, and concurrent lookups of the same
+ * caregiver share a single in-flight remote call. The last successful lookup of each
+ * caregiver is kept for a much longer stale TTL so it can be served while the auth
+ * service is unavailable.
+ */
+@Component
+public class CaregiverInfoCache {
+
+    private final AsyncCache<UUID, Optional<CaregiverPublicDto>> cache;
+    private final Cache<UUID, CaregiverPublicDto> lastKnown;
+
+    @Autowired
+    public CaregiverInfoCache(@Value("${auth.caregiver.cache.max-size:10000}") long maxSize,
+                              @Value("${auth.caregiver.cache.ttl:10m}") Duration ttl,
+                              @Value("${auth.caregiver.cache.negative-ttl:1m}") Duration negativeTtl,
+                              @Value("${auth.caregiver.cache.stale-ttl:24h}") Duration staleTtl) {
+        this(maxSize, ttl, negativeTtl, staleTtl, Ticker.systemTicker());
+    }
+
+    CaregiverInfoCache(long maxSize, Duration ttl, Duration negativeTtl, Duration staleTtl, Ticker ticker) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new LookupExpiry(ttl, negativeTtl))
+                .ticker(ticker)
+                .recordStats()
+                .buildAsync();
+        this.lastKnown = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(staleTtl)
+                .ticker(ticker)
+                .build();
+    }
+
+    /**
+     * Returns the cached lookup for {@code userId}, joining an in-flight lookup if one exists,
+     * or runs {@code loader} on the calling thread. A loader failure is propagated to every
+     * waiting caller and is not cached.
+     */
+    public Optional<CaregiverPublicDto> get(UUID userId, Function<UUID, Optional<CaregiverPublicDto>> loader) {
+        CompletableFuture<Optional<CaregiverPublicDto>> cached = cache.getIfPresent(userId);
+        if (cached != null) {
+            return await(cached);
+        }
+
+        CompletableFuture<Optional<CaregiverPublicDto>> created = new CompletableFuture<>();
+        CompletableFuture<Optional<CaregiverPublicDto>> inFlight = cache.asMap().putIfAbsent(userId, created);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+
+        try {
+            Optional<CaregiverPublicDto> loaded = loader.apply(userId);
+            loaded.ifPresent(caregiver -> lastKnown.put(userId, caregiver));
+            created.complete(loaded);
+        } catch (RuntimeException e) {
+            created.completeExceptionally(e);
+        }
+        return await(created);
+    }
+
+    /**
+     * Bulk form of {@link #get}: caregivers with a cached or in-flight lookup join it, and all
+     * others are handed to {@code loader} in one call. The loader must return an entry for each
+     * id it is given, empty for caregivers the auth service does not know. A loader failure is
+     * propagated and not cached.
+     */
+    public Map<UUID, Optional<CaregiverPublicDto>> getAll(
+            Collection<UUID> userIds,
+            Function<Set<UUID>, CompletableFuture<Map<UUID, Optional<CaregiverPublicDto>>>> loader) {
+        return await(cache.getAll(userIds, (missing, executor) -> loader.apply(Set.copyOf(missing))
+                .thenApply(loaded -> {
+                    loaded.forEach((userId, caregiver) -> caregiver.ifPresent(found -> lastKnown.put(userId, found)));
+                    return loaded;
+                })));
+    }
+
+    /**
+     * Returns the last successfully loaded info for {@code userId}, even if its fresh entry has
+     * expired. Only meant as a fallback while the auth service cannot be reached.
+     */
+    public Optional<CaregiverPublicDto> getLastKnown(UUID userId) {
+        return Optional.ofNullable(lastKnown.getIfPresent(userId));
+    }
+
+    public AsyncCache<UUID, Optional<CaregiverPublicDto>> getNativeCache() {
+        return cache;
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static final class LookupExpiry implements Expiry<UUID, Optional<CaregiverPublicDto>> {
+
+        private final long ttlNanos;
+        private final long negativeTtlNanos;
+
+        private LookupExpiry(Duration ttl, Duration negativeTtl) {
+            this.ttlNanos = ttl.toNanos();
+            this.negativeTtlNanos = negativeTtl.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(UUID key, Optional<CaregiverPublicDto> value, long currentTime) {
+            return value.isPresent() ? ttlNanos : negativeTtlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(UUID key, Optional<CaregiverPublicDto> value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(UUID key, Optional<CaregiverPublicDto> value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
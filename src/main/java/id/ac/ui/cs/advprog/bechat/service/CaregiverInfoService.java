@@ -2,17 +2,36 @@ package id.ac.ui.cs.advprog.bechat.service;
 
 import id.ac.ui.cs.advprog.bechat.dto.ApiResponseDto;
 import id.ac.ui.cs.advprog.bechat.dto.CaregiverPublicDto;
+import id.ac.ui.cs.advprog.bechat.exception.AuthServiceUnavailableException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -21,6 +40,10 @@ public class CaregiverInfoService {
     private static final Logger logger = LoggerFactory.getLogger(CaregiverInfoService.class);
 
     private final RestTemplate restTemplate;
+    private final CaregiverInfoCache caregiverInfoCache;
+    private final CircuitBreaker authServiceCircuitBreaker;
+    private final Bulkhead authServiceBulkhead;
+    private final MeterRegistry meterRegistry;
 
     @Value("${auth.service.url}")
     private String authServiceUrl;
@@ -33,12 +56,126 @@ public class CaregiverInfoService {
             throw new IllegalArgumentException("Caregiver userId is null");
         }
 
+        CaregiverPublicDto caregiver = lookup(userId, token)
+                .orElseThrow(() -> {
+                    logger.warn("Caregiver {} is unknown to the auth service", userId);
+                    return new IllegalStateException("Caregiver not found: " + userId);
+                });
+
+        logger.info("Successfully retrieved caregiver name: {}", caregiver.getName());
+        return caregiver.getName();
+    }
+
+    private Optional<CaregiverPublicDto> lookup(UUID userId, String token) {
+        try {
+            return caregiverInfoCache.get(userId, id -> guardedFetch(id, token));
+        } catch (AuthServiceUnavailableException e) {
+            Optional<CaregiverPublicDto> stale = caregiverInfoCache.getLastKnown(userId);
+            if (stale.isEmpty()) {
+                throw e;
+            }
+            logger.warn("Auth service unavailable ({}), serving last known info for caregiver {}", e.getMessage(), userId);
+            meterRegistry.counter("caregiver.info.stale.served").increment();
+            return stale;
+        }
+    }
+
+    /**
+     * Looks up one caregiver, bypassing the cache, behind the circuit breaker and bulkhead; empty
+     * when the auth service does not know them.
+     */
+    public Optional<CaregiverPublicDto> guardedFetch(UUID userId, String token) {
+        return guarded(() -> fetchCaregiver(userId, token));
+    }
+
+    private <T> T guarded(Supplier<T> call) {
+        try {
+            return Bulkhead.decorateSupplier(authServiceBulkhead,
+                    CircuitBreaker.decorateSupplier(authServiceCircuitBreaker, call)).get();
+        } catch (CallNotPermittedException e) {
+            recordOutcome("short_circuited", 0);
+            throw new AuthServiceUnavailableException("Auth service circuit is open", e);
+        } catch (BulkheadFullException e) {
+            recordOutcome("rejected", 0);
+            throw new AuthServiceUnavailableException("Too many concurrent calls to auth service", e);
+        }
+    }
+
+    /**
+     * Looks up several caregivers in one call to the auth service, behind the same circuit
+     * breaker and bulkhead as single lookups. Caregivers the auth service does not return map
+     * to empty. Callers should go through {@link CaregiverProfileLoader}, which caches and
+     * coalesces these calls. The multi-id endpoint is an assumption about the auth service,
+     * so the loader only calls this when {@code auth.caregiver.batch.enabled} is set.
+     */
+    public Map<UUID, Optional<CaregiverPublicDto>> fetchCaregivers(Set<UUID> userIds, String token) {
+        return guarded(() -> fetchCaregiverBatch(userIds, token));
+    }
+
+    private Map<UUID, Optional<CaregiverPublicDto>> fetchCaregiverBatch(Set<UUID> userIds, String token) {
+        logger.info("Requesting {} caregivers from auth service in one call", userIds.size());
+
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setBearerAuth(token);
+            HttpEntity<Void> entity = new HttpEntity<>(headers);
+
+            String url = UriComponentsBuilder.fromUriString(authServiceUrl + "/data/caregiver/batch")
+                    .queryParam("ids", userIds.stream().map(UUID::toString).collect(Collectors.joining(",")))
+                    .toUriString();
+
+            ResponseEntity<ApiResponseDto<List<CaregiverPublicDto>>> response = restTemplate.exchange(
+                    url,
+                    HttpMethod.GET,
+                    entity,
+                    new ParameterizedTypeReference<>() {}
+            );
+
+            List<CaregiverPublicDto> caregivers = response.getBody() != null ? response.getBody().getData() : null;
+            if (caregivers == null) {
+                logger.warn("Caregiver list is null in response body");
+                throw new IllegalStateException("Failed to retrieve caregivers from auth service");
+            }
+
+            Map<UUID, Optional<CaregiverPublicDto>> found = new HashMap<>();
+            userIds.forEach(userId -> found.put(userId, Optional.empty()));
+            for (CaregiverPublicDto caregiver : caregivers) {
+                UUID userId = caregiver.getId() != null ? UUID.fromString(caregiver.getId()) : null;
+                if (userId != null && caregiver.getName() != null && found.containsKey(userId)) {
+                    found.put(userId, Optional.of(caregiver));
+                }
+            }
+
+            outcome = "success";
+            return found;
+
+        } catch (ResourceAccessException e) {
+            logger.error("Auth service did not answer in time: {}", e.getMessage());
+            outcome = "timeout";
+            throw new AuthServiceUnavailableException("Auth service did not respond", e);
+        } catch (HttpServerErrorException e) {
+            logger.error("Auth service failed with status {}", e.getStatusCode());
+            outcome = "server_error";
+            throw new AuthServiceUnavailableException("Auth service returned " + e.getStatusCode(), e);
+        } catch (RestClientException | IllegalArgumentException e) {
+            logger.error("Error while calling auth service to get caregivers: {}", e.getMessage(), e);
+            throw new IllegalStateException("Error fetching caregiver info from auth service", e);
+        } finally {
+            recordOutcome(outcome, System.nanoTime() - start);
+        }
+    }
+
+    private Optional<CaregiverPublicDto> fetchCaregiver(UUID userId, String token) {
         logger.info("Token length: {}", token.length());
         logger.info("Token starts with: {}", token.substring(0, Math.min(20, token.length())));
         logger.info("Token period count: {}", token.chars().filter(ch -> ch == '.').count());
-        
+
         logger.debug("Full token: {}", token);
 
+        long start = System.nanoTime();
+        String outcome = "error";
         try {
             HttpHeaders headers = new HttpHeaders();
             headers.setBearerAuth(token);
@@ -66,12 +203,35 @@ public class CaregiverInfoService {
                 throw new IllegalStateException("Failed to retrieve caregiver name from auth service");
             }
 
-            logger.info("Successfully retrieved caregiver name: {}", caregiver.getName());
-            return caregiver.getName();
-
+            outcome = "success";
+            return Optional.of(caregiver);
+
+        } catch (HttpClientErrorException.NotFound e) {
+            logger.warn("Auth service has no caregiver with id {}", userId);
+            outcome = "not_found";
+            return Optional.empty();
+        } catch (ResourceAccessException e) {
+            logger.error("Auth service did not answer in time: {}", e.getMessage());
+            outcome = "timeout";
+            throw new AuthServiceUnavailableException("Auth service did not respond", e);
+        } catch (HttpServerErrorException e) {
+            logger.error("Auth service failed with status {}", e.getStatusCode());
+            outcome = "server_error";
+            throw new AuthServiceUnavailableException("Auth service returned " + e.getStatusCode(), e);
         } catch (RestClientException e) {
             logger.error("Error while calling auth service to get caregiver name: {}", e.getMessage(), e);
             throw new IllegalStateException("Error fetching caregiver info from auth service", e);
+        } finally {
+            recordOutcome(outcome, System.nanoTime() - start);
         }
     }
+
+    private void recordOutcome(String outcome, long elapsedNanos) {
+        Timer.builder("caregiver.info.remote.latency")
+                .description("Latency of caregiver lookups against the auth service")
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
 }
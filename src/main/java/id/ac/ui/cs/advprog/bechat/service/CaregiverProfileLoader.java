@@ -0,0 +1,184 @@
+package id.ac.ui.cs.advprog.bechat.service;
+
+import id.ac.ui.cs.advprog.bechat.dto.CaregiverPublicDto;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves caregiver names for views that list many sessions. The ids a view asks for are
+ * deduplicated and served from {@link CaregiverInfoCache}; the rest are looked up on a small
+ * pool of its own, so request threads only wait for the answers.
+ *
+ * <p>By default each missing caregiver is fetched with the auth service's single-caregiver
+ * call, concurrently. The multi-id endpoint ({@code /data/caregiver/batch?ids=}) is not part of
+ * the auth service API this service was written against, so batching is off unless
+ * {@code auth.caregiver.batch.enabled} is set where that endpoint is deployed. Then lookups with
+ * the same bearer token that start within {@code auth.caregiver.batch.window} of each other
+ * share one call, up to {@code auth.caregiver.batch.max-size} ids per call; callers with
+ * different tokens never share a call, so no lookup runs under another user's credentials.
+ *
+ * <p>Names are decoration here, so a failed lookup falls back to the last known name, and
+ * caregivers with neither are left out for the caller to fill from its own copy.
+ */
+@Component
+public class CaregiverProfileLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(CaregiverProfileLoader.class);
+
+    // Calls to the auth service are bounded by its bulkhead; this only needs to keep up with it
+    private static final int LOOKUP_THREADS = 4;
+
+    private final CaregiverInfoService caregiverInfoService;
+    private final CaregiverInfoCache caregiverInfoCache;
+    private final boolean batchEnabled;
+    private final Duration window;
+    private final int maxBatchSize;
+    private final DistributionSummary batchSize;
+    private final ScheduledExecutorService lookups;
+
+    // Open batches by bearer token
+    private final Map<String, Batch> pending = new HashMap<>();
+
+    public CaregiverProfileLoader(CaregiverInfoService caregiverInfoService,
+                                  CaregiverInfoCache caregiverInfoCache,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${auth.caregiver.batch.enabled:false}") boolean batchEnabled,
+                                  @Value("${auth.caregiver.batch.window:5ms}") Duration window,
+                                  @Value("${auth.caregiver.batch.max-size:100}") int maxBatchSize) {
+        this.caregiverInfoService = caregiverInfoService;
+        this.caregiverInfoCache = caregiverInfoCache;
+        this.batchEnabled = batchEnabled;
+        this.window = window;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.batchSize = DistributionSummary.builder("caregiver.info.batch.size")
+                .description("Caregivers requested per multi-id call to the auth service")
+                .register(meterRegistry);
+        this.lookups = Executors.newScheduledThreadPool(LOOKUP_THREADS,
+                Thread.ofPlatform().name("caregiver-lookup-", 0).daemon().factory());
+    }
+
+    /** Names of the given caregivers that could be resolved, by caregiver id. */
+    public Map<UUID, String> getNames(Collection<UUID> caregiverIds, String token) {
+        Set<UUID> ids = new LinkedHashSet<>(caregiverIds);
+        ids.remove(null);
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+
+        Map<UUID, Optional<CaregiverPublicDto>> caregivers;
+        try {
+            caregivers = caregiverInfoCache.getAll(ids,
+                    missing -> batchEnabled ? enqueue(missing, token) : fetchEach(missing, token));
+        } catch (RuntimeException e) {
+            logger.warn("Could not resolve {} caregivers ({}), using last known names", ids.size(), e.getMessage());
+            caregivers = new HashMap<>();
+            for (UUID id : ids) {
+                caregivers.put(id, caregiverInfoCache.getLastKnown(id));
+            }
+        }
+
+        Map<UUID, String> names = new HashMap<>();
+        caregivers.forEach((id, caregiver) -> caregiver.ifPresent(found -> names.put(id, found.getName())));
+        return names;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lookups.shutdownNow();
+    }
+
+    private CompletableFuture<Map<UUID, Optional<CaregiverPublicDto>>> fetchEach(Set<UUID> ids, String token) {
+        Map<UUID, CompletableFuture<Optional<CaregiverPublicDto>>> calls = new HashMap<>();
+        for (UUID id : ids) {
+            calls.put(id, CompletableFuture.supplyAsync(() -> caregiverInfoService.guardedFetch(id, token), lookups));
+        }
+        return CompletableFuture.allOf(calls.values().toArray(CompletableFuture[]::new)).thenApply(done -> {
+            Map<UUID, Optional<CaregiverPublicDto>> found = new HashMap<>();
+            calls.forEach((id, call) -> found.put(id, call.join()));
+            return found;
+        });
+    }
+
+    /**
+     * Adds ids to the open batch for this token, opening one if there is none. A batch is sent
+     * from the lookup pool once its window has passed, or right away once it is full.
+     */
+    private CompletableFuture<Map<UUID, Optional<CaregiverPublicDto>>> enqueue(Set<UUID> ids, String token) {
+        Batch batch;
+        synchronized (pending) {
+            batch = pending.computeIfAbsent(token, key -> {
+                Batch opened = new Batch(key);
+                lookups.schedule(() -> close(opened), window.toNanos(), TimeUnit.NANOSECONDS);
+                return opened;
+            });
+            batch.ids.addAll(ids);
+            if (batch.ids.size() >= maxBatchSize) {
+                pending.remove(token);
+                Batch full = batch;
+                lookups.execute(() -> dispatch(full));
+            }
+        }
+        return batch.result.thenApply(all -> {
+            Map<UUID, Optional<CaregiverPublicDto>> own = new HashMap<>();
+            ids.forEach(id -> own.put(id, all.getOrDefault(id, Optional.empty())));
+            return own;
+        });
+    }
+
+    private void close(Batch batch) {
+        synchronized (pending) {
+            // Already sent if it filled up before its window passed
+            if (!pending.remove(batch.token, batch)) {
+                return;
+            }
+        }
+        dispatch(batch);
+    }
+
+    // Runs once the batch is out of pending, so its ids no longer change
+    private void dispatch(Batch batch) {
+        try {
+            List<UUID> ids = new ArrayList<>(batch.ids);
+            Map<UUID, Optional<CaregiverPublicDto>> all = new HashMap<>();
+            for (int from = 0; from < ids.size(); from += maxBatchSize) {
+                Set<UUID> chunk = Set.copyOf(ids.subList(from, Math.min(from + maxBatchSize, ids.size())));
+                batchSize.record(chunk.size());
+                all.putAll(caregiverInfoService.fetchCaregivers(chunk, batch.token));
+            }
+            batch.result.complete(all);
+        } catch (RuntimeException e) {
+            batch.result.completeExceptionally(e);
+        }
+    }
+
+    private static final class Batch {
+        private final String token;
+        private final Set<UUID> ids = new LinkedHashSet<>();
+        private final CompletableFuture<Map<UUID, Optional<CaregiverPublicDto>>> result = new CompletableFuture<>();
+
+        private Batch(String token) {
+            this.token = Objects.requireNonNull(token);
+        }
+    }
+}
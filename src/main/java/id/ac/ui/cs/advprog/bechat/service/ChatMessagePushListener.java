@@ -0,0 +1,36 @@
+package id.ac.ui.cs.advprog.bechat.service;
+
+import id.ac.ui.cs.advprog.bechat.dto.ChatMessageEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Pushes committed message events to the session's STOMP topic. Runs after commit when the
+ * event is published inside a transaction, so subscribers never see rolled-back messages.
+ */
+@Component
+@RequiredArgsConstructor
+public class ChatMessagePushListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatMessagePushListener.class);
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageEvent(ChatMessageEvent event) {
+        try {
+            messagingTemplate.convertAndSend("/topic/session/" + event.getSessionId(), event);
+            meterRegistry.counter("chat.push.events", "type", event.getType().name()).increment();
+        } catch (MessagingException e) {
+            // The write already succeeded; clients will pick the change up on their next fetch.
+            logger.warn("Failed to push {} event for session {}: {}", event.getType(), event.getSessionId(), e.getMessage());
+        }
+    }
+}
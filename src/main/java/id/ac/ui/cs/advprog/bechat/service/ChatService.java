@@ -1,16 +1,28 @@
 package id.ac.ui.cs.advprog.bechat.service;
 
+import id.ac.ui.cs.advprog.bechat.dto.ChatChangesPage;
+import id.ac.ui.cs.advprog.bechat.dto.ChatMessagePage;
+import id.ac.ui.cs.advprog.bechat.dto.MessageSearchPage;
 import id.ac.ui.cs.advprog.bechat.dto.SendMessageRequest;
+import id.ac.ui.cs.advprog.bechat.dto.SendMessageResult;
 import id.ac.ui.cs.advprog.bechat.model.ChatMessage;
 import id.ac.ui.cs.advprog.bechat.model.ChatSession;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public interface ChatService {
     CompletableFuture<ChatMessage> sendMessage(SendMessageRequest request, UUID senderId);
+    CompletableFuture<List<SendMessageResult>> sendMessages(List<SendMessageRequest> requests, UUID senderId);
     CompletableFuture<List<ChatMessage>> getMessages(UUID sessionId, UUID userId);
+    CompletableFuture<Optional<Long>> getMessageVersion(UUID sessionId, UUID userId);
+    CompletableFuture<ChatMessagePage> getMessagePage(UUID sessionId, UUID userId, String before, String after, int size);
+    ChatSession getParticipantSession(UUID sessionId, UUID userId);
+    void forEachMessage(ChatSession session, Consumer<ChatMessage> action);
+    CompletableFuture<ChatChangesPage> getChanges(UUID sessionId, UUID userId, String since, int size);
+    CompletableFuture<MessageSearchPage> searchMessages(UUID userId, String query, int page, int size);
     CompletableFuture<ChatMessage> editMessage(UUID messageId, String newContent, UUID userId);
     CompletableFuture<ChatMessage> deleteMessage(UUID messageId, UUID userId);
     ChatSession getSessionById(UUID sessionId);
@@ -1,22 +1,50 @@
 package id.ac.ui.cs.advprog.bechat.service;
 
+import id.ac.ui.cs.advprog.bechat.dto.ChangeToken;
+import id.ac.ui.cs.advprog.bechat.dto.ChatChangesPage;
+import id.ac.ui.cs.advprog.bechat.dto.ChatMessageEvent;
+import id.ac.ui.cs.advprog.bechat.dto.ChatMessagePage;
+import id.ac.ui.cs.advprog.bechat.dto.MessageCursor;
+import id.ac.ui.cs.advprog.bechat.dto.MessageSearchHit;
+import id.ac.ui.cs.advprog.bechat.dto.MessageSearchPage;
 import id.ac.ui.cs.advprog.bechat.dto.SendMessageRequest;
+import id.ac.ui.cs.advprog.bechat.dto.SendMessageResult;
+import id.ac.ui.cs.advprog.bechat.exception.ResourceNotFoundException;
 import id.ac.ui.cs.advprog.bechat.model.ChatMessage;
 import id.ac.ui.cs.advprog.bechat.model.ChatSession;
 import id.ac.ui.cs.advprog.bechat.repository.ChatMessageRepository;
+import id.ac.ui.cs.advprog.bechat.repository.ChatMessageRepositoryCustom.ClientMessageClaim;
 import id.ac.ui.cs.advprog.bechat.repository.ChatSessionRepository;
+import id.ac.ui.cs.advprog.bechat.repository.ChatSessionRepository.SessionVersion;
+import id.ac.ui.cs.advprog.bechat.state.DeletedState;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -24,17 +52,35 @@ public class ChatServiceImpl implements ChatService {
 
     private static final Logger logger = LoggerFactory.getLogger(ChatServiceImpl.class);
 
+    static final int MAX_PAGE_SIZE = 100;
+    static final int MAX_SEARCH_PAGE_SIZE = 50;
+    static final int MAX_QUERY_LENGTH = 200;
+
+    // Messages are stamped by the application and sessions by the database, so allow for clock
+    // skew when using a session's creation time as the lower bound of its messages.
+    static final Duration SESSION_CLOCK_SKEW = Duration.ofDays(1);
+
     private final ChatMessageRepository chatMessageRepository;
     private final ChatSessionRepository chatSessionRepository;
+    private final RecentMessageCache recentMessageCache;
 
     private final Counter sendMessageCounter;
     private final Counter sendMessageFailureCounter;
+    private final Counter sendMessageDuplicateCounter;
     private final Counter editMessageCounter;
     private final Counter deleteMessageCounter;
     private final Timer getMessagesTimer;
+    private final Timer searchMessagesTimer;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // The latest page is first looked for in this window, which only spans the newest
+    // chat_message partitions; older history is read only if the window does not fill the page.
+    @Value("${chat.message.recent-window:30d}")
+    private Duration recentWindow = Duration.ofDays(30);
 
     @Override
     @Async("taskExecutor")
+    @Transactional
     public CompletableFuture<ChatMessage> sendMessage(SendMessageRequest dto, UUID senderId) {
         logger.info("Attempting to send message in session: {}, sender: {}", dto.getSessionId(), senderId);
 
@@ -50,16 +96,25 @@ public class ChatServiceImpl implements ChatService {
                 throw new SecurityException("You are not part of this session.");
             }
 
-            ChatMessage message = new ChatMessage();
-            message.setId(UUID.randomUUID());
-            message.setSession(session);
-            message.setSenderId(senderId);
-            message.setContent(dto.getContent());
-            message.setEdited(false);
-            message.setDeleted(false);
+            ChatMessage message = newMessage(session, senderId, dto.getContent());
+
+            if (dto.getClientMessageId() != null) {
+                Map<UUID, Optional<ChatMessage>> repeats =
+                        claimClientMessageIds(senderId, Map.of(dto.getClientMessageId(), message));
+                if (!repeats.isEmpty()) {
+                    ChatMessage original = repeats.get(dto.getClientMessageId()).orElseThrow(() ->
+                            new IllegalStateException("clientMessageId was already used in another session"));
+                    sendMessageDuplicateCounter.increment();
+                    logger.info("Send repeats client message {}, returning message {}",
+                            dto.getClientMessageId(), original.getId());
+                    return CompletableFuture.completedFuture(original);
+                }
+            }
 
+            assignChangeSeqs(List.of(message));
             ChatMessage saved = chatMessageRepository.save(message);
             sendMessageCounter.increment();
+            eventPublisher.publishEvent(ChatMessageEvent.of(ChatMessageEvent.Type.SENT, saved));
             logger.info("Message successfully sent with ID: {}", saved.getId());
 
             return CompletableFuture.completedFuture(saved);
@@ -70,6 +125,156 @@ public class ChatServiceImpl implements ChatService {
         }
     }
 
+    /**
+     * Sends many messages at once. Each distinct session is loaded and authorized once, and
+     * every accepted message is inserted in one JDBC batch. Items for unknown sessions or
+     * sessions the sender is not part of are rejected individually. Items repeating a client
+     * message id of an earlier send get that send's message back, as single sends do.
+     */
+    @Override
+    @Async("taskExecutor")
+    @Transactional
+    public CompletableFuture<List<SendMessageResult>> sendMessages(List<SendMessageRequest> requests, UUID senderId) {
+        logger.info("Attempting to send batch of {} messages, sender: {}", requests.size(), senderId);
+
+        Set<UUID> sessionIds = requests.stream().map(SendMessageRequest::getSessionId).collect(Collectors.toSet());
+        Map<UUID, ChatSession> sessions = chatSessionRepository.findAllById(sessionIds).stream()
+                .collect(Collectors.toMap(ChatSession::getId, Function.identity()));
+
+        SendMessageResult[] results = new SendMessageResult[requests.size()];
+        List<ChatMessage> accepted = new ArrayList<>();
+        List<Integer> acceptedIndexes = new ArrayList<>();
+        Map<UUID, ChatMessage> byClientId = new HashMap<>();
+
+        for (int i = 0; i < requests.size(); i++) {
+            SendMessageRequest request = requests.get(i);
+            ChatSession session = sessions.get(request.getSessionId());
+            if (session == null) {
+                results[i] = SendMessageResult.rejected(i, "Session not found");
+            } else if (!session.getPacilian().equals(senderId) && !session.getCaregiver().equals(senderId)) {
+                results[i] = SendMessageResult.rejected(i, "You are not part of this session.");
+            } else if (request.getClientMessageId() != null && byClientId.containsKey(request.getClientMessageId())) {
+                results[i] = SendMessageResult.rejected(i, "clientMessageId is repeated in this batch");
+            } else {
+                ChatMessage message = newMessage(session, senderId, request.getContent());
+                if (request.getClientMessageId() != null) {
+                    byClientId.put(request.getClientMessageId(), message);
+                }
+                accepted.add(message);
+                acceptedIndexes.add(i);
+            }
+        }
+
+        List<ChatMessage> saved;
+        int repeated = 0;
+        try {
+            // Items whose client message id was sent before are answered with the earlier
+            // message and left out of the insert
+            Map<UUID, Optional<ChatMessage>> repeats = claimClientMessageIds(senderId, byClientId);
+            for (int a = accepted.size() - 1; a >= 0 && !repeats.isEmpty(); a--) {
+                int index = acceptedIndexes.get(a);
+                Optional<ChatMessage> original = repeats.get(requests.get(index).getClientMessageId());
+                if (original != null) {
+                    results[index] = original
+                            .map(message -> SendMessageResult.created(index, message))
+                            .orElseGet(() -> SendMessageResult.rejected(index, "clientMessageId was already used in another session"));
+                    repeated += original.isPresent() ? 1 : 0;
+                    accepted.remove(a);
+                    acceptedIndexes.remove(a);
+                }
+            }
+
+            if (!accepted.isEmpty()) {
+                assignChangeSeqs(accepted);
+            }
+            saved = chatMessageRepository.saveAll(accepted);
+        } catch (RuntimeException e) {
+            sendMessageFailureCounter.increment(requests.size());
+            logger.error("Failed to send batch of {} messages, sender: {}. Error: {}", requests.size(), senderId, e.getMessage(), e);
+            throw e;
+        }
+
+        for (int i = 0; i < saved.size(); i++) {
+            int index = acceptedIndexes.get(i);
+            results[index] = SendMessageResult.created(index, saved.get(i));
+            eventPublisher.publishEvent(ChatMessageEvent.of(ChatMessageEvent.Type.SENT, saved.get(i)));
+        }
+        sendMessageCounter.increment(saved.size());
+        sendMessageDuplicateCounter.increment(repeated);
+        sendMessageFailureCounter.increment(requests.size() - saved.size() - repeated);
+
+        logger.info("Batch sent {} of {} messages for sender {}, {} repeated", saved.size(), requests.size(),
+                senderId, repeated);
+        return CompletableFuture.completedFuture(Arrays.asList(results));
+    }
+
+    private static ChatMessage newMessage(ChatSession session, UUID senderId, String content) {
+        ChatMessage message = new ChatMessage();
+        message.setId(ChatMessage.newId());
+        message.setSession(session);
+        message.setSenderId(senderId);
+        message.setContent(content);
+        message.setEdited(false);
+        message.setDeleted(false);
+        return message;
+    }
+
+    /**
+     * Claims the client message ids of messages about to be sent. Returns, by client message
+     * id, the messages earlier sends created for ids that were already claimed, or empty where
+     * that message is in another session; those must not be inserted. Claims are made before
+     * the session versions are bumped, so all sends lock in the same order.
+     */
+    private Map<UUID, Optional<ChatMessage>> claimClientMessageIds(UUID senderId, Map<UUID, ChatMessage> byClientId) {
+        if (byClientId.isEmpty()) {
+            return Map.of();
+        }
+        Map<UUID, UUID> messageIds = new HashMap<>();
+        byClientId.forEach((clientMessageId, message) -> messageIds.put(clientMessageId, message.getId()));
+        List<ClientMessageClaim> repeats = chatMessageRepository.claimClientMessageIds(senderId, messageIds).stream()
+                .filter(claim -> !claim.messageId().equals(messageIds.get(claim.clientMessageId())))
+                .toList();
+        if (repeats.isEmpty()) {
+            return Map.of();
+        }
+
+        // Each original was stamped by the application in the transaction that claimed its id,
+        // so it lies within clock skew of the claim
+        Instant from = repeats.stream().map(claim -> claim.claimedAt().toInstant()).min(Instant::compareTo).orElseThrow();
+        Instant to = repeats.stream().map(claim -> claim.claimedAt().toInstant()).max(Instant::compareTo).orElseThrow();
+        Map<UUID, ChatMessage> originals = chatMessageRepository.findAllByIdCreatedBetween(
+                        repeats.stream().map(ClientMessageClaim::messageId).toList(),
+                        Timestamp.from(from.minus(SESSION_CLOCK_SKEW)), Timestamp.from(to.plus(SESSION_CLOCK_SKEW)))
+                .stream()
+                .collect(Collectors.toMap(ChatMessage::getId, Function.identity()));
+
+        Map<UUID, Optional<ChatMessage>> found = new HashMap<>();
+        for (ClientMessageClaim claim : repeats) {
+            UUID sessionId = byClientId.get(claim.clientMessageId()).getSession().getId();
+            ChatMessage original = originals.get(claim.messageId());
+            if (original == null) {
+                throw new IllegalStateException("Message " + claim.messageId() + " for client message id "
+                        + claim.clientMessageId() + " no longer exists");
+            }
+            found.put(claim.clientMessageId(),
+                    Optional.of(original).filter(message -> message.getSession().getId().equals(sessionId)));
+        }
+        return found;
+    }
+
+    /**
+     * Bumps the message version of every session the messages belong to and stamps each message
+     * with its session's new version. The session rows stay locked until the send commits.
+     */
+    private void assignChangeSeqs(List<ChatMessage> messages) {
+        Set<UUID> sessionIds = messages.stream().map(message -> message.getSession().getId()).collect(Collectors.toSet());
+        Map<UUID, Long> versions = chatSessionRepository.bumpMessageVersions(sessionIds).stream()
+                .collect(Collectors.toMap(SessionVersion::getId, SessionVersion::getMessageVersion));
+        for (ChatMessage message : messages) {
+            message.setChangeSeq(versions.get(message.getSession().getId()));
+        }
+    }
+
     @Override
     @Async("taskExecutor")
     public CompletableFuture<List<ChatMessage>> getMessages(UUID sessionId, UUID userId) {
@@ -96,23 +301,195 @@ public class ChatServiceImpl implements ChatService {
 
     @Override
     @Async("taskExecutor")
-    public CompletableFuture<ChatMessage> editMessage(UUID messageId, String newContent, UUID userId) {
-        logger.info("User {} is attempting to edit message {}", userId, messageId);
+    public CompletableFuture<Optional<Long>> getMessageVersion(UUID sessionId, UUID userId) {
+        return CompletableFuture.completedFuture(chatSessionRepository.findMessageVersion(sessionId, userId));
+    }
 
-        ChatMessage message = chatMessageRepository.findById(messageId)
-                .orElseThrow(() -> {
-                    logger.warn("Message {} not found for editing", messageId);
-                    return new RuntimeException("Message not found");
-                });
+    @Override
+    @Async("taskExecutor")
+    public CompletableFuture<ChatMessagePage> getMessagePage(UUID sessionId, UUID userId, String before, String after, int size) {
+        logger.info("Fetching message page for session: {} and user: {} (before={}, after={}, size={})",
+                sessionId, userId, before, after, size);
 
-        if (!message.getSenderId().equals(userId)) {
-            logger.warn("User {} is not the sender of message {} and cannot edit it", userId, messageId);
-            throw new SecurityException("You can only edit your own messages.");
+        if (before != null && after != null) {
+            throw new IllegalArgumentException("Only one of 'before' or 'after' can be supplied");
         }
 
-        message.edit(newContent);
-        ChatMessage saved = chatMessageRepository.save(message);
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+
+        return CompletableFuture.completedFuture(getMessagesTimer.record(() -> {
+            if (before == null && after == null) {
+                // The version probe also checks membership; unknown sessions and outsiders miss
+                // and are reported by the regular path below.
+                Optional<RecentMessageCache.Snapshot> cached = recentMessageCache.latest(sessionId, pageSize + 1,
+                        () -> chatSessionRepository.findMessageVersion(sessionId, userId));
+                if (cached.isPresent()) {
+                    logger.debug("Served latest page of session {} from the recent message cache", sessionId);
+                    return olderPage(cached.get().session(), cached.get().messages(), null, pageSize);
+                }
+            }
+
+            ChatSession session = getSessionById(sessionId);
+
+            if (!session.getPacilian().equals(userId) && !session.getCaregiver().equals(userId)) {
+                logger.warn("User {} unauthorized to access session {}", userId, sessionId);
+                throw new SecurityException("You do not have access to this session.");
+            }
+
+            ChatMessagePage page = after != null
+                    ? loadNewerPage(session, MessageCursor.decode(after), after, pageSize)
+                    : loadOlderPage(session, before != null ? MessageCursor.decode(before) : null, pageSize);
+
+            logger.debug("Retrieved {} messages for session {}", page.getMessages().size(), sessionId);
+            return page;
+        }));
+    }
+
+    private ChatMessagePage loadOlderPage(ChatSession session, MessageCursor before, int pageSize) {
+        List<ChatMessage> rows;
+        if (before == null) {
+            rows = findLatestPage(session, pageSize + 1);
+            recentMessageCache.fill(session, rows, pageSize + 1);
+        } else {
+            rows = chatMessageRepository.findPageBefore(session.getId(), before.getTimestamp(), before.getId(), pageSize + 1);
+        }
+        return olderPage(session, rows, before, pageSize);
+    }
+
+    /** Builds a page from up to {@code pageSize + 1} rows ending at {@code before}, newest first. */
+    private ChatMessagePage olderPage(ChatSession session, List<ChatMessage> rows, MessageCursor before, int pageSize) {
+        boolean hasOlder = rows.size() > pageSize;
+        List<ChatMessage> messages = new ArrayList<>(rows.subList(0, Math.min(rows.size(), pageSize)));
+        Collections.reverse(messages);
+
+        return ChatMessagePage.builder()
+                .session(session)
+                .messages(messages)
+                .prevCursor(hasOlder ? MessageCursor.encode(messages.get(0)) : null)
+                .nextCursor(messages.isEmpty()
+                        ? (before != null ? before.encode() : null)
+                        : MessageCursor.encode(messages.get(messages.size() - 1)))
+                .build();
+    }
+
+    private List<ChatMessage> findLatestPage(ChatSession session, int limit) {
+        Instant sessionStart = sessionStart(session);
+        Instant recentStart = Instant.now().minus(recentWindow);
+
+        if (recentStart.isAfter(sessionStart)) {
+            List<ChatMessage> recent = chatMessageRepository.findLatestPage(session.getId(), Date.from(recentStart), limit);
+            if (recent.size() >= limit) {
+                return recent;
+            }
+        }
+        return chatMessageRepository.findLatestPage(session.getId(), Date.from(sessionStart), limit);
+    }
+
+    private static Instant sessionStart(ChatSession session) {
+        return session.getCreatedAt() == null
+                ? Instant.EPOCH
+                : Timestamp.valueOf(session.getCreatedAt()).toInstant().minus(SESSION_CLOCK_SKEW);
+    }
+
+    private ChatMessagePage loadNewerPage(ChatSession session, MessageCursor after, String afterToken, int pageSize) {
+        List<ChatMessage> rows = chatMessageRepository.findPageAfter(
+                session.getId(), after.getTimestamp(), after.getId(), pageSize);
+
+        return ChatMessagePage.builder()
+                .session(session)
+                .messages(rows)
+                .prevCursor(rows.isEmpty() ? afterToken : MessageCursor.encode(rows.get(0)))
+                .nextCursor(rows.isEmpty() ? afterToken : MessageCursor.encode(rows.get(rows.size() - 1)))
+                .build();
+    }
+
+    @Override
+    public ChatSession getParticipantSession(UUID sessionId, UUID userId) {
+        ChatSession session = getSessionById(sessionId);
+        if (!session.getPacilian().equals(userId) && !session.getCaregiver().equals(userId)) {
+            logger.warn("User {} unauthorized to access session {}", userId, sessionId);
+            throw new SecurityException("You do not have access to this session.");
+        }
+        return session;
+    }
+
+    /**
+     * Streams the whole conversation, oldest first, without collecting it. Runs on the calling
+     * thread and holds a database connection until the last message has been handed over.
+     */
+    @Override
+    public void forEachMessage(ChatSession session, Consumer<ChatMessage> action) {
+        logger.info("Streaming messages of session {}", session.getId());
+        chatMessageRepository.forEachInSession(session.getId(), Date.from(sessionStart(session)), action);
+    }
+
+    /**
+     * Messages inserted, edited or deleted after {@code since}, oldest change first. Unlike
+     * {@code editedAt}, change sequences are unique per change and commit in order, so a client
+     * that stores the returned token never misses or re-downloads a change.
+     */
+    @Override
+    @Async("taskExecutor")
+    public CompletableFuture<ChatChangesPage> getChanges(UUID sessionId, UUID userId, String since, int size) {
+        logger.info("Fetching changes for session: {} and user: {} (since={}, size={})", sessionId, userId, since, size);
+
+        ChangeToken after = since != null ? ChangeToken.decode(since) : ChangeToken.START;
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+
+        ChatSession session = getSessionById(sessionId);
+        if (!session.getPacilian().equals(userId) && !session.getCaregiver().equals(userId)) {
+            logger.warn("User {} unauthorized to access session {}", userId, sessionId);
+            throw new SecurityException("You do not have access to this session.");
+        }
+
+        List<ChatMessage> rows = chatMessageRepository.findChangesAfter(
+                sessionId, after.getChangeSeq(), after.getId(), pageSize + 1);
+        List<ChatMessage> changes = rows.subList(0, Math.min(rows.size(), pageSize));
+
+        logger.debug("Retrieved {} changes for session {}", changes.size(), sessionId);
+        return CompletableFuture.completedFuture(ChatChangesPage.builder()
+                .sessionId(sessionId)
+                .changes(changes)
+                .nextToken(changes.isEmpty() ? after.encode() : ChangeToken.of(changes.get(changes.size() - 1)).encode())
+                .hasMore(rows.size() > pageSize)
+                .build());
+    }
+
+    @Override
+    @Async("taskExecutor")
+    public CompletableFuture<MessageSearchPage> searchMessages(UUID userId, String query, int page, int size) {
+        logger.info("User {} searching messages (page={}, size={})", userId, page, size);
+
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Search query must not be empty");
+        }
+        if (query.length() > MAX_QUERY_LENGTH) {
+            throw new IllegalArgumentException("Search query must be at most " + MAX_QUERY_LENGTH + " characters");
+        }
+
+        int pageNumber = Math.max(0, page);
+        int pageSize = Math.max(1, Math.min(size, MAX_SEARCH_PAGE_SIZE));
+
+        return CompletableFuture.completedFuture(searchMessagesTimer.record(() -> {
+            List<MessageSearchHit> rows = chatMessageRepository.searchMessages(
+                    userId, query.strip(), pageSize + 1, (long) pageNumber * pageSize);
+            boolean hasNext = rows.size() > pageSize;
+            List<MessageSearchHit> hits = hasNext ? rows.subList(0, pageSize) : rows;
+
+            logger.debug("Search for user {} returned {} hits", userId, hits.size());
+            return new MessageSearchPage(hits, pageNumber, pageSize, hasNext);
+        }));
+    }
+
+    @Override
+    @Async("taskExecutor")
+    public CompletableFuture<ChatMessage> editMessage(UUID messageId, String newContent, UUID userId) {
+        logger.info("User {} is attempting to edit message {}", userId, messageId);
+
+        ChatMessage saved = chatMessageRepository.editIfAllowed(messageId, userId, newContent)
+                .orElseThrow(() -> rejection(messageId, userId, "edit", DeletedState.EDIT_REJECTED));
         editMessageCounter.increment();
+        eventPublisher.publishEvent(ChatMessageEvent.of(ChatMessageEvent.Type.EDITED, saved));
 
         logger.info("Message {} successfully edited by user {}", messageId, userId);
         return CompletableFuture.completedFuture(saved);
@@ -123,25 +500,33 @@ public class ChatServiceImpl implements ChatService {
     public CompletableFuture<ChatMessage> deleteMessage(UUID messageId, UUID userId) {
         logger.info("User {} is attempting to delete message {}", userId, messageId);
 
-        ChatMessage message = chatMessageRepository.findById(messageId)
-                .orElseThrow(() -> {
-                    logger.warn("Message {} not found for deletion", messageId);
-                    return new RuntimeException("Message not found");
-                });
-
-        if (!message.getSenderId().equals(userId)) {
-            logger.warn("User {} is not the sender of message {} and cannot delete it", userId, messageId);
-            throw new SecurityException("You can only delete your own messages.");
-        }
-
-        message.delete();
-        ChatMessage saved = chatMessageRepository.save(message);
+        ChatMessage saved = chatMessageRepository.deleteIfAllowed(messageId, userId, DeletedState.DELETED_CONTENT)
+                .orElseThrow(() -> rejection(messageId, userId, "delete", DeletedState.DELETE_REJECTED));
         deleteMessageCounter.increment();
+        eventPublisher.publishEvent(ChatMessageEvent.of(ChatMessageEvent.Type.DELETED, saved));
 
         logger.info("Message {} successfully deleted by user {}", messageId, userId);
         return CompletableFuture.completedFuture(saved);
     }
 
+    /**
+     * Works out why a guarded edit or delete matched no row. Only runs on the rejection path,
+     * so a permitted change stays a single statement.
+     */
+    private RuntimeException rejection(UUID messageId, UUID userId, String action, String deletedReason) {
+        Optional<ChatMessage> message = chatMessageRepository.findByIdWithinIdTime(messageId);
+        if (message.isEmpty()) {
+            logger.warn("Message {} not found for {}", messageId, action);
+            return new ResourceNotFoundException("Message not found");
+        }
+        if (!message.get().getSenderId().equals(userId)) {
+            logger.warn("User {} is not the sender of message {} and cannot {} it", userId, messageId, action);
+            return new SecurityException("You can only " + action + " your own messages.");
+        }
+        logger.warn("User {} cannot {} message {}: already deleted", userId, action, messageId);
+        return new IllegalStateException(deletedReason);
+    }
+
     @Override
     public ChatSession getSessionById(UUID sessionId) {
         logger.debug("Fetching session by ID: {}", sessionId);
@@ -4,10 +4,14 @@ import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
+import id.ac.ui.cs.advprog.bechat.dto.SessionInboxPage;
+import id.ac.ui.cs.advprog.bechat.dto.SessionSummaryDto;
+import id.ac.ui.cs.advprog.bechat.dto.UserPrincipal;
 import id.ac.ui.cs.advprog.bechat.model.ChatSession;
 
 public interface ChatSessionService {
-    public ChatSession createSession(UUID pacilian, UUID caregiver, String token);
+    public ChatSession createSession(UserPrincipal requester, UUID caregiver, String token);
     Optional<ChatSession> findSession(UUID pacilian, UUID caregiver);
-    List<ChatSession> getSessionsByUser(UUID userId);
+    List<SessionSummaryDto> getSessionsByUser(UUID userId);
+    SessionInboxPage getInbox(UUID userId, int page, int size, String token);
 }
@@ -1,6 +1,8 @@
 package id.ac.ui.cs.advprog.bechat.service;
 
-import id.ac.ui.cs.advprog.bechat.dto.TokenVerificationResponseDto;
+import id.ac.ui.cs.advprog.bechat.dto.SessionInboxPage;
+import id.ac.ui.cs.advprog.bechat.dto.SessionSummaryDto;
+import id.ac.ui.cs.advprog.bechat.dto.UserPrincipal;
 import id.ac.ui.cs.advprog.bechat.model.ChatSession;
 import id.ac.ui.cs.advprog.bechat.model.enums.Role;
 import id.ac.ui.cs.advprog.bechat.repository.ChatSessionRepository;
@@ -11,6 +13,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -20,15 +23,19 @@ public class ChatSessionServiceImpl implements ChatSessionService {
 
     private static final Logger logger = LoggerFactory.getLogger(ChatSessionServiceImpl.class);
 
+    static final int MAX_INBOX_PAGE_SIZE = 100;
+    static final int PREVIEW_LENGTH = 120;
+
     private final ChatSessionRepository chatSessionRepository;
-    private final TokenVerificationService tokenVerificationService;
     private final CaregiverInfoService caregiverInfoService;
+    private final CaregiverProfileLoader caregiverProfileLoader;
 
     private final Counter chatSessionCreatedCounter;
     private final Counter chatSessionCreateFailureCounter;
 
     @Override
-    public ChatSession createSession(UUID pacilian, UUID caregiver, String token) {
+    public ChatSession createSession(UserPrincipal requester, UUID caregiver, String token) {
+        UUID pacilian = requester != null ? requester.getUserId() : null;
         logger.info("Attempting to create chat session for pacilian: {} and caregiver: {}", pacilian, caregiver);
 
         try {
@@ -42,32 +49,42 @@ public class ChatSessionServiceImpl implements ChatSessionService {
                 throw new IllegalArgumentException("Pacilian tidak boleh membuat sesi dengan dirinya sendiri");
             }
 
-            Role requesterRole = tokenVerificationService.getRoleFromToken(token);
+            Role requesterRole = requester.getRole();
 
             if (requesterRole != Role.PACILIAN) {
                 logger.warn("Unauthorized session creation attempt by non-PACILIAN role: {}", requesterRole);
                 throw new IllegalArgumentException("Only PACILIAN can create session");
             }
 
-            TokenVerificationResponseDto pacilianInfo = tokenVerificationService.verifyToken(token);
-            String pacilianName = pacilianInfo.getName();
+            // Reopening a conversation is one index probe and needs nothing from the auth service.
+            Optional<ChatSession> existing = findSession(pacilian, caregiver);
+            if (existing.isPresent()) {
+                logger.info("Returning existing chat session with ID: {}", existing.get().getId());
+                return existing.get();
+            }
+
+            String pacilianName = requester.getName();
 
             String caregiverName = caregiverInfoService.getNameByUserIdCaregiver(caregiver, token);
 
-            ChatSession session = findSession(pacilian, caregiver)
-                    .orElseGet(() -> {
-                        logger.info("No existing session found. Creating new session.");
-                        ChatSession newSession = new ChatSession();
-                        newSession.setId(UUID.randomUUID());
-                        newSession.setPacilian(pacilian);
-                        newSession.setCaregiver(caregiver);
-                        newSession.setPacilianName(pacilianName);
-                        newSession.setCaregiverName(caregiverName);
-                        return chatSessionRepository.save(newSession);
-                    });
-
-            chatSessionCreatedCounter.increment();
-            logger.info("Chat session successfully created with ID: {}", session.getId());
+            UUID newId = UUID.randomUUID();
+            ChatSession session = chatSessionRepository.upsertSession(
+                    newId,
+                    pacilian,
+                    pacilianName,
+                    caregiver,
+                    caregiverName,
+                    ChatSession.lowerOf(pacilian, caregiver),
+                    ChatSession.higherOf(pacilian, caregiver)
+            );
+
+            // A concurrent create for the same pair won; the upsert hands back its row.
+            if (newId.equals(session.getId())) {
+                chatSessionCreatedCounter.increment();
+                logger.info("Chat session successfully created with ID: {}", session.getId());
+            } else {
+                logger.info("Returning existing chat session with ID: {}", session.getId());
+            }
             return session;
 
         } catch (Exception e) {
@@ -79,19 +96,41 @@ public class ChatSessionServiceImpl implements ChatSessionService {
 
     @Override
     public Optional<ChatSession> findSession(UUID pacilian, UUID caregiver) {
-        return chatSessionRepository.findAll().stream()
-                .filter(s -> s.getPacilian() != null && s.getCaregiver() != null)
-                .filter(s ->
-                        (s.getPacilian().equals(pacilian) && s.getCaregiver().equals(caregiver)) ||
-                        (s.getPacilian().equals(caregiver) && s.getCaregiver().equals(pacilian))
-                )
-                .findFirst();
+        return chatSessionRepository.findByParticipantLowAndParticipantHigh(
+                ChatSession.lowerOf(pacilian, caregiver),
+                ChatSession.higherOf(pacilian, caregiver)
+        );
     }
 
     @Override
-    public List<ChatSession> getSessionsByUser(UUID userId) {
+    public List<SessionSummaryDto> getSessionsByUser(UUID userId) {
         logger.info("Fetching all sessions for user ID: {}", userId);
-        List<ChatSession> sessions = chatSessionRepository.findByPacilianOrCaregiver(userId, userId);
-        return sessions;
+        return chatSessionRepository.findAllSessionSummaries(userId, PREVIEW_LENGTH);
+    }
+
+    @Override
+    public SessionInboxPage getInbox(UUID userId, int page, int size, String token) {
+        int pageNumber = Math.max(0, page);
+        int pageSize = Math.max(1, Math.min(size, MAX_INBOX_PAGE_SIZE));
+        logger.info("Fetching inbox page {} (size {}) for user ID: {}", pageNumber, pageSize, userId);
+
+        List<SessionSummaryDto> rows = chatSessionRepository.findSessionSummaries(
+                userId, PREVIEW_LENGTH, pageSize + 1, (long) pageNumber * pageSize);
+        boolean hasNext = rows.size() > pageSize;
+        List<SessionSummaryDto> sessions = hasNext ? rows.subList(0, pageSize) : rows;
+        return new SessionInboxPage(withCurrentCaregiverNames(sessions, token), pageNumber, pageSize, hasNext);
+    }
+
+    // Names are stored when a session is created; the whole page is refreshed with one lookup
+    // and keeps the stored name wherever the current one cannot be resolved.
+    private List<SessionSummaryDto> withCurrentCaregiverNames(List<SessionSummaryDto> sessions, String token) {
+        if (sessions.isEmpty() || token == null) {
+            return sessions;
+        }
+        Map<UUID, String> names = caregiverProfileLoader.getNames(
+                sessions.stream().map(SessionSummaryDto::getCaregiver).toList(), token);
+        return sessions.stream()
+                .map(row -> row.withCaregiverName(names.getOrDefault(row.getCaregiver(), row.getCaregiverName())))
+                .toList();
     }
 }
@@ -0,0 +1,35 @@
+package id.ac.ui.cs.advprog.bechat.service;
+
+import id.ac.ui.cs.advprog.bechat.repository.ChatMessageRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+
+/**
+ * Forgets client message ids once clients can no longer be retrying the sends that claimed
+ * them. A send repeated after {@code chat.message.client-id.retention} creates a new message.
+ */
+@Service
+@RequiredArgsConstructor
+public class ClientMessageIdRetention {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClientMessageIdRetention.class);
+
+    private final ChatMessageRepository chatMessageRepository;
+
+    @Value("${chat.message.client-id.retention:7d}")
+    private Duration retention = Duration.ofDays(7);
+
+    @Scheduled(cron = "${chat.message.client-id.purge-cron:0 0 4 * * *}")
+    public void purge() {
+        int purged = chatMessageRepository.purgeClientMessageIds(Date.from(Instant.now().minus(retention)));
+        logger.info("Purged {} client message ids older than {}", purged, retention);
+    }
+}
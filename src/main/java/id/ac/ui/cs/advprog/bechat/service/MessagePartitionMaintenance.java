@@ -0,0 +1,231 @@
+package id.ac.ui.cs.advprog.bechat.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Maintains the monthly partitions of {@code chat_message}.
+ *
+ * <p>Partitions are created a few months ahead so inserts never fall into the default
+ * partition. Once a month is {@code chat.archive.after-months} old its partition moves to the
+ * cold tier: it is rewritten once in conversation order (CLUSTER on the session/created_at
+ * index) with no free space kept for updates, optionally onto a cheaper tablespace, and recorded
+ * in {@code chat_message_cold_partition}. Cold partitions stay attached, so old history reads
+ * as before, while recent-page queries prune them through their {@code created_at} bound.
+ */
+@Service
+@RequiredArgsConstructor
+public class MessagePartitionMaintenance {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessagePartitionMaintenance.class);
+
+    static final String PARTITION_PREFIX = "chat_message_p";
+    static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    static final String DEFAULT_PARTITION = "chat_message_default";
+
+    // Only one instance maintains partitions at a time; the others skip the run.
+    private static final long MAINTENANCE_LOCK = 0x63686174_70617274L;
+    private static final Pattern IDENTIFIER = Pattern.compile("[a-z_][a-z0-9_]{0,62}");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${chat.partition.months-ahead:3}")
+    private int monthsAhead = 3;
+
+    @Value("${chat.archive.after-months:6}")
+    private int archiveAfterMonths = 6;
+
+    @Value("${chat.archive.tablespace:}")
+    private String archiveTablespace = "";
+
+    private volatile int hotPartitions;
+    private volatile int coldPartitions;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${chat.partition.maintenance-cron:0 30 3 * * *}")
+    public void maintain() {
+        YearMonth now = YearMonth.now();
+        try {
+            createUpcomingPartitions(now);
+            for (String partition : archivable(listHotPartitions(), now)) {
+                archive(partition);
+            }
+        } catch (DataAccessException e) {
+            logger.error("Partition maintenance failed: {}", e.getMessage(), e);
+            meterRegistry.counter("chat.partition.maintenance.failures").increment();
+        } finally {
+            refreshCounts();
+        }
+    }
+
+    public int hotPartitionCount() {
+        return hotPartitions;
+    }
+
+    public int coldPartitionCount() {
+        return coldPartitions;
+    }
+
+    /** Each month gets its own transaction, so one that cannot be created does not hold back the rest. */
+    private void createUpcomingPartitions(YearMonth now) {
+        for (int i = 0; i <= monthsAhead; i++) {
+            YearMonth month = now.plusMonths(i);
+            try {
+                createPartition(month);
+            } catch (DataAccessException e) {
+                logger.error("Could not create partition {}: {}", partitionName(month), e.getMessage(), e);
+                meterRegistry.counter("chat.partition.maintenance.failures").increment();
+            }
+        }
+    }
+
+    /**
+     * Creates the partition for {@code month}. If maintenance fell behind and rows of that month
+     * landed in the default partition, {@code PARTITION OF} would fail on them; the partition is
+     * then built as a plain table, the rows are moved into it and it is attached afterwards.
+     */
+    private void createPartition(YearMonth month) {
+        String partition = partitionName(month);
+        Timestamp from = start(month);
+        Timestamp to = start(month.plusMonths(1));
+        String bounds = " FOR VALUES FROM ('" + from + "') TO ('" + to + "')";
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!tryLock() || Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT to_regclass(?) IS NOT NULL", Boolean.class, partition))) {
+                return;
+            }
+            Integer stranded = jdbcTemplate.queryForObject("SELECT count(*) FROM " + DEFAULT_PARTITION
+                    + " WHERE created_at >= ? AND created_at < ?", Integer.class, from, to);
+            if (stranded == null || stranded == 0) {
+                jdbcTemplate.execute("CREATE TABLE " + partition + " PARTITION OF chat_message" + bounds);
+                return;
+            }
+            jdbcTemplate.execute("CREATE TABLE " + partition
+                    + " (LIKE chat_message INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+            jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION
+                    + " WHERE created_at >= ? AND created_at < ? RETURNING *) INSERT INTO " + partition
+                    + " SELECT * FROM moved", from, to);
+            jdbcTemplate.execute("ALTER TABLE chat_message ATTACH PARTITION " + partition + bounds);
+            logger.warn("Moved {} rows from {} into the new partition {}", stranded, DEFAULT_PARTITION, partition);
+        });
+    }
+
+    private void archive(String partition) {
+        YearMonth month = monthOf(partition).orElseThrow();
+        long started = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!tryLock()) {
+                return;
+            }
+            String tablespace = tablespace();
+            jdbcTemplate.execute("ALTER TABLE " + partition + " SET (fillfactor = 100)");
+            if (tablespace != null) {
+                jdbcTemplate.execute("ALTER TABLE " + partition + " SET TABLESPACE " + tablespace);
+                for (String index : jdbcTemplate.queryForList(
+                        "SELECT indexrelid::regclass::text FROM pg_index WHERE indrelid = ?::regclass",
+                        String.class, partition)) {
+                    jdbcTemplate.execute("ALTER INDEX " + index + " SET TABLESPACE " + tablespace);
+                }
+            }
+            String conversationIndex = jdbcTemplate.queryForObject("""
+                    SELECT child.indexrelid::regclass::text
+                    FROM pg_inherits i JOIN pg_index child ON child.indexrelid = i.inhrelid
+                    WHERE i.inhparent = 'idx_chat_message_session_created_id'::regclass
+                      AND child.indrelid = ?::regclass
+                    """, String.class, partition);
+            jdbcTemplate.execute("CLUSTER " + partition + " USING " + conversationIndex);
+            jdbcTemplate.execute("ANALYZE " + partition);
+            jdbcTemplate.update("""
+                    INSERT INTO chat_message_cold_partition (partition_name, range_start, range_end, tablespace, archived_at)
+                    VALUES (?, ?, ?, ?, now())
+                    """, partition, start(month), start(month.plusMonths(1)), tablespace);
+        });
+        meterRegistry.counter("chat.partition.archived").increment();
+        logger.info("Moved partition {} to the cold tier in {} ms", partition, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private List<String> listHotPartitions() {
+        return jdbcTemplate.queryForList("""
+                SELECT c.relname
+                FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = 'chat_message'::regclass
+                  AND c.relname NOT IN (SELECT partition_name FROM chat_message_cold_partition)
+                ORDER BY c.relname
+                """, String.class);
+    }
+
+    private void refreshCounts() {
+        try {
+            coldPartitions = jdbcTemplate.queryForObject("SELECT count(*) FROM chat_message_cold_partition", Integer.class);
+            hotPartitions = (int) listHotPartitions().stream().filter(name -> monthOf(name).isPresent()).count();
+        } catch (DataAccessException e) {
+            logger.warn("Could not count chat_message partitions: {}", e.getMessage());
+        }
+    }
+
+    private boolean tryLock() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT pg_try_advisory_xact_lock(?)", Boolean.class, MAINTENANCE_LOCK));
+    }
+
+    private String tablespace() {
+        if (archiveTablespace == null || archiveTablespace.isBlank()) {
+            return null;
+        }
+        if (!IDENTIFIER.matcher(archiveTablespace).matches()) {
+            throw new IllegalStateException("Invalid chat.archive.tablespace: " + archiveTablespace);
+        }
+        return archiveTablespace;
+    }
+
+    /** Monthly partitions whose month ended at least {@code archiveAfterMonths} before {@code now}. */
+    List<String> archivable(List<String> partitions, YearMonth now) {
+        YearMonth firstHot = now.minusMonths(archiveAfterMonths);
+        List<String> result = new ArrayList<>();
+        for (String partition : partitions) {
+            monthOf(partition).filter(month -> month.isBefore(firstHot)).ifPresent(month -> result.add(partition));
+        }
+        return result;
+    }
+
+    static String partitionName(YearMonth month) {
+        return PARTITION_PREFIX + month.format(PARTITION_SUFFIX);
+    }
+
+    /** Empty for names that are not monthly partitions, such as the default partition. */
+    static Optional<YearMonth> monthOf(String partition) {
+        if (!partition.startsWith(PARTITION_PREFIX)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(YearMonth.parse(partition.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX));
+        } catch (DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Timestamp start(YearMonth month) {
+        return Timestamp.valueOf(month.atDay(1).atStartOfDay());
+    }
+}
@@ -0,0 +1,178 @@
+package id.ac.ui.cs.advprog.bechat.service;
+
+import id.ac.ui.cs.advprog.bechat.dto.ChatMessageEvent;
+import id.ac.ui.cs.advprog.bechat.dto.MessageCursor;
+import id.ac.ui.cs.advprog.bechat.dto.ReadStateDto;
+import id.ac.ui.cs.advprog.bechat.dto.ReadWatermark;
+import id.ac.ui.cs.advprog.bechat.model.ChatMessage;
+import id.ac.ui.cs.advprog.bechat.model.ChatReadState;
+import id.ac.ui.cs.advprog.bechat.model.ChatSession;
+import id.ac.ui.cs.advprog.bechat.repository.ChatMessageRepository;
+import id.ac.ui.cs.advprog.bechat.repository.ChatReadStateRepository;
+import id.ac.ui.cs.advprog.bechat.repository.ChatSessionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Tracks per-participant read watermarks and unread counters.
+ *
+ * <p>Read marks only update an in-memory map, keeping the newest position per participant and
+ * session, and {@link #flush()} writes whatever is pending in one batch. A client scrolling
+ * through a hundred messages therefore costs one row update per flush interval instead of a
+ * hundred. Unread counters are bumped as messages are sent, so reading them never has to count
+ * messages.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReadStateService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadStateService.class);
+
+    static final Comparator<MessageCursor> POSITION_ORDER = Comparator
+            .comparing(MessageCursor::getCreatedAt)
+            .thenComparing(MessageCursor::getId, ChatSession::compareParticipants);
+
+    private final ChatReadStateRepository chatReadStateRepository;
+    private final ChatMessageRepository chatMessageRepository;
+    private final ChatSessionRepository chatSessionRepository;
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<ChatReadState.Key, MessageCursor> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Records that {@code userId} has read up to and including {@code messageId}. The
+     * watermark only ever moves forward and is persisted on the next flush.
+     */
+    public ReadStateDto markRead(UUID sessionId, UUID userId, UUID messageId) {
+        ChatMessage message = chatMessageRepository.findWithSessionById(messageId)
+                .filter(found -> found.getSession().getId().equals(sessionId))
+                .orElseThrow(() -> new IllegalArgumentException("Message not found in this session"));
+        requireParticipant(message.getSession(), userId);
+
+        MessageCursor position = advance(sessionId, userId, MessageCursor.of(message));
+        meterRegistry.counter("chat.read.marks").increment();
+        logger.debug("User {} read session {} up to {}", userId, sessionId, position.getId());
+        return getReadState(sessionId, userId, position);
+    }
+
+    public ReadStateDto getReadState(UUID sessionId, UUID userId) {
+        ChatSession session = chatSessionRepository.findById(sessionId)
+                .orElseThrow(() -> new IllegalArgumentException("Session not found"));
+        requireParticipant(session, userId);
+        return getReadState(sessionId, userId, pending.get(new ChatReadState.Key(sessionId, userId)));
+    }
+
+    /** Number of participants whose read position has not been written yet. */
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    @Scheduled(fixedDelayString = "${chat.read.flush-interval:2s}")
+    @PreDestroy
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<ReadWatermark> batch = new ArrayList<>(pending.size());
+        for (Map.Entry<ChatReadState.Key, MessageCursor> entry : pending.entrySet()) {
+            // Only drop the entry we are about to write; a newer mark arriving meanwhile stays queued.
+            if (pending.remove(entry.getKey(), entry.getValue())) {
+                ChatReadState.Key key = entry.getKey();
+                batch.add(new ReadWatermark(key.getSessionId(), key.getUserId(), entry.getValue()));
+            }
+        }
+
+        try {
+            chatReadStateRepository.advanceWatermarks(batch);
+            meterRegistry.counter("chat.read.flushed").increment(batch.size());
+            logger.debug("Flushed {} read watermarks", batch.size());
+        } catch (DataAccessException e) {
+            batch.forEach(watermark -> advance(watermark.getSessionId(), watermark.getUserId(), watermark.getPosition()));
+            meterRegistry.counter("chat.read.flush.failures").increment();
+            logger.error("Failed to flush {} read watermarks, will retry: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    // Sends publish from inside their transaction, so this runs after commit, when that
+    // transaction can no longer take writes; the counter updates get one of their own.
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void onMessageEvent(ChatMessageEvent event) {
+        ChatMessage message = event.getMessage();
+        UUID sessionId = event.getSessionId();
+
+        try {
+            switch (event.getType()) {
+                case SENT -> {
+                    // Sends always carry the loaded session; edits and deletes only its id.
+                    ChatSession session = message.getSession();
+                    UUID recipient = session.getPacilian().equals(message.getSenderId())
+                            ? session.getCaregiver()
+                            : session.getPacilian();
+                    chatReadStateRepository.incrementUnread(sessionId, recipient);
+                    // Whoever sends a message has evidently read the conversation up to it.
+                    advance(sessionId, message.getSenderId(), MessageCursor.of(message));
+                }
+                case DELETED -> chatReadStateRepository.decrementUnreadAfterWatermark(
+                        sessionId, message.getSenderId(), message.getCreatedAt(), message.getId());
+                case EDITED -> {
+                    // Editing does not change what is unread.
+                }
+            }
+        } catch (DataAccessException e) {
+            // The message itself is stored; the counter catches up on the recipient's next read mark.
+            logger.warn("Failed to update unread count for session {}: {}", sessionId, e.getMessage());
+        }
+    }
+
+    private MessageCursor advance(UUID sessionId, UUID userId, MessageCursor position) {
+        return pending.merge(new ChatReadState.Key(sessionId, userId), position,
+                (current, candidate) -> POSITION_ORDER.compare(candidate, current) > 0 ? candidate : current);
+    }
+
+    private ReadStateDto getReadState(UUID sessionId, UUID userId, MessageCursor pendingPosition) {
+        Optional<ChatReadState> stored = chatReadStateRepository.findById(new ChatReadState.Key(sessionId, userId));
+        MessageCursor storedPosition = stored
+                .filter(state -> state.getLastReadAt() != null)
+                .map(state -> new MessageCursor(state.getLastReadAt().toInstant(), state.getLastReadMessageId()))
+                .orElse(null);
+        long unread = stored.map(ChatReadState::getUnreadCount).orElse(0);
+
+        MessageCursor position = storedPosition;
+        if (pendingPosition != null && (storedPosition == null || POSITION_ORDER.compare(pendingPosition, storedPosition) > 0)) {
+            position = pendingPosition;
+        }
+
+        return new ReadStateDto(
+                sessionId,
+                position != null ? position.getId() : null,
+                position != null ? position.encode() : null,
+                unread);
+    }
+
+    private void requireParticipant(ChatSession session, UUID userId) {
+        if (!session.getPacilian().equals(userId) && !session.getCaregiver().equals(userId)) {
+            logger.warn("User {} unauthorized to access session {}", userId, session.getId());
+            throw new SecurityException("You do not have access to this session.");
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package id.ac.ui.cs.advprog.bechat.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import id.ac.ui.cs.advprog.bechat.dto.ChatMessageEvent;
+import id.ac.ui.cs.advprog.bechat.model.ChatMessage;
+import id.ac.ui.cs.advprog.bechat.model.ChatSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Write-through cache of the newest messages of recently read sessions. Each session keeps a
+ * ring of at most {@code chat.message.tail-cache.messages} compact entries together with the
+ * message version it reflects; sessions are evicted least recently used first once the
+ * estimated size of all rings exceeds {@code chat.message.tail-cache.max-size}.
+ *
+ * <p>Rings are filled by reads and kept current by committed sends, edits and deletes. A ring
+ * is only served while its version equals the session's current one, so a change that was
+ * missed or arrived out of order costs a reload, never a stale page.
+ */
+@Component
+public class RecentMessageCache {
+
+    // Rough heap cost of a ring and of one entry besides its text, for the size budget
+    private static final int TAIL_OVERHEAD_BYTES = 256;
+    private static final int ENTRY_OVERHEAD_BYTES = 112;
+
+    private final Cache<UUID, SessionTail> cache;
+    private final int capacity;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @Autowired
+    public RecentMessageCache(@Value("${chat.message.tail-cache.messages:100}") int capacity,
+                              @Value("${chat.message.tail-cache.max-size:64MB}") DataSize maxSize,
+                              @Value("${chat.message.tail-cache.idle-ttl:30m}") Duration idleTtl) {
+        this(capacity, maxSize, idleTtl, Ticker.systemTicker());
+    }
+
+    RecentMessageCache(int capacity, DataSize maxSize, Duration idleTtl, Ticker ticker) {
+        this.capacity = capacity;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((UUID sessionId, SessionTail tail) -> tail.weight())
+                .expireAfterAccess(idleTtl)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+    }
+
+    /** The newest messages of a session, newest first, with the session they belong to. */
+    public record Snapshot(ChatSession session, List<ChatMessage> messages) {
+    }
+
+    /**
+     * Returns the newest {@code limit} messages of the session if its ring holds them, or holds
+     * the whole conversation, and is still at the version {@code currentVersion} reports.
+     * {@code currentVersion} is only asked when there is a ring; empty counts as a miss.
+     */
+    public Optional<Snapshot> latest(UUID sessionId, int limit, Supplier<Optional<Long>> currentVersion) {
+        SessionTail tail = cache.getIfPresent(sessionId);
+        Optional<Snapshot> snapshot = tail == null ? Optional.empty() : tail.snapshot(limit)
+                .filter(cached -> currentVersion.get()
+                        .filter(version -> version == cached.session().getMessageVersion())
+                        .isPresent());
+        (snapshot.isPresent() ? hits : misses).increment();
+        return snapshot;
+    }
+
+    /**
+     * Stores the newest messages of a session as read from the database, newest first.
+     * {@code requested} is the limit they were read with: fewer rows means the conversation
+     * has no older messages. The session must have been read before the messages.
+     */
+    public void fill(ChatSession session, List<ChatMessage> newestFirst, int requested) {
+        SessionTail filled = new SessionTail(session, capacity);
+        for (int i = Math.min(newestFirst.size(), capacity) - 1; i >= 0; i--) {
+            filled.put(newestFirst.get(i));
+        }
+        filled.complete = newestFirst.size() < requested && newestFirst.size() <= capacity;
+        cache.asMap().merge(session.getId(), filled,
+                (current, replacement) -> current.version > replacement.version ? current : replacement);
+    }
+
+    // Runs after the change commits, in whatever order concurrent commits finish; a change that
+    // skips a version drops the ring instead of leaving a gap in it.
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageEvent(ChatMessageEvent event) {
+        ChatMessage message = event.getMessage();
+        cache.asMap().computeIfPresent(event.getSessionId(), (sessionId, tail) -> {
+            synchronized (tail) {
+                if (message.getChangeSeq() > tail.version + 1) {
+                    return null;
+                }
+                tail.put(message);
+                tail.version = Math.max(tail.version, message.getChangeSeq());
+                return tail;
+            }
+        });
+    }
+
+    public void invalidate(UUID sessionId) {
+        cache.invalidate(sessionId);
+    }
+
+    /** Share of latest-page lookups answered from memory since startup. */
+    public double hitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /** Estimated heap held by all rings, in bytes. */
+    public long residentBytes() {
+        return cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+    }
+
+    public Cache<UUID, ?> getNativeCache() {
+        return cache;
+    }
+
+    /**
+     * The newest messages of one session, oldest first in a ring that overwrites its oldest
+     * entry when full. Entries keep only what a page shows, with the sender as a flag.
+     */
+    static final class SessionTail {
+
+        private final UUID sessionId;
+        private final UUID pacilian;
+        private final String pacilianName;
+        private final UUID caregiver;
+        private final String caregiverName;
+        private final LocalDateTime createdAt;
+        private final Entry[] ring;
+        private int head;
+        private int size;
+        private int contentChars;
+        private long version;
+        private boolean complete;
+
+        private SessionTail(ChatSession session, int capacity) {
+            this.sessionId = session.getId();
+            this.pacilian = session.getPacilian();
+            this.pacilianName = session.getPacilianName();
+            this.caregiver = session.getCaregiver();
+            this.caregiverName = session.getCaregiverName();
+            this.createdAt = session.getCreatedAt();
+            this.version = session.getMessageVersion();
+            this.ring = new Entry[Math.max(1, capacity)];
+        }
+
+        synchronized Optional<Snapshot> snapshot(int limit) {
+            if (size < limit && !complete) {
+                return Optional.empty();
+            }
+            ChatSession session = new ChatSession();
+            session.setId(sessionId);
+            session.setPacilian(pacilian);
+            session.setPacilianName(pacilianName);
+            session.setCaregiver(caregiver);
+            session.setCaregiverName(caregiverName);
+            session.setCreatedAt(createdAt);
+            session.setMessageVersion(version);
+
+            List<ChatMessage> messages = new ArrayList<>(Math.min(limit, size));
+            for (int i = size - 1; i >= 0 && messages.size() < limit; i--) {
+                messages.add(at(i).toMessage(session));
+            }
+            return Optional.of(new Snapshot(session, messages));
+        }
+
+        /** Inserts or replaces a message, keeping (createdAt, id) order; older changes are ignored. */
+        synchronized void put(ChatMessage message) {
+            Entry entry = Entry.of(message, caregiver);
+            int position = size;
+            while (position > 0 && entry.compareTo(at(position - 1)) < 0) {
+                position--;
+            }
+            if (position > 0 && at(position - 1).sameMessage(entry)) {
+                if (at(position - 1).changeSeq <= entry.changeSeq) {
+                    replace(position - 1, entry);
+                }
+                return;
+            }
+            if (position == 0 && size > 0 && (!complete || size == ring.length)) {
+                // Older than everything kept: either not among the newest messages, or the
+                // messages between it and the ring are unknown
+                complete &= size < ring.length;
+                return;
+            }
+            if (size == ring.length) {
+                contentChars -= at(0).content.length();
+                head = (head + 1) % ring.length;
+                size--;
+                position--;
+                complete = false;
+            }
+            for (int i = size; i > position; i--) {
+                ring[index(i)] = at(i - 1);
+            }
+            ring[index(position)] = entry;
+            contentChars += entry.content.length();
+            size++;
+        }
+
+        int weight() {
+            // Weighed on every write, so read without the lock; a slightly stale size is fine
+            return TAIL_OVERHEAD_BYTES + 2 * (length(pacilianName) + length(caregiverName))
+                    + size * ENTRY_OVERHEAD_BYTES + 2 * contentChars;
+        }
+
+        private static int length(String text) {
+            return text != null ? text.length() : 0;
+        }
+
+        private void replace(int position, Entry entry) {
+            contentChars += entry.content.length() - at(position).content.length();
+            ring[index(position)] = entry;
+        }
+
+        private Entry at(int position) {
+            return ring[index(position)];
+        }
+
+        private int index(int position) {
+            return (head + position) % ring.length;
+        }
+    }
+
+    // Times are epoch nanoseconds: cursors are built from createdAt at full precision
+    private record Entry(long idHigh, long idLow, boolean fromCaregiver, String content, long createdAt,
+                         long editedAt, boolean edited, boolean deleted, long changeSeq) {
+
+        private static final long NO_TIME = Long.MIN_VALUE;
+
+        static Entry of(ChatMessage message, UUID caregiver) {
+            return new Entry(message.getId().getMostSignificantBits(), message.getId().getLeastSignificantBits(),
+                    message.getSenderId().equals(caregiver), message.getContent(),
+                    toNanos(message.getCreatedAt()),
+                    message.getEditedAt() != null ? toNanos(message.getEditedAt()) : NO_TIME,
+                    message.isEdited(), message.isDeleted(), message.getChangeSeq());
+        }
+
+        private static long toNanos(Date date) {
+            Instant instant = date.toInstant();
+            return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+        }
+
+        private static Timestamp fromNanos(long nanos) {
+            return Timestamp.from(Instant.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L),
+                    Math.floorMod(nanos, 1_000_000_000L)));
+        }
+
+        boolean sameMessage(Entry other) {
+            return idHigh == other.idHigh && idLow == other.idLow;
+        }
+
+        // Same order as the keyset queries: created_at, then id as PostgreSQL compares uuids
+        int compareTo(Entry other) {
+            int byTime = Long.compare(createdAt, other.createdAt);
+            if (byTime != 0) {
+                return byTime;
+            }
+            int byHigh = Long.compareUnsigned(idHigh, other.idHigh);
+            return byHigh != 0 ? byHigh : Long.compareUnsigned(idLow, other.idLow);
+        }
+
+        ChatMessage toMessage(ChatSession session) {
+            ChatMessage message = new ChatMessage();
+            message.setId(new UUID(idHigh, idLow));
+            message.setSession(session);
+            message.setSenderId(fromCaregiver ? session.getCaregiver() : session.getPacilian());
+            message.setContent(content);
+            message.setCreatedAt(fromNanos(createdAt));
+            message.setEditedAt(editedAt != NO_TIME ? fromNanos(editedAt) : null);
+            message.setEdited(edited);
+            message.setDeleted(deleted);
+            message.setChangeSeq(changeSeq);
+            message.initState();
+            return message;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package id.ac.ui.cs.advprog.bechat.service;
+
+import id.ac.ui.cs.advprog.bechat.dto.ChatMessageEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * In-process fan-out of committed message events to parked SSE streams and long polls.
+ * Listeners are invoked on the publishing thread and must hand off any blocking work. They
+ * handle their own delivery failures, such as a rejected hand-off; anything that still escapes
+ * is logged with its stack trace and does not stop the other listeners.
+ */
+@Component
+public class SessionUpdateNotifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionUpdateNotifier.class);
+
+    private final ConcurrentMap<UUID, Set<Consumer<ChatMessageEvent>>> listeners = new ConcurrentHashMap<>();
+
+    /**
+     * Registers {@code listener} for events of {@code sessionId} and returns the action that
+     * removes it again. The returned action is idempotent.
+     */
+    public Runnable subscribe(UUID sessionId, Consumer<ChatMessageEvent> listener) {
+        listeners.computeIfAbsent(sessionId, id -> ConcurrentHashMap.newKeySet()).add(listener);
+        return () -> listeners.computeIfPresent(sessionId, (id, set) -> {
+            set.remove(listener);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageEvent(ChatMessageEvent event) {
+        Set<Consumer<ChatMessageEvent>> sessionListeners = listeners.get(event.getSessionId());
+        if (sessionListeners == null) {
+            return;
+        }
+        for (Consumer<ChatMessageEvent> listener : sessionListeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException e) {
+                logger.error("Session listener failed for session {}", event.getSessionId(), e);
+            }
+        }
+    }
+
+    public int subscriberCount() {
+        return listeners.values().stream().mapToInt(Set::size).sum();
+    }
+}
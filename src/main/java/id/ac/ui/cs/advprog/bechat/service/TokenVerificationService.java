@@ -2,9 +2,11 @@ package id.ac.ui.cs.advprog.bechat.service;
 
 import id.ac.ui.cs.advprog.bechat.model.enums.Role;
 import id.ac.ui.cs.advprog.bechat.dto.TokenVerificationResponseDto;
+import id.ac.ui.cs.advprog.bechat.dto.UserPrincipal;
 import id.ac.ui.cs.advprog.bechat.exception.AuthenticationException;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
@@ -16,30 +18,50 @@ import org.springframework.stereotype.Service;
 import java.security.Key;
 import java.util.Date;
 import java.util.UUID;
-import java.util.function.Function;
 
 @Service
 public class TokenVerificationService {
 
     private static final Logger logger = LoggerFactory.getLogger(TokenVerificationService.class);
 
-    @Value("${jwt.secret}")
-    private String secretKey;
+    // Key decoding and parser construction happen once; JwtParser is immutable and thread-safe.
+    private final JwtParser jwtParser;
+    private final VerifiedTokenCache verifiedTokenCache;
 
-    public TokenVerificationResponseDto verifyToken(String token) {
+    public TokenVerificationService(@Value("${jwt.secret}") String secretKey, VerifiedTokenCache verifiedTokenCache) {
+        this.verifiedTokenCache = verifiedTokenCache;
+        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
+        Key signInKey = Keys.hmacShaKeyFor(keyBytes);
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signInKey)
+                .build();
+    }
+
+    /**
+     * Returns the principal for a previously verified token from {@link VerifiedTokenCache},
+     * otherwise parses the token and checks its signature and expiry exactly once.
+     */
+    public UserPrincipal authenticate(String token) {
+        UserPrincipal cached = verifiedTokenCache.get(token);
+        if (cached != null) {
+            return cached;
+        }
+
+        UserPrincipal principal = parseAndVerify(token);
+        verifiedTokenCache.put(token, principal);
+        return principal;
+    }
+
+    private UserPrincipal parseAndVerify(String token) {
         try {
-            if (isTokenExpired(token)) {
-                logger.warn("Token is expired");
-                throw new AuthenticationException("Token has expired");
-            }
+            Claims claims = jwtParser.parseClaimsJws(token).getBody();
 
-            Claims claims = extractAllClaims(token);
-            String email = extractUsername(token);
             String userId = claims.get("id", String.class);
             String roleStr = claims.get("role", String.class);
             String name = claims.get("name", String.class);
+            Date expiration = claims.getExpiration();
 
-            if (userId == null || roleStr == null || name == null) {
+            if (userId == null || roleStr == null || name == null || expiration == null) {
                 logger.warn("Missing claims in token: userId={}, role={}, name={}", userId, roleStr, name);
                 throw new AuthenticationException("Invalid token: missing required claims");
             }
@@ -49,37 +71,38 @@ public class TokenVerificationService {
                 throw new AuthenticationException("Invalid role in token: " + roleStr);
             }
 
-            Role role = Role.valueOf(roleStr);
-            long expiresIn = getRemainingTime(token);
-
-            logger.info("Token verified successfully for userId={}, role={}, email={}", userId, role, email);
-
-            return TokenVerificationResponseDto.builder()
-                    .valid(true)
-                    .userId(userId)
-                    .email(email)
-                    .role(role)
-                    .expiresIn(expiresIn)
+            UserPrincipal principal = UserPrincipal.builder()
+                    .userId(UUID.fromString(userId))
+                    .email(claims.getSubject())
                     .name(name)
+                    .role(Role.valueOf(roleStr))
+                    .expiresAt(expiration.toInstant())
                     .build();
 
+            logger.debug("Token verified successfully for userId={}, role={}", principal.getUserId(), principal.getRole());
+            return principal;
+
         } catch (ExpiredJwtException e) {
             logger.warn("Token expired: {}", e.getMessage());
             throw new AuthenticationException("Token has expired");
+        } catch (AuthenticationException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Token verification failed: {}", e.getMessage(), e);
             throw new AuthenticationException("Error verifying token: " + e.getMessage());
         }
     }
 
+    public TokenVerificationResponseDto verifyToken(String token) {
+        return authenticate(token).toVerificationResponse();
+    }
+
     public UUID getUserIdFromToken(String token) {
-        UUID userId = UUID.fromString(verifyToken(token).getUserId());
-        return userId;
+        return authenticate(token).getUserId();
     }
 
     public Role getRoleFromToken(String token) {
-        Role role = verifyToken(token).getRole();
-        return role;
+        return authenticate(token).getRole();
     }
 
     public void validateRole(String token, Role expectedRole) {
@@ -90,50 +113,4 @@ public class TokenVerificationService {
         }
         logger.info("Access granted for role {}", userRole);
     }
-
-    private String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
-    }
-
-    private <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
-    }
-
-    private Claims extractAllClaims(String token) throws ExpiredJwtException {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSignInKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
-
-    private Key getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
-        return Keys.hmacShaKeyFor(keyBytes);
-    }
-
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
-    }
-
-    private boolean isTokenExpired(String token) {
-        try {
-            return extractExpiration(token).before(new Date());
-        } catch (ExpiredJwtException e) {
-            logger.warn("Token already expired while checking expiration");
-            return true;
-        }
-    }
-
-    private long getRemainingTime(String token) {
-        try {
-            Date expiration = extractExpiration(token);
-            long remainingTime = expiration.getTime() - System.currentTimeMillis();
-            return Math.max(0, remainingTime);
-        } catch (ExpiredJwtException e) {
-            logger.warn("Token already expired while calculating remaining time");
-            return 0;
-        }
-    }
 }
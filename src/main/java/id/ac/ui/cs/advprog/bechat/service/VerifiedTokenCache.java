@@ -0,0 +1,89 @@
+package id.ac.ui.cs.advprog.bechat.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import id.ac.ui.cs.advprog.bechat.dto.UserPrincipal;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * Bounded cache of successfully verified tokens, keyed by the SHA-256 digest of the token
+ * so raw bearer tokens are never kept in memory. An entry lives until the earlier of the
+ * token's {@code exp} and the configured TTL.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private final Cache<String, UserPrincipal> cache;
+
+    @Autowired
+    public VerifiedTokenCache(@Value("${auth.token.cache.max-size:10000}") long maxSize,
+                              @Value("${auth.token.cache.ttl:5m}") Duration ttl) {
+        this(maxSize, ttl, Ticker.systemTicker());
+    }
+
+    VerifiedTokenCache(long maxSize, Duration ttl, Ticker ticker) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new TokenExpiry(ttl))
+                .ticker(ticker)
+                .recordStats()
+                .build();
+    }
+
+    public UserPrincipal get(String token) {
+        return cache.getIfPresent(digest(token));
+    }
+
+    public void put(String token, UserPrincipal principal) {
+        cache.put(digest(token), principal);
+    }
+
+    public Cache<String, UserPrincipal> getNativeCache() {
+        return cache;
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            byte[] hash = sha256.digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static final class TokenExpiry implements Expiry<String, UserPrincipal> {
+
+        private final long ttlNanos;
+
+        private TokenExpiry(Duration ttl) {
+            this.ttlNanos = ttl.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(String key, UserPrincipal principal, long currentTime) {
+            long untilExpiry = Duration.ofMillis(principal.getRemainingMillis()).toNanos();
+            return Math.min(ttlNanos, untilExpiry);
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, UserPrincipal principal, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, principal, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, UserPrincipal principal, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
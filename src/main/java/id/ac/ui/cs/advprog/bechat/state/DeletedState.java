@@ -4,13 +4,17 @@ import id.ac.ui.cs.advprog.bechat.model.ChatMessage;
 
 public class DeletedState implements MessageState {
 
+    public static final String DELETED_CONTENT = "Pesan telah dihapus";
+    public static final String EDIT_REJECTED = "Pesan telah dihapus dan tidak bisa diedit.";
+    public static final String DELETE_REJECTED = "Pesan sudah dihapus.";
+
     @Override
     public void edit(ChatMessage message, String newContent) {
-        throw new IllegalStateException("Pesan telah dihapus dan tidak bisa diedit.");
+        throw new IllegalStateException(EDIT_REJECTED);
     }
 
     @Override
     public void delete(ChatMessage message) {
-        throw new IllegalStateException("Pesan sudah dihapus.");
+        throw new IllegalStateException(DELETE_REJECTED);
     }
 }
@@ -14,7 +14,7 @@ public class NormalState implements MessageState {
 
     @Override
     public void delete(ChatMessage message) {
-        message.setContent("Pesan telah dihapus");
+        message.setContent(DeletedState.DELETED_CONTENT);
         message.setDeleted(true);
         message.setState(new DeletedState());
     }
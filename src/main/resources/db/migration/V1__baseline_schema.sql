@@ -0,0 +1,60 @@
+-- Schema as it was previously generated by Hibernate (ddl-auto=update). Every statement is
+-- guarded, so databases that already have these objects are taken over without changes.
+
+CREATE TABLE IF NOT EXISTS chat_session (
+    id               uuid         NOT NULL PRIMARY KEY,
+    pacilian         uuid         NOT NULL,
+    pacilian_name    varchar(255) NOT NULL,
+    caregiver        uuid         NOT NULL,
+    caregiver_name   varchar(255) NOT NULL,
+    created_at       timestamp    NOT NULL,
+    participant_low  uuid,
+    participant_high uuid
+);
+
+-- Databases created before the canonical participant pair existed lack these columns.
+ALTER TABLE chat_session ADD COLUMN IF NOT EXISTS participant_low uuid;
+ALTER TABLE chat_session ADD COLUMN IF NOT EXISTS participant_high uuid;
+
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'uk_chat_session_participants') THEN
+        ALTER TABLE chat_session
+            ADD CONSTRAINT uk_chat_session_participants UNIQUE (participant_low, participant_high);
+    END IF;
+END
+$$;
+
+CREATE TABLE IF NOT EXISTS chat_message (
+    id         uuid         NOT NULL PRIMARY KEY,
+    session_id uuid         NOT NULL,
+    sender_id  uuid         NOT NULL,
+    content    varchar(255) NOT NULL,
+    created_at timestamp    NOT NULL,
+    edited_at  timestamp,
+    edited     boolean      NOT NULL,
+    deleted    boolean      NOT NULL
+);
+
+-- Hibernate named the foreign key after a hash, so look for any FK on the column instead.
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint
+                   WHERE conrelid = 'chat_message'::regclass AND contype = 'f') THEN
+        ALTER TABLE chat_message
+            ADD CONSTRAINT fk_chat_message_session FOREIGN KEY (session_id) REFERENCES chat_session (id);
+    END IF;
+END
+$$;
+
+CREATE INDEX IF NOT EXISTS idx_chat_message_session_created_id ON chat_message (session_id, created_at, id);
+
+CREATE TABLE IF NOT EXISTS chat_read_state (
+    session_id           uuid      NOT NULL,
+    user_id              uuid      NOT NULL,
+    last_read_message_id uuid,
+    last_read_at         timestamp,
+    unread_count         integer   NOT NULL,
+    updated_at           timestamp NOT NULL,
+    PRIMARY KEY (session_id, user_id)
+);
@@ -0,0 +1,11 @@
+-- chat_message: every message read (findBySessionIdOrderByCreatedAtAsc, the keyset pages, the
+-- inbox's last-message probe and the unread recount) is a range scan on
+-- idx_chat_message_session_created_id from V1, so nothing is added there.
+
+-- chat_session: findByPacilianAndCaregiver and the pacilian side of the inbox's
+-- "pacilian = ? OR caregiver = ?" filter share one composite index; the caregiver side gets its own.
+CREATE INDEX IF NOT EXISTS idx_chat_session_pacilian_caregiver ON chat_session (pacilian, caregiver);
+CREATE INDEX IF NOT EXISTS idx_chat_session_caregiver ON chat_session (caregiver);
+
+-- Superseded by idx_chat_session_pacilian_caregiver.
+DROP INDEX IF EXISTS idx_chat_session_pacilian;
@@ -0,0 +1,21 @@
+-- Sessions created before the canonical participant pair was introduced have NULL pair
+-- columns, so findSession and the create upsert cannot see them and a second session for the
+-- same two people would be created. Give each such pair its oldest session, unless a newer
+-- session already holds the pair; any other duplicates keep NULL and stay readable as before.
+WITH ranked AS (
+    SELECT id,
+           LEAST(pacilian, caregiver)    AS low,
+           GREATEST(pacilian, caregiver) AS high,
+           row_number() OVER (PARTITION BY LEAST(pacilian, caregiver), GREATEST(pacilian, caregiver)
+                              ORDER BY created_at, id) AS rn
+    FROM chat_session
+    WHERE participant_low IS NULL
+)
+UPDATE chat_session s
+SET participant_low = r.low,
+    participant_high = r.high
+FROM ranked r
+WHERE s.id = r.id
+  AND r.rn = 1
+  AND NOT EXISTS (SELECT 1 FROM chat_session held
+                  WHERE held.participant_low = r.low AND held.participant_high = r.high);
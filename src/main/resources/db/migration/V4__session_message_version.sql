@@ -0,0 +1,3 @@
+-- Bumped in the same transaction as every message send, edit and delete, so a conversation read
+-- can be answered with 304 Not Modified from this one column.
+ALTER TABLE chat_session ADD COLUMN IF NOT EXISTS message_version bigint NOT NULL DEFAULT 0;
@@ -0,0 +1,20 @@
+-- change_seq is the session's message_version at the time a message was last inserted, edited or
+-- deleted. Versions are taken under the chat_session row lock, so within a session they become
+-- visible in order and a client can resume from the last one it saw.
+ALTER TABLE chat_message ADD COLUMN IF NOT EXISTS change_seq bigint NOT NULL DEFAULT 0;
+
+WITH numbered AS (
+    SELECT id, row_number() OVER (PARTITION BY session_id ORDER BY created_at, id) AS seq
+    FROM chat_message
+)
+UPDATE chat_message m
+SET change_seq = numbered.seq
+FROM numbered
+WHERE m.id = numbered.id;
+
+UPDATE chat_session s
+SET message_version = GREATEST(s.message_version, latest.change_seq)
+FROM (SELECT session_id, max(change_seq) AS change_seq FROM chat_message GROUP BY session_id) latest
+WHERE s.id = latest.session_id;
+
+CREATE INDEX IF NOT EXISTS idx_chat_message_session_change_seq ON chat_message (session_id, change_seq, id);
@@ -0,0 +1,9 @@
+-- Full-text search over message content. An expression index rather than a stored tsvector
+-- column: it is maintained by the same INSERT/UPDATE that sends, edits or deletes a message, and
+-- message pages (SELECT * FROM chat_message) do not carry a vector they never use. Deleted
+-- messages fall out of the partial index, so their old content is no longer searchable.
+-- The 'simple' configuration only lowercases; conversations mix Indonesian, English and
+-- medical terms, which no single stemmer handles.
+CREATE INDEX IF NOT EXISTS idx_chat_message_content_search
+    ON chat_message USING gin (to_tsvector('simple', content))
+    WHERE NOT deleted;
@@ -0,0 +1,63 @@
+-- Range-partitions chat_message by month of created_at. Recent-message queries carry a lower
+-- bound on created_at, so they only touch the newest partitions however long the history
+-- grows; old months are later moved to the cold tier by MessagePartitionMaintenance.
+--
+-- The table is rebuilt: rows are copied into the partitioned table and the indexes are built
+-- afterwards. Run this in a maintenance window on large databases.
+--
+-- A partitioned table's primary key must contain the partition key, so it becomes
+-- (id, created_at). Ids are random UUIDs assigned by the application and stay unique.
+
+ALTER TABLE chat_message RENAME TO chat_message_unpartitioned;
+
+CREATE TABLE chat_message (
+    id         uuid         NOT NULL,
+    session_id uuid         NOT NULL,
+    sender_id  uuid         NOT NULL,
+    content    varchar(255) NOT NULL,
+    created_at timestamp    NOT NULL,
+    edited_at  timestamp,
+    edited     boolean      NOT NULL,
+    deleted    boolean      NOT NULL,
+    change_seq bigint       NOT NULL DEFAULT 0
+) PARTITION BY RANGE (created_at);
+
+-- One partition per month from the oldest message to three months ahead; the maintenance job
+-- keeps creating them ahead of time. The default partition only catches rows if it falls behind.
+DO $$
+DECLARE
+    month timestamp := date_trunc('month', COALESCE((SELECT min(created_at) FROM chat_message_unpartitioned), now()));
+    last  timestamp := date_trunc('month', now()) + interval '3 months';
+BEGIN
+    WHILE month <= last LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF chat_message FOR VALUES FROM (%L) TO (%L)',
+                       'chat_message_p' || to_char(month, 'YYYYMM'), month, month + interval '1 month');
+        month := month + interval '1 month';
+    END LOOP;
+END
+$$;
+
+CREATE TABLE chat_message_default PARTITION OF chat_message DEFAULT;
+
+INSERT INTO chat_message (id, session_id, sender_id, content, created_at, edited_at, edited, deleted, change_seq)
+SELECT id, session_id, sender_id, content, created_at, edited_at, edited, deleted, change_seq
+FROM chat_message_unpartitioned;
+
+DROP TABLE chat_message_unpartitioned;
+
+ALTER TABLE chat_message ADD CONSTRAINT chat_message_pkey PRIMARY KEY (id, created_at);
+ALTER TABLE chat_message
+    ADD CONSTRAINT fk_chat_message_session FOREIGN KEY (session_id) REFERENCES chat_session (id);
+CREATE INDEX idx_chat_message_session_created_id ON chat_message (session_id, created_at, id);
+CREATE INDEX idx_chat_message_session_change_seq ON chat_message (session_id, change_seq, id);
+CREATE INDEX idx_chat_message_content_search ON chat_message USING gin (to_tsvector('simple', content))
+    WHERE NOT deleted;
+
+-- Partitions that have been moved to the cold tier
+CREATE TABLE chat_message_cold_partition (
+    partition_name varchar(63) NOT NULL PRIMARY KEY,
+    range_start    timestamp   NOT NULL,
+    range_end      timestamp   NOT NULL,
+    tablespace     varchar(63),
+    archived_at    timestamp   NOT NULL
+);
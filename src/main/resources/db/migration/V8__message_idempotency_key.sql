@@ -0,0 +1,15 @@
+-- Client-supplied message ids, so a retried send returns the message the first attempt created
+-- instead of inserting another. A partitioned table's unique constraints must include the
+-- partition key, so chat_message cannot enforce one on the client id itself; each claim is a
+-- row here instead, inserted in the same transaction as the message it points to.
+-- Rows are purged after chat.message.client-id.retention; created_at also bounds the lookup of
+-- the original message to the partitions it can be in.
+CREATE TABLE chat_message_idempotency (
+    sender_id         uuid      NOT NULL,
+    client_message_id uuid      NOT NULL,
+    message_id        uuid      NOT NULL,
+    created_at        timestamp NOT NULL,
+    PRIMARY KEY (sender_id, client_message_id)
+);
+
+CREATE INDEX idx_chat_message_idempotency_created_at ON chat_message_idempotency (created_at);
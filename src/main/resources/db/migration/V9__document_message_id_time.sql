@@ -0,0 +1,10 @@
+-- Supersedes the note in V7 that message ids are random UUIDs. Since partition pruning on
+-- lookups by id was added, the application assigns version 7 UUIDs (ChatMessage.newId), whose
+-- leading 48 bits are the generation time in epoch milliseconds. Lookups by id derive a
+-- created_at range from that time (ChatMessageRepository.createdFrom/createdTo) and read only the
+-- one or two partitions the message can be in. Ids are still unique on their own; rows written
+-- before the change keep their random version 4 ids and are looked up across all partitions.
+-- V7 itself is not edited, because Flyway would reject the changed checksum of an applied
+-- migration.
+COMMENT ON COLUMN chat_message.id IS
+    'UUIDv7 assigned by the application; its timestamp bounds created_at for partition pruning. Older rows may hold random UUIDv4 ids.';
@@ -0,0 +1,93 @@
+package id.ac.ui.cs.advprog.bechat.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncConfigTest {
+
+    private final AsyncConfig asyncConfig = new AsyncConfig();
+
+    @Test
+    void testTaskExecutor_shouldPickExecutorByMode() {
+        assertInstanceOf(ThreadPoolTaskExecutor.class, asyncConfig.taskExecutor("platform", 10));
+        assertInstanceOf(SimpleAsyncTaskExecutor.class, asyncConfig.taskExecutor("virtual", 10));
+        assertThrows(IllegalArgumentException.class, () -> asyncConfig.taskExecutor("fibers", 10));
+    }
+
+    @Test
+    void testPlatformExecutor_shouldRejectBeyondPoolAndQueue() throws Exception {
+        ThreadPoolTaskExecutor executor = AsyncConfig.platformExecutor();
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            assertThrows(TaskRejectedException.class, () -> {
+                for (int i = 0; i < 111; i++) {
+                    executor.execute(() -> awaitQuietly(release));
+                }
+            });
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testVirtualExecutor_shouldAcceptEverythingAndCapConcurrency() throws Exception {
+        SimpleAsyncTaskExecutor executor = AsyncConfig.virtualExecutor(4);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                assertTrue(Thread.currentThread().isVirtual());
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleepQuietly(2);
+                running.decrementAndGet();
+            }, executor));
+        }
+
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+        assertTrue(peak.get() <= 4, "peak concurrency was " + peak.get());
+        executor.close();
+    }
+
+    @Test
+    void testConcurrencyLimitingTaskDecorator_shouldReleasePermitWhenTaskFails() {
+        ConcurrencyLimitingTaskDecorator decorator = new ConcurrencyLimitingTaskDecorator(1);
+
+        Runnable failing = decorator.decorate(() -> {
+            throw new IllegalStateException("boom");
+        });
+
+        assertThrows(IllegalStateException.class, failing::run);
+        assertEquals(1, decorator.availablePermits());
+        assertThrows(IllegalArgumentException.class, () -> new ConcurrencyLimitingTaskDecorator(0));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package id.ac.ui.cs.advprog.bechat.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the two {@code chat.async.mode} executors under a burst of @Async-style calls that
+ * block on a simulated JDBC pool. Run with {@code gradle loadTest}; results are printed.
+ */
+class AsyncExecutorModeLoadTest {
+
+    private static final int REQUESTS = 2_000;
+    private static final int CONCURRENT_CALLERS = 400;
+    private static final int POOL_SIZE = 10;
+    private static final long QUERY_MILLIS = 5;
+
+    @Test
+    void compareThroughputAndTailLatency() throws Exception {
+        Result platform = run("platform", AsyncConfig.platformExecutor());
+        Result virtual = run("virtual", AsyncConfig.virtualExecutor(POOL_SIZE));
+
+        System.out.println(platform);
+        System.out.println(virtual);
+
+        assertEquals(0, virtual.rejected);
+        assertEquals(REQUESTS, virtual.completed);
+    }
+
+    private Result run(String mode, AsyncTaskExecutor executor) throws Exception {
+        Semaphore connections = new Semaphore(POOL_SIZE, true);
+        Semaphore callers = new Semaphore(CONCURRENT_CALLERS);
+        AtomicInteger rejected = new AtomicInteger();
+        long[] latencies = new long[REQUESTS];
+        AtomicInteger completed = new AtomicInteger();
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            callers.acquire();
+            int index = i;
+            long submitted = System.nanoTime();
+            try {
+                futures.add(CompletableFuture.runAsync(() -> {
+                    connections.acquireUninterruptibly();
+                    try {
+                        Thread.sleep(QUERY_MILLIS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        connections.release();
+                    }
+                    latencies[index] = System.nanoTime() - submitted;
+                    completed.incrementAndGet();
+                }, executor).whenComplete((ignored, error) -> callers.release()));
+            } catch (TaskRejectedException e) {
+                rejected.incrementAndGet();
+                callers.release();
+            }
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(2, TimeUnit.MINUTES);
+        long elapsed = System.nanoTime() - start;
+
+        long[] done = Arrays.stream(latencies).filter(latency -> latency > 0).sorted().toArray();
+        long p99 = done.length == 0 ? 0 : done[(int) Math.ceil(done.length * 0.99) - 1];
+        return new Result(mode, completed.get(), rejected.get(),
+                completed.get() / (elapsed / 1e9), TimeUnit.NANOSECONDS.toMillis(p99));
+    }
+
+    private record Result(String mode, int completed, int rejected, double throughput, long p99Millis) {
+        @Override
+        public String toString() {
+            return String.format("%-8s completed=%d rejected=%d throughput=%.0f req/s p99=%d ms",
+                    mode, completed, rejected, throughput, p99Millis);
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package id.ac.ui.cs.advprog.bechat.config;
 
-import id.ac.ui.cs.advprog.bechat.dto.TokenVerificationResponseDto;
+import id.ac.ui.cs.advprog.bechat.dto.UserPrincipal;
 import id.ac.ui.cs.advprog.bechat.model.enums.Role;
 import id.ac.ui.cs.advprog.bechat.service.TokenVerificationService;
 import jakarta.servlet.FilterChain;
@@ -10,6 +10,7 @@ import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.core.context.SecurityContextHolder;
 
+import java.time.Instant;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -32,16 +33,15 @@ class JwtAuthenticationFilterTest {
         String token = "validToken";
         UUID userId = UUID.randomUUID();
 
-        TokenVerificationResponseDto dto = TokenVerificationResponseDto.builder()
-                .valid(true)
-                .userId(userId.toString())
+        UserPrincipal principal = UserPrincipal.builder()
+                .userId(userId)
                 .role(Role.CAREGIVER)
                 .email("doctor@example.com")
                 .name("Dr. Panda")
-                .expiresIn(3600L)
+                .expiresAt(Instant.now().plusSeconds(3600))
                 .build();
 
-        when(tokenVerificationService.verifyToken(token)).thenReturn(dto);
+        when(tokenVerificationService.authenticate(token)).thenReturn(principal);
 
         MockHttpServletRequest request = new MockHttpServletRequest();
         request.addHeader("Authorization", "Bearer " + token);
@@ -52,10 +52,11 @@ class JwtAuthenticationFilterTest {
 
         var auth = SecurityContextHolder.getContext().getAuthentication();
         assertNotNull(auth);
-        assertEquals(userId.toString(), auth.getPrincipal());
+        assertSame(principal, auth.getPrincipal());
         assertTrue(auth.getAuthorities().stream()
                 .anyMatch(a -> a.getAuthority().equals("CAREGIVER")));
 
+        verify(tokenVerificationService, times(1)).authenticate(token);
         verify(filterChain, times(1)).doFilter(request, response);
     }
 
@@ -75,7 +76,7 @@ class JwtAuthenticationFilterTest {
     void testDoFilterInternal_withInvalidToken_shouldNotThrowException() throws Exception {
         String token = "invalidToken";
 
-        when(tokenVerificationService.verifyToken(token))
+        when(tokenVerificationService.authenticate(token))
                 .thenThrow(new RuntimeException("Invalid token"));
 
         MockHttpServletRequest request = new MockHttpServletRequest();
@@ -0,0 +1,39 @@
+package id.ac.ui.cs.advprog.bechat.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.cors.CorsConfiguration;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SecurityConfigTest {
+
+    private CorsConfiguration corsFor(String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest("OPTIONS", path);
+        return new SecurityConfig().corsConfigurationSource().getCorsConfiguration(request);
+    }
+
+    @Test
+    void testCors_shouldAllowConditionalGetHeaders() {
+        CorsConfiguration config = corsFor("/api/chat/session/123");
+
+        assertEquals(List.of(HttpHeaders.IF_NONE_MATCH),
+                config.checkHeaders(List.of(HttpHeaders.IF_NONE_MATCH)));
+        assertTrue(config.getExposedHeaders().contains(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void testCors_shouldAllowSseClientsToResume() {
+        CorsConfiguration config = corsFor("/api/chat/session/123/stream");
+
+        assertEquals(List.of("Last-Event-ID"), config.checkHeaders(List.of("Last-Event-ID")));
+    }
+
+    @Test
+    void testCors_shouldRejectUnlistedHeaders() {
+        assertNull(corsFor("/api/chat/session/123").checkHeaders(List.of("X-Forwarded-User")));
+    }
+}
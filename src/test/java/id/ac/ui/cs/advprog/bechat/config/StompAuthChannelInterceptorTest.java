@@ -0,0 +1,129 @@
+package id.ac.ui.cs.advprog.bechat.config;
+
+import id.ac.ui.cs.advprog.bechat.dto.UserPrincipal;
+import id.ac.ui.cs.advprog.bechat.exception.AuthenticationException;
+import id.ac.ui.cs.advprog.bechat.model.ChatSession;
+import id.ac.ui.cs.advprog.bechat.model.enums.Role;
+import id.ac.ui.cs.advprog.bechat.repository.ChatSessionRepository;
+import id.ac.ui.cs.advprog.bechat.service.TokenVerificationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class StompAuthChannelInterceptorTest {
+
+    private TokenVerificationService tokenVerificationService;
+    private ChatSessionRepository chatSessionRepository;
+    private StompAuthChannelInterceptor interceptor;
+    private final MessageChannel channel = mock(MessageChannel.class);
+
+    private final UUID userId = UUID.randomUUID();
+    private UserPrincipal principal;
+
+    @BeforeEach
+    void setUp() {
+        tokenVerificationService = mock(TokenVerificationService.class);
+        chatSessionRepository = mock(ChatSessionRepository.class);
+        interceptor = new StompAuthChannelInterceptor(tokenVerificationService, chatSessionRepository);
+        principal = UserPrincipal.builder()
+                .userId(userId)
+                .email("pacilian@example.com")
+                .name("Pacilian")
+                .role(Role.PACILIAN)
+                .expiresAt(Instant.now().plusSeconds(600))
+                .build();
+    }
+
+    private Message<byte[]> frame(StompHeaderAccessor accessor) {
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private StompHeaderAccessor authenticated(StompCommand command) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setUser(new UsernamePasswordAuthenticationToken(principal, null, List.of()));
+        return accessor;
+    }
+
+    @Test
+    void testConnect_withValidToken_shouldAttachPrincipal() {
+        when(tokenVerificationService.authenticate("valid-token")).thenReturn(principal);
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.addNativeHeader("Authorization", "Bearer valid-token");
+
+        Message<?> result = interceptor.preSend(frame(accessor), channel);
+
+        StompHeaderAccessor resultAccessor = StompHeaderAccessor.wrap(result);
+        UsernamePasswordAuthenticationToken user = (UsernamePasswordAuthenticationToken) resultAccessor.getUser();
+        assertNotNull(user);
+        assertSame(principal, user.getPrincipal());
+    }
+
+    @Test
+    void testConnect_withoutToken_shouldBeRejected() {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+
+        assertThrows(AuthenticationException.class, () -> interceptor.preSend(frame(accessor), channel));
+        verifyNoInteractions(tokenVerificationService);
+    }
+
+    @Test
+    void testSubscribe_toOwnSession_shouldPass() {
+        UUID sessionId = UUID.randomUUID();
+        ChatSession session = new ChatSession();
+        session.setId(sessionId);
+        session.setPacilian(userId);
+        session.setCaregiver(UUID.randomUUID());
+        when(chatSessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+
+        StompHeaderAccessor accessor = authenticated(StompCommand.SUBSCRIBE);
+        accessor.setDestination("/topic/session/" + sessionId);
+
+        assertNotNull(interceptor.preSend(frame(accessor), channel));
+    }
+
+    @Test
+    void testSubscribe_toForeignSession_shouldBeRejected() {
+        UUID sessionId = UUID.randomUUID();
+        ChatSession session = new ChatSession();
+        session.setId(sessionId);
+        session.setPacilian(UUID.randomUUID());
+        session.setCaregiver(UUID.randomUUID());
+        when(chatSessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+
+        StompHeaderAccessor accessor = authenticated(StompCommand.SUBSCRIBE);
+        accessor.setDestination("/topic/session/" + sessionId);
+
+        assertThrows(SecurityException.class, () -> interceptor.preSend(frame(accessor), channel));
+    }
+
+    @Test
+    void testSubscribe_toUnknownDestination_shouldBeRejected() {
+        StompHeaderAccessor accessor = authenticated(StompCommand.SUBSCRIBE);
+        accessor.setDestination("/topic/session/not-a-uuid");
+
+        assertThrows(SecurityException.class, () -> interceptor.preSend(frame(accessor), channel));
+        verifyNoInteractions(chatSessionRepository);
+    }
+
+    @Test
+    void testSubscribe_withoutConnectPrincipal_shouldBeRejected() {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setDestination("/topic/session/" + UUID.randomUUID());
+
+        assertThrows(AuthenticationException.class, () -> interceptor.preSend(frame(accessor), channel));
+    }
+}
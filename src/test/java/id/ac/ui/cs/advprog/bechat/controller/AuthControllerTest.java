@@ -1,8 +1,9 @@
 package id.ac.ui.cs.advprog.bechat.controller;
 
-import id.ac.ui.cs.advprog.bechat.dto.TokenVerificationResponseDto;
+import id.ac.ui.cs.advprog.bechat.dto.UserPrincipal;
 import id.ac.ui.cs.advprog.bechat.model.enums.Role;
 import id.ac.ui.cs.advprog.bechat.service.TokenVerificationService;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -11,8 +12,12 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -30,30 +35,38 @@ class AuthControllerTest {
 
     private static final String VALID_TOKEN = "Bearer faketoken";
 
-    private TokenVerificationResponseDto validResponse;
+    private UserPrincipal validPrincipal;
 
     @BeforeEach
     void setUp() {
-        validResponse = TokenVerificationResponseDto.builder()
-                .valid(true)
-                .userId(UUID.randomUUID().toString())
+        validPrincipal = UserPrincipal.builder()
+                .userId(UUID.randomUUID())
                 .email("test@example.com")
                 .role(Role.PACILIAN)
                 .name("Test User")
-                .expiresIn(3600L)
+                .expiresAt(Instant.now().plusSeconds(3600))
                 .build();
     }
 
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
     @Test
     void testVerifyToken_shouldReturn200WhenTokenValid() throws Exception {
-        Mockito.when(tokenVerificationService.verifyToken("faketoken")).thenReturn(validResponse);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(validPrincipal, null, List.of()));
 
         mockMvc.perform(post("/api/auth/verify")
                         .header(HttpHeaders.AUTHORIZATION, VALID_TOKEN))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.status").value(200))
                 .andExpect(jsonPath("$.message").value("Token verified successfully"))
-                .andExpect(jsonPath("$.data.email").value("test@example.com"));
+                .andExpect(jsonPath("$.data.email").value("test@example.com"))
+                .andExpect(jsonPath("$.data.userId").value(validPrincipal.getUserId().toString()));
+
+        Mockito.verifyNoInteractions(tokenVerificationService);
     }
 
     @Test
@@ -66,12 +79,7 @@ class AuthControllerTest {
 
     @Test
     void testVerifyToken_shouldReturn401WhenInvalidToken() throws Exception {
-        TokenVerificationResponseDto invalidResponse = TokenVerificationResponseDto.builder()
-                .valid(false)
-                .build();
-
-        Mockito.when(tokenVerificationService.verifyToken("faketoken")).thenReturn(invalidResponse);
-
+        // The filter leaves the SecurityContext empty when verification fails.
         mockMvc.perform(post("/api/auth/verify")
                         .header(HttpHeaders.AUTHORIZATION, VALID_TOKEN))
                 .andExpect(status().isUnauthorized())
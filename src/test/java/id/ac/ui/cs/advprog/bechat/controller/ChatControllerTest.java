@@ -1,15 +1,26 @@
 package id.ac.ui.cs.advprog.bechat.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import id.ac.ui.cs.advprog.bechat.dto.ChatChangesPage;
+import id.ac.ui.cs.advprog.bechat.dto.ChatMessagePage;
 import id.ac.ui.cs.advprog.bechat.dto.EditMessageRequest;
+import id.ac.ui.cs.advprog.bechat.dto.MessageCursor;
+import id.ac.ui.cs.advprog.bechat.dto.MessageSearchHit;
+import id.ac.ui.cs.advprog.bechat.dto.MessageSearchPage;
+import id.ac.ui.cs.advprog.bechat.dto.SendMessageBatchRequest;
 import id.ac.ui.cs.advprog.bechat.dto.SendMessageRequest;
-import id.ac.ui.cs.advprog.bechat.dto.TokenVerificationResponseDto;
+import id.ac.ui.cs.advprog.bechat.dto.SendMessageResult;
+import id.ac.ui.cs.advprog.bechat.dto.UserPrincipal;
 import id.ac.ui.cs.advprog.bechat.model.ChatMessage;
 import id.ac.ui.cs.advprog.bechat.model.ChatSession;
 import id.ac.ui.cs.advprog.bechat.model.enums.Role;
 import id.ac.ui.cs.advprog.bechat.service.ChatService;
 import id.ac.ui.cs.advprog.bechat.service.TokenVerificationService;
+import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -18,16 +29,25 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import java.time.Instant;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
+import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -49,6 +69,12 @@ public class ChatControllerTest {
     @MockBean
     private MeterRegistry meterRegistry;
 
+    @MockBean(name = "conditionalReadNotModifiedCounter")
+    private Counter conditionalReadNotModifiedCounter;
+
+    @MockBean(name = "conditionalReadModifiedCounter")
+    private Counter conditionalReadModifiedCounter;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -69,14 +95,19 @@ public class ChatControllerTest {
         dummyMessage.setDeleted(false);
         
 
-        Mockito.when(tokenVerificationService.verifyToken(DUMMY_TOKEN))
-                .thenReturn(TokenVerificationResponseDto.builder()
-                        .userId(dummyUserId.toString())
-                        .valid(true)
-                        .role(Role.PACILIAN)
-                        .email("test@example.com")
-                        .expiresIn(3600L)
-                        .build());
+        UserPrincipal principal = UserPrincipal.builder()
+                .userId(dummyUserId)
+                .role(Role.PACILIAN)
+                .email("test@example.com")
+                .expiresAt(Instant.now().plusSeconds(3600))
+                .build();
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, List.of()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
     }
 
     @Test
@@ -100,6 +131,45 @@ public class ChatControllerTest {
                 .andExpect(jsonPath("$.data.content", is("Halo Dunia")));
     }
 
+    @Test
+    void testSendMessageBatch() throws Exception {
+        SendMessageRequest item = new SendMessageRequest();
+        item.setSessionId(UUID.randomUUID());
+        item.setContent("Halo Dunia");
+        SendMessageBatchRequest request = new SendMessageBatchRequest();
+        request.setMessages(List.of(item, item));
+
+        Mockito.when(chatService.sendMessages(anyList(), eq(dummyUserId)))
+                .thenReturn(CompletableFuture.completedFuture(List.of(
+                        SendMessageResult.created(0, dummyMessage),
+                        SendMessageResult.rejected(1, "Session not found"))));
+
+        MvcResult result = mockMvc.perform(post("/api/chat/send/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].status", is("CREATED")))
+                .andExpect(jsonPath("$.data[0].message.content", is("Halo Dunia")))
+                .andExpect(jsonPath("$.data[0].message.new").doesNotExist())
+                .andExpect(jsonPath("$.data[1].status", is("REJECTED")))
+                .andExpect(jsonPath("$.data[1].error", is("Session not found")));
+    }
+
+    @Test
+    void testSendMessageBatch_empty_shouldReturnBadRequest() throws Exception {
+        SendMessageBatchRequest request = new SendMessageBatchRequest();
+        request.setMessages(List.of());
+
+        mockMvc.perform(post("/api/chat/send/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void testEditMessage() throws Exception {
         UUID messageId = UUID.randomUUID();
@@ -157,8 +227,15 @@ public class ChatControllerTest {
         dummySession.setMessages(messages);
         dummyMessage.setSession(dummySession);
 
-        Mockito.when(chatService.getMessages(eq(sessionId), eq(dummyUserId)))
-                .thenReturn(CompletableFuture.completedFuture(messages));
+        ChatMessagePage page = ChatMessagePage.builder()
+                .session(dummySession)
+                .messages(messages)
+                .prevCursor("older")
+                .nextCursor("newer")
+                .build();
+
+        Mockito.when(chatService.getMessagePage(eq(sessionId), eq(dummyUserId), isNull(), isNull(), eq(50)))
+                .thenReturn(CompletableFuture.completedFuture(page));
 
         MvcResult result = mockMvc.perform(get("/api/chat/session/{id}", sessionId)
                         .header("Authorization", "Bearer " + DUMMY_TOKEN))
@@ -169,7 +246,362 @@ public class ChatControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.data.messages[0].content", is("Halo Dunia")))
                 .andExpect(jsonPath("$.data.pacilianName", is("Cleo")))
-                .andExpect(jsonPath("$.data.caregiverName", is("Dr. Panda")));
+                .andExpect(jsonPath("$.data.caregiverName", is("Dr. Panda")))
+                .andExpect(jsonPath("$.data.prevCursor", is("older")))
+                .andExpect(jsonPath("$.data.nextCursor", is("newer")))
+                .andExpect(header().string("ETag", "\"v0\""));
+    }
+
+    @Test
+    void testSearchMessages() throws Exception {
+        MessageSearchHit hit = new MessageSearchHit(UUID.randomUUID(), UUID.randomUUID(), dummyUserId,
+                "Demam sejak kemarin", new Date(), "Cleo", "Dr. Panda", 0.6f);
+        Mockito.when(chatService.searchMessages(dummyUserId, "demam", 0, 20))
+                .thenReturn(CompletableFuture.completedFuture(new MessageSearchPage(List.of(hit), 0, 20, false)));
+
+        MvcResult result = mockMvc.perform(get("/api/chat/search").param("q", "demam"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.hits[0].content", is("Demam sejak kemarin")))
+                .andExpect(jsonPath("$.data.hits[0].caregiverName", is("Dr. Panda")))
+                .andExpect(jsonPath("$.data.hasNext", is(false)));
+    }
+
+    @Test
+    void testSearchMessages_withoutQuery_shouldReturnBadRequest() throws Exception {
+        Mockito.when(chatService.searchMessages(dummyUserId, null, 0, 20))
+                .thenThrow(new IllegalArgumentException("Search query must not be empty"));
+
+        mockMvc.perform(get("/api/chat/search"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testGetChanges_shouldPassTokenThrough() throws Exception {
+        UUID sessionId = UUID.randomUUID();
+        dummyMessage.setEdited(true);
+        ChatChangesPage page = ChatChangesPage.builder()
+                .sessionId(sessionId)
+                .changes(List.of(dummyMessage))
+                .nextToken("token-2")
+                .hasMore(false)
+                .build();
+
+        Mockito.when(chatService.getChanges(sessionId, dummyUserId, "token-1", 100))
+                .thenReturn(CompletableFuture.completedFuture(page));
+
+        MvcResult result = mockMvc.perform(get("/api/chat/session/{id}/changes", sessionId)
+                        .param("since", "token-1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.changes[0].content", is("Halo Dunia")))
+                .andExpect(jsonPath("$.data.changes[0].edited", is(true)))
+                .andExpect(jsonPath("$.data.changes[0].changeSeq").doesNotExist())
+                .andExpect(jsonPath("$.data.nextToken", is("token-2")))
+                .andExpect(jsonPath("$.data.hasMore", is(false)));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void testStreamTranscript_shouldWriteEveryMessageInsideEnvelope() throws Exception {
+        ChatSession session = new ChatSession();
+        session.setId(UUID.randomUUID());
+        session.setPacilian(dummyUserId);
+        session.setPacilianName("Pacilian");
+        session.setCaregiver(UUID.randomUUID());
+        session.setCaregiverName("Caregiver");
+        session.setMessageVersion(9);
+        ChatMessage second = new ChatMessage();
+        second.setId(UUID.randomUUID());
+        second.setSenderId(session.getCaregiver());
+        second.setContent("Balasan");
+        second.setCreatedAt(new Date());
+
+        Mockito.when(chatService.getParticipantSession(session.getId(), dummyUserId)).thenReturn(session);
+        Mockito.doAnswer(invocation -> {
+            Consumer<ChatMessage> action = invocation.getArgument(1);
+            action.accept(dummyMessage);
+            action.accept(second);
+            return null;
+        }).when(chatService).forEachMessage(eq(session), any(Consumer.class));
+
+        MvcResult result = mockMvc.perform(get("/api/chat/session/{id}/transcript", session.getId()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v9\""))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.status", is(200)))
+                .andExpect(jsonPath("$.message", is("Messages retrieved")))
+                .andExpect(jsonPath("$.timestamp").isString())
+                .andExpect(jsonPath("$.data.sessionId", is(session.getId().toString())))
+                .andExpect(jsonPath("$.data.caregiverName", is("Caregiver")))
+                .andExpect(jsonPath("$.data.messages.length()", is(2)))
+                .andExpect(jsonPath("$.data.messages[0].content", is("Halo Dunia")))
+                .andExpect(jsonPath("$.data.messages[1].content", is("Balasan")))
+                .andExpect(jsonPath("$.data.messages[1].changeSeq").doesNotExist())
+                .andExpect(jsonPath("$.data.prevCursor").value(nullValue()))
+                .andExpect(jsonPath("$.data.nextCursor", is(MessageCursor.encode(second))));
+    }
+
+    @Test
+    void testStreamTranscript_notParticipant_shouldReturn403BeforeStreaming() throws Exception {
+        UUID sessionId = UUID.randomUUID();
+        Mockito.when(chatService.getParticipantSession(sessionId, dummyUserId))
+                .thenThrow(new SecurityException("You do not have access to this session."));
+
+        mockMvc.perform(get("/api/chat/session/{id}/transcript", sessionId))
+                .andExpect(status().isForbidden());
+
+        Mockito.verify(chatService, Mockito.never()).forEachMessage(any(), any());
+    }
+
+    @Test
+    void testGetMessages_acceptCbor_shouldNegotiateBinaryBodyWithNumericDates() throws Exception {
+        UUID sessionId = UUID.randomUUID();
+        ChatSession dummySession = new ChatSession();
+        dummySession.setId(sessionId);
+        dummySession.setPacilian(dummyUserId);
+        dummySession.setPacilianName("Cleo");
+        dummySession.setCaregiver(UUID.randomUUID());
+        dummySession.setCaregiverName("Dr. Panda");
+        dummyMessage.setSession(dummySession);
+        ChatMessagePage page = ChatMessagePage.builder()
+                .session(dummySession)
+                .messages(List.of(dummyMessage))
+                .build();
+        Mockito.when(chatService.getMessagePage(eq(sessionId), eq(dummyUserId), isNull(), isNull(), eq(50)))
+                .thenReturn(CompletableFuture.completedFuture(page));
+
+        MvcResult cbor = mockMvc.perform(asyncDispatch(mockMvc.perform(get("/api/chat/session/{id}", sessionId)
+                                .accept(MediaType.APPLICATION_CBOR))
+                        .andExpect(request().asyncStarted())
+                        .andReturn()))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().stringValues("Vary", hasItem("Accept")))
+                .andExpect(header().string("ETag", "\"v0-cbor\""))
+                .andReturn();
+        MvcResult json = mockMvc.perform(asyncDispatch(mockMvc.perform(get("/api/chat/session/{id}", sessionId)
+                                .accept(MediaType.ALL))
+                        .andExpect(request().asyncStarted())
+                        .andReturn()))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(header().string("ETag", "\"v0\""))
+                .andReturn();
+
+        JsonNode body = new CBORMapper().readTree(cbor.getResponse().getContentAsByteArray());
+        assertEquals(200, body.get("status").asInt());
+        assertTrue(body.get("timestamp").isIntegralNumber());
+        JsonNode message = body.get("data").get("messages").get(0);
+        assertEquals("Halo Dunia", message.get("content").asText());
+        assertEquals(dummyMessage.getCreatedAt().getTime(), message.get("createdAt").asLong());
+        assertEquals("Dr. Panda", body.get("data").get("caregiverName").asText());
+        assertTrue(cbor.getResponse().getContentAsByteArray().length
+                < json.getResponse().getContentAsByteArray().length);
+    }
+
+    @Test
+    void testGetMessages_acceptQuality_shouldDecideEncoding() throws Exception {
+        UUID sessionId = UUID.randomUUID();
+        ChatSession dummySession = new ChatSession();
+        dummySession.setId(sessionId);
+        dummySession.setPacilian(dummyUserId);
+        dummySession.setCaregiver(UUID.randomUUID());
+        dummyMessage.setSession(dummySession);
+        Mockito.when(chatService.getMessagePage(eq(sessionId), eq(dummyUserId), isNull(), isNull(), eq(50)))
+                .thenReturn(CompletableFuture.completedFuture(ChatMessagePage.builder()
+                        .session(dummySession)
+                        .messages(List.of(dummyMessage))
+                        .build()));
+
+        Map<String, MediaType> expected = Map.of(
+                "application/json;q=0.1, application/cbor", MediaType.APPLICATION_CBOR,
+                "application/cbor;q=0, */*", MediaType.APPLICATION_JSON,
+                "application/json;q=0, */*", MediaType.APPLICATION_CBOR,
+                "application/cbor;q=0.5, application/json;q=0.5", MediaType.APPLICATION_JSON);
+        for (Map.Entry<String, MediaType> entry : expected.entrySet()) {
+            mockMvc.perform(asyncDispatch(mockMvc.perform(get("/api/chat/session/{id}", sessionId)
+                                    .header("Accept", entry.getKey()))
+                            .andExpect(request().asyncStarted())
+                            .andReturn()))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(entry.getValue()));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void testStreamTranscript_acceptCbor_shouldStreamCbor() throws Exception {
+        ChatSession session = new ChatSession();
+        session.setId(UUID.randomUUID());
+        session.setPacilian(dummyUserId);
+        session.setPacilianName("Pacilian");
+        session.setCaregiver(UUID.randomUUID());
+        session.setCaregiverName("Caregiver");
+        Mockito.when(chatService.getParticipantSession(session.getId(), dummyUserId)).thenReturn(session);
+        Mockito.doAnswer(invocation -> {
+            invocation.<Consumer<ChatMessage>>getArgument(1).accept(dummyMessage);
+            return null;
+        }).when(chatService).forEachMessage(eq(session), any(Consumer.class));
+
+        MvcResult result = mockMvc.perform(get("/api/chat/session/{id}/transcript", session.getId())
+                        .header("Accept", "application/json;q=0.5, application/cbor"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR));
+
+        JsonNode body = new CBORMapper().readTree(result.getResponse().getContentAsByteArray());
+        assertEquals("Messages retrieved", body.get("message").asText());
+        JsonNode data = body.get("data");
+        assertEquals(session.getId(), new CBORMapper().treeToValue(data.get("sessionId"), UUID.class));
+        assertEquals("Halo Dunia", data.get("messages").get(0).get("content").asText());
+        assertEquals(dummyMessage.getCreatedAt().getTime(), data.get("messages").get(0).get("createdAt").asLong());
+        assertEquals(MessageCursor.encode(dummyMessage), data.get("nextCursor").asText());
+    }
+
+    @Test
+    void testGetMessages_ifNoneMatchCurrent_shouldReturn304WithoutLoadingMessages() throws Exception {
+        UUID sessionId = UUID.randomUUID();
+        Mockito.when(chatService.getMessageVersion(sessionId, dummyUserId))
+                .thenReturn(CompletableFuture.completedFuture(Optional.of(3L)));
+
+        MvcResult result = mockMvc.perform(get("/api/chat/session/{id}", sessionId)
+                        .header("If-None-Match", "\"v2\", W/\"v3\""))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"v3\""))
+                .andExpect(content().string(""));
+        Mockito.verify(chatService, Mockito.never()).getMessagePage(any(), any(), any(), any(), anyInt());
+        Mockito.verify(conditionalReadNotModifiedCounter).increment();
+        Mockito.verifyNoInteractions(conditionalReadModifiedCounter);
+    }
+
+    @Test
+    void testGetMessages_ifNoneMatchStale_shouldReturnPageWithNewTag() throws Exception {
+        UUID sessionId = UUID.randomUUID();
+        ChatSession session = new ChatSession();
+        session.setId(sessionId);
+        session.setPacilian(dummyUserId);
+        session.setMessageVersion(4L);
+        ChatMessagePage page = ChatMessagePage.builder()
+                .session(session)
+                .messages(List.of(dummyMessage))
+                .build();
+
+        Mockito.when(chatService.getMessageVersion(sessionId, dummyUserId))
+                .thenReturn(CompletableFuture.completedFuture(Optional.of(4L)));
+        Mockito.when(chatService.getMessagePage(eq(sessionId), eq(dummyUserId), isNull(), isNull(), eq(50)))
+                .thenReturn(CompletableFuture.completedFuture(page));
+
+        MvcResult result = mockMvc.perform(get("/api/chat/session/{id}", sessionId)
+                        .header("If-None-Match", "\"v3\""))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v4\""))
+                .andExpect(jsonPath("$.data.messages[0].content", is("Halo Dunia")));
+        Mockito.verify(conditionalReadModifiedCounter).increment();
+        Mockito.verifyNoInteractions(conditionalReadNotModifiedCounter);
+    }
+
+    @Test
+    void testGetMessages_ifNoneMatchOtherEncoding_shouldNotReturn304() throws Exception {
+        UUID sessionId = UUID.randomUUID();
+        ChatSession session = new ChatSession();
+        session.setId(sessionId);
+        session.setPacilian(dummyUserId);
+        session.setMessageVersion(3L);
+        ChatMessagePage page = ChatMessagePage.builder()
+                .session(session)
+                .messages(List.of(dummyMessage))
+                .build();
+
+        Mockito.when(chatService.getMessageVersion(sessionId, dummyUserId))
+                .thenReturn(CompletableFuture.completedFuture(Optional.of(3L)));
+        Mockito.when(chatService.getMessagePage(eq(sessionId), eq(dummyUserId), isNull(), isNull(), eq(50)))
+                .thenReturn(CompletableFuture.completedFuture(page));
+
+        // A tag for the JSON body does not validate a cached CBOR body, and the other way round
+        mockMvc.perform(asyncDispatch(mockMvc.perform(get("/api/chat/session/{id}", sessionId)
+                                .accept(MediaType.APPLICATION_CBOR)
+                                .header("If-None-Match", "\"v3\""))
+                        .andExpect(request().asyncStarted())
+                        .andReturn()))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().string("ETag", "\"v3-cbor\""));
+        mockMvc.perform(asyncDispatch(mockMvc.perform(get("/api/chat/session/{id}", sessionId)
+                                .header("If-None-Match", "\"v3-cbor\""))
+                        .andExpect(request().asyncStarted())
+                        .andReturn()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v3\""));
+
+        mockMvc.perform(asyncDispatch(mockMvc.perform(get("/api/chat/session/{id}", sessionId)
+                                .accept(MediaType.APPLICATION_CBOR)
+                                .header("If-None-Match", "\"v3-cbor\""))
+                        .andExpect(request().asyncStarted())
+                        .andReturn()))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"v3-cbor\""));
+    }
+
+    @Test
+    void testGetMessages_withCursorAndSize_shouldPassThrough() throws Exception {
+        UUID sessionId = UUID.randomUUID();
+
+        ChatSession dummySession = new ChatSession();
+        dummySession.setId(sessionId);
+        dummySession.setPacilian(dummyUserId);
+        dummySession.setCaregiver(UUID.randomUUID());
+
+        ChatMessagePage page = ChatMessagePage.builder()
+                .session(dummySession)
+                .messages(List.of())
+                .nextCursor("cursor-1")
+                .build();
+
+        Mockito.when(chatService.getMessagePage(eq(sessionId), eq(dummyUserId), isNull(), eq("cursor-1"), eq(20)))
+                .thenReturn(CompletableFuture.completedFuture(page));
+
+        MvcResult result = mockMvc.perform(get("/api/chat/session/{id}", sessionId)
+                        .param("after", "cursor-1")
+                        .param("size", "20")
+                        .header("Authorization", "Bearer " + DUMMY_TOKEN))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.messages").isEmpty())
+                .andExpect(jsonPath("$.data.nextCursor", is("cursor-1")));
+    }
+
+    @Test
+    void testGetMessages_withoutAuthentication_shouldReturn401() throws Exception {
+        SecurityContextHolder.clearContext();
+
+        mockMvc.perform(get("/api/chat/session/{id}", UUID.randomUUID()))
+                .andExpect(status().isUnauthorized());
+
+        Mockito.verifyNoInteractions(chatService, tokenVerificationService);
     }
 
 }
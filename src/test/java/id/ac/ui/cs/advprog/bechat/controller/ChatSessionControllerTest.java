@@ -2,11 +2,17 @@ package id.ac.ui.cs.advprog.bechat.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import id.ac.ui.cs.advprog.bechat.dto.CreateSessionRequest;
-import id.ac.ui.cs.advprog.bechat.dto.TokenVerificationResponseDto;
+import id.ac.ui.cs.advprog.bechat.dto.MarkReadRequest;
+import id.ac.ui.cs.advprog.bechat.dto.ReadStateDto;
+import id.ac.ui.cs.advprog.bechat.dto.SessionInboxPage;
+import id.ac.ui.cs.advprog.bechat.dto.SessionSummaryDto;
+import id.ac.ui.cs.advprog.bechat.dto.UserPrincipal;
 import id.ac.ui.cs.advprog.bechat.model.ChatSession;
 import id.ac.ui.cs.advprog.bechat.model.enums.Role;
 import id.ac.ui.cs.advprog.bechat.service.ChatSessionService;
+import id.ac.ui.cs.advprog.bechat.service.ReadStateService;
 import id.ac.ui.cs.advprog.bechat.service.TokenVerificationService;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -15,10 +21,13 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.web.servlet.MockMvc;
-import id.ac.ui.cs.advprog.bechat.service.CaregiverInfoService;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.Date;
 import java.util.List;
 import java.util.UUID;
 
@@ -40,7 +49,7 @@ class ChatSessionControllerTest {
     private TokenVerificationService tokenVerificationService;
 
     @MockBean
-    private CaregiverInfoService caregiverInfoService;
+    private ReadStateService readStateService;
 
     @Autowired
     private ObjectMapper objectMapper;
@@ -48,6 +57,7 @@ class ChatSessionControllerTest {
     private UUID dummyUserId;
     private static final String DUMMY_TOKEN = "Bearer faketoken";
     private ChatSession dummySession;
+    private UserPrincipal principal;
 
     @BeforeEach
     void setUp() {
@@ -57,20 +67,23 @@ class ChatSessionControllerTest {
         dummySession.setId(UUID.randomUUID());
         dummySession.setPacilian(dummyUserId);
         dummySession.setCaregiver(UUID.randomUUID());
+        dummySession.setCaregiverName("Dr. Panda");
         dummySession.setCreatedAt(LocalDateTime.now());
 
-        Mockito.when(tokenVerificationService.verifyToken("faketoken"))
-                .thenReturn(TokenVerificationResponseDto.builder()
-                        .valid(true)
-                        .userId(dummyUserId.toString())
-                        .name("Cleo")
-                        .role(Role.PACILIAN)
-                        .email("user@example.com")
-                        .expiresIn(3600L)
-                        .build());
-
-        Mockito.when(caregiverInfoService.getNameByUserIdCaregiver(dummySession.getCaregiver(), "faketoken"))
-                .thenReturn("Dr. Panda");
+        principal = UserPrincipal.builder()
+                .userId(dummyUserId)
+                .name("Cleo")
+                .role(Role.PACILIAN)
+                .email("user@example.com")
+                .expiresAt(Instant.now().plusSeconds(3600))
+                .build();
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, List.of()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
     }
 
     @Test
@@ -78,7 +91,7 @@ class ChatSessionControllerTest {
         CreateSessionRequest request = new CreateSessionRequest();
         request.setCaregiver(dummySession.getCaregiver());
 
-        Mockito.when(chatSessionService.createSession(eq(dummyUserId), eq(dummySession.getCaregiver()), anyString()))
+        Mockito.when(chatSessionService.createSession(eq(principal), eq(dummySession.getCaregiver()), eq("faketoken")))
                 .thenReturn(dummySession);
 
         mockMvc.perform(post("/api/chat/session/create")
@@ -95,11 +108,76 @@ class ChatSessionControllerTest {
     @Test
     void testGetSessionsByUser() throws Exception {
         Mockito.when(chatSessionService.getSessionsByUser(eq(dummyUserId)))
-                .thenReturn(List.of(dummySession));
+                .thenReturn(List.of(summaryOf(dummySession)));
 
         mockMvc.perform(get("/api/chat/session/user")
                         .header("Authorization", DUMMY_TOKEN))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.data[0].pacilian").value(dummyUserId.toString()));
+                .andExpect(jsonPath("$.data[0].pacilian").value(dummyUserId.toString()))
+                .andExpect(jsonPath("$.data[0].messages").doesNotExist());
+
+        Mockito.verifyNoInteractions(tokenVerificationService);
+    }
+
+    @Test
+    void testGetInbox() throws Exception {
+        Mockito.when(chatSessionService.getInbox(eq(dummyUserId), eq(1), eq(10), eq("faketoken")))
+                .thenReturn(new SessionInboxPage(List.of(summaryOf(dummySession)), 1, 10, true));
+
+        mockMvc.perform(get("/api/chat/session/inbox")
+                        .param("page", "1")
+                        .param("size", "10")
+                        .header("Authorization", DUMMY_TOKEN))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.sessions[0].sessionId").value(dummySession.getId().toString()))
+                .andExpect(jsonPath("$.data.sessions[0].caregiverName").value("Dr. Panda"))
+                .andExpect(jsonPath("$.data.sessions[0].lastMessagePreview").value("Halo"))
+                .andExpect(jsonPath("$.data.sessions[0].unreadCount").value(3))
+                .andExpect(jsonPath("$.data.hasNext").value(true));
+    }
+
+    @Test
+    void testMarkRead() throws Exception {
+        UUID messageId = UUID.randomUUID();
+        MarkReadRequest request = new MarkReadRequest();
+        request.setMessageId(messageId);
+
+        Mockito.when(readStateService.markRead(eq(dummySession.getId()), eq(dummyUserId), eq(messageId)))
+                .thenReturn(new ReadStateDto(dummySession.getId(), messageId, "cursor", 2));
+
+        mockMvc.perform(put("/api/chat/session/" + dummySession.getId() + "/read")
+                        .header("Authorization", DUMMY_TOKEN)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.data.lastReadMessageId").value(messageId.toString()))
+                .andExpect(jsonPath("$.data.lastReadCursor").value("cursor"))
+                .andExpect(jsonPath("$.data.unreadCount").value(2));
+    }
+
+    @Test
+    void testMarkRead_shouldRejectMissingMessageId() throws Exception {
+        mockMvc.perform(put("/api/chat/session/" + dummySession.getId() + "/read")
+                        .header("Authorization", DUMMY_TOKEN)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isBadRequest());
+
+        Mockito.verifyNoInteractions(readStateService);
+    }
+
+    @Test
+    void testGetReadState_shouldReturnForbiddenForNonParticipant() throws Exception {
+        Mockito.when(readStateService.getReadState(eq(dummySession.getId()), eq(dummyUserId)))
+                .thenThrow(new SecurityException("You do not have access to this session."));
+
+        mockMvc.perform(get("/api/chat/session/" + dummySession.getId() + "/read")
+                        .header("Authorization", DUMMY_TOKEN))
+                .andExpect(status().isForbidden());
+    }
+
+    private SessionSummaryDto summaryOf(ChatSession session) {
+        return new SessionSummaryDto(session.getId(), session.getPacilian(), session.getPacilianName(),
+                session.getCaregiver(), session.getCaregiverName(), "Halo", session.getCaregiver(), new Date(), 3);
     }
 }
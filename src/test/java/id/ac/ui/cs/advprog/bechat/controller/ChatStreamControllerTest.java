@@ -0,0 +1,286 @@
+package id.ac.ui.cs.advprog.bechat.controller;
+
+import id.ac.ui.cs.advprog.bechat.dto.ChatMessageEvent;
+import id.ac.ui.cs.advprog.bechat.dto.ChatMessagePage;
+import id.ac.ui.cs.advprog.bechat.dto.MessageCursor;
+import id.ac.ui.cs.advprog.bechat.dto.UserPrincipal;
+import id.ac.ui.cs.advprog.bechat.model.ChatMessage;
+import id.ac.ui.cs.advprog.bechat.model.ChatSession;
+import id.ac.ui.cs.advprog.bechat.model.enums.Role;
+import id.ac.ui.cs.advprog.bechat.service.ChatService;
+import id.ac.ui.cs.advprog.bechat.service.SessionUpdateNotifier;
+import id.ac.ui.cs.advprog.bechat.service.TokenVerificationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+@WebMvcTest(ChatStreamController.class)
+@AutoConfigureMockMvc(addFilters = false)
+@Import({SessionUpdateNotifier.class, ChatStreamControllerTest.SyncExecutorConfig.class})
+class ChatStreamControllerTest {
+
+    @TestConfiguration
+    static class SyncExecutorConfig {
+        static final AtomicBoolean rejecting = new AtomicBoolean();
+
+        @Bean(name = "taskExecutor")
+        Executor taskExecutor() {
+            SyncTaskExecutor delegate = new SyncTaskExecutor();
+            return task -> {
+                if (rejecting.get()) {
+                    throw new TaskRejectedException("Executor is saturated");
+                }
+                delegate.execute(task);
+            };
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SessionUpdateNotifier sessionUpdateNotifier;
+
+    @MockBean
+    private ChatService chatService;
+
+    @MockBean
+    private TokenVerificationService tokenVerificationService;
+
+    private final UUID userId = UUID.randomUUID();
+    private final UUID sessionId = UUID.randomUUID();
+    private ChatSession session;
+    private String cursor;
+    private int baselineSubscribers;
+
+    @BeforeEach
+    void setUp() {
+        baselineSubscribers = sessionUpdateNotifier.subscriberCount();
+        session = new ChatSession();
+        session.setId(sessionId);
+        session.setPacilian(userId);
+        session.setCaregiver(UUID.randomUUID());
+        cursor = MessageCursor.encode(message("earlier"));
+
+        UserPrincipal principal = UserPrincipal.builder()
+                .userId(userId)
+                .role(Role.PACILIAN)
+                .email("test@example.com")
+                .expiresAt(Instant.now().plusSeconds(3600))
+                .build();
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, List.of()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SyncExecutorConfig.rejecting.set(false);
+        SecurityContextHolder.clearContext();
+    }
+
+    private ChatMessage message(String content) {
+        ChatMessage message = new ChatMessage();
+        message.setId(UUID.randomUUID());
+        message.setSession(session);
+        message.setSenderId(userId);
+        message.setContent(content);
+        message.setCreatedAt(new Date());
+        return message;
+    }
+
+    private CompletableFuture<ChatMessagePage> page(ChatMessage... messages) {
+        return CompletableFuture.completedFuture(ChatMessagePage.builder()
+                .session(session)
+                .messages(List.of(messages))
+                .prevCursor(cursor)
+                .nextCursor(messages.length == 0 ? cursor : MessageCursor.encode(messages[messages.length - 1]))
+                .build());
+    }
+
+    private CompletableFuture<ChatMessagePage> fullReplayPage(String prefix) {
+        ChatMessage[] messages = new ChatMessage[ChatStreamController.REPLAY_PAGE_SIZE];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = message(prefix + i);
+        }
+        return page(messages);
+    }
+
+    private static int occurrences(String text, String part) {
+        int count = 0;
+        for (int at = text.indexOf(part); at >= 0; at = text.indexOf(part, at + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    void testPoll_withNewerMessages_shouldAnswerImmediately() throws Exception {
+        Mockito.when(chatService.getMessagePage(sessionId, userId, null, cursor, 50))
+                .thenReturn(page(message("Halo")));
+
+        MvcResult result = mockMvc.perform(get("/api/chat/session/{id}/poll", sessionId).param("after", cursor))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.messages[0].content", is("Halo")));
+        assertEquals(baselineSubscribers, sessionUpdateNotifier.subscriberCount());
+    }
+
+    @Test
+    void testPoll_withoutNewerMessages_shouldParkUntilMessageIsSent() throws Exception {
+        ChatMessage sent = message("Baru");
+        Mockito.when(chatService.getMessagePage(sessionId, userId, null, cursor, 50))
+                .thenReturn(page(), page(sent));
+
+        MvcResult result = mockMvc.perform(get("/api/chat/session/{id}/poll", sessionId).param("after", cursor))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertEquals(baselineSubscribers + 1, sessionUpdateNotifier.subscriberCount());
+
+        sessionUpdateNotifier.onMessageEvent(ChatMessageEvent.of(ChatMessageEvent.Type.SENT, sent));
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.messages[0].content", is("Baru")));
+        assertEquals(baselineSubscribers, sessionUpdateNotifier.subscriberCount());
+    }
+
+    @Test
+    void testPoll_invalidCursor_shouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/chat/session/{id}/poll", sessionId).param("after", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+        Mockito.verifyNoInteractions(chatService);
+    }
+
+    @Test
+    void testStream_shouldReplayMissedMessagesWithCursorIds() throws Exception {
+        ChatMessage missed = message("Terlewat");
+        Mockito.when(chatService.getMessagePage(eq(sessionId), eq(userId), isNull(), eq(cursor), anyInt()))
+                .thenReturn(page(missed));
+
+        MvcResult result = mockMvc.perform(get("/api/chat/session/{id}/stream", sessionId)
+                        .header("Last-Event-ID", cursor))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("event:sent")))
+                .andExpect(content().string(containsString("id:" + MessageCursor.encode(missed))))
+                .andExpect(content().string(containsString("Terlewat")));
+        assertEquals(baselineSubscribers + 1, sessionUpdateNotifier.subscriberCount());
+    }
+
+    @Test
+    void testStream_shouldReplayEveryMissedPage() throws Exception {
+        ChatMessage last = message("Terakhir");
+        Mockito.when(chatService.getMessagePage(eq(sessionId), eq(userId), isNull(), anyString(),
+                        eq(ChatStreamController.REPLAY_PAGE_SIZE)))
+                .thenReturn(fullReplayPage("lama-"), page(last));
+
+        MvcResult result = mockMvc.perform(get("/api/chat/session/{id}/stream", sessionId)
+                        .header("Last-Event-ID", cursor))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("lama-99")))
+                .andExpect(content().string(containsString("id:" + MessageCursor.encode(last))));
+        Mockito.verify(chatService, Mockito.times(2))
+                .getMessagePage(eq(sessionId), eq(userId), isNull(), anyString(), anyInt());
+    }
+
+    @Test
+    void testStream_pastReplayLimit_shouldAskClientToResync() throws Exception {
+        Mockito.when(chatService.getMessagePage(eq(sessionId), eq(userId), isNull(), anyString(),
+                        eq(ChatStreamController.REPLAY_PAGE_SIZE)))
+                .thenAnswer(invocation -> fullReplayPage("lama-"));
+
+        MvcResult result = mockMvc.perform(get("/api/chat/session/{id}/stream", sessionId)
+                        .header("Last-Event-ID", cursor))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("event:resync")))
+                .andExpect(content().string(containsString("\"after\"")));
+        // The default limit of 1000 messages is ten replay pages.
+        Mockito.verify(chatService, Mockito.times(10))
+                .getMessagePage(eq(sessionId), eq(userId), isNull(), anyString(), anyInt());
+        assertEquals(baselineSubscribers, sessionUpdateNotifier.subscriberCount());
+    }
+
+    @Test
+    void testStream_eventsDuringReplay_shouldFollowItWithoutDuplicates() throws Exception {
+        ChatMessage missed = message("Terlewat");
+        ChatMessage edited = message("Diubah");
+        Mockito.when(chatService.getMessagePage(eq(sessionId), eq(userId), isNull(), eq(cursor), anyInt()))
+                .thenAnswer(invocation -> {
+                    // Committed after the subscription but before the replay read.
+                    sessionUpdateNotifier.onMessageEvent(ChatMessageEvent.of(ChatMessageEvent.Type.SENT, missed));
+                    sessionUpdateNotifier.onMessageEvent(ChatMessageEvent.of(ChatMessageEvent.Type.EDITED, edited));
+                    return page(missed);
+                });
+
+        MvcResult result = mockMvc.perform(get("/api/chat/session/{id}/stream", sessionId)
+                        .header("Last-Event-ID", cursor))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+
+        String body = result.getResponse().getContentAsString();
+        assertEquals(1, occurrences(body, "Terlewat"));
+        assertTrue(body.indexOf("Terlewat") < body.indexOf("event:edited"));
+    }
+
+    @Test
+    void testStream_rejectedPush_shouldCloseStream() throws Exception {
+        Mockito.when(chatService.getMessagePage(sessionId, userId, null, null, 1)).thenReturn(page());
+
+        MvcResult result = mockMvc.perform(get("/api/chat/session/{id}/stream", sessionId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+        assertEquals(baselineSubscribers + 1, sessionUpdateNotifier.subscriberCount());
+
+        SyncExecutorConfig.rejecting.set(true);
+        sessionUpdateNotifier.onMessageEvent(ChatMessageEvent.of(ChatMessageEvent.Type.SENT, message("Baru")));
+
+        assertEquals(baselineSubscribers, sessionUpdateNotifier.subscriberCount());
+        assertFalse(result.getResponse().getContentAsString().contains("Baru"));
+    }
+}
@@ -99,6 +99,16 @@ class GlobalExceptionHandlerTest {
         assertEquals("Invalid state: Invalid state", response.getBody().getMessage());
     }
 
+    @Test
+    void testHandleNotFound_returnsNotFound() {
+        ResourceNotFoundException ex = new ResourceNotFoundException("Message not found");
+
+        ResponseEntity<BaseResponseDTO<String>> response = handler.handleNotFound(ex);
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        assertEquals("Not found: Message not found", response.getBody().getMessage());
+    }
+
     @Test
     void testHandleSecurity_returnsForbidden() {
         SecurityException ex = new SecurityException("Forbidden access");
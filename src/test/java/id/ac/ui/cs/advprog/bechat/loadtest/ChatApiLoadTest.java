@@ -0,0 +1,362 @@
+package id.ac.ui.cs.advprog.bechat.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import id.ac.ui.cs.advprog.bechat.BeChatApplication;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Offline end-to-end load test of {@code /api/chat/**}. Boots the application against an
+ * embedded PostgreSQL (or {@code loadtest.jdbc-url}) and a local auth-service stub, then lets
+ * virtual users create sessions and send, poll, edit and delete messages with JWTs signed by a
+ * generated {@code jwt.secret}.
+ *
+ * <p>After the mixed run, the same users only call {@code POST /send/batch}, once for each of
+ * {@code loadtest.batch-sizes} (default 1, 10 and 100 messages per batch), so batch throughput is
+ * reported in messages per second next to the request rate.
+ *
+ * <p>Run with {@code ./gradlew loadTest}; knobs are {@code -Ploadtest.users}, {@code .duration},
+ * {@code .warmup}, {@code .async-mode}, {@code .auth-delay-ms}, {@code .batch-sizes},
+ * {@code .batch-duration}, {@code .jdbc-url} (plus {@code .db-user}/{@code .db-password}) and
+ * {@code .baseline} (a previous report to diff against). The report is printed and written to
+ * {@code build/reports/loadtest/chat-api.json}.
+ */
+class ChatApiLoadTest {
+
+    private static final String CREATE = "POST /session/create";
+    private static final String SEND = "POST /send";
+    private static final String POLL = "GET /session/{id}";
+    private static final String EDIT = "PUT /message/{id}";
+    private static final String DELETE = "DELETE /message/{id}";
+    private static final String SEND_BATCH = "POST /send/batch";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private String baseUrl;
+    private byte[] jwtKey;
+
+    @Test
+    void chatApiUnderMixedLoad() throws Exception {
+        int users = Integer.getInteger("loadtest.users", 50);
+        Duration duration = Duration.parse("PT" + System.getProperty("loadtest.duration", "30s"));
+        Duration warmup = Duration.parse("PT" + System.getProperty("loadtest.warmup", "5s"));
+        String asyncMode = System.getProperty("loadtest.async-mode", "platform");
+        long authDelayMillis = Long.getLong("loadtest.auth-delay-ms", 0L);
+        List<Integer> batchSizes = Arrays.stream(System.getProperty("loadtest.batch-sizes", "1,10,100").split(","))
+                .map(String::trim)
+                .map(Integer::valueOf)
+                .toList();
+        Duration batchDuration = Duration.parse("PT" + System.getProperty("loadtest.batch-duration", "10s"));
+
+        jwtKey = new byte[32];
+        new SecureRandom().nextBytes(jwtKey);
+
+        try (AuthServiceStub authStub = new AuthServiceStub(authDelayMillis);
+             Database database = Database.start()) {
+            List<String> args = List.of(
+                    "--server.port=0",
+                    "--spring.datasource.url=" + database.jdbcUrl,
+                    "--spring.datasource.username=" + database.user,
+                    "--spring.datasource.password=" + database.password,
+                    "--auth.service.url=" + authStub.baseUrl(),
+                    "--jwt.secret=" + Base64.getEncoder().encodeToString(jwtKey),
+                    "--chat.async.mode=" + asyncMode,
+                    "--spring.jpa.show-sql=false",
+                    // Per-request INFO logging would dominate the measurement
+                    "--logging.level.root=WARN",
+                    "--logging.level.id.ac.ui.cs.advprog=WARN",
+                    "--logging.file.name=build/reports/loadtest/be-chat.log");
+
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(BeChatApplication.class)
+                    .run(args.toArray(String[]::new))) {
+                int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+                baseUrl = "http://localhost:" + port + "/api/chat";
+
+                run(users, warmup, new LoadReport(), 0);
+                LoadReport report = new LoadReport();
+                long elapsed = run(users, duration, report, 0);
+
+                Map<String, String> settings = new LinkedHashMap<>();
+                settings.put("users", String.valueOf(users));
+                settings.put("duration", duration.toString());
+                settings.put("asyncMode", asyncMode);
+                settings.put("authDelayMillis", String.valueOf(authDelayMillis));
+                settings.put("database", database.description);
+                ObjectNode json = report.toJson(objectMapper, settings, elapsed);
+
+                String baselinePath = System.getProperty("loadtest.baseline");
+                JsonNode baseline = baselinePath == null ? null : objectMapper.readTree(Path.of(baselinePath).toFile());
+                System.out.println("Load test " + settings);
+                System.out.print(LoadReport.format(json, baseline));
+
+                // Each batch size gets its own run, so its rates are over its own elapsed time
+                ObjectNode batches = json.putObject("batchSend");
+                for (int batchSize : batchSizes) {
+                    LoadReport batchReport = new LoadReport();
+                    long batchElapsed = run(users, batchDuration, batchReport, batchSize);
+                    ObjectNode batchJson = batchReport.toJson(objectMapper, Map.of(), batchElapsed);
+                    batchJson.remove("settings");
+                    JsonNode stats = batchJson.path("endpoints").path(SEND_BATCH);
+                    long sentBatches = stats.path("requests").asLong() - stats.path("errors").asLong();
+                    batchJson.put("messagesPerSecond", sentBatches * batchSize / (batchElapsed / 1e9));
+                    batches.set(String.valueOf(batchSize), batchJson);
+
+                    JsonNode batchBaseline = baseline == null ? null : baseline.path("batchSend").get(String.valueOf(batchSize));
+                    System.out.printf("Batch send, %d messages per batch: %.1f messages/s%s%n", batchSize,
+                            batchJson.get("messagesPerSecond").asDouble(),
+                            batchBaseline == null ? "" : String.format(" (baseline %+.1f%%)", LoadReport.change(
+                                    batchBaseline.path("messagesPerSecond").asDouble(),
+                                    batchJson.get("messagesPerSecond").asDouble())));
+                    System.out.print(LoadReport.format(batchJson, batchBaseline));
+                }
+                LoadReport.write(objectMapper, json, Path.of("build", "reports", "loadtest", "chat-api.json"));
+
+                assertTrue(json.path("endpoints").path(SEND).path("requests").asLong() > 0, "no messages were sent");
+                for (int batchSize : batchSizes) {
+                    assertTrue(batches.path(String.valueOf(batchSize)).path("messagesPerSecond").asDouble() > 0,
+                            "no batches of " + batchSize + " were sent");
+                }
+            }
+        }
+    }
+
+    /** Runs the mixed scenario, or only batch sends of {@code batchSize} messages when it is positive. */
+    private long run(int users, Duration duration, LoadReport report, int batchSize) throws Exception {
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < users; i++) {
+                futures.add(executor.submit(() -> {
+                    VirtualUser user = new VirtualUser(report);
+                    if (batchSize > 0) {
+                        user.sendBatchesUntil(deadline, batchSize);
+                    } else {
+                        user.runUntil(deadline);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private String token(UUID userId, String role) {
+        return Jwts.builder()
+                .setSubject(userId + "@loadtest.local")
+                .claim("id", userId.toString())
+                .claim("role", role)
+                .claim("name", role.toLowerCase() + "-" + userId.toString().substring(0, 8))
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(2)))
+                .signWith(Keys.hmacShaKeyFor(jwtKey), SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    /**
+     * One pacilian/caregiver pair chatting in their session. Operation mix per iteration:
+     * 40% send, 40% poll, 10% edit, 5% delete, 5% repeat create (idempotent).
+     */
+    private final class VirtualUser {
+
+        private final LoadReport report;
+        private final UUID pacilian = UUID.randomUUID();
+        private final UUID caregiver = UUID.randomUUID();
+        private final String pacilianToken = token(pacilian, "PACILIAN");
+        private final String caregiverToken = token(caregiver, "CAREGIVER");
+        private final List<String> ownMessages = new ArrayList<>();
+        private String sessionId;
+
+        private VirtualUser(LoadReport report) {
+            this.report = report;
+        }
+
+        void runUntil(long deadline) {
+            while (sessionId == null && System.nanoTime() < deadline) {
+                createSession();
+            }
+            while (System.nanoTime() < deadline) {
+                int roll = ThreadLocalRandom.current().nextInt(100);
+                if (roll < 40) {
+                    send();
+                } else if (roll < 80) {
+                    poll();
+                } else if (roll < 90) {
+                    edit();
+                } else if (roll < 95) {
+                    delete();
+                } else {
+                    createSession();
+                }
+            }
+        }
+
+        void sendBatchesUntil(long deadline, int batchSize) {
+            while (sessionId == null && System.nanoTime() < deadline) {
+                createSession();
+            }
+            while (System.nanoTime() < deadline) {
+                sendBatch(batchSize);
+            }
+        }
+
+        private void createSession() {
+            JsonNode body = call(CREATE, "POST", "/session/create", pacilianToken,
+                    "{\"caregiver\":\"" + caregiver + "\"}");
+            if (body != null) {
+                sessionId = body.path("data").path("id").asText();
+            }
+        }
+
+        private void send() {
+            boolean fromPacilian = ThreadLocalRandom.current().nextBoolean();
+            JsonNode body = call(SEND, "POST", "/send", fromPacilian ? pacilianToken : caregiverToken,
+                    "{\"sessionId\":\"" + sessionId + "\",\"content\":\"Halo dok, pesan " + System.nanoTime() + "\"}");
+            if (body != null && fromPacilian) {
+                ownMessages.add(body.path("data").path("id").asText());
+            }
+        }
+
+        private void sendBatch(int batchSize) {
+            StringBuilder json = new StringBuilder("{\"messages\":[");
+            for (int i = 0; i < batchSize; i++) {
+                json.append(i == 0 ? "" : ",")
+                        .append("{\"sessionId\":\"").append(sessionId)
+                        .append("\",\"content\":\"Pesan batch ").append(i).append(' ').append(System.nanoTime())
+                        .append("\"}");
+            }
+            json.append("]}");
+            call(SEND_BATCH, "POST", "/send/batch", pacilianToken, json.toString());
+        }
+
+        private void poll() {
+            call(POLL, "GET", "/session/" + sessionId + "?size=50", pacilianToken, null);
+        }
+
+        private void edit() {
+            if (ownMessages.isEmpty()) {
+                send();
+                return;
+            }
+            String messageId = ownMessages.get(ownMessages.size() - 1);
+            call(EDIT, "PUT", "/message/" + messageId, pacilianToken, "{\"content\":\"Ralat: pesan diedit\"}");
+        }
+
+        private void delete() {
+            if (ownMessages.isEmpty()) {
+                send();
+                return;
+            }
+            String messageId = ownMessages.remove(ownMessages.size() - 1);
+            call(DELETE, "DELETE", "/message/" + messageId, pacilianToken, null);
+        }
+
+        private JsonNode call(String endpoint, String method, String path, String token, String json) {
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Authorization", "Bearer " + token);
+            if (json != null) {
+                request.header("Content-Type", "application/json")
+                        .method(method, HttpRequest.BodyPublishers.ofString(json));
+            } else {
+                request.method(method, HttpRequest.BodyPublishers.noBody());
+            }
+
+            long start = System.nanoTime();
+            try {
+                HttpResponse<byte[]> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+                boolean success = response.statusCode() / 100 == 2;
+                report.record(endpoint, System.nanoTime() - start, success);
+                return success ? objectMapper.readTree(response.body()) : null;
+            } catch (Exception e) {
+                report.record(endpoint, System.nanoTime() - start, false);
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }
+        }
+    }
+
+    /** The embedded PostgreSQL, or an external one when {@code loadtest.jdbc-url} is set. */
+    private static final class Database implements AutoCloseable {
+
+        private final EmbeddedPostgres embedded;
+        private final String jdbcUrl;
+        private final String user;
+        private final String password;
+        private final String description;
+
+        private Database(EmbeddedPostgres embedded, String jdbcUrl, String user, String password, String description) {
+            this.embedded = embedded;
+            this.jdbcUrl = jdbcUrl;
+            this.user = user;
+            this.password = password;
+            this.description = description;
+        }
+
+        static Database start() throws Exception {
+            String external = System.getProperty("loadtest.jdbc-url");
+            if (external != null) {
+                return new Database(null, external,
+                        System.getProperty("loadtest.db-user", "postgres"),
+                        System.getProperty("loadtest.db-password", "postgres"),
+                        "external");
+            }
+            Path dataDir = Files.createTempDirectory("loadtest-pg");
+            EmbeddedPostgres embedded = EmbeddedPostgres.builder()
+                    .setDataDirectory(dataDir)
+                    .setCleanDataDirectory(true)
+                    .setServerConfig("max_connections", "200")
+                    .start();
+            return new Database(embedded, embedded.getJdbcUrl("postgres", "postgres"), "postgres", "postgres",
+                    "embedded");
+        }
+
+        @Override
+        public void close() throws Exception {
+            if (embedded != null) {
+                embedded.close();
+            }
+        }
+    }
+}
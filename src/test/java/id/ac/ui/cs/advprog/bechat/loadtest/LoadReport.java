@@ -0,0 +1,100 @@
+package id.ac.ui.cs.advprog.bechat.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-endpoint latency histograms and error counts for one load run, printable as a table
+ * and writable as JSON so later runs can be compared against a stored baseline.
+ */
+class LoadReport {
+
+    private static final long MAX_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(2);
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    void record(String endpoint, long latencyNanos, boolean success) {
+        Endpoint stats = endpoints.computeIfAbsent(endpoint, name -> new Endpoint());
+        stats.latency.recordValue(Math.min(latencyNanos, MAX_TRACKABLE_NANOS));
+        if (!success) {
+            stats.errors.increment();
+        }
+    }
+
+    ObjectNode toJson(ObjectMapper objectMapper, Map<String, String> settings, long elapsedNanos) {
+        ObjectNode root = objectMapper.createObjectNode();
+        ObjectNode settingsNode = root.putObject("settings");
+        settings.forEach(settingsNode::put);
+        root.put("elapsedSeconds", elapsedNanos / 1e9);
+
+        ObjectNode endpointsNode = root.putObject("endpoints");
+        new TreeMap<>(endpoints).forEach((name, stats) -> {
+            Histogram histogram = stats.latency.copy();
+            long count = histogram.getTotalCount();
+            ObjectNode node = endpointsNode.putObject(name);
+            node.put("requests", count);
+            node.put("errors", stats.errors.sum());
+            node.put("errorRate", count == 0 ? 0 : (double) stats.errors.sum() / count);
+            node.put("throughputPerSecond", count / (elapsedNanos / 1e9));
+            node.put("p50Millis", millis(histogram.getValueAtPercentile(50)));
+            node.put("p95Millis", millis(histogram.getValueAtPercentile(95)));
+            node.put("p99Millis", millis(histogram.getValueAtPercentile(99)));
+            node.put("maxMillis", millis(histogram.getMaxValue()));
+        });
+        return root;
+    }
+
+    static String format(JsonNode report, JsonNode baseline) {
+        StringBuilder out = new StringBuilder(String.format("%-28s %9s %8s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "err%", "req/s", "p50 ms", "p95 ms", "p99 ms"));
+        report.get("endpoints").fields().forEachRemaining(entry -> {
+            JsonNode stats = entry.getValue();
+            out.append(String.format("%-28s %9d %7.2f%% %9.1f %9.2f %9.2f %9.2f",
+                    entry.getKey(),
+                    stats.get("requests").asLong(),
+                    stats.get("errorRate").asDouble() * 100,
+                    stats.get("throughputPerSecond").asDouble(),
+                    stats.get("p50Millis").asDouble(),
+                    stats.get("p95Millis").asDouble(),
+                    stats.get("p99Millis").asDouble()));
+            JsonNode before = baseline == null ? null : baseline.path("endpoints").get(entry.getKey());
+            if (before != null) {
+                out.append(String.format("   (baseline req/s %+.1f%%, p99 %+.1f%%)",
+                        change(before.get("throughputPerSecond").asDouble(), stats.get("throughputPerSecond").asDouble()),
+                        change(before.get("p99Millis").asDouble(), stats.get("p99Millis").asDouble())));
+            }
+            out.append(System.lineSeparator());
+        });
+        return out.toString();
+    }
+
+    static void write(ObjectMapper objectMapper, JsonNode report, Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), report);
+    }
+
+    static double change(double before, double after) {
+        return before == 0 ? 0 : (after - before) / before * 100;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static final class Endpoint {
+        private final ConcurrentHistogram latency = new ConcurrentHistogram(MAX_TRACKABLE_NANOS, 3);
+        private final LongAdder errors = new LongAdder();
+    }
+}
@@ -6,7 +6,9 @@ import id.ac.ui.cs.advprog.bechat.state.NormalState;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Instant;
 import java.util.Date;
+import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -73,4 +75,37 @@ class ChatMessageTest {
         assertTrue(message.isDeleted());
         assertInstanceOf(DeletedState.class, message.getState());
     }
+
+    @Test
+    void testIsNew_shouldBeTrueUntilPersistedOrLoaded() {
+        ChatMessage fresh = new ChatMessage();
+        assertTrue(fresh.isNew());
+
+        fresh.markPersisted();
+        assertFalse(fresh.isNew());
+
+        ChatMessage loaded = new ChatMessage();
+        loaded.initState();
+        assertFalse(loaded.isNew());
+    }
+
+    @Test
+    void testNewId_shouldCarryItsGenerationTime() {
+        long before = System.currentTimeMillis();
+        UUID id = ChatMessage.newId();
+        long after = System.currentTimeMillis();
+
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        long millis = ChatMessage.idTime(id).orElseThrow().toEpochMilli();
+        assertTrue(millis >= before && millis <= after);
+        assertNotEquals(id, ChatMessage.newId());
+    }
+
+    @Test
+    void testIdTime_randomId_shouldBeEmpty() {
+        assertEquals(Optional.empty(), ChatMessage.idTime(UUID.randomUUID()));
+        assertEquals(Optional.of(Instant.ofEpochMilli(0x0123456789ABL)),
+                ChatMessage.idTime(UUID.fromString("01234567-89ab-7def-8123-456789abcdef")));
+    }
 }
@@ -0,0 +1,53 @@
+package id.ac.ui.cs.advprog.bechat.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatSessionTest {
+
+    @Test
+    void testAssignParticipantPair_shouldBeIndependentOfRoleOrder() {
+        UUID first = UUID.fromString("11111111-1111-1111-1111-111111111111");
+        UUID second = UUID.fromString("22222222-2222-2222-2222-222222222222");
+
+        ChatSession session = new ChatSession();
+        session.setPacilian(second);
+        session.setCaregiver(first);
+        session.assignParticipantPair();
+
+        ChatSession swapped = new ChatSession();
+        swapped.setPacilian(first);
+        swapped.setCaregiver(second);
+        swapped.assignParticipantPair();
+
+        assertEquals(first, session.getParticipantLow());
+        assertEquals(second, session.getParticipantHigh());
+        assertEquals(session.getParticipantLow(), swapped.getParticipantLow());
+        assertEquals(session.getParticipantHigh(), swapped.getParticipantHigh());
+    }
+
+    @Test
+    void testCompareParticipants_shouldUseUnsignedOrderingLikePostgres() {
+        UUID low = UUID.fromString("7fffffff-ffff-ffff-ffff-ffffffffffff");
+        UUID high = UUID.fromString("80000000-0000-0000-0000-000000000000");
+
+        // UUID#compareTo is signed and would order these the other way around.
+        assertTrue(low.compareTo(high) > 0);
+        assertTrue(ChatSession.compareParticipants(low, high) < 0);
+        assertEquals(low, ChatSession.lowerOf(high, low));
+        assertEquals(high, ChatSession.higherOf(low, high));
+    }
+
+    @Test
+    void testAssignParticipantPair_shouldSkipWhenParticipantMissing() {
+        ChatSession session = new ChatSession();
+        session.setPacilian(UUID.randomUUID());
+        session.assignParticipantPair();
+
+        assertNull(session.getParticipantLow());
+        assertNull(session.getParticipantHigh());
+    }
+}
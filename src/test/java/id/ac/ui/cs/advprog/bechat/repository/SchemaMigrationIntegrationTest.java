@@ -0,0 +1,662 @@
+package id.ac.ui.cs.advprog.bechat.repository;
+
+import id.ac.ui.cs.advprog.bechat.BeChatApplication;
+import id.ac.ui.cs.advprog.bechat.model.ChatMessage;
+import id.ac.ui.cs.advprog.bechat.model.ChatSession;
+import id.ac.ui.cs.advprog.bechat.service.MessagePartitionMaintenance;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.jpa.repository.NativeQuery;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the Flyway migrations against a locally started PostgreSQL and checks that Hibernate
+ * accepts the result, that existing ddl-auto schemas are taken over, and that the queries the
+ * repositories run are planned on the migration's indexes.
+ * Run with {@code ./gradlew integrationTest}.
+ */
+class SchemaMigrationIntegrationTest {
+
+    private static final int SESSIONS = 2_000;
+    private static final int CAREGIVERS = 500;
+    private static final int MESSAGES_PER_SESSION = 100;
+    private static final List<Integer> CREATION_SESSION_COUNTS = List.of(1_000, 10_000, 100_000, 1_000_000);
+    private static final int CREATION_SAMPLES = 200;
+
+    private static final Pattern SEQ_SCAN = Pattern.compile("Seq Scan on (chat_\\w+)");
+
+    private static EmbeddedPostgres postgres;
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        postgres = EmbeddedPostgres.builder().start();
+    }
+
+    @AfterAll
+    static void stopDatabase() throws Exception {
+        postgres.close();
+    }
+
+    @Test
+    void existingDdlAutoSchemaIsBaselinedAndValidated() {
+        String url = createDatabase("legacy");
+
+        long legacyCold = boot(url, true);
+        long legacyWarm = boot(url, true);
+        long migrateOnce = boot(url, false);
+        long validateWarm = boot(url, false);
+
+        System.out.printf("Startup (ms): ddl-auto=update cold %d, warm %d | flyway+validate first run %d, warm %d%n",
+                legacyCold, legacyWarm, migrateOnce, validateWarm);
+
+        List<Map<String, Object>> history = new JdbcTemplate(dataSource(url)).queryForList(
+                "SELECT version, success FROM flyway_schema_history ORDER BY installed_rank");
+        assertEquals("0", history.get(0).get("version"));
+        assertEquals(List.of("0", "1", "2", "3", "4", "5", "6", "7", "8", "9"), history.stream().map(row -> row.get("version")).toList());
+        assertTrue(history.stream().allMatch(row -> Boolean.TRUE.equals(row.get("success"))));
+    }
+
+    @Test
+    void backfillGivesEachLegacyPairItsOldestSession() {
+        String url = createDatabase("backfill");
+        DataSource dataSource = dataSource(url);
+        Flyway.configure().dataSource(dataSource).target("2").load().migrate();
+
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        UUID pacilian = UUID.randomUUID();
+        UUID caregiver = UUID.randomUUID();
+        UUID oldest = insertLegacySession(jdbc, pacilian, caregiver, "2024-01-01 10:00:00");
+        UUID duplicate = insertLegacySession(jdbc, caregiver, pacilian, "2024-02-01 10:00:00");
+
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        assertEquals(1, jdbc.queryForObject(
+                "SELECT COUNT(*) FROM chat_session WHERE id = ? AND participant_low = LEAST(?::uuid, ?::uuid)",
+                Integer.class, oldest, pacilian, caregiver));
+        assertEquals(1, jdbc.queryForObject(
+                "SELECT COUNT(*) FROM chat_session WHERE id = ? AND participant_low IS NULL",
+                Integer.class, duplicate));
+    }
+
+    @Test
+    void changeSeqBackfillNumbersEachConversationInOrder() {
+        String url = createDatabase("changeseq");
+        DataSource dataSource = dataSource(url);
+        Flyway.configure().dataSource(dataSource).target("4").load().migrate();
+
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        UUID pacilian = UUID.randomUUID();
+        UUID session = insertLegacySession(jdbc, pacilian, UUID.randomUUID(), "2024-01-01 10:00:00");
+        for (String createdAt : List.of("2024-01-01 10:02:00", "2024-01-01 10:01:00", "2024-01-01 10:03:00")) {
+            jdbc.update("""
+                    INSERT INTO chat_message (id, session_id, sender_id, content, created_at, edited, deleted)
+                    VALUES (gen_random_uuid(), ?, ?, ?, ?, false, false)
+                    """, session, pacilian, createdAt, Timestamp.valueOf(createdAt));
+        }
+
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        assertEquals(List.of("2024-01-01 10:01:00", "2024-01-01 10:02:00", "2024-01-01 10:03:00"),
+                jdbc.queryForList("SELECT content FROM chat_message WHERE session_id = ? ORDER BY change_seq",
+                        String.class, session));
+        assertEquals(List.of(1L, 2L, 3L),
+                jdbc.queryForList("SELECT change_seq FROM chat_message WHERE session_id = ? ORDER BY change_seq",
+                        Long.class, session));
+        assertEquals(3L, jdbc.queryForObject("SELECT message_version FROM chat_session WHERE id = ?",
+                Long.class, session));
+    }
+
+    @Test
+    void searchRanksOwnLiveMessagesOnly() {
+        String url = createDatabase("search");
+        DataSource dataSource = dataSource(url);
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        UUID pacilian = UUID.randomUUID();
+        UUID own = insertLegacySession(jdbc, pacilian, UUID.randomUUID(), "2024-01-01 10:00:00");
+        UUID foreign = insertLegacySession(jdbc, UUID.randomUUID(), UUID.randomUUID(), "2024-01-01 10:00:00");
+        insertMessage(jdbc, own, pacilian, "Demam sejak kemarin, demam tinggi", false);
+        insertMessage(jdbc, own, pacilian, "Masih DEMAM dok", false);
+        insertMessage(jdbc, own, pacilian, "Pesan telah dihapus", true);
+        insertMessage(jdbc, own, pacilian, "Sudah minum obat", false);
+        insertMessage(jdbc, foreign, pacilian, "Demam juga", false);
+        // The deleted row's old content must not be findable either
+        jdbc.update("UPDATE chat_message SET content = 'demam rahasia' WHERE deleted");
+
+        List<String> hits = new NamedParameterJdbcTemplate(dataSource).query(
+                nativeSql(ChatMessageRepository.class, "searchMessages"),
+                new MapSqlParameterSource()
+                        .addValue("userId", pacilian)
+                        .addValue("query", "demam -juga")
+                        .addValue("limit", 10)
+                        .addValue("offset", 0),
+                (row, i) -> row.getString("content"));
+
+        assertEquals(Set.of("Demam sejak kemarin, demam tinggi", "Masih DEMAM dok"), Set.copyOf(hits));
+        assertEquals(2, hits.size());
+    }
+
+    @Test
+    void hotPathQueriesUseIndexes() throws Exception {
+        String url = createDatabase("plans");
+        DataSource dataSource = dataSource(url);
+        // Seeded before chat_message is partitioned, so the history is carried over by V7
+        Flyway.configure().dataSource(dataSource).target("6").load().migrate();
+        seed(new JdbcTemplate(dataSource));
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        new JdbcTemplate(dataSource).execute("ANALYZE");
+
+        NamedParameterJdbcTemplate jdbc = new NamedParameterJdbcTemplate(dataSource);
+        Map<String, Object> sample = jdbc.getJdbcTemplate().queryForMap("""
+                SELECT s.id AS session_id, s.pacilian, s.caregiver, s.participant_low, s.participant_high,
+                       m.id AS message_id, m.created_at
+                FROM chat_session s JOIN chat_message m ON m.session_id = s.id
+                -- A typical user; the busiest caregiver is checked separately below
+                WHERE s.caregiver <> (SELECT caregiver FROM chat_session GROUP BY caregiver ORDER BY count(*) DESC LIMIT 1)
+                ORDER BY s.id, m.created_at LIMIT 1 OFFSET 20
+                """);
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("sessionId", sample.get("session_id"))
+                .addValue("userId", sample.get("caregiver"))
+                .addValue("senderId", sample.get("pacilian"))
+                .addValue("content", "edited")
+                .addValue("pacilian", sample.get("pacilian"))
+                .addValue("caregiver", sample.get("caregiver"))
+                .addValue("low", sample.get("participant_low"))
+                .addValue("high", sample.get("participant_high"))
+                .addValue("id", sample.get("message_id"))
+                .addValue("messageId", sample.get("message_id"))
+                .addValue("createdAt", sample.get("created_at"))
+                .addValue("createdFrom", Timestamp.from(((Timestamp) sample.get("created_at")).toInstant().minus(Duration.ofDays(1))))
+                .addValue("createdTo", Timestamp.from(((Timestamp) sample.get("created_at")).toInstant().plus(Duration.ofDays(1))))
+                .addValue("notBefore", Timestamp.valueOf(LocalDateTime.now().minusDays(30)))
+                .addValue("limit", 50)
+                .addValue("offset", 0)
+                .addValue("previewLength", 120)
+                .addValue("changeSeq", MESSAGES_PER_SESSION / 2)
+                .addValue("query", "paracetamol")
+                .addValue("ids", List.of(sample.get("session_id")));
+
+        // Derived queries, written out as Hibernate issues them
+        // Either (session_id, ...) index serves this, on each partition; without a LIMIT the planner picks freely
+        assertPlanUses(jdbc, params, "SELECT * FROM chat_message WHERE session_id = :sessionId ORDER BY created_at",
+                "_session_id_");
+        assertPlanUses(jdbc, params, "SELECT * FROM chat_session WHERE pacilian = :pacilian AND caregiver = :caregiver",
+                "idx_chat_session_pacilian_caregiver");
+        assertPlanUses(jdbc, params, "SELECT * FROM chat_session WHERE participant_low = :low AND participant_high = :high",
+                "uk_chat_session_participants");
+
+        // Hand-written queries, read straight from the repositories
+        // The streamed transcript reads the whole session, so it is planned like the query above
+        assertPlanUses(jdbc, new MapSqlParameterSource(params.getValues())
+                        .addValue("sessionStart", Timestamp.valueOf("2000-01-01 00:00:00")),
+                ChatMessageRepositoryImpl.SESSION_MESSAGES_SQL
+                        .replaceFirst("\\?", ":sessionId").replaceFirst("\\?", ":sessionStart"),
+                "_session_id_");
+        // A recent page does not read the months before its lower bound
+        String latestPage = explain(jdbc, params, nativeSql(ChatMessageRepository.class, "findLatestPage"));
+        String oldMonth = partitionName(YearMonth.now().minusMonths(6));
+        assertFalse(latestPage.contains(oldMonth), () -> oldMonth + " not pruned:\n" + latestPage);
+        for (String method : List.of("findLatestPage", "findPageBefore", "findPageAfter")) {
+            assertPlanUses(jdbc, params, nativeSql(ChatMessageRepository.class, method),
+                    "idx_chat_message_session_created_id");
+        }
+        for (String method : List.of("findSessionSummaries", "findAllSessionSummaries")) {
+            assertPlanUses(jdbc, params, nativeSql(ChatSessionRepository.class, method),
+                    "idx_chat_session_pacilian_caregiver", "idx_chat_session_caregiver",
+                    "idx_chat_message_session_created_id");
+        }
+        assertPlanUses(jdbc, params, ChatReadStateRepositoryImpl.ADVANCE_WATERMARK_SQL,
+                "idx_chat_message_session_created_id");
+        assertPlanUses(jdbc, params, nativeSql(ChatReadStateRepository.class, "decrementUnreadAfterWatermark"),
+                "chat_read_state_pkey");
+        // A caregiver with hundreds of conversations is where search must not walk every message
+        UUID busiest = jdbc.getJdbcTemplate().queryForObject(
+                "SELECT caregiver FROM chat_session GROUP BY caregiver ORDER BY count(*) DESC LIMIT 1", UUID.class);
+        assertPlanUses(jdbc, new MapSqlParameterSource(params.getValues()).addValue("userId", busiest),
+                nativeSql(ChatMessageRepository.class, "searchMessages"), "idx_chat_message_content_search");
+        assertPlanUses(jdbc, params, nativeSql(ChatMessageRepository.class, "findChangesAfter"),
+                "idx_chat_message_session_change_seq");
+        // Lookups by id bound created_at around the id's time, so at most two months are read
+        for (String method : List.of("editIfAllowed", "deleteIfAllowed")) {
+            assertPlanUses(jdbc, params, nativeSql(ChatMessageRepository.class, method),
+                    "chat_message_pkey", "chat_session_pkey");
+            String plan = explain(jdbc, params, nativeSql(ChatMessageRepository.class, method));
+            Set<String> partitions = new HashSet<>();
+            Matcher partition = Pattern.compile("chat_message_(p\\d{6}|default)\\b").matcher(plan);
+            while (partition.find()) {
+                partitions.add(partition.group());
+            }
+            assertTrue(!partitions.isEmpty() && partitions.size() <= 2,
+                    () -> "expected one or two partitions:\n" + plan);
+        }
+        assertPlanUses(jdbc, params, nativeSql(ChatSessionRepository.class, "bumpMessageVersions"),
+                "chat_session_pkey");
+    }
+
+    @Test
+    void repeatedClientMessageIdsReturnTheFirstClaim() {
+        String url = createDatabase("idempotency");
+        DataSource dataSource = dataSource(url);
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        ChatMessageRepositoryImpl repository = new ChatMessageRepositoryImpl(jdbc, 500);
+        UUID sender = UUID.randomUUID();
+        UUID clientMessageId = UUID.randomUUID();
+        UUID first = UUID.randomUUID();
+        UUID retried = UUID.randomUUID();
+
+        assertEquals(List.of(first), repository.claimClientMessageIds(sender, Map.of(clientMessageId, first))
+                .stream().map(ChatMessageRepositoryCustom.ClientMessageClaim::messageId).toList());
+
+        UUID other = UUID.randomUUID();
+        Map<UUID, UUID> claimed = new HashMap<>();
+        repository.claimClientMessageIds(sender, Map.of(clientMessageId, retried, other, other))
+                .forEach(claim -> claimed.put(claim.clientMessageId(), claim.messageId()));
+        assertEquals(Map.of(clientMessageId, first, other, other), claimed);
+
+        // Keys are per sender
+        assertEquals(retried, repository.claimClientMessageIds(UUID.randomUUID(), Map.of(clientMessageId, retried))
+                .get(0).messageId());
+
+        assertEquals(0, repository.purgeClientMessageIds(Timestamp.valueOf("2000-01-01 00:00:00")));
+        assertEquals(3, repository.purgeClientMessageIds(new Date(System.currentTimeMillis() + 60_000)));
+    }
+
+    @Test
+    void sessionCreationLatencyStaysFlatAsSessionsGrow() {
+        String url = createDatabase("creation");
+        DataSource dataSource = dataSource(url);
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        // One connection, so that the timings are the statement and not the connection setup
+        SingleConnectionDataSource connection = new SingleConnectionDataSource(url, "postgres", "postgres", true);
+        JdbcTemplate jdbc = new JdbcTemplate(connection);
+        NamedParameterJdbcTemplate named = new NamedParameterJdbcTemplate(jdbc);
+        String upsert = nativeSql(ChatSessionRepository.class, "upsertSession");
+        for (int i = 0; i < CREATION_SAMPLES; i++) {
+            UUID pacilian = UUID.randomUUID();
+            UUID caregiver = UUID.randomUUID();
+            timeUpsert(named, upsert, UUID.randomUUID(), pacilian, caregiver);
+            timeLookup(jdbc, pacilian, caregiver);
+        }
+        jdbc.update("DELETE FROM chat_session");
+
+        Map<Integer, Long> newPairMedians = new HashMap<>();
+        int existing = 0;
+        for (int target : CREATION_SESSION_COUNTS) {
+            jdbc.update("""
+                    INSERT INTO chat_session (id, pacilian, pacilian_name, caregiver, caregiver_name, created_at,
+                                              participant_low, participant_high)
+                    SELECT gen_random_uuid(), p, 'Pacilian', c, 'Caregiver', now(), LEAST(p, c), GREATEST(p, c)
+                    FROM (SELECT gen_random_uuid() AS p, gen_random_uuid() AS c
+                          FROM generate_series(1, ?)) AS pairs
+                    """, target - existing);
+            jdbc.execute("ANALYZE chat_session");
+            existing = target;
+
+            List<Long> created = new ArrayList<>();
+            List<Long> repeated = new ArrayList<>();
+            for (int i = 0; i < CREATION_SAMPLES; i++) {
+                UUID pacilian = UUID.randomUUID();
+                UUID caregiver = UUID.randomUUID();
+                created.add(timeUpsert(named, upsert, UUID.randomUUID(), pacilian, caregiver));
+                // Reopening goes through the pair lookup, which findByParticipantLowAndParticipantHigh issues
+                repeated.add(timeLookup(jdbc, pacilian, caregiver));
+            }
+            existing += CREATION_SAMPLES;
+            newPairMedians.put(target, percentile(created, 50));
+            System.out.printf("Session creation at %,d sessions (us): new pair p50 %d p95 %d | existing pair p50 %d p95 %d%n",
+                    target, percentile(created, 50) / 1_000, percentile(created, 95) / 1_000,
+                    percentile(repeated, 50) / 1_000, percentile(repeated, 95) / 1_000);
+        }
+
+        // The old find-then-save read every session first, so it grew a thousandfold over this range.
+        long smallest = newPairMedians.get(CREATION_SESSION_COUNTS.get(0));
+        long largest = newPairMedians.get(CREATION_SESSION_COUNTS.get(CREATION_SESSION_COUNTS.size() - 1));
+        assertTrue(largest < 10 * smallest + TimeUnit.MILLISECONDS.toNanos(1),
+                () -> "p50 grew from " + smallest + "ns to " + largest + "ns");
+        assertEquals(existing, jdbc.queryForObject("SELECT COUNT(*) FROM chat_session", Integer.class));
+        connection.destroy();
+    }
+
+    private static long timeUpsert(NamedParameterJdbcTemplate jdbc, String upsert, UUID id, UUID pacilian, UUID caregiver) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("id", id)
+                .addValue("pacilian", pacilian)
+                .addValue("pacilianName", "Pacilian")
+                .addValue("caregiver", caregiver)
+                .addValue("caregiverName", "Caregiver")
+                .addValue("participantLow", ChatSession.lowerOf(pacilian, caregiver))
+                .addValue("participantHigh", ChatSession.higherOf(pacilian, caregiver));
+        long start = System.nanoTime();
+        jdbc.queryForList(upsert, params);
+        return System.nanoTime() - start;
+    }
+
+    private static long timeLookup(JdbcTemplate jdbc, UUID pacilian, UUID caregiver) {
+        long start = System.nanoTime();
+        List<Map<String, Object>> rows = jdbc.queryForList(
+                "SELECT * FROM chat_session WHERE participant_low = ? AND participant_high = ?",
+                ChatSession.lowerOf(pacilian, caregiver), ChatSession.higherOf(pacilian, caregiver));
+        long elapsed = System.nanoTime() - start;
+        assertEquals(1, rows.size());
+        return elapsed;
+    }
+
+    private static long percentile(List<Long> samples, int percentile) {
+        List<Long> sorted = samples.stream().sorted().toList();
+        return sorted.get(Math.min(sorted.size() - 1, sorted.size() * percentile / 100));
+    }
+
+    @Test
+    void concurrentChangesToADeletedMessageBumpTheSessionOnce() throws Exception {
+        String url = createDatabase("racing_deletes");
+        DataSource dataSource = dataSource(url);
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        UUID pacilian = UUID.randomUUID();
+        UUID caregiver = UUID.randomUUID();
+        UUID session = UUID.randomUUID();
+        jdbc.update("""
+                INSERT INTO chat_session (id, pacilian, pacilian_name, caregiver, caregiver_name, created_at,
+                                          participant_low, participant_high)
+                VALUES (?, ?, 'Pacilian', ?, 'Caregiver', now(), ?, ?)
+                """, session, pacilian, caregiver,
+                ChatSession.lowerOf(pacilian, caregiver), ChatSession.higherOf(pacilian, caregiver));
+
+        // A delete that commits while a second delete, or an edit, of the same message waits
+        for (String loser : List.of("deleteIfAllowed", "editIfAllowed")) {
+            UUID message = ChatMessage.newId();
+            jdbc.update("""
+                    INSERT INTO chat_message (id, session_id, sender_id, content, created_at, edited, deleted)
+                    VALUES (?, ?, ?, 'halo', now(), false, false)
+                    """, message, session, pacilian);
+            long before = jdbc.queryForObject("SELECT message_version FROM chat_session WHERE id = ?", Long.class, session);
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("id", message)
+                    .addValue("createdFrom", ChatMessageRepository.createdFrom(message))
+                    .addValue("createdTo", ChatMessageRepository.createdTo(message))
+                    .addValue("senderId", pacilian)
+                    .addValue("content", "changed");
+
+            try (Connection winner = dataSource.getConnection(); Connection waiter = dataSource.getConnection()) {
+                winner.setAutoCommit(false);
+                waiter.setAutoCommit(false);
+                assertEquals(1, changeOn(winner, "deleteIfAllowed", params).size());
+
+                ExecutorService executor = Executors.newSingleThreadExecutor();
+                try {
+                    Future<List<Map<String, Object>>> waiting = executor.submit(() -> changeOn(waiter, loser, params));
+                    awaitLockWait(jdbc);
+                    winner.commit();
+                    assertEquals(List.of(), waiting.get(30, TimeUnit.SECONDS));
+                    waiter.commit();
+                } finally {
+                    executor.shutdownNow();
+                }
+            }
+
+            assertEquals(before + 1, jdbc.queryForObject(
+                    "SELECT message_version FROM chat_session WHERE id = ?", Long.class, session));
+            assertEquals(before + 1, jdbc.queryForObject(
+                    "SELECT change_seq FROM chat_message WHERE id = ?", Long.class, message));
+        }
+    }
+
+    private static List<Map<String, Object>> changeOn(Connection connection, String method,
+                                                     MapSqlParameterSource params) {
+        return new NamedParameterJdbcTemplate(new SingleConnectionDataSource(connection, true))
+                .queryForList(nativeSql(ChatMessageRepository.class, method), params);
+    }
+
+    private static void awaitLockWait(JdbcTemplate jdbc) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (jdbc.queryForObject("SELECT count(*) FROM pg_stat_activity WHERE wait_event_type = 'Lock'",
+                Integer.class) == 0) {
+            assertTrue(System.nanoTime() < deadline, "second change never waited for the first");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void oldPartitionsMoveToColdTierAndStayReadable() {
+        String url = createDatabase("partitions");
+        DataSource dataSource = dataSource(url);
+        Flyway.configure().dataSource(dataSource).target("6").load().migrate();
+
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        UUID pacilian = UUID.randomUUID();
+        UUID session = insertLegacySession(jdbc, pacilian, UUID.randomUUID(), "2024-01-01 10:00:00");
+        YearMonth now = YearMonth.now();
+        for (int monthsAgo : List.of(12, 8, 7, 1, 0)) {
+            jdbc.update("""
+                    INSERT INTO chat_message (id, session_id, sender_id, content, created_at, edited, deleted)
+                    VALUES (gen_random_uuid(), ?, ?, ?, ?, false, false)
+                    """, session, pacilian, "sent " + monthsAgo + " months ago",
+                    Timestamp.valueOf(now.minusMonths(monthsAgo).atDay(1).atTime(12, 0)));
+        }
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        MessagePartitionMaintenance maintenance = new MessagePartitionMaintenance(jdbc,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)), new SimpleMeterRegistry());
+        maintenance.maintain();
+        maintenance.maintain();
+
+        // V7 created every month since the oldest message; those before now-6 are archived
+        List<String> cold = new ArrayList<>();
+        for (int monthsAgo = 12; monthsAgo > 6; monthsAgo--) {
+            cold.add(partitionName(now.minusMonths(monthsAgo)));
+        }
+        assertEquals(cold, jdbc.queryForList(
+                "SELECT partition_name FROM chat_message_cold_partition ORDER BY range_start", String.class));
+        assertEquals(6, maintenance.coldPartitionCount());
+        // The seven months from now-6 to now, and three ahead
+        assertEquals(10, maintenance.hotPartitionCount());
+        assertEquals(0, jdbc.queryForObject("SELECT count(*) FROM chat_message_default", Integer.class));
+        assertEquals(5, jdbc.queryForObject("SELECT count(*) FROM chat_message WHERE session_id = ?",
+                Integer.class, session));
+    }
+
+    @Test
+    void rowsStrandedInTheDefaultPartitionMoveIntoTheNewMonth() {
+        String url = createDatabase("stranded");
+        DataSource dataSource = dataSource(url);
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        UUID pacilian = UUID.randomUUID();
+        UUID session = insertLegacySession(jdbc, pacilian, UUID.randomUUID(), "2024-01-01 10:00:00");
+        // Maintenance fell behind: two upcoming months are missing and one already has a message
+        YearMonth stranded = YearMonth.now().plusMonths(2);
+        YearMonth missing = YearMonth.now().plusMonths(3);
+        jdbc.execute("DROP TABLE " + partitionName(stranded));
+        jdbc.execute("DROP TABLE " + partitionName(missing));
+        jdbc.update("""
+                INSERT INTO chat_message (id, session_id, sender_id, content, created_at, edited, deleted)
+                VALUES (gen_random_uuid(), ?, ?, 'scheduled', ?, false, false)
+                """, session, pacilian, Timestamp.valueOf(stranded.atDay(1).atTime(12, 0)));
+        assertEquals(1, jdbc.queryForObject("SELECT count(*) FROM chat_message_default", Integer.class));
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        new MessagePartitionMaintenance(jdbc, new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                meterRegistry).maintain();
+
+        assertEquals(0, jdbc.queryForObject("SELECT count(*) FROM chat_message_default", Integer.class));
+        assertEquals(1, jdbc.queryForObject("SELECT count(*) FROM " + partitionName(stranded), Integer.class));
+        assertEquals(0, jdbc.queryForObject("SELECT count(*) FROM " + partitionName(missing), Integer.class));
+        assertEquals(List.of("scheduled"), jdbc.queryForList(
+                "SELECT content FROM chat_message WHERE session_id = ?", String.class, session));
+        // The moved partition is a full member: same primary key and indexes as the others
+        assertEquals(4, jdbc.queryForObject(
+                "SELECT count(*) FROM pg_indexes WHERE tablename = ?", Integer.class, partitionName(stranded)));
+        assertNull(meterRegistry.find("chat.partition.maintenance.failures").counter());
+    }
+
+    private static String partitionName(YearMonth month) {
+        return "chat_message_p" + month.format(DateTimeFormatter.ofPattern("yyyyMM"));
+    }
+
+    private static String explain(NamedParameterJdbcTemplate jdbc, MapSqlParameterSource params, String sql) {
+        String plan = String.join("\n", jdbc.queryForList("EXPLAIN " + sql, params, String.class));
+        System.out.println(sql.strip() + "\n" + plan + "\n");
+        return plan;
+    }
+
+    /**
+     * Checks that each index, or on chat_message the per-partition copy of it, appears in the plan.
+     */
+    private static void assertPlanUses(NamedParameterJdbcTemplate jdbc, MapSqlParameterSource params,
+                                       String sql, String... indexes) {
+        String plan = explain(jdbc, params, sql);
+        for (String index : indexes) {
+            List<String> names = new ArrayList<>(jdbc.getJdbcTemplate().queryForList("""
+                    SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+                    WHERE i.inhparent = (SELECT oid FROM pg_class WHERE relname = ?)
+                    """, String.class, index));
+            names.add(index);
+            assertTrue(names.stream().anyMatch(plan::contains), () -> "expected " + index + " in plan:\n" + plan);
+        }
+        // Scanning an empty partition, such as next month's, costs nothing
+        Matcher scan = SEQ_SCAN.matcher(plan);
+        while (scan.find()) {
+            String table = scan.group(1);
+            assertFalse(jdbc.getJdbcTemplate().queryForObject(
+                            "SELECT reltuples > 0 FROM pg_class WHERE relname = ?", Boolean.class, table),
+                    () -> table + " scanned:\n" + plan);
+        }
+    }
+
+    private static String nativeSql(Class<?> repository, String methodName) {
+        for (Method method : repository.getMethods()) {
+            // Overloads that are default methods delegate to the annotated one
+            if (method.getName().equals(methodName) && !method.isDefault()) {
+                Query query = method.getAnnotation(Query.class);
+                return query != null ? query.value() : method.getAnnotation(NativeQuery.class).value();
+            }
+        }
+        throw new IllegalArgumentException("No method " + methodName + " on " + repository.getSimpleName());
+    }
+
+    private static void seed(JdbcTemplate jdbc) {
+        List<UUID> caregivers = new ArrayList<>();
+        for (int i = 0; i < CAREGIVERS; i++) {
+            caregivers.add(UUID.randomUUID());
+        }
+        List<Object[]> sessions = new ArrayList<>();
+        for (int i = 0; i < SESSIONS; i++) {
+            UUID pacilian = UUID.randomUUID();
+            UUID caregiver = caregivers.get(i % 4 == 0 ? 0 : i % CAREGIVERS);
+            sessions.add(new Object[]{UUID.randomUUID(), pacilian, caregiver,
+                    ChatSession.lowerOf(pacilian, caregiver), ChatSession.higherOf(pacilian, caregiver)});
+        }
+        jdbc.batchUpdate("""
+                INSERT INTO chat_session (id, pacilian, pacilian_name, caregiver, caregiver_name, created_at,
+                                          participant_low, participant_high)
+                VALUES (?, ?, 'Pacilian', ?, 'Caregiver', now(), ?, ?)
+                """, sessions);
+        jdbc.update("""
+                INSERT INTO chat_message (id, session_id, sender_id, content, created_at, edited, deleted, change_seq)
+                SELECT gen_random_uuid(), s.id, CASE WHEN n % 2 = 0 THEN s.pacilian ELSE s.caregiver END,
+                       'message ' || n || CASE WHEN random() < 0.0005 THEN ' paracetamol' ELSE '' END,
+                       now() - (n * 3 || ' days')::interval, false, false, n
+                FROM chat_session s CROSS JOIN generate_series(1, ?) AS n
+                """, MESSAGES_PER_SESSION);
+        jdbc.update("""
+                INSERT INTO chat_read_state (session_id, user_id, unread_count, updated_at)
+                SELECT id, participant, 0, now()
+                FROM chat_session CROSS JOIN LATERAL (VALUES (pacilian), (caregiver)) AS p (participant)
+                """);
+        jdbc.execute("ANALYZE");
+    }
+
+    private static void insertMessage(JdbcTemplate jdbc, UUID session, UUID sender, String content, boolean deleted) {
+        jdbc.update("""
+                INSERT INTO chat_message (id, session_id, sender_id, content, created_at, edited, deleted)
+                VALUES (gen_random_uuid(), ?, ?, ?, now(), false, ?)
+                """, session, sender, content, deleted);
+    }
+
+    private static UUID insertLegacySession(JdbcTemplate jdbc, UUID pacilian, UUID caregiver, String createdAt) {
+        UUID id = UUID.randomUUID();
+        jdbc.update("""
+                INSERT INTO chat_session (id, pacilian, pacilian_name, caregiver, caregiver_name, created_at)
+                VALUES (?, ?, 'Pacilian', ?, 'Caregiver', ?)
+                """, id, pacilian, caregiver, Timestamp.valueOf(createdAt));
+        return id;
+    }
+
+    private static long boot(String url, boolean legacyDdlAuto) {
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.datasource.url=" + url,
+                "--spring.datasource.username=postgres",
+                "--spring.datasource.password=postgres",
+                "--auth.service.url=http://localhost:1",
+                "--jwt.secret=" + Base64.getEncoder().encodeToString(new byte[32]),
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--logging.file.name=build/reports/integrationTest/be-chat.log"));
+        if (legacyDdlAuto) {
+            args.add("--spring.flyway.enabled=false");
+            args.add("--spring.jpa.hibernate.ddl-auto=update");
+        }
+
+        long start = System.nanoTime();
+        try (ConfigurableApplicationContext ignored = new SpringApplicationBuilder(BeChatApplication.class)
+                .run(args.toArray(String[]::new))) {
+            return (System.nanoTime() - start) / 1_000_000;
+        }
+    }
+
+    private static String createDatabase(String name) {
+        new JdbcTemplate(postgres.getPostgresDatabase()).execute("CREATE DATABASE " + name);
+        return postgres.getJdbcUrl("postgres", name);
+    }
+
+    private static DataSource dataSource(String url) {
+        return new DriverManagerDataSource(url, "postgres", "postgres");
+    }
+}
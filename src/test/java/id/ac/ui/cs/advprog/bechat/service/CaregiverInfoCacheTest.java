@@ -0,0 +1,103 @@
+package id.ac.ui.cs.advprog.bechat.service;
+
+import id.ac.ui.cs.advprog.bechat.dto.CaregiverPublicDto;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CaregiverInfoCacheTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    private CaregiverPublicDto caregiver(String name) {
+        CaregiverPublicDto dto = new CaregiverPublicDto();
+        dto.setName(name);
+        return dto;
+    }
+
+    @Test
+    void testGet_concurrentCallers_shouldShareOneInFlightLookup() throws Exception {
+        CaregiverInfoCache cache = new CaregiverInfoCache(100, Duration.ofMinutes(10), Duration.ofMinutes(1), Duration.ofHours(24));
+        UUID userId = UUID.randomUUID();
+        AtomicInteger remoteCalls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        int callers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+
+        try {
+            List<Future<Optional<CaregiverPublicDto>>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> cache.get(userId, id -> {
+                    remoteCalls.incrementAndGet();
+                    await(release);
+                    return Optional.of(caregiver("Dr. Panda"));
+                })));
+            }
+
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<Optional<CaregiverPublicDto>> result : results) {
+                assertEquals("Dr. Panda", result.get(5, TimeUnit.SECONDS).orElseThrow().getName());
+            }
+            assertEquals(1, remoteCalls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testGet_negativeEntry_shouldExpireBeforePositiveEntry() {
+        CaregiverInfoCache cache = new CaregiverInfoCache(100, Duration.ofMinutes(10), Duration.ofMinutes(1), Duration.ofHours(24), nanos::get);
+        UUID known = UUID.randomUUID();
+        UUID unknown = UUID.randomUUID();
+        AtomicInteger remoteCalls = new AtomicInteger();
+
+        cache.get(known, id -> {
+            remoteCalls.incrementAndGet();
+            return Optional.of(caregiver("Dr. Panda"));
+        });
+        cache.get(unknown, id -> {
+            remoteCalls.incrementAndGet();
+            return Optional.empty();
+        });
+
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(2));
+
+        assertTrue(cache.get(known, id -> fail("positive entry should still be cached")).isPresent());
+        assertTrue(cache.get(unknown, id -> {
+            remoteCalls.incrementAndGet();
+            return Optional.empty();
+        }).isEmpty());
+        assertEquals(3, remoteCalls.get());
+    }
+
+    @Test
+    void testGet_loaderFailure_shouldPropagateAndNotBeCached() {
+        CaregiverInfoCache cache = new CaregiverInfoCache(100, Duration.ofMinutes(10), Duration.ofMinutes(1), Duration.ofHours(24));
+        UUID userId = UUID.randomUUID();
+
+        assertThrows(IllegalStateException.class, () -> cache.get(userId, id -> {
+            throw new IllegalStateException("auth service down");
+        }));
+
+        assertEquals("Dr. Panda", cache.get(userId, id -> Optional.of(caregiver("Dr. Panda"))).orElseThrow().getName());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package id.ac.ui.cs.advprog.bechat.service;
+
+import com.sun.net.httpserver.HttpServer;
+import id.ac.ui.cs.advprog.bechat.config.AppConfig;
+import id.ac.ui.cs.advprog.bechat.exception.AuthServiceUnavailableException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs {@link CaregiverInfoService} against a local stub auth service that can be told
+ * to answer slowly or fail, using the same pooled client the application builds.
+ */
+class CaregiverInfoServiceResilienceTest {
+
+    private static final Duration READ_TIMEOUT = Duration.ofMillis(300);
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private final AtomicInteger hits = new AtomicInteger();
+    private volatile int status = 200;
+    private volatile long delayMillis = 0;
+    private volatile CountDownLatch requestReceived = new CountDownLatch(1);
+
+    private CircuitBreaker circuitBreaker;
+    private SimpleMeterRegistry meterRegistry;
+    private final AtomicLong nanos = new AtomicLong();
+    private CaregiverInfoCache caregiverInfoCache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.createContext("/data/caregiver/", exchange -> {
+            hits.incrementAndGet();
+            requestReceived.countDown();
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = (status == 200
+                    ? "{\"status\":200,\"message\":\"OK\",\"data\":{\"name\":\"Dr. Cleo\"}}"
+                    : "{\"status\":" + status + ",\"message\":\"failure\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            try {
+                exchange.sendResponseHeaders(status, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (IOException ignored) {
+                // client gave up waiting
+            }
+        });
+        server.start();
+
+        circuitBreaker = CircuitBreaker.of("auth-service", CircuitBreakerConfig.custom()
+                .slidingWindowSize(4)
+                .minimumNumberOfCalls(4)
+                .failureRateThreshold(50)
+                .waitDurationInOpenState(Duration.ofMinutes(1))
+                .recordExceptions(AuthServiceUnavailableException.class)
+                .build());
+        meterRegistry = new SimpleMeterRegistry();
+        caregiverInfoCache = new CaregiverInfoCache(100, Duration.ofMinutes(10), Duration.ofMinutes(1),
+                Duration.ofHours(24), nanos::get);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    private CaregiverInfoService service(Bulkhead bulkhead) throws Exception {
+        CaregiverInfoService service = new CaregiverInfoService(
+                AppConfig.pooledRestTemplate(4, Duration.ofSeconds(1), READ_TIMEOUT, Duration.ofSeconds(1)),
+                caregiverInfoCache, circuitBreaker, bulkhead, meterRegistry);
+        Field authUrlField = CaregiverInfoService.class.getDeclaredField("authServiceUrl");
+        authUrlField.setAccessible(true);
+        authUrlField.set(service, "http://localhost:" + server.getAddress().getPort());
+        return service;
+    }
+
+    private CaregiverInfoService service() throws Exception {
+        return service(Bulkhead.ofDefaults("auth-service"));
+    }
+
+    private long outcomeCount(String outcome) {
+        var timer = meterRegistry.find("caregiver.info.remote.latency").tag("outcome", outcome).timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    @Test
+    void testSlowAuthService_shouldTimeOutInsteadOfHanging() throws Exception {
+        delayMillis = 2_000;
+        CaregiverInfoService service = service();
+
+        long start = System.nanoTime();
+        assertThrows(AuthServiceUnavailableException.class,
+                () -> service.getNameByUserIdCaregiver(UUID.randomUUID(), "token"));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsedMillis < 1_500, "call took " + elapsedMillis + "ms");
+        assertEquals(1, outcomeCount("timeout"));
+    }
+
+    @Test
+    void testFailingAuthService_shouldOpenCircuitAndFailFast() throws Exception {
+        status = 500;
+        CaregiverInfoService service = service();
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(AuthServiceUnavailableException.class,
+                    () -> service.getNameByUserIdCaregiver(UUID.randomUUID(), "token"));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertEquals(4, hits.get());
+
+        assertThrows(AuthServiceUnavailableException.class,
+                () -> service.getNameByUserIdCaregiver(UUID.randomUUID(), "token"));
+        assertEquals(4, hits.get());
+        assertEquals(4, outcomeCount("server_error"));
+        assertEquals(1, outcomeCount("short_circuited"));
+    }
+
+    @Test
+    void testOpenCircuit_shouldServeLastKnownInfo() throws Exception {
+        CaregiverInfoService service = service();
+        UUID caregiverId = UUID.randomUUID();
+        assertEquals("Dr. Cleo", service.getNameByUserIdCaregiver(caregiverId, "token"));
+
+        nanos.addAndGet(Duration.ofMinutes(11).toNanos());
+        status = 503;
+        circuitBreaker.transitionToOpenState();
+
+        assertEquals("Dr. Cleo", service.getNameByUserIdCaregiver(caregiverId, "token"));
+        assertEquals(1, hits.get());
+        assertEquals(1.0, meterRegistry.counter("caregiver.info.stale.served").count());
+    }
+
+    @Test
+    void testClientError_shouldNotTripCircuit() throws Exception {
+        status = 400;
+        CaregiverInfoService service = service();
+
+        for (int i = 0; i < 6; i++) {
+            IllegalStateException e = assertThrows(IllegalStateException.class,
+                    () -> service.getNameByUserIdCaregiver(UUID.randomUUID(), "token"));
+            assertFalse(e instanceof AuthServiceUnavailableException);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    void testSaturatedBulkhead_shouldRejectExtraCalls() throws Exception {
+        delayMillis = 200;
+        CaregiverInfoService service = service(Bulkhead.of("auth-service", BulkheadConfig.custom()
+                .maxConcurrentCalls(1)
+                .maxWaitDuration(Duration.ZERO)
+                .build()));
+
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> first = caller.submit(() -> service.getNameByUserIdCaregiver(UUID.randomUUID(), "token"));
+            assertTrue(requestReceived.await(1, TimeUnit.SECONDS));
+
+            assertThrows(AuthServiceUnavailableException.class,
+                    () -> service.getNameByUserIdCaregiver(UUID.randomUUID(), "token"));
+            assertEquals("Dr. Cleo", first.get(1, TimeUnit.SECONDS));
+        } finally {
+            caller.shutdownNow();
+        }
+        assertEquals(1, hits.get());
+        assertEquals(1, outcomeCount("rejected"));
+    }
+}
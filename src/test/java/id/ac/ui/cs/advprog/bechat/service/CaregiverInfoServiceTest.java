@@ -2,14 +2,19 @@ package id.ac.ui.cs.advprog.bechat.service;
 
 import id.ac.ui.cs.advprog.bechat.dto.ApiResponseDto;
 import id.ac.ui.cs.advprog.bechat.dto.CaregiverPublicDto;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentMatchers;
 import org.springframework.http.*;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.core.ParameterizedTypeReference;
 
 import java.lang.reflect.Field;
+import java.time.Duration;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -20,13 +25,16 @@ class CaregiverInfoServiceTest {
 
     private RestTemplate restTemplate;
     private CaregiverInfoService caregiverInfoService;
+    private CaregiverInfoCache caregiverInfoCache;
 
     private final String AUTH_URL = "http://localhost:8080";
 
     @BeforeEach
     void setUp() throws Exception {
         restTemplate = mock(RestTemplate.class);
-        caregiverInfoService = new CaregiverInfoService(restTemplate);
+        caregiverInfoCache = new CaregiverInfoCache(100, Duration.ofMinutes(10), Duration.ofMinutes(1), Duration.ofHours(24));
+        caregiverInfoService = new CaregiverInfoService(restTemplate, caregiverInfoCache,
+                CircuitBreaker.ofDefaults("auth-service"), Bulkhead.ofDefaults("auth-service"), new SimpleMeterRegistry());
 
         Field authUrlField = CaregiverInfoService.class.getDeclaredField("authServiceUrl");
         authUrlField.setAccessible(true);
@@ -103,4 +111,72 @@ class CaregiverInfoServiceTest {
                 caregiverInfoService.getNameByUserIdCaregiver(userId, token)
         );
     }
+
+    @Test
+    void testGetNameByUserIdCaregiver_repeatedLookup_shouldCallRemoteOnce() {
+        UUID userId = UUID.randomUUID();
+
+        CaregiverPublicDto mockCaregiver = new CaregiverPublicDto();
+        mockCaregiver.setName("Dr. Cleo");
+        ResponseEntity<ApiResponseDto<CaregiverPublicDto>> responseEntity =
+                new ResponseEntity<>(ApiResponseDto.success(200, "OK", mockCaregiver), HttpStatus.OK);
+
+        when(restTemplate.exchange(
+                anyString(),
+                eq(HttpMethod.GET),
+                any(HttpEntity.class),
+                ArgumentMatchers.<ParameterizedTypeReference<ApiResponseDto<CaregiverPublicDto>>>any()
+        )).thenReturn(responseEntity);
+
+        assertEquals("Dr. Cleo", caregiverInfoService.getNameByUserIdCaregiver(userId, "token-a"));
+        assertEquals("Dr. Cleo", caregiverInfoService.getNameByUserIdCaregiver(userId, "token-b"));
+
+        verify(restTemplate, times(1)).exchange(
+                anyString(),
+                eq(HttpMethod.GET),
+                any(HttpEntity.class),
+                ArgumentMatchers.<ParameterizedTypeReference<ApiResponseDto<CaregiverPublicDto>>>any());
+    }
+
+    @Test
+    void testGetNameByUserIdCaregiver_unknownCaregiver_shouldBeNegativelyCached() {
+        UUID userId = UUID.randomUUID();
+
+        when(restTemplate.exchange(
+                anyString(),
+                eq(HttpMethod.GET),
+                any(HttpEntity.class),
+                ArgumentMatchers.<ParameterizedTypeReference<ApiResponseDto<CaregiverPublicDto>>>any()
+        )).thenThrow(HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found", new HttpHeaders(), null, null));
+
+        assertThrows(IllegalStateException.class, () -> caregiverInfoService.getNameByUserIdCaregiver(userId, "fake-token"));
+        assertThrows(IllegalStateException.class, () -> caregiverInfoService.getNameByUserIdCaregiver(userId, "fake-token"));
+
+        verify(restTemplate, times(1)).exchange(
+                anyString(),
+                eq(HttpMethod.GET),
+                any(HttpEntity.class),
+                ArgumentMatchers.<ParameterizedTypeReference<ApiResponseDto<CaregiverPublicDto>>>any());
+    }
+
+    @Test
+    void testGetNameByUserIdCaregiver_failedLookup_shouldNotBeCached() {
+        UUID userId = UUID.randomUUID();
+
+        when(restTemplate.exchange(
+                anyString(),
+                eq(HttpMethod.GET),
+                any(HttpEntity.class),
+                ArgumentMatchers.<ParameterizedTypeReference<ApiResponseDto<CaregiverPublicDto>>>any()
+        )).thenReturn(new ResponseEntity<>(null, HttpStatus.OK));
+
+        assertThrows(IllegalStateException.class, () -> caregiverInfoService.getNameByUserIdCaregiver(userId, "fake-token"));
+        assertThrows(IllegalStateException.class, () -> caregiverInfoService.getNameByUserIdCaregiver(userId, "fake-token"));
+
+        verify(restTemplate, times(2)).exchange(
+                anyString(),
+                eq(HttpMethod.GET),
+                any(HttpEntity.class),
+                ArgumentMatchers.<ParameterizedTypeReference<ApiResponseDto<CaregiverPublicDto>>>any());
+    }
 }
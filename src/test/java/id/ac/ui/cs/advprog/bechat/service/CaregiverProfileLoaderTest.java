@@ -0,0 +1,281 @@
+package id.ac.ui.cs.advprog.bechat.service;
+
+import com.sun.net.httpserver.HttpServer;
+import id.ac.ui.cs.advprog.bechat.config.AppConfig;
+import id.ac.ui.cs.advprog.bechat.exception.AuthServiceUnavailableException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs {@link CaregiverProfileLoader} against a local stub of the auth service's single and
+ * multi-id caregiver endpoints, which name each caregiver after the first block of its id.
+ */
+class CaregiverProfileLoaderTest {
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private final List<Set<String>> requests = new CopyOnWriteArrayList<>();
+    private final List<String> requestTokens = new CopyOnWriteArrayList<>();
+    private final List<String> singleRequests = new CopyOnWriteArrayList<>();
+    private final Set<String> unknown = ConcurrentHashMap.newKeySet();
+    private volatile int status = 200;
+
+    private final AtomicLong nanos = new AtomicLong();
+    private CaregiverInfoCache caregiverInfoCache;
+    private SimpleMeterRegistry meterRegistry;
+    private CircuitBreaker circuitBreaker;
+    private final List<CaregiverProfileLoader> loaders = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.createContext("/data/caregiver/batch", exchange -> {
+            String query = exchange.getRequestURI().getQuery();
+            Set<String> ids = Arrays.stream(query.substring("ids=".length()).split(","))
+                    .collect(Collectors.toSet());
+            requests.add(ids);
+            requestTokens.add(exchange.getRequestHeaders().getFirst("Authorization"));
+            String caregivers = ids.stream()
+                    .filter(id -> !unknown.contains(id))
+                    .map(id -> "{\"id\":\"" + id + "\",\"name\":\"" + name(id) + "\"}")
+                    .collect(Collectors.joining(","));
+            byte[] body = (status == 200
+                    ? "{\"status\":200,\"message\":\"OK\",\"data\":[" + caregivers + "]}"
+                    : "{\"status\":" + status + ",\"message\":\"failure\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/data/caregiver/", exchange -> {
+            String id = exchange.getRequestURI().getPath().substring("/data/caregiver/".length());
+            singleRequests.add(id);
+            int code = unknown.contains(id) ? 404 : status;
+            byte[] body = (code == 200
+                    ? "{\"status\":200,\"message\":\"OK\",\"data\":{\"id\":\"" + id + "\",\"name\":\"" + name(id) + "\"}}"
+                    : "{\"status\":" + code + ",\"message\":\"failure\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(code, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        caregiverInfoCache = new CaregiverInfoCache(1000, Duration.ofMinutes(10), Duration.ofMinutes(1),
+                Duration.ofHours(24), nanos::get);
+        meterRegistry = new SimpleMeterRegistry();
+        circuitBreaker = CircuitBreaker.of("auth-service", CircuitBreakerConfig.custom()
+                .recordExceptions(AuthServiceUnavailableException.class)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        loaders.forEach(CaregiverProfileLoader::shutdown);
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    private static String name(String id) {
+        return "Dr. " + id.substring(0, 8);
+    }
+
+    private CaregiverProfileLoader loader(Duration window, int maxBatchSize) throws Exception {
+        return loader(true, window, maxBatchSize);
+    }
+
+    private CaregiverProfileLoader loader(boolean batchEnabled, Duration window, int maxBatchSize) throws Exception {
+        CaregiverInfoService service = new CaregiverInfoService(
+                AppConfig.pooledRestTemplate(4, Duration.ofSeconds(1), Duration.ofSeconds(1), Duration.ofSeconds(1)),
+                caregiverInfoCache, circuitBreaker, Bulkhead.ofDefaults("auth-service"), meterRegistry);
+        Field authUrlField = CaregiverInfoService.class.getDeclaredField("authServiceUrl");
+        authUrlField.setAccessible(true);
+        authUrlField.set(service, "http://localhost:" + server.getAddress().getPort());
+        CaregiverProfileLoader loader = new CaregiverProfileLoader(service, caregiverInfoCache, meterRegistry,
+                batchEnabled, window, maxBatchSize);
+        loaders.add(loader);
+        return loader;
+    }
+
+    private static List<UUID> ids(int count) {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(UUID.randomUUID());
+        }
+        return ids;
+    }
+
+    @Test
+    void testGetNames_fiftySessions_shouldCostOneRemoteCall() throws Exception {
+        CaregiverProfileLoader loader = loader(Duration.ZERO, 100);
+        List<UUID> caregivers = ids(20);
+        List<UUID> sessions = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            sessions.add(caregivers.get(i % caregivers.size()));
+        }
+
+        Map<UUID, String> names = loader.getNames(sessions, "token");
+
+        assertEquals(1, requests.size());
+        assertEquals(20, requests.get(0).size());
+        assertEquals(20, names.size());
+        caregivers.forEach(id -> assertEquals(name(id.toString()), names.get(id)));
+
+        assertEquals(names, loader.getNames(sessions, "token"));
+        assertEquals(1, requests.size());
+        assertEquals(1, meterRegistry.summary("caregiver.info.batch.size").count());
+    }
+
+    @Test
+    void testGetNames_shouldFetchOnlyCaregiversNotCached() throws Exception {
+        CaregiverProfileLoader loader = loader(Duration.ZERO, 100);
+        List<UUID> first = ids(3);
+        loader.getNames(first, "token");
+
+        UUID added = UUID.randomUUID();
+        List<UUID> second = new ArrayList<>(first);
+        second.add(added);
+        assertEquals(4, loader.getNames(second, "token").size());
+
+        assertEquals(2, requests.size());
+        assertEquals(Set.of(added.toString()), requests.get(1));
+    }
+
+    @Test
+    void testGetNames_concurrentListingsWithinWindow_shouldShareOneCall() throws Exception {
+        CaregiverProfileLoader loader = loader(Duration.ofMillis(300), 100);
+        List<UUID> first = ids(5);
+        List<UUID> second = ids(5);
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<Map<UUID, String>> a = callers.submit(() -> loader.getNames(first, "token"));
+            Future<Map<UUID, String>> b = callers.submit(() -> loader.getNames(second, "token"));
+
+            assertEquals(first.stream().collect(Collectors.toSet()), a.get(5, TimeUnit.SECONDS).keySet());
+            assertEquals(second.stream().collect(Collectors.toSet()), b.get(5, TimeUnit.SECONDS).keySet());
+        } finally {
+            callers.shutdownNow();
+        }
+        assertEquals(1, requests.size());
+        assertEquals(10, requests.get(0).size());
+    }
+
+    @Test
+    void testGetNames_overMaxBatchSize_shouldSplitCalls() throws Exception {
+        CaregiverProfileLoader loader = loader(Duration.ofSeconds(5), 3);
+
+        long start = System.nanoTime();
+        assertEquals(7, loader.getNames(ids(7), "token").size());
+
+        // A full batch is sent right away instead of waiting out the window
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5);
+        assertEquals(List.of(3, 3, 1), requests.stream().map(Set::size).sorted((x, y) -> y - x).toList());
+    }
+
+    @Test
+    void testGetNames_unknownCaregiver_shouldBeLeftOutAndCachedAsUnknown() throws Exception {
+        CaregiverProfileLoader loader = loader(Duration.ZERO, 100);
+        UUID known = UUID.randomUUID();
+        UUID missing = UUID.randomUUID();
+        unknown.add(missing.toString());
+
+        assertEquals(Map.of(known, name(known.toString())), loader.getNames(List.of(known, missing), "token"));
+        assertEquals(Set.of(known), loader.getNames(List.of(known, missing), "token").keySet());
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    void testGetNames_authServiceDown_shouldFallBackToLastKnownNames() throws Exception {
+        CaregiverProfileLoader loader = loader(Duration.ZERO, 100);
+        UUID seen = UUID.randomUUID();
+        loader.getNames(List.of(seen), "token");
+
+        nanos.addAndGet(Duration.ofMinutes(11).toNanos());
+        status = 500;
+        UUID unseen = UUID.randomUUID();
+
+        assertEquals(Map.of(seen, name(seen.toString())), loader.getNames(List.of(seen, unseen), "token"));
+        assertEquals(2, requests.size());
+
+        // Failures are not cached, so the next listing asks again
+        status = 200;
+        assertEquals(2, loader.getNames(List.of(seen, unseen), "token").size());
+    }
+
+    @Test
+    void testGetNames_differentTokensWithinWindow_shouldEachUseTheirOwnCall() throws Exception {
+        CaregiverProfileLoader loader = loader(Duration.ofMillis(300), 100);
+        List<UUID> first = ids(2);
+        List<UUID> second = ids(3);
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<Map<UUID, String>> a = callers.submit(() -> loader.getNames(first, "token-a"));
+            Future<Map<UUID, String>> b = callers.submit(() -> loader.getNames(second, "token-b"));
+            assertEquals(2, a.get(5, TimeUnit.SECONDS).size());
+            assertEquals(3, b.get(5, TimeUnit.SECONDS).size());
+        } finally {
+            callers.shutdownNow();
+        }
+
+        assertEquals(2, requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            List<UUID> own = requestTokens.get(i).equals("Bearer token-a") ? first : second;
+            assertEquals(own.stream().map(UUID::toString).collect(Collectors.toSet()), requests.get(i));
+        }
+    }
+
+    @Test
+    void testGetNames_batchDisabled_shouldLookUpEachCaregiver() throws Exception {
+        CaregiverProfileLoader loader = loader(false, Duration.ofSeconds(5), 100);
+        List<UUID> caregivers = ids(3);
+        UUID missing = UUID.randomUUID();
+        unknown.add(missing.toString());
+        List<UUID> sessions = new ArrayList<>(caregivers);
+        sessions.addAll(caregivers);
+        sessions.add(missing);
+
+        Map<UUID, String> names = loader.getNames(sessions, "token");
+
+        assertEquals(3, names.size());
+        caregivers.forEach(id -> assertEquals(name(id.toString()), names.get(id)));
+        assertTrue(requests.isEmpty());
+        assertEquals(4, singleRequests.size());
+
+        assertEquals(names, loader.getNames(sessions, "token"));
+        assertEquals(4, singleRequests.size());
+    }
+}
@@ -0,0 +1,51 @@
+package id.ac.ui.cs.advprog.bechat.service;
+
+import id.ac.ui.cs.advprog.bechat.dto.ChatMessageEvent;
+import id.ac.ui.cs.advprog.bechat.model.ChatMessage;
+import id.ac.ui.cs.advprog.bechat.model.ChatSession;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ChatMessagePushListenerTest {
+
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ChatMessagePushListener listener = new ChatMessagePushListener(messagingTemplate, meterRegistry);
+
+    private ChatMessageEvent event(ChatMessageEvent.Type type) {
+        ChatSession session = new ChatSession();
+        session.setId(UUID.randomUUID());
+        ChatMessage message = new ChatMessage();
+        message.setId(UUID.randomUUID());
+        message.setSession(session);
+        return ChatMessageEvent.of(type, message);
+    }
+
+    @Test
+    void testOnMessageEvent_shouldPushToSessionTopic() {
+        ChatMessageEvent event = event(ChatMessageEvent.Type.SENT);
+
+        listener.onMessageEvent(event);
+
+        verify(messagingTemplate).convertAndSend("/topic/session/" + event.getSessionId(), event);
+        assertEquals(1.0, meterRegistry.counter("chat.push.events", "type", "SENT").count());
+    }
+
+    @Test
+    void testOnMessageEvent_brokerFailure_shouldNotPropagate() {
+        doThrow(new MessageDeliveryException("broker down"))
+                .when(messagingTemplate).convertAndSend(anyString(), any(Object.class));
+
+        assertDoesNotThrow(() -> listener.onMessageEvent(event(ChatMessageEvent.Type.EDITED)));
+        assertEquals(0.0, meterRegistry.counter("chat.push.events", "type", "EDITED").count());
+    }
+}
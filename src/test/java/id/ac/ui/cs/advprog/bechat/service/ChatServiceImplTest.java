@@ -1,35 +1,63 @@
 package id.ac.ui.cs.advprog.bechat.service;
 
+import id.ac.ui.cs.advprog.bechat.dto.ChangeToken;
+import id.ac.ui.cs.advprog.bechat.dto.ChatChangesPage;
+import id.ac.ui.cs.advprog.bechat.dto.ChatMessageEvent;
+import id.ac.ui.cs.advprog.bechat.dto.ChatMessagePage;
+import id.ac.ui.cs.advprog.bechat.dto.MessageCursor;
+import id.ac.ui.cs.advprog.bechat.dto.MessageSearchHit;
+import id.ac.ui.cs.advprog.bechat.dto.MessageSearchPage;
 import id.ac.ui.cs.advprog.bechat.dto.SendMessageRequest;
+import id.ac.ui.cs.advprog.bechat.dto.SendMessageResult;
+import id.ac.ui.cs.advprog.bechat.exception.ResourceNotFoundException;
 import id.ac.ui.cs.advprog.bechat.model.ChatMessage;
 import id.ac.ui.cs.advprog.bechat.model.ChatSession;
 import id.ac.ui.cs.advprog.bechat.repository.ChatMessageRepository;
+import id.ac.ui.cs.advprog.bechat.repository.ChatMessageRepositoryCustom.ClientMessageClaim;
 import id.ac.ui.cs.advprog.bechat.repository.ChatSessionRepository;
+import id.ac.ui.cs.advprog.bechat.repository.ChatSessionRepository.SessionVersion;
+import id.ac.ui.cs.advprog.bechat.state.DeletedState;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Timer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 class ChatServiceImplTest {
 
     private ChatMessageRepository chatMessageRepository;
     private ChatSessionRepository chatSessionRepository;
+    private RecentMessageCache recentMessageCache;
 
     private Counter sendMessageCounter;
     private Counter sendMessageFailureCounter;
+    private Counter sendMessageDuplicateCounter;
     private Counter editMessageCounter;
     private Counter deleteMessageCounter;
     private Timer getMessagesTimer;
+    private Timer searchMessagesTimer;
+    private ApplicationEventPublisher eventPublisher;
 
     private ChatServiceImpl chatService;
 
@@ -38,26 +66,40 @@ class ChatServiceImplTest {
     void setUp() {
         chatMessageRepository = mock(ChatMessageRepository.class);
         chatSessionRepository = mock(ChatSessionRepository.class);
+        recentMessageCache = mock(RecentMessageCache.class);
         sendMessageCounter = mock(Counter.class);
         sendMessageFailureCounter = mock(Counter.class);
+        sendMessageDuplicateCounter = mock(Counter.class);
         editMessageCounter = mock(Counter.class);
         deleteMessageCounter = mock(Counter.class);
         getMessagesTimer = mock(Timer.class);
+        searchMessagesTimer = mock(Timer.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
 
-        when(getMessagesTimer.<List<ChatMessage>>record(any(Supplier.class)))
+        when(getMessagesTimer.record(any(Supplier.class)))
             .thenAnswer(invocation -> {
-                Supplier<List<ChatMessage>> supplier = (Supplier<List<ChatMessage>>) invocation.getArgument(0);
+                Supplier<?> supplier = invocation.getArgument(0);
                 return supplier.get();
             });
+        when(searchMessagesTimer.record(any(Supplier.class)))
+            .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+        when(chatSessionRepository.bumpMessageVersions(any()))
+            .thenAnswer(invocation -> invocation.<Collection<UUID>>getArgument(0).stream()
+                    .map(id -> sessionVersion(id, 7))
+                    .toList());
 
         chatService = new ChatServiceImpl(
             chatMessageRepository,
             chatSessionRepository,
+            recentMessageCache,
             sendMessageCounter,
             sendMessageFailureCounter,
+            sendMessageDuplicateCounter,
             editMessageCounter,
             deleteMessageCounter,
-            getMessagesTimer
+            getMessagesTimer,
+            searchMessagesTimer,
+            eventPublisher
         );
     }
 
@@ -84,9 +126,13 @@ class ChatServiceImplTest {
         assertEquals(session, result.getSession());
         assertFalse(result.isEdited());
         assertFalse(result.isDeleted());
+        assertEquals(7, result.getChangeSeq());
 
+        verify(chatSessionRepository).bumpMessageVersions(Set.of(sessionId));
         verify(sendMessageCounter).increment();
         verify(sendMessageFailureCounter, never()).increment();
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof ChatMessageEvent e
+                && e.getType() == ChatMessageEvent.Type.SENT && e.getSessionId().equals(sessionId)));
     }
 
     @Test
@@ -110,23 +156,213 @@ class ChatServiceImplTest {
         verify(sendMessageFailureCounter).increment();
     }
 
+    @Test
+    void testSendMessages_shouldAuthorizeEachSessionOnceAndSaveAcceptedInOneBatch() throws Exception {
+        UUID senderId = UUID.randomUUID();
+        ChatSession own = new ChatSession();
+        own.setId(UUID.randomUUID());
+        own.setPacilian(senderId);
+        own.setCaregiver(UUID.randomUUID());
+        ChatSession foreign = new ChatSession();
+        foreign.setId(UUID.randomUUID());
+        foreign.setPacilian(UUID.randomUUID());
+        foreign.setCaregiver(UUID.randomUUID());
+        UUID missing = UUID.randomUUID();
+
+        List<SendMessageRequest> requests = List.of(
+                sendRequest(own.getId(), "satu"),
+                sendRequest(foreign.getId(), "dua"),
+                sendRequest(own.getId(), "tiga"),
+                sendRequest(missing, "empat"));
+
+        when(chatSessionRepository.findAllById(any())).thenReturn(List.of(own, foreign));
+        when(chatMessageRepository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<SendMessageResult> results = chatService.sendMessages(requests, senderId).get();
+
+        assertEquals(4, results.size());
+        assertEquals(SendMessageResult.Status.CREATED, results.get(0).getStatus());
+        assertEquals("satu", results.get(0).getMessage().getContent());
+        assertEquals(SendMessageResult.Status.REJECTED, results.get(1).getStatus());
+        assertEquals("You are not part of this session.", results.get(1).getError());
+        assertEquals(SendMessageResult.Status.CREATED, results.get(2).getStatus());
+        assertEquals("tiga", results.get(2).getMessage().getContent());
+        assertEquals(SendMessageResult.Status.REJECTED, results.get(3).getStatus());
+        assertEquals("Session not found", results.get(3).getError());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i, results.get(i).getIndex());
+        }
+
+        verify(chatSessionRepository, times(1)).findAllById(any());
+        verify(chatSessionRepository, never()).findById(any());
+        verify(chatMessageRepository, times(1)).saveAll(argThat((List<ChatMessage> batch) -> batch.size() == 2));
+        verify(chatSessionRepository, times(1)).bumpMessageVersions(Set.of(own.getId()));
+        verify(sendMessageCounter).increment(2);
+        verify(sendMessageFailureCounter).increment(2);
+        verify(eventPublisher, times(2)).publishEvent(any(ChatMessageEvent.class));
+    }
+
+    @Test
+    void testSendMessage_newClientMessageId_shouldClaimItAndSave() throws Exception {
+        UUID senderId = UUID.randomUUID();
+        ChatSession session = sessionWithId();
+        session.setPacilian(senderId);
+        UUID clientMessageId = UUID.randomUUID();
+        SendMessageRequest request = sendRequest(session.getId(), "halo");
+        request.setClientMessageId(clientMessageId);
+
+        when(chatSessionRepository.findById(session.getId())).thenReturn(Optional.of(session));
+        claimsAsNew();
+        when(chatMessageRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        ChatMessage result = chatService.sendMessage(request, senderId).get();
+
+        verify(chatMessageRepository).claimClientMessageIds(senderId, Map.of(clientMessageId, result.getId()));
+        verify(chatMessageRepository).save(result);
+        verify(chatMessageRepository, never()).findAllByIdCreatedBetween(any(), any(), any());
+        verify(sendMessageCounter).increment();
+        verifyNoInteractions(sendMessageDuplicateCounter);
+    }
+
+    @Test
+    void testSendMessage_repeatedClientMessageId_shouldReturnOriginalWithoutSaving() throws Exception {
+        UUID senderId = UUID.randomUUID();
+        ChatSession session = sessionWithId();
+        session.setPacilian(senderId);
+        ChatMessage original = message(session, senderId, "halo");
+        UUID clientMessageId = UUID.randomUUID();
+        SendMessageRequest request = sendRequest(session.getId(), "halo");
+        request.setClientMessageId(clientMessageId);
+
+        when(chatSessionRepository.findById(session.getId())).thenReturn(Optional.of(session));
+        when(chatMessageRepository.claimClientMessageIds(eq(senderId), any()))
+                .thenReturn(List.of(new ClientMessageClaim(clientMessageId, original.getId(), original.getCreatedAt())));
+        when(chatMessageRepository.findAllByIdCreatedBetween(eq(List.of(original.getId())), any(), any()))
+                .thenReturn(List.of(original));
+
+        assertSame(original, chatService.sendMessage(request, senderId).get());
+
+        verify(chatMessageRepository, never()).save(any());
+        verify(chatSessionRepository, never()).bumpMessageVersions(any());
+        verify(sendMessageDuplicateCounter).increment();
+        verifyNoInteractions(sendMessageCounter, eventPublisher);
+    }
+
+    @Test
+    void testSendMessage_clientMessageIdUsedInAnotherSession_shouldThrowIllegalState() {
+        UUID senderId = UUID.randomUUID();
+        ChatSession session = sessionWithId();
+        session.setPacilian(senderId);
+        ChatMessage original = message(sessionWithId(), senderId, "halo");
+        UUID clientMessageId = UUID.randomUUID();
+        SendMessageRequest request = sendRequest(session.getId(), "halo");
+        request.setClientMessageId(clientMessageId);
+
+        when(chatSessionRepository.findById(session.getId())).thenReturn(Optional.of(session));
+        when(chatMessageRepository.claimClientMessageIds(eq(senderId), any()))
+                .thenReturn(List.of(new ClientMessageClaim(clientMessageId, original.getId(), original.getCreatedAt())));
+        when(chatMessageRepository.findAllByIdCreatedBetween(any(), any(), any())).thenReturn(List.of(original));
+
+        assertThrows(IllegalStateException.class, () -> chatService.sendMessage(request, senderId).join());
+        verify(chatMessageRepository, never()).save(any());
+    }
+
+    @Test
+    void testSendMessages_repeatedClientMessageIds_shouldAnswerRepeatsWithOriginals() throws Exception {
+        UUID senderId = UUID.randomUUID();
+        ChatSession own = sessionWithId();
+        own.setPacilian(senderId);
+        own.setCaregiver(UUID.randomUUID());
+        ChatMessage original = message(own, senderId, "satu");
+        UUID sentBefore = UUID.randomUUID();
+        UUID fresh = UUID.randomUUID();
+
+        List<SendMessageRequest> requests = List.of(
+                sendRequest(own.getId(), "satu"),
+                sendRequest(own.getId(), "dua"),
+                sendRequest(own.getId(), "dua lagi"),
+                sendRequest(own.getId(), "tiga"));
+        requests.get(0).setClientMessageId(sentBefore);
+        requests.get(1).setClientMessageId(fresh);
+        requests.get(2).setClientMessageId(fresh);
+
+        when(chatSessionRepository.findAllById(any())).thenReturn(List.of(own));
+        when(chatMessageRepository.claimClientMessageIds(eq(senderId), any())).thenAnswer(invocation ->
+                invocation.<Map<UUID, UUID>>getArgument(1).entrySet().stream()
+                        .map(entry -> entry.getKey().equals(sentBefore)
+                                ? new ClientMessageClaim(sentBefore, original.getId(), original.getCreatedAt())
+                                : new ClientMessageClaim(entry.getKey(), entry.getValue(), new Date()))
+                        .toList());
+        when(chatMessageRepository.findAllByIdCreatedBetween(eq(List.of(original.getId())), any(), any()))
+                .thenReturn(List.of(original));
+        when(chatMessageRepository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<SendMessageResult> results = chatService.sendMessages(requests, senderId).get();
+
+        assertEquals(SendMessageResult.Status.CREATED, results.get(0).getStatus());
+        assertSame(original, results.get(0).getMessage());
+        assertEquals("dua", results.get(1).getMessage().getContent());
+        assertEquals(SendMessageResult.Status.REJECTED, results.get(2).getStatus());
+        assertEquals("clientMessageId is repeated in this batch", results.get(2).getError());
+        assertEquals("tiga", results.get(3).getMessage().getContent());
+
+        verify(chatMessageRepository).saveAll(argThat((List<ChatMessage> batch) -> batch.size() == 2
+                && batch.stream().noneMatch(message -> message.getId().equals(original.getId()))));
+        verify(sendMessageCounter).increment(2);
+        verify(sendMessageDuplicateCounter).increment(1);
+        verify(sendMessageFailureCounter).increment(1);
+        verify(eventPublisher, times(2)).publishEvent(any(ChatMessageEvent.class));
+    }
+
+    @Test
+    void testGetMessageVersion_shouldReadOnlyTheSessionVersion() throws Exception {
+        UUID sessionId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        when(chatSessionRepository.findMessageVersion(sessionId, userId)).thenReturn(Optional.of(7L));
+
+        assertEquals(Optional.of(7L), chatService.getMessageVersion(sessionId, userId).get());
+        verifyNoInteractions(chatMessageRepository);
+    }
+
+    @Test
+    void testSendMessages_saveFailure_shouldFailWholeBatch() {
+        UUID senderId = UUID.randomUUID();
+        ChatSession own = new ChatSession();
+        own.setId(UUID.randomUUID());
+        own.setPacilian(senderId);
+        own.setCaregiver(UUID.randomUUID());
+
+        when(chatSessionRepository.findAllById(any())).thenReturn(List.of(own));
+        when(chatMessageRepository.saveAll(any())).thenThrow(new IllegalStateException("db down"));
+
+        assertThrows(IllegalStateException.class,
+                () -> chatService.sendMessages(List.of(sendRequest(own.getId(), "satu")), senderId));
+        verify(sendMessageFailureCounter).increment(1);
+        verifyNoInteractions(eventPublisher);
+    }
+
     @Test
     void testEditMessage_success() throws Exception {
         UUID messageId = UUID.randomUUID();
         UUID senderId = UUID.randomUUID();
-        ChatMessage message = new ChatMessage();
-        message.setId(messageId);
-        message.setSenderId(senderId);
-        message.setContent("Old");
+        ChatMessage updated = new ChatMessage();
+        updated.setId(messageId);
+        updated.setSenderId(senderId);
+        updated.setContent("New");
+        updated.setEdited(true);
+        updated.setSession(sessionWithId());
 
-        when(chatMessageRepository.findById(messageId)).thenReturn(Optional.of(message));
-        when(chatMessageRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(chatMessageRepository.editIfAllowed(messageId, senderId, "New")).thenReturn(Optional.of(updated));
 
         ChatMessage result = chatService.editMessage(messageId, "New", senderId).get();
 
         assertEquals("New", result.getContent());
         assertTrue(result.isEdited());
+        verify(chatMessageRepository, never()).findById(any());
+        verify(chatMessageRepository, never()).save(any());
         verify(editMessageCounter).increment();
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof ChatMessageEvent e
+                && e.getType() == ChatMessageEvent.Type.EDITED));
     }
 
     @Test
@@ -136,29 +372,66 @@ class ChatServiceImplTest {
         message.setId(messageId);
         message.setSenderId(UUID.randomUUID());
 
-        when(chatMessageRepository.findById(messageId)).thenReturn(Optional.of(message));
+        when(chatMessageRepository.editIfAllowed(eq(messageId), any(), any())).thenReturn(Optional.empty());
+        when(chatMessageRepository.findByIdWithinIdTime(messageId)).thenReturn(Optional.of(message));
 
         assertThrows(SecurityException.class, () -> chatService.editMessage(messageId, "test", UUID.randomUUID()).join());
         verify(editMessageCounter, never()).increment();
+        verifyNoInteractions(eventPublisher);
     }
 
     @Test
-    void testDeleteMessage_success() throws Exception {
+    void testEditMessage_deleted_shouldThrowIllegalStateException() {
         UUID messageId = UUID.randomUUID();
         UUID senderId = UUID.randomUUID();
         ChatMessage message = new ChatMessage();
         message.setId(messageId);
         message.setSenderId(senderId);
-        message.setContent("Hello");
+        message.setDeleted(true);
 
-        when(chatMessageRepository.findById(messageId)).thenReturn(Optional.of(message));
-        when(chatMessageRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(chatMessageRepository.editIfAllowed(messageId, senderId, "test")).thenReturn(Optional.empty());
+        when(chatMessageRepository.findByIdWithinIdTime(messageId)).thenReturn(Optional.of(message));
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> chatService.editMessage(messageId, "test", senderId).join());
+        assertEquals(DeletedState.EDIT_REJECTED, exception.getMessage());
+        verify(editMessageCounter, never()).increment();
+    }
+
+    @Test
+    void testEditMessage_missing_shouldThrowResourceNotFoundException() {
+        UUID messageId = UUID.randomUUID();
+
+        when(chatMessageRepository.editIfAllowed(eq(messageId), any(), any())).thenReturn(Optional.empty());
+        when(chatMessageRepository.findByIdWithinIdTime(messageId)).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class,
+                () -> chatService.editMessage(messageId, "test", UUID.randomUUID()).join());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void testDeleteMessage_success() throws Exception {
+        UUID messageId = UUID.randomUUID();
+        UUID senderId = UUID.randomUUID();
+        ChatMessage updated = new ChatMessage();
+        updated.setId(messageId);
+        updated.setSenderId(senderId);
+        updated.setContent(DeletedState.DELETED_CONTENT);
+        updated.setDeleted(true);
+        updated.setSession(sessionWithId());
+
+        when(chatMessageRepository.deleteIfAllowed(messageId, senderId, DeletedState.DELETED_CONTENT))
+                .thenReturn(Optional.of(updated));
 
         ChatMessage result = chatService.deleteMessage(messageId, senderId).get();
 
         assertTrue(result.isDeleted());
         assertEquals("Pesan telah dihapus", result.getContent());
+        verify(chatMessageRepository, never()).findById(any());
         verify(deleteMessageCounter).increment();
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof ChatMessageEvent e
+                && e.getType() == ChatMessageEvent.Type.DELETED));
     }
 
     @Test
@@ -168,12 +441,31 @@ class ChatServiceImplTest {
         message.setId(messageId);
         message.setSenderId(UUID.randomUUID());
 
-        when(chatMessageRepository.findById(messageId)).thenReturn(Optional.of(message));
+        when(chatMessageRepository.deleteIfAllowed(eq(messageId), any(), any())).thenReturn(Optional.empty());
+        when(chatMessageRepository.findByIdWithinIdTime(messageId)).thenReturn(Optional.of(message));
 
         assertThrows(SecurityException.class, () -> chatService.deleteMessage(messageId, UUID.randomUUID()).join());
         verify(deleteMessageCounter, never()).increment();
     }
 
+    @Test
+    void testDeleteMessage_alreadyDeleted_shouldThrowIllegalStateException() {
+        UUID messageId = UUID.randomUUID();
+        UUID senderId = UUID.randomUUID();
+        ChatMessage message = new ChatMessage();
+        message.setId(messageId);
+        message.setSenderId(senderId);
+        message.setDeleted(true);
+
+        when(chatMessageRepository.deleteIfAllowed(eq(messageId), eq(senderId), any())).thenReturn(Optional.empty());
+        when(chatMessageRepository.findByIdWithinIdTime(messageId)).thenReturn(Optional.of(message));
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> chatService.deleteMessage(messageId, senderId).join());
+        assertEquals(DeletedState.DELETE_REJECTED, exception.getMessage());
+        verify(deleteMessageCounter, never()).increment();
+    }
+
     @Test
     void testGetMessages_notMember_shouldThrowSecurityException() {
         UUID sessionId = UUID.randomUUID();
@@ -241,4 +533,394 @@ class ChatServiceImplTest {
         verify(getMessagesTimer).record(any(Supplier.class)); // Verifikasi timer
     }
 
+    private ChatSession sessionFor(UUID sessionId, UUID pacilian) {
+        ChatSession session = new ChatSession();
+        session.setId(sessionId);
+        session.setPacilian(pacilian);
+        session.setCaregiver(UUID.randomUUID());
+        return session;
+    }
+
+    private ChatMessage messageAt(long epochMillis) {
+        ChatMessage message = new ChatMessage();
+        message.setId(UUID.randomUUID());
+        message.setCreatedAt(new Date(epochMillis));
+        return message;
+    }
+
+    @Test
+    void testGetMessagePage_latest_shouldReturnAscendingPageWithPrevCursor() throws Exception {
+        UUID sessionId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        ChatSession session = sessionFor(sessionId, userId);
+
+        ChatMessage newest = messageAt(3_000);
+        ChatMessage middle = messageAt(2_000);
+        ChatMessage oldest = messageAt(1_000);
+
+        when(chatSessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+        when(chatMessageRepository.findLatestPage(eq(sessionId), any(Date.class), eq(3)))
+                .thenReturn(List.of(newest, middle, oldest));
+
+        ChatMessagePage page = chatService.getMessagePage(sessionId, userId, null, null, 2).get();
+
+        assertEquals(session, page.getSession());
+        assertEquals(List.of(middle, newest), page.getMessages());
+        assertEquals(MessageCursor.encode(middle), page.getPrevCursor());
+        assertEquals(MessageCursor.encode(newest), page.getNextCursor());
+        verify(chatMessageRepository, never()).findBySessionIdOrderByCreatedAtAsc(any());
+    }
+
+    @Test
+    void testGetMessagePage_latest_shouldFillRecentMessageCacheOnMiss() throws Exception {
+        UUID sessionId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        ChatSession session = sessionFor(sessionId, userId);
+        List<ChatMessage> rows = List.of(messageAt(2_000), messageAt(1_000));
+
+        when(chatSessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+        when(chatMessageRepository.findLatestPage(eq(sessionId), any(Date.class), eq(3))).thenReturn(rows);
+
+        chatService.getMessagePage(sessionId, userId, null, null, 2).get();
+
+        verify(recentMessageCache).latest(eq(sessionId), eq(3), any());
+        verify(recentMessageCache).fill(session, rows, 3);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void testGetMessagePage_latest_cacheHit_shouldOnlyProbeVersion() throws Exception {
+        UUID sessionId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        ChatSession cachedSession = sessionFor(sessionId, userId);
+        ChatMessage newest = messageAt(3_000);
+        ChatMessage middle = messageAt(2_000);
+        ChatMessage oldest = messageAt(1_000);
+
+        when(chatSessionRepository.findMessageVersion(sessionId, userId)).thenReturn(Optional.of(4L));
+        when(recentMessageCache.latest(eq(sessionId), eq(3), any())).thenAnswer(invocation -> {
+            Supplier<Optional<Long>> currentVersion = invocation.getArgument(2);
+            assertEquals(Optional.of(4L), currentVersion.get());
+            return Optional.of(new RecentMessageCache.Snapshot(cachedSession, List.of(newest, middle, oldest)));
+        });
+
+        ChatMessagePage page = chatService.getMessagePage(sessionId, userId, null, null, 2).get();
+
+        assertSame(cachedSession, page.getSession());
+        assertEquals(List.of(middle, newest), page.getMessages());
+        assertEquals(MessageCursor.encode(middle), page.getPrevCursor());
+        verify(chatSessionRepository, never()).findById(any());
+        verifyNoInteractions(chatMessageRepository);
+    }
+
+    @Test
+    void testGetMessagePage_before_shouldNotUseRecentMessageCache() throws Exception {
+        UUID sessionId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        MessageCursor cursor = MessageCursor.of(messageAt(5_000));
+
+        when(chatSessionRepository.findById(sessionId)).thenReturn(Optional.of(sessionFor(sessionId, userId)));
+
+        chatService.getMessagePage(sessionId, userId, cursor.encode(), null, 10).get();
+
+        verifyNoInteractions(recentMessageCache);
+    }
+
+    @Test
+    void testGetParticipantSession_notMember_shouldThrowSecurityException() {
+        UUID sessionId = UUID.randomUUID();
+        when(chatSessionRepository.findById(sessionId)).thenReturn(Optional.of(sessionFor(sessionId, UUID.randomUUID())));
+
+        assertThrows(SecurityException.class, () -> chatService.getParticipantSession(sessionId, UUID.randomUUID()));
+    }
+
+    @Test
+    void testForEachMessage_shouldStreamFromSessionStart() {
+        UUID sessionId = UUID.randomUUID();
+        ChatSession session = sessionFor(sessionId, UUID.randomUUID());
+        LocalDateTime created = LocalDateTime.now().minusYears(1);
+        session.setCreatedAt(created);
+        Date sessionFloor = new Date(Timestamp.valueOf(created.minus(ChatServiceImpl.SESSION_CLOCK_SKEW)).getTime());
+        ChatMessage message = messageAt(1_000);
+        doAnswer(invocation -> {
+            invocation.<Consumer<ChatMessage>>getArgument(2).accept(message);
+            return null;
+        }).when(chatMessageRepository).forEachInSession(eq(sessionId), eq(sessionFloor), any());
+
+        List<ChatMessage> streamed = new ArrayList<>();
+        chatService.forEachMessage(session, streamed::add);
+
+        assertEquals(List.of(message), streamed);
+    }
+
+    @Test
+    void testGetMessagePage_latest_shouldReadOnlyRecentWindowWhenItFillsThePage() throws Exception {
+        UUID sessionId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        ChatSession session = sessionFor(sessionId, userId);
+        session.setCreatedAt(LocalDateTime.now().minusYears(1));
+        List<ChatMessage> recent = List.of(messageAt(3_000), messageAt(2_000), messageAt(1_000));
+
+        when(chatSessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+        when(chatMessageRepository.findLatestPage(eq(sessionId), any(Date.class), eq(3))).thenReturn(recent);
+
+        chatService.getMessagePage(sessionId, userId, null, null, 2).get();
+
+        Date floor = Date.from(Instant.now().minus(Duration.ofDays(29)));
+        verify(chatMessageRepository, times(1)).findLatestPage(eq(sessionId), argThat((Date d) -> d.before(floor)
+                && d.after(Date.from(Instant.now().minus(Duration.ofDays(31))))), eq(3));
+        verifyNoMoreInteractions(chatMessageRepository);
+    }
+
+    @Test
+    void testGetMessagePage_latest_shouldFallBackToWholeSessionWhenRecentWindowIsShort() throws Exception {
+        UUID sessionId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        ChatSession session = sessionFor(sessionId, userId);
+        LocalDateTime created = LocalDateTime.now().minusYears(1);
+        session.setCreatedAt(created);
+        Date sessionFloor = new Date(Timestamp.valueOf(created.minus(ChatServiceImpl.SESSION_CLOCK_SKEW)).getTime());
+        ChatMessage recent = messageAt(3_000);
+        ChatMessage old = messageAt(1_000);
+
+        when(chatSessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+        when(chatMessageRepository.findLatestPage(eq(sessionId), any(Date.class), eq(3))).thenReturn(List.of(recent));
+        when(chatMessageRepository.findLatestPage(sessionId, sessionFloor, 3)).thenReturn(List.of(recent, old));
+
+        ChatMessagePage page = chatService.getMessagePage(sessionId, userId, null, null, 2).get();
+
+        assertEquals(List.of(old, recent), page.getMessages());
+        verify(chatMessageRepository, times(2)).findLatestPage(eq(sessionId), any(Date.class), eq(3));
+    }
+
+    @Test
+    void testGetMessagePage_latest_newSession_shouldQueryFromSessionStartOnly() throws Exception {
+        UUID sessionId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        ChatSession session = sessionFor(sessionId, userId);
+        LocalDateTime created = LocalDateTime.now().minusHours(2);
+        session.setCreatedAt(created);
+        Date sessionFloor = new Date(Timestamp.valueOf(created.minus(ChatServiceImpl.SESSION_CLOCK_SKEW)).getTime());
+
+        when(chatSessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+        when(chatMessageRepository.findLatestPage(sessionId, sessionFloor, 3)).thenReturn(List.of());
+
+        ChatMessagePage page = chatService.getMessagePage(sessionId, userId, null, null, 2).get();
+
+        assertTrue(page.getMessages().isEmpty());
+        verify(chatMessageRepository, times(1)).findLatestPage(eq(sessionId), any(Date.class), anyInt());
+    }
+
+    @Test
+    void testGetMessagePage_before_shouldHaveNoPrevCursorAtStartOfHistory() throws Exception {
+        UUID sessionId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        ChatMessage anchor = messageAt(5_000);
+        ChatMessage older = messageAt(1_000);
+        MessageCursor cursor = MessageCursor.of(anchor);
+
+        when(chatSessionRepository.findById(sessionId)).thenReturn(Optional.of(sessionFor(sessionId, userId)));
+        when(chatMessageRepository.findPageBefore(sessionId, cursor.getTimestamp(), anchor.getId(), 11))
+                .thenReturn(List.of(older));
+
+        ChatMessagePage page = chatService.getMessagePage(sessionId, userId, cursor.encode(), null, 10).get();
+
+        assertEquals(List.of(older), page.getMessages());
+        assertNull(page.getPrevCursor());
+        assertEquals(MessageCursor.encode(older), page.getNextCursor());
+    }
+
+    @Test
+    void testGetMessagePage_afterWithNoNewMessages_shouldKeepCursor() throws Exception {
+        UUID sessionId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        String after = MessageCursor.encode(messageAt(5_000));
+
+        when(chatSessionRepository.findById(sessionId)).thenReturn(Optional.of(sessionFor(sessionId, userId)));
+        when(chatMessageRepository.findPageAfter(eq(sessionId), any(Date.class), any(UUID.class), eq(ChatServiceImpl.MAX_PAGE_SIZE)))
+                .thenReturn(List.of());
+
+        ChatMessagePage page = chatService.getMessagePage(sessionId, userId, null, after, 1_000).get();
+
+        assertTrue(page.getMessages().isEmpty());
+        assertEquals(after, page.getNextCursor());
+    }
+
+    @Test
+    void testGetMessagePage_invalidCursor_shouldThrowIllegalArgument() {
+        UUID sessionId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        when(chatSessionRepository.findById(sessionId)).thenReturn(Optional.of(sessionFor(sessionId, userId)));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> chatService.getMessagePage(sessionId, userId, "not-a-cursor", null, 10));
+    }
+
+    @Test
+    void testGetMessagePage_notMember_shouldThrowSecurityException() {
+        UUID sessionId = UUID.randomUUID();
+        when(chatSessionRepository.findById(sessionId)).thenReturn(Optional.of(sessionFor(sessionId, UUID.randomUUID())));
+
+        assertThrows(SecurityException.class,
+                () -> chatService.getMessagePage(sessionId, UUID.randomUUID(), null, null, 10));
+    }
+
+    @Test
+    void testGetChanges_shouldPageByChangeTokenAndFlagMore() throws Exception {
+        UUID sessionId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        ChatMessage edited = messageAt(1_000);
+        edited.setChangeSeq(4);
+        edited.setEdited(true);
+        ChatMessage deleted = messageAt(2_000);
+        deleted.setChangeSeq(5);
+        deleted.setDeleted(true);
+        ChatMessage sent = messageAt(3_000);
+        sent.setChangeSeq(6);
+        ChangeToken since = new ChangeToken(3, UUID.randomUUID());
+
+        when(chatSessionRepository.findById(sessionId)).thenReturn(Optional.of(sessionFor(sessionId, userId)));
+        when(chatMessageRepository.findChangesAfter(sessionId, 3, since.getId(), 3))
+                .thenReturn(List.of(edited, deleted, sent));
+
+        ChatChangesPage page = chatService.getChanges(sessionId, userId, since.encode(), 2).get();
+
+        assertEquals(List.of(edited, deleted), page.getChanges());
+        assertTrue(page.isHasMore());
+        ChangeToken next = ChangeToken.decode(page.getNextToken());
+        assertEquals(5, next.getChangeSeq());
+        assertEquals(deleted.getId(), next.getId());
+    }
+
+    @Test
+    void testGetChanges_withoutToken_shouldStartFromBeginningAndKeepTokenWhenEmpty() throws Exception {
+        UUID sessionId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+
+        when(chatSessionRepository.findById(sessionId)).thenReturn(Optional.of(sessionFor(sessionId, userId)));
+        when(chatMessageRepository.findChangesAfter(sessionId, 0, new UUID(0, 0), 101)).thenReturn(List.of());
+
+        ChatChangesPage page = chatService.getChanges(sessionId, userId, null, 100).get();
+
+        assertTrue(page.getChanges().isEmpty());
+        assertFalse(page.isHasMore());
+        assertEquals(ChangeToken.START.encode(), page.getNextToken());
+    }
+
+    @Test
+    void testGetChanges_invalidToken_shouldThrowIllegalArgument() {
+        assertThrows(IllegalArgumentException.class,
+                () -> chatService.getChanges(UUID.randomUUID(), UUID.randomUUID(), "bm90LWEtdG9rZW4", 10));
+        verifyNoInteractions(chatMessageRepository);
+    }
+
+    @Test
+    void testGetChanges_notMember_shouldThrowSecurityException() {
+        UUID sessionId = UUID.randomUUID();
+        when(chatSessionRepository.findById(sessionId)).thenReturn(Optional.of(sessionFor(sessionId, UUID.randomUUID())));
+
+        assertThrows(SecurityException.class,
+                () -> chatService.getChanges(sessionId, UUID.randomUUID(), null, 10));
+        verify(chatMessageRepository, never()).findChangesAfter(any(), anyLong(), any(), anyInt());
+    }
+
+    @Test
+    void testSearchMessages_shouldReadOneExtraRowForHasNext() throws Exception {
+        UUID userId = UUID.randomUUID();
+        List<MessageSearchHit> rows = List.of(searchHit("demam tinggi"), searchHit("demam"), searchHit("masih demam"));
+        when(chatMessageRepository.searchMessages(userId, "demam", 3, 2L)).thenReturn(rows);
+
+        MessageSearchPage page = chatService.searchMessages(userId, "  demam ", 1, 2).get();
+
+        assertEquals(rows.subList(0, 2), page.getHits());
+        assertEquals(1, page.getPage());
+        assertEquals(2, page.getSize());
+        assertTrue(page.isHasNext());
+        verify(searchMessagesTimer).record(any(Supplier.class));
+    }
+
+    @Test
+    void testSearchMessages_shouldClampPageAndSize() throws Exception {
+        UUID userId = UUID.randomUUID();
+        when(chatMessageRepository.searchMessages(userId, "obat", ChatServiceImpl.MAX_SEARCH_PAGE_SIZE + 1, 0L))
+                .thenReturn(List.of(searchHit("obat")));
+
+        MessageSearchPage page = chatService.searchMessages(userId, "obat", -3, 10_000).get();
+
+        assertEquals(0, page.getPage());
+        assertEquals(ChatServiceImpl.MAX_SEARCH_PAGE_SIZE, page.getSize());
+        assertFalse(page.isHasNext());
+    }
+
+    @Test
+    void testSearchMessages_blankOrOverlongQuery_shouldThrowIllegalArgument() {
+        UUID userId = UUID.randomUUID();
+
+        assertThrows(IllegalArgumentException.class, () -> chatService.searchMessages(userId, "   ", 0, 20));
+        assertThrows(IllegalArgumentException.class,
+                () -> chatService.searchMessages(userId, "a".repeat(ChatServiceImpl.MAX_QUERY_LENGTH + 1), 0, 20));
+        verifyNoInteractions(chatMessageRepository);
+    }
+
+    @Test
+    void testMessageCursor_shouldRoundTripWithNanosecondPrecision() {
+        ChatMessage message = messageAt(0);
+        Timestamp timestamp = new Timestamp(1_700_000_000_123L);
+        timestamp.setNanos(123_456_000);
+        message.setCreatedAt(timestamp);
+
+        MessageCursor decoded = MessageCursor.decode(MessageCursor.encode(message));
+
+        assertEquals(timestamp.toInstant(), decoded.getCreatedAt());
+        assertEquals(message.getId(), decoded.getId());
+    }
+
+    private void claimsAsNew() {
+        when(chatMessageRepository.claimClientMessageIds(any(), any())).thenAnswer(invocation ->
+                invocation.<Map<UUID, UUID>>getArgument(1).entrySet().stream()
+                        .map(entry -> new ClientMessageClaim(entry.getKey(), entry.getValue(), new Date()))
+                        .toList());
+    }
+
+    private static ChatMessage message(ChatSession session, UUID senderId, String content) {
+        ChatMessage message = new ChatMessage();
+        message.setId(UUID.randomUUID());
+        message.setSession(session);
+        message.setSenderId(senderId);
+        message.setContent(content);
+        message.setCreatedAt(new Date());
+        return message;
+    }
+
+    private static SendMessageRequest sendRequest(UUID sessionId, String content) {
+        SendMessageRequest request = new SendMessageRequest();
+        request.setSessionId(sessionId);
+        request.setContent(content);
+        return request;
+    }
+
+    private static MessageSearchHit searchHit(String content) {
+        return new MessageSearchHit(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), content,
+                new Date(), "Cleo", "Dr. Panda", 0.1f);
+    }
+
+    private static SessionVersion sessionVersion(UUID id, long version) {
+        return new SessionVersion() {
+            @Override
+            public UUID getId() {
+                return id;
+            }
+
+            @Override
+            public long getMessageVersion() {
+                return version;
+            }
+        };
+    }
+
+    private static ChatSession sessionWithId() {
+        ChatSession session = new ChatSession();
+        session.setId(UUID.randomUUID());
+        return session;
+    }
 }
@@ -1,6 +1,8 @@
 package id.ac.ui.cs.advprog.bechat.service;
 
-import id.ac.ui.cs.advprog.bechat.dto.TokenVerificationResponseDto;
+import id.ac.ui.cs.advprog.bechat.dto.SessionInboxPage;
+import id.ac.ui.cs.advprog.bechat.dto.SessionSummaryDto;
+import id.ac.ui.cs.advprog.bechat.dto.UserPrincipal;
 import id.ac.ui.cs.advprog.bechat.model.ChatSession;
 import id.ac.ui.cs.advprog.bechat.model.enums.Role;
 import id.ac.ui.cs.advprog.bechat.repository.ChatSessionRepository;
@@ -8,8 +10,9 @@ import io.micrometer.core.instrument.Counter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -19,8 +22,8 @@ import static org.mockito.Mockito.*;
 public class ChatSessionServiceImplTest {
 
     private ChatSessionRepository chatSessionRepository;
-    private TokenVerificationService tokenVerificationService;
     private CaregiverInfoService caregiverInfoService;
+    private CaregiverProfileLoader caregiverProfileLoader;
     private Counter chatSessionCreatedCounter;
     private Counter chatSessionCreateFailureCounter;
 
@@ -28,18 +31,27 @@ public class ChatSessionServiceImplTest {
 
     private static final String TOKEN = "faketoken";
 
+    private UserPrincipal principal(UUID userId, Role role, String name) {
+        return UserPrincipal.builder()
+            .userId(userId)
+            .name(name)
+            .role(role)
+            .email("cleo@mail.com")
+            .build();
+    }
+
     @BeforeEach
     void setUp() {
         chatSessionRepository = mock(ChatSessionRepository.class);
-        tokenVerificationService = mock(TokenVerificationService.class);
         caregiverInfoService = mock(CaregiverInfoService.class);
+        caregiverProfileLoader = mock(CaregiverProfileLoader.class);
         chatSessionCreatedCounter = mock(Counter.class);
         chatSessionCreateFailureCounter = mock(Counter.class);
 
         chatSessionService = new ChatSessionServiceImpl(
             chatSessionRepository,
-            tokenVerificationService,
             caregiverInfoService,
+            caregiverProfileLoader,
             chatSessionCreatedCounter,
             chatSessionCreateFailureCounter
         );
@@ -50,22 +62,20 @@ public class ChatSessionServiceImplTest {
         UUID pacilianId = UUID.randomUUID();
         UUID caregiverId = UUID.randomUUID();
 
-        when(tokenVerificationService.getRoleFromToken(TOKEN)).thenReturn(Role.PACILIAN);
-        when(tokenVerificationService.verifyToken(TOKEN)).thenReturn(
-            TokenVerificationResponseDto.builder()
-                .userId(pacilianId.toString())
-                .name("Cleo")
-                .role(Role.PACILIAN)
-                .email("cleo@mail.com")
-                .valid(true)
-                .build()
-        );
         when(caregiverInfoService.getNameByUserIdCaregiver(caregiverId, TOKEN)).thenReturn("Dr. Panda");
-        when(chatSessionRepository.findAll()).thenReturn(Collections.emptyList());
-        when(chatSessionRepository.save(any(ChatSession.class)))
-            .thenAnswer(invocation -> invocation.getArgument(0));
-
-        ChatSession session = chatSessionService.createSession(pacilianId, caregiverId, TOKEN);
+        when(chatSessionRepository.upsertSession(any(UUID.class), eq(pacilianId), eq("Cleo"), eq(caregiverId),
+                eq("Dr. Panda"), any(UUID.class), any(UUID.class)))
+            .thenAnswer(invocation -> {
+                ChatSession saved = new ChatSession();
+                saved.setId(invocation.getArgument(0));
+                saved.setPacilian(invocation.getArgument(1));
+                saved.setPacilianName(invocation.getArgument(2));
+                saved.setCaregiver(invocation.getArgument(3));
+                saved.setCaregiverName(invocation.getArgument(4));
+                return saved;
+            });
+
+        ChatSession session = chatSessionService.createSession(principal(pacilianId, Role.PACILIAN, "Cleo"), caregiverId, TOKEN);
 
         assertEquals(pacilianId, session.getPacilian());
         assertEquals(caregiverId, session.getCaregiver());
@@ -88,12 +98,23 @@ public class ChatSessionServiceImplTest {
         verify(chatSessionCreateFailureCounter).increment();
     }
 
+    @Test
+    void testCreateSession_shouldThrowExceptionIfCaregiverIsNull() {
+        UserPrincipal requester = principal(UUID.randomUUID(), Role.PACILIAN, "Cleo");
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+            () -> chatSessionService.createSession(requester, null, TOKEN));
+
+        assertEquals("Pacilian and Caregiver must not be null", exception.getMessage());
+        verify(chatSessionCreateFailureCounter).increment();
+    }
+
     @Test
     void testCreateSession_shouldThrowExceptionIfPacilianEqualsCaregiver() {
         UUID sameId = UUID.randomUUID();
 
         IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
-            () -> chatSessionService.createSession(sameId, sameId, TOKEN));
+            () -> chatSessionService.createSession(principal(sameId, Role.PACILIAN, "Cleo"), sameId, TOKEN));
 
         assertEquals("Pacilian tidak boleh membuat sesi dengan dirinya sendiri", exception.getMessage());
         verify(chatSessionCreateFailureCounter).increment();
@@ -104,10 +125,8 @@ public class ChatSessionServiceImplTest {
         UUID pacilianId = UUID.randomUUID();
         UUID caregiverId = UUID.randomUUID();
 
-        when(tokenVerificationService.getRoleFromToken(TOKEN)).thenReturn(Role.CAREGIVER);
-
         IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
-            () -> chatSessionService.createSession(pacilianId, caregiverId, TOKEN));
+            () -> chatSessionService.createSession(principal(pacilianId, Role.CAREGIVER, "Cleo"), caregiverId, TOKEN));
 
         assertEquals("Only PACILIAN can create session", exception.getMessage());
         verify(chatSessionCreateFailureCounter).increment();
@@ -117,25 +136,49 @@ public class ChatSessionServiceImplTest {
     void testCreateSession_shouldReturnExistingSessionIfAlreadyExists() {
         UUID pacilianId = UUID.randomUUID();
         UUID caregiverId = UUID.randomUUID();
+        ChatSession existingSession = existingSession(pacilianId, caregiverId);
+
+        when(chatSessionRepository.findByParticipantLowAndParticipantHigh(
+                ChatSession.lowerOf(pacilianId, caregiverId), ChatSession.higherOf(pacilianId, caregiverId)))
+            .thenReturn(Optional.of(existingSession));
+
+        ChatSession session = chatSessionService.createSession(principal(pacilianId, Role.PACILIAN, "Cleo"), caregiverId, TOKEN);
+
+        assertEquals(existingSession, session);
+        verify(caregiverInfoService, never()).getNameByUserIdCaregiver(any(), any());
+        verify(chatSessionRepository, never()).upsertSession(any(), any(), any(), any(), any(), any(), any());
+        verify(chatSessionCreatedCounter, never()).increment();
+        verify(chatSessionCreateFailureCounter, never()).increment();
+    }
+
+    @Test
+    void testCreateSession_concurrentCreate_shouldReturnWinningSession() {
+        UUID pacilianId = UUID.randomUUID();
+        UUID caregiverId = UUID.randomUUID();
+        ChatSession existingSession = existingSession(pacilianId, caregiverId);
+
+        when(caregiverInfoService.getNameByUserIdCaregiver(caregiverId, TOKEN)).thenReturn("Dr. Panda");
+        when(chatSessionRepository.upsertSession(any(UUID.class), eq(pacilianId), eq("Cleo"), eq(caregiverId),
+                eq("Dr. Panda"), eq(ChatSession.lowerOf(pacilianId, caregiverId)),
+                eq(ChatSession.higherOf(pacilianId, caregiverId))))
+            .thenReturn(existingSession);
+
+        ChatSession session = chatSessionService.createSession(principal(pacilianId, Role.PACILIAN, "Cleo"), caregiverId, TOKEN);
+
+        assertEquals(existingSession, session);
+        verify(chatSessionRepository, never()).findAll();
+        verify(chatSessionCreatedCounter, never()).increment();
+        verify(chatSessionCreateFailureCounter, never()).increment();
+    }
 
+    private ChatSession existingSession(UUID pacilianId, UUID caregiverId) {
         ChatSession existingSession = new ChatSession();
         existingSession.setId(UUID.randomUUID());
         existingSession.setPacilian(pacilianId);
         existingSession.setCaregiver(caregiverId);
         existingSession.setPacilianName("Cleo");
         existingSession.setCaregiverName("Dr. Panda");
-
-        when(tokenVerificationService.getRoleFromToken(TOKEN)).thenReturn(Role.PACILIAN);
-        when(tokenVerificationService.verifyToken(TOKEN)).thenReturn(
-            TokenVerificationResponseDto.builder().name("Cleo").build()
-        );
-        when(caregiverInfoService.getNameByUserIdCaregiver(caregiverId, TOKEN)).thenReturn("Dr. Panda");
-        when(chatSessionRepository.findAll()).thenReturn(List.of(existingSession));
-
-        ChatSession session = chatSessionService.createSession(pacilianId, caregiverId, TOKEN);
-
-        assertEquals(existingSession, session);
-        verify(chatSessionCreatedCounter).increment();
+        return existingSession;
     }
 
     @Test
@@ -147,7 +190,9 @@ public class ChatSessionServiceImplTest {
         session.setPacilian(user1);
         session.setCaregiver(user2);
 
-        when(chatSessionRepository.findAll()).thenReturn(List.of(session));
+        when(chatSessionRepository.findByParticipantLowAndParticipantHigh(
+                ChatSession.lowerOf(user1, user2), ChatSession.higherOf(user1, user2)))
+            .thenReturn(Optional.of(session));
 
         Optional<ChatSession> result = chatSessionService.findSession(user1, user2);
 
@@ -164,17 +209,23 @@ public class ChatSessionServiceImplTest {
         session.setPacilian(user2);
         session.setCaregiver(user1);
 
-        when(chatSessionRepository.findAll()).thenReturn(List.of(session));
+        when(chatSessionRepository.findByParticipantLowAndParticipantHigh(
+                ChatSession.lowerOf(user1, user2), ChatSession.higherOf(user1, user2)))
+            .thenReturn(Optional.of(session));
 
         Optional<ChatSession> result = chatSessionService.findSession(user1, user2);
+        Optional<ChatSession> swapped = chatSessionService.findSession(user2, user1);
 
         assertTrue(result.isPresent());
         assertEquals(session, result.get());
+        assertEquals(session, swapped.orElseThrow());
+        verify(chatSessionRepository, never()).findAll();
     }
 
     @Test
     void testFindSession_shouldReturnEmptyIfNotFound() {
-        when(chatSessionRepository.findAll()).thenReturn(Collections.emptyList());
+        when(chatSessionRepository.findByParticipantLowAndParticipantHigh(any(UUID.class), any(UUID.class)))
+            .thenReturn(Optional.empty());
 
         Optional<ChatSession> result = chatSessionService.findSession(UUID.randomUUID(), UUID.randomUUID());
 
@@ -184,15 +235,77 @@ public class ChatSessionServiceImplTest {
     @Test
     void testGetSessionsByUser_shouldReturnSessions() {
         UUID userId = UUID.randomUUID();
-        ChatSession session = new ChatSession();
-        session.setPacilian(userId);
-        session.setCaregiver(UUID.randomUUID());
+        SessionSummaryDto summary = summary(userId);
 
-        when(chatSessionRepository.findByPacilianOrCaregiver(userId, userId)).thenReturn(List.of(session));
+        when(chatSessionRepository.findAllSessionSummaries(userId, ChatSessionServiceImpl.PREVIEW_LENGTH))
+                .thenReturn(List.of(summary));
 
-        List<ChatSession> result = chatSessionService.getSessionsByUser(userId);
+        List<SessionSummaryDto> result = chatSessionService.getSessionsByUser(userId);
 
         assertEquals(1, result.size());
-        assertEquals(session, result.get(0));
+        assertEquals(summary, result.get(0));
+    }
+
+    @Test
+    void testGetInbox_shouldReadOneExtraRowToDetectNextPage() {
+        UUID userId = UUID.randomUUID();
+        List<SessionSummaryDto> rows = List.of(summary(userId), summary(userId), summary(userId));
+
+        when(chatSessionRepository.findSessionSummaries(userId, ChatSessionServiceImpl.PREVIEW_LENGTH, 3, 4L))
+                .thenReturn(rows);
+
+        SessionInboxPage inbox = chatSessionService.getInbox(userId, 2, 2, TOKEN);
+
+        assertEquals(rows.subList(0, 2), inbox.getSessions());
+        assertEquals(2, inbox.getPage());
+        assertEquals(2, inbox.getSize());
+        assertTrue(inbox.isHasNext());
+    }
+
+    @Test
+    void testGetInbox_shouldClampPageAndSize() {
+        UUID userId = UUID.randomUUID();
+        int maxSize = ChatSessionServiceImpl.MAX_INBOX_PAGE_SIZE;
+
+        when(chatSessionRepository.findSessionSummaries(userId, ChatSessionServiceImpl.PREVIEW_LENGTH, maxSize + 1, 0L))
+                .thenReturn(List.of(summary(userId)));
+
+        SessionInboxPage inbox = chatSessionService.getInbox(userId, -1, 10_000, TOKEN);
+
+        assertEquals(0, inbox.getPage());
+        assertEquals(maxSize, inbox.getSize());
+        assertEquals(1, inbox.getSessions().size());
+        assertFalse(inbox.isHasNext());
+    }
+
+    @Test
+    void testGetInbox_shouldRefreshCaregiverNamesWithOneLookup() {
+        UUID userId = UUID.randomUUID();
+        UUID renamed = UUID.randomUUID();
+        UUID unresolved = UUID.randomUUID();
+        List<SessionSummaryDto> rows = List.of(summary(userId, renamed), summary(userId, unresolved),
+                summary(userId, renamed));
+
+        when(chatSessionRepository.findSessionSummaries(userId, ChatSessionServiceImpl.PREVIEW_LENGTH, 11, 0L))
+                .thenReturn(rows);
+        when(caregiverProfileLoader.getNames(List.of(renamed, unresolved, renamed), TOKEN))
+                .thenReturn(Map.of(renamed, "Dr. Panda Sp.A"));
+
+        SessionInboxPage inbox = chatSessionService.getInbox(userId, 0, 10, TOKEN);
+
+        assertEquals(List.of("Dr. Panda Sp.A", "Dr. Panda", "Dr. Panda Sp.A"),
+                inbox.getSessions().stream().map(SessionSummaryDto::getCaregiverName).toList());
+        assertEquals("Halo", inbox.getSessions().get(0).getLastMessagePreview());
+        verify(caregiverProfileLoader, times(1)).getNames(anyCollection(), eq(TOKEN));
+    }
+
+    private SessionSummaryDto summary(UUID pacilian, UUID caregiver) {
+        return new SessionSummaryDto(UUID.randomUUID(), pacilian, "Cleo", caregiver, "Dr. Panda",
+                "Halo", pacilian, new Date(), 0);
+    }
+
+    private SessionSummaryDto summary(UUID pacilian) {
+        return new SessionSummaryDto(UUID.randomUUID(), pacilian, "Cleo", UUID.randomUUID(), "Dr. Panda",
+                "Halo", pacilian, new Date(), 0);
     }
 }
@@ -0,0 +1,43 @@
+package id.ac.ui.cs.advprog.bechat.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class MessagePartitionMaintenanceTest {
+
+    private final MessagePartitionMaintenance maintenance = new MessagePartitionMaintenance(
+            mock(JdbcTemplate.class), mock(TransactionTemplate.class), new SimpleMeterRegistry());
+
+    @Test
+    void testPartitionName_shouldRoundTripThroughMonthOf() {
+        YearMonth month = YearMonth.of(2025, 3);
+
+        assertEquals("chat_message_p202503", MessagePartitionMaintenance.partitionName(month));
+        assertEquals(Optional.of(month), MessagePartitionMaintenance.monthOf("chat_message_p202503"));
+    }
+
+    @Test
+    void testMonthOf_shouldIgnoreNonMonthlyPartitions() {
+        assertEquals(Optional.empty(), MessagePartitionMaintenance.monthOf("chat_message_default"));
+        assertEquals(Optional.empty(), MessagePartitionMaintenance.monthOf("chat_message_p2025x3"));
+    }
+
+    @Test
+    void testArchivable_shouldSelectMonthsOlderThanTheHotWindow() {
+        List<String> partitions = List.of("chat_message_default", "chat_message_p202501", "chat_message_p202503",
+                "chat_message_p202504", "chat_message_p202510");
+
+        // Default retention is six months: in October 2025, April onwards stays hot
+        assertEquals(List.of("chat_message_p202501", "chat_message_p202503"),
+                maintenance.archivable(partitions, YearMonth.of(2025, 10)));
+    }
+}
@@ -0,0 +1,208 @@
+package id.ac.ui.cs.advprog.bechat.service;
+
+import id.ac.ui.cs.advprog.bechat.dto.ChatMessageEvent;
+import id.ac.ui.cs.advprog.bechat.dto.MessageCursor;
+import id.ac.ui.cs.advprog.bechat.dto.ReadStateDto;
+import id.ac.ui.cs.advprog.bechat.dto.ReadWatermark;
+import id.ac.ui.cs.advprog.bechat.model.ChatMessage;
+import id.ac.ui.cs.advprog.bechat.model.ChatReadState;
+import id.ac.ui.cs.advprog.bechat.model.ChatSession;
+import id.ac.ui.cs.advprog.bechat.repository.ChatMessageRepository;
+import id.ac.ui.cs.advprog.bechat.repository.ChatReadStateRepository;
+import id.ac.ui.cs.advprog.bechat.repository.ChatSessionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ReadStateServiceTest {
+
+    private ChatReadStateRepository chatReadStateRepository;
+    private ChatMessageRepository chatMessageRepository;
+    private ChatSessionRepository chatSessionRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private ReadStateService readStateService;
+
+    private ChatSession session;
+    private UUID pacilian;
+    private UUID caregiver;
+
+    @BeforeEach
+    void setUp() {
+        chatReadStateRepository = mock(ChatReadStateRepository.class);
+        chatMessageRepository = mock(ChatMessageRepository.class);
+        chatSessionRepository = mock(ChatSessionRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        readStateService = new ReadStateService(chatReadStateRepository, chatMessageRepository,
+                chatSessionRepository, meterRegistry);
+
+        pacilian = UUID.randomUUID();
+        caregiver = UUID.randomUUID();
+        session = new ChatSession();
+        session.setId(UUID.randomUUID());
+        session.setPacilian(pacilian);
+        session.setCaregiver(caregiver);
+
+        when(chatReadStateRepository.findById(any())).thenReturn(Optional.empty());
+    }
+
+    private ChatMessage message(UUID senderId, long createdAtMillis) {
+        ChatMessage message = new ChatMessage();
+        message.setId(UUID.randomUUID());
+        message.setSession(session);
+        message.setSenderId(senderId);
+        message.setCreatedAt(new Date(createdAtMillis));
+        when(chatMessageRepository.findWithSessionById(message.getId())).thenReturn(Optional.of(message));
+        return message;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ReadWatermark> flushedWatermarks() {
+        ArgumentCaptor<Collection<ReadWatermark>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(chatReadStateRepository).advanceWatermarks(captor.capture());
+        return new ArrayList<>(captor.getValue());
+    }
+
+    @Test
+    void testMarkRead_shouldCoalesceRapidMarksIntoOneWrite() {
+        ChatMessage first = message(caregiver, 1_000);
+        ChatMessage second = message(caregiver, 2_000);
+        ChatMessage third = message(caregiver, 3_000);
+
+        readStateService.markRead(session.getId(), pacilian, first.getId());
+        readStateService.markRead(session.getId(), pacilian, third.getId());
+        ReadStateDto state = readStateService.markRead(session.getId(), pacilian, second.getId());
+
+        assertEquals(third.getId(), state.getLastReadMessageId());
+        assertEquals(MessageCursor.encode(third), state.getLastReadCursor());
+        assertEquals(1, readStateService.pendingCount());
+        verify(chatReadStateRepository, never()).advanceWatermarks(any());
+
+        readStateService.flush();
+
+        List<ReadWatermark> flushed = flushedWatermarks();
+        assertEquals(1, flushed.size());
+        assertEquals(pacilian, flushed.get(0).getUserId());
+        assertEquals(third.getId(), flushed.get(0).getPosition().getId());
+        assertEquals(0, readStateService.pendingCount());
+        assertEquals(3.0, meterRegistry.counter("chat.read.marks").count());
+        assertEquals(1.0, meterRegistry.counter("chat.read.flushed").count());
+    }
+
+    @Test
+    void testMarkRead_shouldRejectMessageFromAnotherSession() {
+        ChatMessage message = message(caregiver, 1_000);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> readStateService.markRead(UUID.randomUUID(), pacilian, message.getId()));
+        assertEquals(0, readStateService.pendingCount());
+    }
+
+    @Test
+    void testMarkRead_shouldRejectNonParticipant() {
+        ChatMessage message = message(caregiver, 1_000);
+
+        assertThrows(SecurityException.class,
+                () -> readStateService.markRead(session.getId(), UUID.randomUUID(), message.getId()));
+        assertEquals(0, readStateService.pendingCount());
+    }
+
+    @Test
+    void testFlush_shouldDoNothingWhenNothingPending() {
+        readStateService.flush();
+
+        verify(chatReadStateRepository, never()).advanceWatermarks(any());
+    }
+
+    @Test
+    void testFlush_failure_shouldKeepWatermarksForRetry() {
+        ChatMessage message = message(caregiver, 1_000);
+        readStateService.markRead(session.getId(), pacilian, message.getId());
+        doThrow(new QueryTimeoutException("timeout")).when(chatReadStateRepository).advanceWatermarks(any());
+
+        readStateService.flush();
+
+        assertEquals(1, readStateService.pendingCount());
+        assertEquals(1.0, meterRegistry.counter("chat.read.flush.failures").count());
+    }
+
+    @Test
+    void testGetReadState_shouldPreferNewerPendingPositionOverStoredOne() {
+        ChatMessage stored = message(caregiver, 1_000);
+        ChatMessage newer = message(caregiver, 2_000);
+        ChatReadState state = new ChatReadState();
+        state.setLastReadMessageId(stored.getId());
+        state.setLastReadAt(stored.getCreatedAt());
+        state.setUnreadCount(4);
+        when(chatReadStateRepository.findById(new ChatReadState.Key(session.getId(), pacilian)))
+                .thenReturn(Optional.of(state));
+        when(chatSessionRepository.findById(session.getId())).thenReturn(Optional.of(session));
+
+        assertEquals(stored.getId(), readStateService.getReadState(session.getId(), pacilian).getLastReadMessageId());
+
+        readStateService.markRead(session.getId(), pacilian, newer.getId());
+        ReadStateDto result = readStateService.getReadState(session.getId(), pacilian);
+
+        assertEquals(newer.getId(), result.getLastReadMessageId());
+        assertEquals(4, result.getUnreadCount());
+    }
+
+    @Test
+    void testGetReadState_shouldBeEmptyBeforeAnythingIsRead() {
+        when(chatSessionRepository.findById(session.getId())).thenReturn(Optional.of(session));
+
+        ReadStateDto result = readStateService.getReadState(session.getId(), caregiver);
+
+        assertNull(result.getLastReadMessageId());
+        assertNull(result.getLastReadCursor());
+        assertEquals(0, result.getUnreadCount());
+    }
+
+    @Test
+    void testOnMessageEvent_sent_shouldCountForRecipientAndAdvanceSender() {
+        ChatMessage message = message(pacilian, 1_000);
+
+        readStateService.onMessageEvent(ChatMessageEvent.of(ChatMessageEvent.Type.SENT, message));
+
+        verify(chatReadStateRepository).incrementUnread(session.getId(), caregiver);
+        readStateService.flush();
+        List<ReadWatermark> flushed = flushedWatermarks();
+        assertEquals(pacilian, flushed.get(0).getUserId());
+        assertEquals(message.getId(), flushed.get(0).getPosition().getId());
+    }
+
+    @Test
+    void testOnMessageEvent_deleted_shouldUncountForRecipient() {
+        ChatMessage message = message(caregiver, 1_000);
+        // Deleted messages come back from the guarded UPDATE with only the session id known.
+        ChatSession sessionReference = new ChatSession();
+        sessionReference.setId(session.getId());
+        message.setSession(sessionReference);
+
+        readStateService.onMessageEvent(ChatMessageEvent.of(ChatMessageEvent.Type.DELETED, message));
+
+        verify(chatReadStateRepository).decrementUnreadAfterWatermark(
+                session.getId(), caregiver, message.getCreatedAt(), message.getId());
+        assertEquals(0, readStateService.pendingCount());
+    }
+
+    @Test
+    void testOnMessageEvent_counterFailure_shouldNotPropagate() {
+        ChatMessage message = message(pacilian, 1_000);
+        when(chatReadStateRepository.incrementUnread(any(), any())).thenThrow(new QueryTimeoutException("timeout"));
+
+        assertDoesNotThrow(() -> readStateService.onMessageEvent(ChatMessageEvent.of(ChatMessageEvent.Type.SENT, message)));
+    }
+}
@@ -0,0 +1,194 @@
+package id.ac.ui.cs.advprog.bechat.service;
+
+import id.ac.ui.cs.advprog.bechat.dto.ChatMessageEvent;
+import id.ac.ui.cs.advprog.bechat.model.ChatMessage;
+import id.ac.ui.cs.advprog.bechat.model.ChatSession;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecentMessageCacheTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final UUID pacilian = UUID.randomUUID();
+    private final UUID caregiver = UUID.randomUUID();
+
+    private RecentMessageCache cache(int capacity) {
+        return new RecentMessageCache(capacity, DataSize.ofMegabytes(1), Duration.ofMinutes(30), nanos::get);
+    }
+
+    private ChatSession session(long version) {
+        ChatSession session = new ChatSession();
+        session.setId(UUID.randomUUID());
+        session.setPacilian(pacilian);
+        session.setPacilianName("Pacilian");
+        session.setCaregiver(caregiver);
+        session.setCaregiverName("Caregiver");
+        session.setMessageVersion(version);
+        return session;
+    }
+
+    private ChatMessage message(ChatSession session, long second, long changeSeq) {
+        ChatMessage message = new ChatMessage();
+        message.setId(UUID.randomUUID());
+        message.setSession(session);
+        message.setSenderId(second % 2 == 0 ? pacilian : caregiver);
+        message.setContent("message " + second);
+        message.setCreatedAt(Timestamp.from(Instant.ofEpochSecond(second, 123_456_789)));
+        message.setChangeSeq(changeSeq);
+        return message;
+    }
+
+    private static List<String> contents(Optional<RecentMessageCache.Snapshot> snapshot) {
+        return snapshot.orElseThrow().messages().stream().map(ChatMessage::getContent).toList();
+    }
+
+    @Test
+    void testLatest_shouldServeFilledTailWhileVersionIsCurrent() {
+        RecentMessageCache cache = cache(10);
+        ChatSession session = session(5);
+        ChatMessage newer = message(session, 2, 5);
+        ChatMessage older = message(session, 1, 4);
+        cache.fill(session, List.of(newer, older), 3);
+
+        Optional<RecentMessageCache.Snapshot> hit = cache.latest(session.getId(), 3, () -> Optional.of(5L));
+
+        assertEquals(List.of("message 2", "message 1"), contents(hit));
+        ChatMessage cached = hit.orElseThrow().messages().get(0);
+        assertEquals(newer.getId(), cached.getId());
+        assertEquals(pacilian, cached.getSenderId());
+        assertEquals(newer.getCreatedAt().toInstant(), cached.getCreatedAt().toInstant());
+        assertEquals(5, hit.orElseThrow().session().getMessageVersion());
+        assertEquals("Caregiver", hit.orElseThrow().session().getCaregiverName());
+
+        assertTrue(cache.latest(session.getId(), 3, () -> Optional.of(6L)).isEmpty());
+        assertTrue(cache.latest(session.getId(), 3, Optional::empty).isEmpty());
+        assertEquals(1.0 / 3, cache.hitRatio(), 1e-9);
+    }
+
+    @Test
+    void testLatest_shouldMissWhenTailIsShorterThanPageAndHistoryContinues() {
+        RecentMessageCache cache = cache(10);
+        ChatSession session = session(3);
+        cache.fill(session, List.of(message(session, 3, 3), message(session, 2, 2)), 2);
+
+        assertTrue(cache.latest(session.getId(), 3, () -> Optional.of(3L)).isEmpty());
+        assertEquals(2, contents(cache.latest(session.getId(), 2, () -> Optional.of(3L))).size());
+    }
+
+    @Test
+    void testOnMessageEvent_shouldWriteThroughSendsEditsAndDeletes() {
+        RecentMessageCache cache = cache(10);
+        ChatSession session = session(1);
+        ChatMessage first = message(session, 1, 1);
+        cache.fill(session, List.of(first), 51);
+
+        ChatMessage sent = message(session, 2, 2);
+        cache.onMessageEvent(ChatMessageEvent.of(ChatMessageEvent.Type.SENT, sent));
+        first.setContent("edited");
+        first.setEdited(true);
+        first.setChangeSeq(3);
+        cache.onMessageEvent(ChatMessageEvent.of(ChatMessageEvent.Type.EDITED, first));
+
+        Optional<RecentMessageCache.Snapshot> hit = cache.latest(session.getId(), 51, () -> Optional.of(3L));
+        assertEquals(List.of("message 2", "edited"), contents(hit));
+        assertTrue(hit.orElseThrow().messages().get(1).isEdited());
+    }
+
+    @Test
+    void testOnMessageEvent_shouldIgnoreChangeOlderThanCachedOne() {
+        RecentMessageCache cache = cache(10);
+        ChatSession session = session(4);
+        ChatMessage deleted = message(session, 1, 4);
+        deleted.setDeleted(true);
+        cache.fill(session, List.of(deleted), 51);
+
+        ChatMessage staleEdit = message(session, 1, 3);
+        staleEdit.setId(deleted.getId());
+        staleEdit.setContent("edited");
+        cache.onMessageEvent(ChatMessageEvent.of(ChatMessageEvent.Type.EDITED, staleEdit));
+
+        Optional<RecentMessageCache.Snapshot> hit = cache.latest(session.getId(), 51, () -> Optional.of(4L));
+        assertTrue(hit.orElseThrow().messages().get(0).isDeleted());
+    }
+
+    @Test
+    void testOnMessageEvent_shouldDropTailWhenAVersionIsSkipped() {
+        RecentMessageCache cache = cache(10);
+        ChatSession session = session(1);
+        cache.fill(session, List.of(message(session, 1, 1)), 51);
+
+        cache.onMessageEvent(ChatMessageEvent.of(ChatMessageEvent.Type.SENT, message(session, 3, 3)));
+
+        assertTrue(cache.latest(session.getId(), 1, () -> Optional.of(3L)).isEmpty());
+        assertNull(cache.getNativeCache().getIfPresent(session.getId()));
+    }
+
+    @Test
+    void testOnMessageEvent_fullRing_shouldKeepNewestMessagesOnly() {
+        RecentMessageCache cache = cache(3);
+        ChatSession session = session(3);
+        cache.fill(session, List.of(message(session, 3, 3), message(session, 2, 2), message(session, 1, 1)), 51);
+
+        cache.onMessageEvent(ChatMessageEvent.of(ChatMessageEvent.Type.SENT, message(session, 4, 4)));
+        cache.onMessageEvent(ChatMessageEvent.of(ChatMessageEvent.Type.SENT, message(session, 0, 5)));
+
+        assertEquals(List.of("message 4", "message 3", "message 2"),
+                contents(cache.latest(session.getId(), 3, () -> Optional.of(5L))));
+        // The oldest message fell out of the ring, so longer pages must go to the database
+        assertTrue(cache.latest(session.getId(), 4, () -> Optional.of(5L)).isEmpty());
+    }
+
+    @Test
+    void testFill_shouldNotReplaceNewerTail() {
+        RecentMessageCache cache = cache(10);
+        ChatSession current = session(2);
+        cache.fill(current, List.of(message(current, 2, 2), message(current, 1, 1)), 51);
+
+        ChatSession stale = session(1);
+        stale.setId(current.getId());
+        cache.fill(stale, List.of(message(stale, 1, 1)), 51);
+
+        assertEquals(2, contents(cache.latest(current.getId(), 51, () -> Optional.of(2L))).size());
+    }
+
+    @Test
+    void testResidentBytes_shouldStayWithinBudgetByEvictingSessions() {
+        RecentMessageCache cache = new RecentMessageCache(100, DataSize.ofKilobytes(64), Duration.ofMinutes(30), nanos::get);
+        for (int s = 0; s < 50; s++) {
+            ChatSession session = session(100);
+            List<ChatMessage> newestFirst = new ArrayList<>();
+            for (int i = 100; i > 0; i--) {
+                newestFirst.add(message(session, i, i));
+            }
+            cache.fill(session, newestFirst, 101);
+        }
+        cache.getNativeCache().cleanUp();
+
+        assertTrue(cache.residentBytes() > 0);
+        assertTrue(cache.residentBytes() <= DataSize.ofKilobytes(64).toBytes());
+        assertTrue(cache.getNativeCache().estimatedSize() < 50);
+    }
+
+    @Test
+    void testLatest_shouldExpireIdleSessions() {
+        RecentMessageCache cache = cache(10);
+        ChatSession session = session(1);
+        cache.fill(session, List.of(message(session, 1, 1)), 51);
+
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(31));
+
+        assertTrue(cache.latest(session.getId(), 1, () -> Optional.of(1L)).isEmpty());
+    }
+}
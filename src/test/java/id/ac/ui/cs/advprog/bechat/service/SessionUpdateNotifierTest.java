@@ -0,0 +1,67 @@
+package id.ac.ui.cs.advprog.bechat.service;
+
+import id.ac.ui.cs.advprog.bechat.dto.ChatMessageEvent;
+import id.ac.ui.cs.advprog.bechat.model.ChatMessage;
+import id.ac.ui.cs.advprog.bechat.model.ChatSession;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionUpdateNotifierTest {
+
+    private final SessionUpdateNotifier notifier = new SessionUpdateNotifier();
+
+    private ChatMessageEvent sentIn(UUID sessionId) {
+        ChatSession session = new ChatSession();
+        session.setId(sessionId);
+        ChatMessage message = new ChatMessage();
+        message.setSession(session);
+        return ChatMessageEvent.of(ChatMessageEvent.Type.SENT, message);
+    }
+
+    @Test
+    void testOnMessageEvent_shouldOnlyReachListenersOfThatSession() {
+        UUID sessionId = UUID.randomUUID();
+        List<ChatMessageEvent> received = new ArrayList<>();
+        List<ChatMessageEvent> other = new ArrayList<>();
+        notifier.subscribe(sessionId, received::add);
+        notifier.subscribe(UUID.randomUUID(), other::add);
+
+        notifier.onMessageEvent(sentIn(sessionId));
+
+        assertEquals(1, received.size());
+        assertTrue(other.isEmpty());
+    }
+
+    @Test
+    void testUnsubscribe_shouldStopDeliveryAndDropEmptySessions() {
+        UUID sessionId = UUID.randomUUID();
+        List<ChatMessageEvent> received = new ArrayList<>();
+        Runnable unsubscribe = notifier.subscribe(sessionId, received::add);
+        assertEquals(1, notifier.subscriberCount());
+
+        unsubscribe.run();
+        unsubscribe.run();
+        notifier.onMessageEvent(sentIn(sessionId));
+
+        assertTrue(received.isEmpty());
+        assertEquals(0, notifier.subscriberCount());
+    }
+
+    @Test
+    void testOnMessageEvent_failingListener_shouldNotAffectOthers() {
+        UUID sessionId = UUID.randomUUID();
+        List<ChatMessageEvent> received = new ArrayList<>();
+        notifier.subscribe(sessionId, event -> {
+            throw new IllegalStateException("client gone");
+        });
+        notifier.subscribe(sessionId, received::add);
+
+        assertDoesNotThrow(() -> notifier.onMessageEvent(sentIn(sessionId)));
+        assertEquals(1, received.size());
+    }
+}
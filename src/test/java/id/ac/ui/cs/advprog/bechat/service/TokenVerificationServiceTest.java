@@ -1,6 +1,7 @@
 package id.ac.ui.cs.advprog.bechat.service;
 
 import id.ac.ui.cs.advprog.bechat.dto.TokenVerificationResponseDto;
+import id.ac.ui.cs.advprog.bechat.dto.UserPrincipal;
 import id.ac.ui.cs.advprog.bechat.exception.AuthenticationException;
 import id.ac.ui.cs.advprog.bechat.model.enums.Role;
 import io.jsonwebtoken.Jwts;
@@ -8,9 +9,9 @@ import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.springframework.test.util.ReflectionTestUtils;
 
 import java.security.Key;
+import java.time.Duration;
 import java.util.Date;
 import java.util.UUID;
 
@@ -20,6 +21,7 @@ import java.util.Base64;
 class TokenVerificationServiceTest {
 
     private TokenVerificationService tokenService;
+    private VerifiedTokenCache tokenCache;
 
     private final String rawKey = "super-secret-key-for-jwt-tests-1234567890";
     private final String secretKey = Base64.getEncoder().encodeToString(rawKey.getBytes());
@@ -46,9 +48,8 @@ class TokenVerificationServiceTest {
 
     @BeforeEach
     void setUp() {
-        tokenService = new TokenVerificationService();
-        ReflectionTestUtils.setField(tokenService, "secretKey", secretKey);
-
+        tokenCache = new VerifiedTokenCache(100, Duration.ofMinutes(5));
+        tokenService = new TokenVerificationService(secretKey, tokenCache);
     }
 
     @Test
@@ -94,4 +95,54 @@ class TokenVerificationServiceTest {
         String token = generateToken(UUID.randomUUID().toString(), "user@example.com", "PACILIAN", "John Doe", 60000);
         assertThrows(AuthenticationException.class, () -> tokenService.validateRole(token, Role.CAREGIVER));
     }
+
+    @Test
+    void testAuthenticate_shouldReturnTypedPrincipal() {
+        UUID userId = UUID.randomUUID();
+        String token = generateToken(userId.toString(), "doc@example.com", "CAREGIVER", "Dr. Panda", 60000);
+
+        UserPrincipal principal = tokenService.authenticate(token);
+
+        assertEquals(userId, principal.getUserId());
+        assertEquals(Role.CAREGIVER, principal.getRole());
+        assertEquals("Dr. Panda", principal.getName());
+        assertEquals("doc@example.com", principal.getEmail());
+        assertTrue(principal.getRemainingMillis() > 0);
+        assertTrue(principal.getRemainingMillis() <= 60000);
+    }
+
+    @Test
+    void testAuthenticate_shouldRejectExpiredToken() {
+        String token = generateToken(UUID.randomUUID().toString(), "user@example.com", "PACILIAN", "John Doe", -60000);
+
+        AuthenticationException exception = assertThrows(AuthenticationException.class, () -> tokenService.authenticate(token));
+        assertEquals("Token has expired", exception.getMessage());
+    }
+
+    @Test
+    void testAuthenticate_shouldRejectUnknownRole() {
+        String token = generateToken(UUID.randomUUID().toString(), "user@example.com", "ADMIN", "John Doe", 60000);
+
+        assertThrows(AuthenticationException.class, () -> tokenService.authenticate(token));
+    }
+
+    @Test
+    void testAuthenticate_repeatedToken_shouldBeServedFromCache() {
+        String token = generateToken(UUID.randomUUID().toString(), "user@example.com", "PACILIAN", "John Doe", 60000);
+
+        UserPrincipal first = tokenService.authenticate(token);
+        UserPrincipal second = tokenService.authenticate(token);
+
+        assertSame(first, second);
+        assertEquals(1, tokenCache.getNativeCache().stats().hitCount());
+        assertEquals(1, tokenCache.getNativeCache().stats().missCount());
+    }
+
+    @Test
+    void testAuthenticate_invalidToken_shouldNotBeCached() {
+        assertThrows(AuthenticationException.class, () -> tokenService.authenticate("not-a-jwt"));
+        assertThrows(AuthenticationException.class, () -> tokenService.authenticate("not-a-jwt"));
+
+        assertEquals(0, tokenCache.getNativeCache().estimatedSize());
+    }
 }
@@ -0,0 +1,59 @@
+package id.ac.ui.cs.advprog.bechat.service;
+
+import id.ac.ui.cs.advprog.bechat.dto.UserPrincipal;
+import id.ac.ui.cs.advprog.bechat.model.enums.Role;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VerifiedTokenCacheTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    private UserPrincipal principalExpiringIn(Duration duration) {
+        return UserPrincipal.builder()
+                .userId(UUID.randomUUID())
+                .role(Role.PACILIAN)
+                .name("Cleo")
+                .expiresAt(Instant.now().plus(duration))
+                .build();
+    }
+
+    @Test
+    void testGet_shouldExpireAtConfiguredTtlWhenTokenOutlivesIt() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10, Duration.ofMinutes(5), nanos::get);
+        UserPrincipal principal = principalExpiringIn(Duration.ofHours(1));
+
+        cache.put("token", principal);
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(4));
+        assertSame(principal, cache.get("token"));
+
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        assertNull(cache.get("token"));
+    }
+
+    @Test
+    void testGet_shouldExpireAtTokenExpiryWhenSoonerThanTtl() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10, Duration.ofMinutes(5), nanos::get);
+        UserPrincipal principal = principalExpiringIn(Duration.ofSeconds(30));
+
+        cache.put("token", principal);
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(31));
+
+        assertNull(cache.get("token"));
+    }
+
+    @Test
+    void testGet_shouldMissForDifferentToken() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10, Duration.ofMinutes(5), nanos::get);
+        cache.put("token-a", principalExpiringIn(Duration.ofHours(1)));
+
+        assertNull(cache.get("token-b"));
+    }
+}